@@ -19,6 +19,8 @@ package org.apache.maven.doxia;
  * under the License.
  */
 
+import java.io.File;
+
 import org.apache.maven.doxia.logging.LogEnabled;
 import org.apache.maven.doxia.wrapper.InputFileWrapper;
 import org.apache.maven.doxia.wrapper.InputReaderWrapper;
@@ -53,6 +55,18 @@ public interface Converter
     void convert( InputFileWrapper input, OutputFileWrapper output )
         throws UnsupportedFormatException, ConverterException;
 
+    /**
+     * Convert an input to several output formats, i.e. <code>xhtml</code> and <code>fo</code>. The input is parsed
+     * once, each parse event being sent to a sink per output, and the outputs are written concurrently.
+     *
+     * @param input an input file wrapper, not null.
+     * @param outputs the output file wrappers, not null nor empty.
+     * @throws UnsupportedFormatException if any
+     * @throws ConverterException if any
+     */
+    void convert( InputFileWrapper input, OutputFileWrapper[] outputs )
+        throws UnsupportedFormatException, ConverterException;
+
     /**
      * @param input an input reader wrapper, not null.
      * @param output an output writer wrapper, not null.
@@ -70,4 +84,37 @@ public interface Converter
      * @param formatOutput <code>true</code> to format the generated files, <code>false</code> otherwise.
      */
     void setFormatOutput( boolean formatOutput );
+
+    /**
+     * Convert the files of an input directory concurrently. Each thread uses its own parser and sink instances, and
+     * the generated files are the same as with a sequential conversion. A file which can't be converted doesn't stop
+     * the conversion of the other files: the failures are reported once all the files have been converted.
+     *
+     * @param threads the number of threads converting the files of a directory, <code>1</code> by default.
+     */
+    void setThreads( int threads );
+
+    /**
+     * Cache the sink events of the parsed files, so that an unchanged file is converted again, or to another format,
+     * without being parsed. The events are recorded in a compact binary form, keyed by the content of the file, its
+     * encoding and the version of its parser.
+     *
+     * @param directory the directory of the cache, or <code>null</code> to always parse the files, by default.
+     */
+    void setCacheDirectory( File directory );
+
+    /**
+     * Start the converter for several conversions: the Plexus container is started once, each parser and sink
+     * factory is looked up once, and they are kept until {@link #close()}. Without it, each conversion starts and
+     * stops its own container.
+     *
+     * @throws ConverterException if the Plexus container can't be started.
+     */
+    void start()
+        throws ConverterException;
+
+    /**
+     * Stop the converter started by {@link #start()}, releasing its Plexus container.
+     */
+    void close();
 }
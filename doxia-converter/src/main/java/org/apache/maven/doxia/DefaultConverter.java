@@ -19,22 +19,30 @@ package org.apache.maven.doxia;
  * under the License.
  */
 
-import java.io.BufferedInputStream;
-import java.io.CharArrayWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,9 +50,13 @@ import org.apache.maven.doxia.logging.Log;
 import org.apache.maven.doxia.logging.SystemStreamLog;
 import org.apache.maven.doxia.parser.ParseException;
 import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.sink.PipelineSink;
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.doxia.sink.SinkFactory;
 import org.apache.maven.doxia.util.ConverterUtil;
+import org.apache.maven.doxia.util.PrettyPrintOutputStream;
+import org.apache.maven.doxia.util.SinkEventRecorder;
+import org.apache.maven.doxia.util.TeeSink;
 import org.apache.maven.doxia.wrapper.InputFileWrapper;
 import org.apache.maven.doxia.wrapper.InputReaderWrapper;
 import org.apache.maven.doxia.wrapper.OutputFileWrapper;
@@ -60,15 +72,9 @@ import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.SelectorUtils;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.XmlStreamReader;
-import org.codehaus.plexus.util.xml.XmlUtil;
-import org.codehaus.plexus.util.xml.pull.MXParser;
-import org.codehaus.plexus.util.xml.pull.XmlPullParser;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 import com.ibm.icu.text.CharsetDetector;
-import com.ibm.icu.text.CharsetMatch;
 
 /**
  * Default implementation of <code>Converter</code>
@@ -125,8 +131,20 @@ public class DefaultConverter
     /** Flag to format the generated files, actually only for XML based sinks. */
     private boolean formatOutput;
 
-    /** Plexus container */
-    private PlexusContainer plexus;
+    /** The number of threads converting the files of a directory. */
+    private int threads = 1;
+
+    /** The cache of the sink events of the parsed files, if any. */
+    private SinkEventCache cache;
+
+    /** The Plexus container and its components, when started. */
+    private Components components;
+
+    /** The idle Plexus containers and components of the threads converting the files of a directory. */
+    private final Queue workers = new ConcurrentLinkedQueue();
+
+    /** Flag to keep the Plexus containers until {@link #close()}, instead of stopping them after each conversion. */
+    private boolean started;
 
     /** Doxia logger */
     private Log log;
@@ -169,29 +187,41 @@ public class DefaultConverter
     public void convert( InputFileWrapper input, OutputFileWrapper output )
         throws UnsupportedFormatException, ConverterException
     {
-        if ( input == null )
-        {
-            throw new IllegalArgumentException( "input is required" );
-        }
         if ( output == null )
         {
             throw new IllegalArgumentException( "output is required" );
         }
 
-        try
+        convert( input, new OutputFileWrapper[] { output } );
+    }
+
+    /** {@inheritDoc} */
+    public void convert( InputFileWrapper input, OutputFileWrapper[] outputs )
+        throws UnsupportedFormatException, ConverterException
+    {
+        if ( input == null )
         {
-            startPlexusContainer();
+            throw new IllegalArgumentException( "input is required" );
         }
-        catch ( PlexusContainerException e )
+        if ( outputs == null || outputs.length == 0 )
         {
-            throw new ConverterException( "PlexusContainerException: " + e.getMessage(), e );
+            throw new IllegalArgumentException( "outputs are required" );
         }
+        for ( int i = 0; i < outputs.length; i++ )
+        {
+            if ( outputs[i] == null )
+            {
+                throw new IllegalArgumentException( "output is required" );
+            }
+        }
+
+        startPlexusContainer();
 
         try
         {
             if ( input.getFile().isFile() )
             {
-                parse( input.getFile(), input.getEncoding(), input.getFormat(), output );
+                parse( components, input.getFile(), input.getEncoding(), input.getFormat(), outputs );
             }
             else
             {
@@ -211,17 +241,26 @@ public class DefaultConverter
                     throw new ConverterException( "IllegalStateException: " + e.getMessage(), e );
                 }
 
+                if ( threads > 1 )
+                {
+                    parse( files, input.getEncoding(), input.getFormat(), outputs );
+                    return;
+                }
+
                 for ( Iterator it = files.iterator(); it.hasNext(); )
                 {
                     File f = (File) it.next();
 
-                    parse( f, input.getEncoding(), input.getFormat(), output );
+                    parse( components, f, input.getEncoding(), input.getFormat(), outputs );
                 }
             }
         }
         finally
         {
-            stopPlexusContainer();
+            if ( !started )
+            {
+                stopPlexusContainer();
+            }
         }
     }
 
@@ -238,21 +277,14 @@ public class DefaultConverter
             throw new IllegalArgumentException( "output is required" );
         }
 
-        try
-        {
-            startPlexusContainer();
-        }
-        catch ( PlexusContainerException e )
-        {
-            throw new ConverterException( "PlexusContainerException: " + e.getMessage(), e );
-        }
+        startPlexusContainer();
 
         try
         {
             Parser parser;
             try
             {
-                parser = ConverterUtil.getParser( plexus, input.getFormat(), SUPPORTED_FROM_FORMAT );
+                parser = components.getParser( input.getFormat() );
                 parser.enableLogging( log );
             }
             catch ( ComponentLookupException e )
@@ -268,7 +300,7 @@ public class DefaultConverter
             SinkFactory sinkFactory;
             try
             {
-                sinkFactory = ConverterUtil.getSinkFactory( plexus, output.getFormat(), SUPPORTED_TO_FORMAT );
+                sinkFactory = components.getSinkFactory( output.getFormat() );
             }
             catch ( ComponentLookupException e )
             {
@@ -278,7 +310,8 @@ public class DefaultConverter
             Sink sink;
             try
             {
-                sink = sinkFactory.createSink( output.getOutputStream(), output.getEncoding() );
+                OutputStream out = indentXml( output.getOutputStream(), output.getFormat(), output.getEncoding() );
+                sink = sinkFactory.createSink( out, output.getEncoding() );
             }
             catch ( IOException e )
             {
@@ -295,7 +328,10 @@ public class DefaultConverter
         }
         finally
         {
-            stopPlexusContainer();
+            if ( !started )
+            {
+                stopPlexusContainer();
+            }
         }
     }
 
@@ -305,106 +341,451 @@ public class DefaultConverter
         this.formatOutput = formatOutput;
     }
 
+    /** {@inheritDoc} */
+    public void setThreads( int threads )
+    {
+        this.threads = Math.max( 1, threads );
+    }
+
+    /** {@inheritDoc} */
+    public void setCacheDirectory( File directory )
+    {
+        this.cache = ( directory == null ) ? null : new SinkEventCache( directory );
+    }
+
+    /** {@inheritDoc} */
+    public void start()
+        throws ConverterException
+    {
+        startPlexusContainer();
+        started = true;
+    }
+
+    /** {@inheritDoc} */
+    public void close()
+    {
+        started = false;
+        stopPlexusContainer();
+    }
+
     // ----------------------------------------------------------------------
     // Private methods
     // ----------------------------------------------------------------------
 
     /**
-     * @param inputFile a not null existing file.
+     * Converts the given files on {@link #threads} threads, each one with its own Plexus container, thus with its
+     * own parser and sink instances. The containers are kept in {@link #workers} for the next conversions until
+     * {@link #close()} if the converter is {@link #started}, at most one per thread of the last conversion. The files written to the same output files are
+     * converted in order by the same thread, so that the output is the one of a sequential conversion. A file which
+     * can't be converted doesn't stop the conversion of the other files.
+     *
+     * @param files the not null files to convert.
      * @param inputEncoding a not null supported encoding or {@link InputFileWrapper#AUTO_ENCODING}
      * @param inputFormat  a not null supported format or {@link InputFileWrapper#AUTO_FORMAT}
-     * @param output not null OutputFileWrapper object
-     * @throws ConverterException if any
-     * @throws UnsupportedFormatException if any
+     * @param outputs not null OutputFileWrapper objects
+     * @throws ConverterException if any file could not be converted, with the failure of the first one as cause.
+     * @throws UnsupportedFormatException if the only file which could not be converted has an unsupported format.
      */
-    private void parse( File inputFile, String inputEncoding, String inputFormat, OutputFileWrapper output )
+    private void parse( List files, final String inputEncoding, final String inputFormat,
+                        final OutputFileWrapper[] outputs )
         throws ConverterException, UnsupportedFormatException
     {
-        if ( getLog().isDebugEnabled() )
+        // the files with the same output files, in order
+        Map groups = new LinkedHashMap();
+        for ( Iterator it = files.iterator(); it.hasNext(); )
         {
-            getLog().debug(
-                            "Parsing file from '" + inputFile.getAbsolutePath() + "' with the encoding '"
-                                + inputEncoding + "' to '" + output.getFile().getAbsolutePath()
-                                + "' with the encoding '" + output.getEncoding() + "'" );
+            File f = (File) it.next();
+
+            List outputFiles = new ArrayList();
+            for ( int i = 0; i < outputs.length; i++ )
+            {
+                outputFiles.add( getOutputFile( f, outputs[i] ) );
+            }
+            List group = (List) groups.get( outputFiles );
+            if ( group == null )
+            {
+                group = new ArrayList();
+                groups.put( outputFiles, group );
+            }
+            group.add( f );
         }
 
-        if ( inputEncoding.equals( InputFileWrapper.AUTO_ENCODING ) )
+        final Queue queue = new ConcurrentLinkedQueue( groups.values() );
+        final Map failures = new ConcurrentHashMap();
+
+        int count = Math.min( threads, groups.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( count );
+        try
         {
-            inputEncoding = autoDetectEncoding( inputFile );
-            if ( getLog().isDebugEnabled() )
+            List futures = new ArrayList();
+            for ( int i = 0; i < count; i++ )
             {
-                getLog().debug( "Auto detect encoding: " + inputEncoding );
+                futures.add( executor.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        Components worker = null;
+                        try
+                        {
+                            List group;
+                            while ( ( group = (List) queue.poll() ) != null )
+                            {
+                                for ( Iterator it = group.iterator(); it.hasNext(); )
+                                {
+                                    File f = (File) it.next();
+
+                                    try
+                                    {
+                                        if ( worker == null )
+                                        {
+                                            worker = (Components) workers.poll();
+                                        }
+                                        if ( worker == null )
+                                        {
+                                            worker = new Components();
+                                        }
+                                        parse( worker, f, inputEncoding, inputFormat, outputs );
+                                    }
+                                    catch ( PlexusContainerException e )
+                                    {
+                                        failures.put( f, new ConverterException( "PlexusContainerException: "
+                                            + e.getMessage(), e ) );
+                                    }
+                                    catch ( Exception e )
+                                    {
+                                        failures.put( f, e );
+                                    }
+                                }
+                            }
+                        }
+                        finally
+                        {
+                            if ( worker != null )
+                            {
+                                workers.add( worker );
+                            }
+                        }
+                    }
+                } ) );
             }
-        }
 
-        if ( inputFormat.equals( InputFileWrapper.AUTO_FORMAT ) )
+            for ( Iterator it = futures.iterator(); it.hasNext(); )
+            {
+                ( (Future) it.next() ).get();
+            }
+        }
+        catch ( InterruptedException e )
         {
-            inputFormat = autoDetectFormat( inputFile, inputEncoding );
-            if ( getLog().isDebugEnabled() )
+            Thread.currentThread().interrupt();
+            throw new ConverterException( "InterruptedException: " + e.getMessage(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new ConverterException( "ExecutionException: " + e.getMessage(), e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+
+            // the containers of a previous conversion on more threads
+            Components worker;
+            while ( workers.size() > threads && ( worker = (Components) workers.poll() ) != null )
             {
-                getLog().debug( "Auto detect input format: " + inputFormat );
+                worker.dispose();
             }
         }
 
-        Parser parser;
-        try
+        if ( failures.isEmpty() )
         {
-            parser = ConverterUtil.getParser( plexus, inputFormat, SUPPORTED_FROM_FORMAT );
-            parser.enableLogging( log );
+            return;
         }
-        catch ( ComponentLookupException e )
+
+        Exception first = null;
+        for ( Iterator it = files.iterator(); it.hasNext(); )
         {
-            throw new ConverterException( "ComponentLookupException: " + e.getMessage(), e );
+            File f = (File) it.next();
+
+            Exception e = (Exception) failures.get( f );
+            if ( e == null )
+            {
+                continue;
+            }
+            if ( first == null )
+            {
+                first = e;
+            }
+            getLog().error( "Could not convert '" + f.getAbsolutePath() + "': " + e.getMessage() );
         }
 
-        File outputFile;
-        if ( output.getFile().exists() && output.getFile().isDirectory() )
+        if ( failures.size() == 1 )
         {
-            outputFile = new File( output.getFile(), inputFile.getName() + "." + output.getFormat() );
+            if ( first instanceof ConverterException )
+            {
+                throw (ConverterException) first;
+            }
+            if ( first instanceof UnsupportedFormatException )
+            {
+                throw (UnsupportedFormatException) first;
+            }
+            if ( first instanceof RuntimeException )
+            {
+                throw (RuntimeException) first;
+            }
         }
-        else
+
+        throw new ConverterException( failures.size() + " of " + files.size() + " files could not be converted, "
+            + "the first one: " + first.getMessage(), first );
+    }
+
+    /**
+     * @param components the Plexus container and components used for the conversion, not null.
+     * @param inputFile a not null existing file.
+     * @param inputEncoding a not null supported encoding or {@link InputFileWrapper#AUTO_ENCODING}
+     * @param inputFormat  a not null supported format or {@link InputFileWrapper#AUTO_FORMAT}
+     * @param outputs not null OutputFileWrapper objects, the parse events being sent to a sink per output.
+     * @throws ConverterException if any
+     * @throws UnsupportedFormatException if any
+     */
+    private void parse( Components components, File inputFile, String inputEncoding, String inputFormat,
+                        OutputFileWrapper[] outputs )
+        throws ConverterException, UnsupportedFormatException
+    {
+        if ( getLog().isDebugEnabled() )
         {
-            if ( !SelectorUtils.match( "**.*", output.getFile().getName() ) )
+            for ( int i = 0; i < outputs.length; i++ )
             {
-                // assume it is a directory
-                output.getFile().mkdirs();
-                outputFile = new File( output.getFile(), inputFile.getName() + "." + output.getFormat() );
+                getLog().debug(
+                                "Parsing file from '" + inputFile.getAbsolutePath() + "' with the encoding '"
+                                    + inputEncoding + "' to '" + outputs[i].getFile().getAbsolutePath()
+                                    + "' with the encoding '" + outputs[i].getEncoding() + "'" );
             }
-            else
+        }
+
+        // the beginning of the file is read once for both detections, and then parsed from memory
+        InputSniffer sniffer = null;
+        if ( inputEncoding.equals( InputFileWrapper.AUTO_ENCODING )
+            || inputFormat.equals( InputFileWrapper.AUTO_FORMAT ) )
+        {
+            try
             {
-                output.getFile().getParentFile().mkdirs();
-                outputFile = output.getFile();
+                sniffer = new InputSniffer( inputFile );
+            }
+            catch ( IOException e )
+            {
+                throw new ConverterException( "IOException: " + e.getMessage(), e );
             }
         }
 
-        Reader reader;
+        Parser parser;
+        InputStream in = null;
+        Reader reader = null;
         try
         {
-            if ( inputEncoding != null )
+            if ( inputEncoding.equals( InputFileWrapper.AUTO_ENCODING ) )
+            {
+                inputEncoding = autoDetectEncoding( inputFile, sniffer );
+                if ( getLog().isDebugEnabled() )
+                {
+                    getLog().debug( "Auto detect encoding: " + inputEncoding );
+                }
+            }
+
+            if ( inputFormat.equals( InputFileWrapper.AUTO_FORMAT ) )
+            {
+                inputFormat = autoDetectFormat( inputFile, sniffer );
+                if ( getLog().isDebugEnabled() )
+                {
+                    getLog().debug( "Auto detect input format: " + inputFormat );
+                }
+            }
+
+            try
+            {
+                parser = components.getParser( inputFormat );
+                parser.enableLogging( log );
+            }
+            catch ( ComponentLookupException e )
+            {
+                throw new ConverterException( "ComponentLookupException: " + e.getMessage(), e );
+            }
+
+            try
             {
-                if ( parser.getType() == Parser.XML_TYPE )
+                in = ( sniffer != null ) ? sniffer.getInputStream() : new FileInputStream( inputFile );
+
+                if ( inputEncoding != null )
                 {
-                    reader = ReaderFactory.newXmlReader( inputFile );
+                    if ( parser.getType() == Parser.XML_TYPE )
+                    {
+                        reader = ReaderFactory.newXmlReader( in );
+                    }
+                    else
+                    {
+                        reader = ReaderFactory.newReader( in, inputEncoding );
+                    }
                 }
                 else
                 {
-                    reader = ReaderFactory.newReader( inputFile, inputEncoding );
+                    reader = ReaderFactory.newPlatformReader( in );
                 }
             }
-            else
+            catch ( IOException e )
+            {
+                throw new ConverterException( "IOException: " + e.getMessage(), e );
+            }
+        }
+        finally
+        {
+            if ( reader == null )
+            {
+                IOUtil.close( in );
+                if ( sniffer != null )
+                {
+                    sniffer.close();
+                }
+            }
+        }
+
+        Set outputFiles = new HashSet();
+        List sinks = new ArrayList();
+        try
+        {
+            for ( int i = 0; i < outputs.length; i++ )
+            {
+                File outputFile = getOutputFile( inputFile, outputs[i] );
+                if ( !outputFiles.add( outputFile ) )
+                {
+                    throw new ConverterException( "Several outputs are written to the file '"
+                        + outputFile.getAbsolutePath() + "'" );
+                }
+
+                sinks.add( createSink( components, inputFile, inputEncoding, outputs[i] ) );
+            }
+        }
+        finally
+        {
+            if ( sinks.size() < outputs.length )
             {
-                reader = ReaderFactory.newPlatformReader( inputFile );
+                IOUtil.close( reader );
+                for ( Iterator it = sinks.iterator(); it.hasNext(); )
+                {
+                    ( (Sink) it.next() ).close();
+                }
             }
         }
+
+        // a single parse for all the outputs, written concurrently
+        Sink sink = ( sinks.size() == 1 ) ? (Sink) sinks.get( 0 ) : TeeSink.newInstance( sinks );
+
+        if ( cache == null )
+        {
+            parse( parser, reader, sink );
+        }
+        else
+        {
+            parse( cache, inputFile, inputEncoding, parser, reader, sink );
+        }
+    }
+
+    /**
+     * Replay the cached sink events of the input file if any, otherwise parse it and cache its sink events.
+     *
+     * @param cache not null
+     * @param inputFile a not null existing file.
+     * @param inputEncoding the encoding of the input file.
+     * @param parser not null
+     * @param reader not null, closed by this method.
+     * @param sink not null, flushed and closed by this method.
+     * @throws ConverterException if any
+     */
+    private void parse( SinkEventCache cache, File inputFile, String inputEncoding, Parser parser, Reader reader,
+                        Sink sink )
+        throws ConverterException
+    {
+        File recording;
+        try
+        {
+            recording = cache.getRecording( inputFile, inputEncoding, parser );
+        }
         catch ( IOException e )
         {
-            throw new ConverterException( "IOException: " + e.getMessage(), e );
+            getLog().warn( "Unable to use the cache for '" + inputFile.getAbsolutePath() + "': " + e.getMessage() );
+
+            parse( parser, reader, sink );
+            return;
+        }
+
+        if ( recording.isFile() )
+        {
+            if ( getLog().isDebugEnabled() )
+            {
+                getLog().debug( "Replaying the cached sink events '" + recording.getAbsolutePath() + "'" );
+            }
+
+            IOUtil.close( reader );
+            try
+            {
+                cache.replay( recording, sink );
+            }
+            catch ( IOException e )
+            {
+                throw new ConverterException( "IOException: " + e.getMessage(), e );
+            }
+            finally
+            {
+                sink.flush();
+                sink.close();
+            }
+            return;
+        }
+
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        SinkEventRecorder recorder = new SinkEventRecorder( events );
+        List sinks = new ArrayList();
+        sinks.add( sink );
+        sinks.add( recorder.getSink() );
+
+        parse( parser, reader, PipelineSink.newInstance( sinks ) );
+
+        if ( !recorder.isComplete() )
+        {
+            if ( getLog().isDebugEnabled() )
+            {
+                getLog().debug( "Unable to record the sink events of '" + inputFile.getAbsolutePath() + "': "
+                                    + recorder.getFailure().getMessage() );
+            }
+            return;
+        }
+
+        try
+        {
+            cache.store( recording, events.toByteArray() );
         }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to cache the sink events of '" + inputFile.getAbsolutePath() + "': "
+                               + e.getMessage() );
+        }
+    }
+
+    /**
+     * @param components the Plexus container and components used for the conversion, not null.
+     * @param inputFile a not null existing file.
+     * @param inputEncoding the encoding of the input file.
+     * @param output not null OutputFileWrapper object
+     * @return a sink writing the output file of the given input file.
+     * @throws ConverterException if any
+     * @throws UnsupportedFormatException if any
+     */
+    private Sink createSink( Components components, File inputFile, String inputEncoding, OutputFileWrapper output )
+        throws ConverterException, UnsupportedFormatException
+    {
+        File outputFile = getOutputFile( inputFile, output );
 
         SinkFactory sinkFactory;
         try
         {
-            sinkFactory = ConverterUtil.getSinkFactory( plexus, output.getFormat(), SUPPORTED_TO_FORMAT );
+            sinkFactory = components.getSinkFactory( output.getFormat() );
         }
         catch ( ComponentLookupException e )
         {
@@ -425,7 +806,7 @@ public class DefaultConverter
                 outputEncoding = output.getEncoding();
             }
 
-            OutputStream out = new FileOutputStream( outputFile );
+            OutputStream out = indentXml( new FileOutputStream( outputFile ), output.getFormat(), outputEncoding );
             sink = sinkFactory.createSink( out, outputEncoding );
         }
         catch ( IOException e )
@@ -440,38 +821,25 @@ public class DefaultConverter
             getLog().debug( "Sink used: " + sink.getClass().getName() );
         }
 
-        parse( parser, reader, sink );
+        return sink;
+    }
 
-        if ( formatOutput && ( output.getFormat().equals( DOCBOOK_SINK ) || output.getFormat().equals( FO_SINK )
-            || output.getFormat().equals( ITEXT_SINK ) || output.getFormat().equals( XDOC_SINK )
-            || output.getFormat().equals( XHTML_SINK ) ) )
+    /**
+     * @param out the output stream of a sink, not null.
+     * @param format the output format, not null.
+     * @param encoding the output encoding, UTF-8 if <code>null</code>.
+     * @return the given stream, or a stream indenting the XML document written into it if {@link #formatOutput}
+     * is set and the output format is XML based.
+     */
+    private OutputStream indentXml( OutputStream out, String format, String encoding )
+    {
+        if ( formatOutput && ( format.equals( DOCBOOK_SINK ) || format.equals( FO_SINK )
+            || format.equals( ITEXT_SINK ) || format.equals( XDOC_SINK ) || format.equals( XHTML_SINK ) ) )
         {
-            // format all xml files excluding docbook which is buggy
-            // TODO Add doc book format
-            if ( output.getFormat().equals( DOCBOOK_SINK ) || inputFormat.equals( DOCBOOK_PARSER ) )
-            {
-                return;
-            }
-            Reader r = null;
-            Writer w = null;
-            try
-            {
-                r = ReaderFactory.newXmlReader( outputFile );
-                CharArrayWriter caw = new CharArrayWriter();
-                XmlUtil.prettyFormat( r, caw );
-                w = WriterFactory.newXmlWriter( outputFile );
-                w.write( caw.toString() );
-            }
-            catch ( IOException e )
-            {
-                throw new ConverterException( "IOException: " + e.getMessage(), e );
-            }
-            finally
-            {
-                IOUtil.close( r );
-                IOUtil.close( w );
-            }
+            return new PrettyPrintOutputStream( out, encoding );
         }
+
+        return out;
     }
 
     /**
@@ -500,40 +868,67 @@ public class DefaultConverter
     }
 
     /**
-     * Start the Plexus container.
+     * @param inputFile a not null file.
+     * @param output not null OutputFileWrapper object
+     * @return the file written for the given input file, its parent directory being created.
+     */
+    private static File getOutputFile( File inputFile, OutputFileWrapper output )
+    {
+        if ( output.getFile().exists() && output.getFile().isDirectory() )
+        {
+            return new File( output.getFile(), inputFile.getName() + "." + output.getFormat() );
+        }
+
+        if ( !SelectorUtils.match( "**.*", output.getFile().getName() ) )
+        {
+            // assume it is a directory
+            output.getFile().mkdirs();
+            return new File( output.getFile(), inputFile.getName() + "." + output.getFormat() );
+        }
+
+        output.getFile().getParentFile().mkdirs();
+        return output.getFile();
+    }
+
+    /**
+     * Start the Plexus container, if not already started.
      *
-     * @throws PlexusContainerException if any
+     * @throws ConverterException if the Plexus container can't be started.
      */
     private void startPlexusContainer()
-        throws PlexusContainerException
+        throws ConverterException
     {
-        if ( plexus != null )
+        if ( components != null )
         {
             return;
         }
 
-        Map context = new HashMap();
-        context.put( "basedir", new File( "" ).getAbsolutePath() );
-
-        ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration();
-        containerConfiguration.setName( "Doxia" );
-        containerConfiguration.setContext( context );
-
-        plexus = new DefaultPlexusContainer( containerConfiguration );
+        try
+        {
+            components = new Components();
+        }
+        catch ( PlexusContainerException e )
+        {
+            throw new ConverterException( "PlexusContainerException: " + e.getMessage(), e );
+        }
     }
 
     /**
-     * Stop the Plexus container.
+     * Stop the Plexus containers.
      */
     private void stopPlexusContainer()
     {
-        if ( plexus == null )
+        if ( components != null )
         {
-            return;
+            components.dispose();
+            components = null;
         }
 
-        plexus.dispose();
-        plexus = null;
+        Components worker;
+        while ( ( worker = (Components) workers.poll() ) != null )
+        {
+            worker.dispose();
+        }
     }
 
     /**
@@ -541,8 +936,7 @@ public class DefaultConverter
      * @return the detected encoding for f or <code>null</code> if not able to detect it.
      * @throws IllegalArgumentException if f is not a file.
      * @throws UnsupportedOperationException if could not detect the file encoding.
-     * @see {@link XmlStreamReader#getEncoding()} for xml files
-     * @see {@link CharsetDetector#detect()} for text files
+     * @see #autoDetectEncoding(File, InputSniffer)
      */
     private static String autoDetectEncoding( File f )
     {
@@ -552,31 +946,43 @@ public class DefaultConverter
                 + "' is not a file, could not detect encoding." );
         }
 
-        Reader reader = null;
-        InputStream is = null;
+        InputSniffer sniffer = null;
         try
         {
-            if ( XmlUtil.isXml( f ) )
-            {
-                reader = ReaderFactory.newXmlReader( f );
-                return ( (XmlStreamReader) reader ).getEncoding();
-            }
-
-            is = new BufferedInputStream( new FileInputStream( f ) );
-            CharsetDetector detector = new CharsetDetector();
-            detector.setText( is );
-            CharsetMatch match = detector.detect();
-
-            return match.getName().toUpperCase( Locale.ENGLISH );
+            sniffer = new InputSniffer( f );
         }
         catch ( IOException e )
         {
             // nop
         }
+
+        try
+        {
+            return autoDetectEncoding( f, sniffer );
+        }
         finally
         {
-            IOUtil.close( reader );
-            IOUtil.close( is );
+            if ( sniffer != null )
+            {
+                sniffer.close();
+            }
+        }
+    }
+
+    /**
+     * @param f not null file
+     * @param sniffer the sniffer of f, <code>null</code> if f could not be read.
+     * @return the detected encoding for f.
+     * @throws UnsupportedOperationException if could not detect the file encoding.
+     * @see {@link XmlStreamReader#getEncoding()} for xml files
+     * @see {@link CharsetDetector#detect()} for text files
+     */
+    private static String autoDetectEncoding( File f, InputSniffer sniffer )
+    {
+        String encoding = ( sniffer != null ) ? sniffer.getEncoding() : null;
+        if ( encoding != null )
+        {
+            return encoding;
         }
 
         StringBuffer msg = new StringBuffer();
@@ -598,6 +1004,7 @@ public class DefaultConverter
      * @return the detected encoding from f.
      * @throws IllegalArgumentException if f is not a file.
      * @throws UnsupportedOperationException if could not detect the Doxia format.
+     * @see #autoDetectFormat(File, InputSniffer)
      */
     private static String autoDetectFormat( File f, String encoding )
     {
@@ -607,6 +1014,39 @@ public class DefaultConverter
                 + "' is not a file, could not detect format." );
         }
 
+        InputSniffer sniffer = null;
+        try
+        {
+            sniffer = new InputSniffer( f );
+        }
+        catch ( IOException e )
+        {
+            // nop
+        }
+
+        try
+        {
+            return autoDetectFormat( f, sniffer );
+        }
+        finally
+        {
+            if ( sniffer != null )
+            {
+                sniffer.close();
+            }
+        }
+    }
+
+    /**
+     * @param f not null file
+     * @param sniffer the sniffer of f, <code>null</code> if f could not be read.
+     * @return the detected format of f.
+     * @throws UnsupportedOperationException if could not detect the Doxia format.
+     */
+    private static String autoDetectFormat( File f, InputSniffer sniffer )
+    {
+        String firstTag = ( sniffer != null ) ? sniffer.getFirstTag() : null;
+
         for ( int i = 0; i < SUPPORTED_FROM_FORMAT.length; i++ )
         {
             String supportedFromFormat = SUPPORTED_FROM_FORMAT[i];
@@ -629,7 +1069,6 @@ public class DefaultConverter
             }
 
             // Handle Doxia xml files
-            String firstTag = getFirstTag( f );
             if ( firstTag == null )
             {
                 continue;
@@ -682,53 +1121,84 @@ public class DefaultConverter
     }
 
     /**
-     * @param xmlFile not null and should be a file.
-     * @return the first tag name if found, <code>null</code> in other case.
+     * A Plexus container, with the parsers and the sink factories looked up so far by format, so that each format
+     * is looked up once. Not thread-safe.
      */
-    private static String getFirstTag( File xmlFile )
+    private static class Components
     {
-        if ( xmlFile == null )
+        /** Plexus container */
+        private final PlexusContainer plexus;
+
+        /** The parsers, by format. */
+        private final Map parsers = new HashMap();
+
+        /** The sink factories, by format. */
+        private final Map sinkFactories = new HashMap();
+
+        /**
+         * Start a new Plexus container.
+         *
+         * @throws PlexusContainerException if any
+         */
+        Components()
+            throws PlexusContainerException
         {
-            throw new IllegalArgumentException( "xmlFile is required." );
-        }
-        if ( !xmlFile.isFile() )
-        {
-            throw new IllegalArgumentException( "The file '" + xmlFile.getAbsolutePath() + "' is not a file." );
+            Map context = new HashMap();
+            context.put( "basedir", new File( "" ).getAbsolutePath() );
+
+            ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration();
+            containerConfiguration.setName( "Doxia" );
+            containerConfiguration.setContext( context );
+
+            plexus = new DefaultPlexusContainer( containerConfiguration );
         }
 
-        Reader reader = null;
-        try
+        /**
+         * @param format not null
+         * @return the parser of the given format.
+         * @throws ComponentLookupException if could not find the Parser for the given format.
+         * @throws UnsupportedFormatException if the found parser is not instantiated.
+         * @see ConverterUtil#getParser(PlexusContainer, String, String[])
+         */
+        Parser getParser( String format )
+            throws ComponentLookupException, UnsupportedFormatException
         {
-            reader = ReaderFactory.newXmlReader( xmlFile );
-            XmlPullParser parser = new MXParser();
-            parser.setInput( reader );
-            int eventType = parser.getEventType();
-            while ( eventType != XmlPullParser.END_DOCUMENT )
+            Parser parser = (Parser) parsers.get( format );
+            if ( parser == null )
             {
-                if ( eventType == XmlPullParser.START_TAG )
-                {
-                    return parser.getName();
-                }
-                eventType = parser.nextToken();
+                parser = ConverterUtil.getParser( plexus, format, SUPPORTED_FROM_FORMAT );
+                parsers.put( format, parser );
             }
+
+            return parser;
         }
-        catch ( FileNotFoundException e )
-        {
-            return null;
-        }
-        catch ( XmlPullParserException e )
-        {
-            return null;
-        }
-        catch ( IOException e )
+
+        /**
+         * @param format not null
+         * @return the sink factory of the given format.
+         * @throws ComponentLookupException if could not find the SinkFactory for the given format.
+         * @throws UnsupportedFormatException if the found sink factory is not instantiated.
+         * @see ConverterUtil#getSinkFactory(PlexusContainer, String, String[])
+         */
+        SinkFactory getSinkFactory( String format )
+            throws ComponentLookupException, UnsupportedFormatException
         {
-            return null;
+            SinkFactory sinkFactory = (SinkFactory) sinkFactories.get( format );
+            if ( sinkFactory == null )
+            {
+                sinkFactory = ConverterUtil.getSinkFactory( plexus, format, SUPPORTED_TO_FORMAT );
+                sinkFactories.put( format, sinkFactory );
+            }
+
+            return sinkFactory;
         }
-        finally
+
+        /**
+         * Stop the Plexus container.
+         */
+        void dispose()
         {
-            IOUtil.close( reader );
+            plexus.dispose();
         }
-
-        return null;
     }
 }
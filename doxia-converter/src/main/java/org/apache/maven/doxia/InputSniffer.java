@@ -0,0 +1,204 @@
+package org.apache.maven.doxia;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Locale;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import com.ibm.icu.text.CharsetDetector;
+import com.ibm.icu.text.CharsetMatch;
+
+/**
+ * Reads the beginning of a file once to detect both its encoding and its first XML tag, and gives the whole file
+ * back as an input stream starting with the bytes already read, so that the detection costs no additional I/O.
+ * <p>
+ * The detection gives the same results as {@link org.codehaus.plexus.util.xml.XmlUtil#isXml(File)},
+ * {@link XmlStreamReader#getEncoding()} and {@link CharsetDetector#detect()} on the whole file, as long as the
+ * first tag is within the first {@link #PREFIX_LENGTH} bytes.
+ * </p>
+ *
+ * @version $Id$
+ */
+class InputSniffer
+{
+    /** The number of bytes read for the detection. */
+    static final int PREFIX_LENGTH = 64 * 1024;
+
+    /** The number of bytes read by {@link CharsetDetector#setText(InputStream)}. */
+    private static final int DETECTOR_LENGTH = 8000;
+
+    private final InputStream in;
+
+    private final byte[] prefix;
+
+    private final int length;
+
+    private boolean sniffed;
+
+    private String xmlEncoding;
+
+    private String firstTag;
+
+    /**
+     * Reads the beginning of the given file.
+     *
+     * @param f not null file.
+     * @throws IOException if the file can't be read.
+     */
+    InputSniffer( File f )
+        throws IOException
+    {
+        in = new FileInputStream( f );
+        prefix = new byte[(int) Math.min( PREFIX_LENGTH, Math.max( f.length(), 1 ) )];
+
+        int n = 0;
+        try
+        {
+            int read;
+            while ( n < prefix.length && ( read = in.read( prefix, n, prefix.length - n ) ) != -1 )
+            {
+                n += read;
+            }
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( in );
+            throw e;
+        }
+        length = n;
+    }
+
+    /**
+     * @return <code>true</code> if the file starts with an XML token.
+     */
+    boolean isXml()
+    {
+        sniffXml();
+
+        return xmlEncoding != null;
+    }
+
+    /**
+     * @return the encoding of the file, given by its XML prolog or detected from its bytes, or <code>null</code> if
+     * it could not be detected.
+     */
+    String getEncoding()
+    {
+        if ( isXml() )
+        {
+            return xmlEncoding;
+        }
+
+        byte[] text = new byte[Math.min( length, DETECTOR_LENGTH )];
+        System.arraycopy( prefix, 0, text, 0, text.length );
+
+        CharsetDetector detector = new CharsetDetector();
+        detector.setText( text );
+        CharsetMatch match = detector.detect();
+
+        return match == null ? null : match.getName().toUpperCase( Locale.ENGLISH );
+    }
+
+    /**
+     * @return the name of the first XML tag of the file, or <code>null</code> if not found.
+     */
+    String getFirstTag()
+    {
+        sniffXml();
+
+        return firstTag;
+    }
+
+    /**
+     * @return the whole file, its beginning being read from memory. Closing it closes the file.
+     */
+    InputStream getInputStream()
+    {
+        return new SequenceInputStream( new ByteArrayInputStream( prefix, 0, length ), in );
+    }
+
+    /**
+     * Closes the file, if {@link #getInputStream()} has not been called.
+     */
+    void close()
+    {
+        IOUtil.close( in );
+    }
+
+    private void sniffXml()
+    {
+        if ( sniffed )
+        {
+            return;
+        }
+        sniffed = true;
+
+        XmlStreamReader reader;
+        XmlPullParser parser = new MXParser();
+        try
+        {
+            reader = new XmlStreamReader( new ByteArrayInputStream( prefix, 0, length ) );
+            parser.setInput( reader );
+            parser.nextToken();
+        }
+        catch ( IOException e )
+        {
+            return;
+        }
+        catch ( XmlPullParserException e )
+        {
+            return;
+        }
+        xmlEncoding = reader.getEncoding();
+
+        try
+        {
+            int eventType = parser.getEventType();
+            while ( eventType != XmlPullParser.END_DOCUMENT )
+            {
+                if ( eventType == XmlPullParser.START_TAG )
+                {
+                    firstTag = parser.getName();
+                    return;
+                }
+                eventType = parser.nextToken();
+            }
+        }
+        catch ( IOException e )
+        {
+            // nop
+        }
+        catch ( XmlPullParserException e )
+        {
+            // nop
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.apache.maven.doxia;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.util.SinkEventRecorder;
+import org.apache.maven.doxia.util.SinkEventReplayer;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * An on-disk cache of the sink events of the parsed files, so that an unchanged file is converted again, or to
+ * another format, without being parsed. A recording is keyed by the content of the file, its encoding, the class
+ * and version of the parser, and the signatures of the {@link Sink} methods, whose indices identify the recorded
+ * events.
+ * <p>
+ * The recordings are written to a temporary file first and then renamed, so that the cache directory can be shared
+ * by concurrent conversions.
+ * </p>
+ *
+ * @version $Id$
+ */
+class SinkEventCache
+{
+    private static final String EXTENSION = ".sink";
+
+    private final File directory;
+
+    /**
+     * @param directory the cache directory, created if needed.
+     */
+    SinkEventCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @param inputFile a not null existing file.
+     * @param inputEncoding the encoding of the input file.
+     * @param parser the parser of the input file.
+     * @return the recording of the sink events of the given file, which may not exist yet.
+     * @throws IOException if the file can't be read.
+     */
+    File getRecording( File inputFile, String inputEncoding, Parser parser )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported" );
+        }
+
+        InputStream in = new FileInputStream( inputFile );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        String key =
+            "\n" + inputEncoding + "\n" + parser.getClass().getName() + "\n" + getVersion( parser.getClass() ) + "\n"
+                + SinkEventRecorder.VERSION + "\n" + SinkEventRecorder.SIGNATURE;
+        digest.update( key.getBytes( "UTF-8" ) );
+
+        byte[] hash = digest.digest();
+        StringBuffer name = new StringBuffer( hash.length * 2 + EXTENSION.length() );
+        for ( int i = 0; i < hash.length; i++ )
+        {
+            name.append( Character.forDigit( ( hash[i] >> 4 ) & 0xF, 16 ) );
+            name.append( Character.forDigit( hash[i] & 0xF, 16 ) );
+        }
+        name.append( EXTENSION );
+
+        return new File( directory, name.toString() );
+    }
+
+    /**
+     * Gives the recorded events to a sink, which is neither flushed nor closed.
+     *
+     * @param recording an existing recording.
+     * @param sink the not null sink receiving the events.
+     * @throws IOException if the recording can't be read. It is then deleted, the file being parsed again the next
+     * time.
+     */
+    void replay( File recording, Sink sink )
+        throws IOException
+    {
+        InputStream in = new BufferedInputStream( new FileInputStream( recording ) );
+        try
+        {
+            new SinkEventReplayer( in ).replay( sink );
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( in );
+            recording.delete();
+            throw e;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * @param recording the recording to write.
+     * @param bytes the recorded events.
+     * @throws IOException if the recording can't be written.
+     */
+    void store( File recording, byte[] bytes )
+        throws IOException
+    {
+        directory.mkdirs();
+
+        File tmp = File.createTempFile( recording.getName(), ".tmp", directory );
+        try
+        {
+            OutputStream out = new BufferedOutputStream( new FileOutputStream( tmp ) );
+            try
+            {
+                out.write( bytes );
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+
+            // another conversion may have stored the same recording meanwhile
+            tmp.renameTo( recording );
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * @param clazz a class.
+     * @return the implementation version and the location of the jar of the given class, the jar's size and date
+     * telling apart the snapshots.
+     */
+    private static String getVersion( Class clazz )
+    {
+        StringBuffer version = new StringBuffer();
+
+        Package p = clazz.getPackage();
+        if ( p != null && p.getImplementationVersion() != null )
+        {
+            version.append( p.getImplementationVersion() );
+        }
+
+        CodeSource source = clazz.getProtectionDomain().getCodeSource();
+        URL location = ( source != null ) ? source.getLocation() : null;
+        if ( location != null )
+        {
+            version.append( '@' ).append( location );
+
+            File file = FileUtils.toFile( location );
+            if ( file != null && file.isFile() )
+            {
+                version.append( '@' ).append( file.length() ).append( '@' ).append( file.lastModified() );
+            }
+        }
+
+        return version.toString();
+    }
+}
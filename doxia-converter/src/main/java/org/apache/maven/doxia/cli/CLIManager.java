@@ -69,6 +69,21 @@ class CLIManager
     /** outEncoding String */
     static final String OUTENCODING = "outEncoding";
 
+    /** T character */
+    static final char THREADS = 'T';
+
+    /** cache String */
+    static final String CACHE = "cache";
+
+    /** daemon String */
+    static final String DAEMON = "daemon";
+
+    /** client String */
+    static final String CLIENT = "client";
+
+    /** port String */
+    static final String PORT = "port";
+
     /** X character */
     static final char DEBUG = 'X';
 
@@ -105,6 +120,23 @@ class CLIManager
                                         .withDescription( "Output file encoding. If not specified, use the "
                                                               + "input encoding (or autodetected)." ).hasArg()
                                         .create( OUTENCODING ) );
+        OPTIONS.addOption( OptionBuilder.withLongOpt( "threads" )
+                                        .withDescription( "Number of threads converting the files of an input "
+                                                              + "directory. Default is 1." ).hasArg()
+                                        .create( THREADS ) );
+        OPTIONS.addOption( OptionBuilder.withDescription( "Directory caching the parsed input files, so that the "
+                                                              + "unchanged ones are not parsed again." ).hasArg()
+                                        .create( CACHE ) );
+
+        OPTIONS.addOption( OptionBuilder.withDescription( "Start a converter daemon, listening on the loopback "
+                                                              + "address for the conversions of -client calls." )
+                                        .create( DAEMON ) );
+        OPTIONS.addOption( OptionBuilder.withDescription( "Forward the conversion to the converter daemon, or "
+                                                              + "convert in process if no daemon is running." )
+                                        .create( CLIENT ) );
+        OPTIONS.addOption( OptionBuilder.withDescription( "Port of the converter daemon. Default is "
+                                                              + ConverterDaemon.DEFAULT_PORT + "." ).hasArg()
+                                        .create( PORT ) );
 
         OPTIONS.addOption( OptionBuilder.withLongOpt( "debug" )
                                         .withDescription( "Produce execution debug output." ).create( DEBUG ) );
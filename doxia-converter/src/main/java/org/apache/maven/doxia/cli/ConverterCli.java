@@ -19,9 +19,11 @@ package org.apache.maven.doxia.cli;
  * under the License.
  */
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Properties;
 
@@ -36,6 +38,7 @@ import org.apache.maven.doxia.logging.SystemStreamLog;
 import org.apache.maven.doxia.wrapper.InputFileWrapper;
 import org.apache.maven.doxia.wrapper.OutputFileWrapper;
 import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Doxia converter CLI.
@@ -123,16 +126,106 @@ public class ConverterCli
             System.out.println( "+ Error stacktraces are turned on." );
         }
 
-        Converter converter = new DefaultConverter();
+        int port = ConverterDaemon.DEFAULT_PORT;
+        if ( commandLine.hasOption( CLIManager.PORT ) )
+        {
+            try
+            {
+                port = Integer.parseInt( commandLine.getOptionValue( CLIManager.PORT ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                showFatalError( "Illegal port: " + e.getMessage(), e, showErrors, System.err );
+
+                return 1;
+            }
+        }
+
         Log log = new SystemStreamLog();
         if ( debug )
         {
             log.setLogLevel( Log.LEVEL_DEBUG );
         }
+
+        if ( commandLine.hasOption( CLIManager.DAEMON ) )
+        {
+            ConverterDaemon daemon;
+            try
+            {
+                daemon = new ConverterDaemon( port, log );
+            }
+            catch ( IOException e )
+            {
+                showFatalError( "Unable to start the daemon on port " + port + ": " + e.getMessage(), e, showErrors,
+                                System.err );
+
+                return 1;
+            }
+
+            // the token file is removed when the daemon is killed
+            final ConverterDaemon stopped = daemon;
+            Runtime.getRuntime().addShutdownHook( new Thread( "doxia-converter-daemon-shutdown" )
+            {
+                public void run()
+                {
+                    stopped.close();
+                }
+            } );
+
+            System.out.println( "Doxia converter daemon listening on port " + daemon.getPort() );
+            daemon.run( Runtime.getRuntime().availableProcessors() );
+
+            return 0;
+        }
+
+        if ( commandLine.hasOption( CLIManager.CLIENT ) )
+        {
+            try
+            {
+                return ConverterDaemon.forward( port, commandLine, System.err );
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "No Doxia converter daemon on port " + port + " (" + e.getMessage()
+                    + "), converting in process." );
+            }
+        }
+
+        Converter converter = new DefaultConverter();
         converter.enableLogging( log );
 
+        return convert( commandLine, converter, System.err );
+    }
+
+    /**
+     * Converts the input of the given command line.
+     *
+     * @param commandLine not null
+     * @param converter the not null converter to use.
+     * @param err the stream printing the errors, not null.
+     * @return <code>0</code> if the conversion succeeded, <code>1</code> otherwise.
+     */
+    static int convert( CommandLine commandLine, Converter converter, PrintStream err )
+    {
+        return convert( commandLine, converter, err, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Converts the input of the given command line, on at most the given number of threads.
+     *
+     * @param commandLine not null
+     * @param converter the not null converter to use.
+     * @param err the stream printing the errors, not null.
+     * @param maxThreads the maximum number of threads converting the files of a directory, i.e. for a daemon whose
+     * converters keep a Plexus container per thread.
+     * @return <code>0</code> if the conversion succeeded, <code>1</code> otherwise.
+     */
+    static int convert( CommandLine commandLine, Converter converter, PrintStream err, int maxThreads )
+    {
+        boolean showErrors = commandLine.hasOption( CLIManager.DEBUG ) || commandLine.hasOption( CLIManager.ERRORS );
+
         InputFileWrapper input;
-        OutputFileWrapper output;
+        OutputFileWrapper[] outputs;
         try
         {
             input =
@@ -140,29 +233,41 @@ public class ConverterCli
                                           commandLine.getOptionValue( CLIManager.FROM ),
                                           commandLine.getOptionValue( CLIManager.INENCODING ),
                                           converter.getInputFormats() );
-            output =
-                OutputFileWrapper.valueOf( commandLine.getOptionValue( CLIManager.OUT ),
-                                           commandLine.getOptionValue( CLIManager.TO ),
-                                           commandLine.getOptionValue( CLIManager.OUTENCODING ),
-                                           converter.getOutputFormats() );
+            // several output formats can be given, i.e. xhtml,fo
+            String[] formats = new String[] { commandLine.getOptionValue( CLIManager.TO ) };
+            if ( formats[0] != null )
+            {
+                formats = StringUtils.split( formats[0], ", " );
+            }
+            outputs = new OutputFileWrapper[formats.length];
+            for ( int i = 0; i < formats.length; i++ )
+            {
+                outputs[i] =
+                    OutputFileWrapper.valueOf( commandLine.getOptionValue( CLIManager.OUT ), formats[i],
+                                               commandLine.getOptionValue( CLIManager.OUTENCODING ),
+                                               converter.getOutputFormats() );
+            }
         }
         catch ( IllegalArgumentException e )
         {
-            showFatalError( "Illegal argument: " + e.getMessage(), e, showErrors );
+            showFatalError( "Illegal argument: " + e.getMessage(), e, showErrors, err );
 
-            CLIManager.displayHelp();
+            if ( err == System.err )
+            {
+                CLIManager.displayHelp();
+            }
 
             return 1;
         }
         catch ( UnsupportedEncodingException e )
         {
-            showFatalError( e.getMessage(), e, showErrors );
+            showFatalError( e.getMessage(), e, showErrors, err );
 
             return 1;
         }
         catch ( FileNotFoundException e )
         {
-            showFatalError( e.getMessage(), e, showErrors );
+            showFatalError( e.getMessage(), e, showErrors, err );
 
             return 1;
         }
@@ -170,31 +275,50 @@ public class ConverterCli
         boolean format = commandLine.hasOption( CLIManager.FORMAT );
         converter.setFormatOutput( format );
 
+        int threads = 1;
+        if ( commandLine.hasOption( CLIManager.THREADS ) )
+        {
+            try
+            {
+                threads = Integer.parseInt( commandLine.getOptionValue( CLIManager.THREADS ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                showFatalError( "Illegal number of threads: " + e.getMessage(), e, showErrors, err );
+
+                return 1;
+            }
+        }
+        converter.setThreads( Math.min( threads, maxThreads ) );
+
+        String cache = commandLine.getOptionValue( CLIManager.CACHE );
+        converter.setCacheDirectory( ( cache == null ) ? null : new File( cache ) );
+
         try
         {
-            converter.convert( input, output );
+            converter.convert( input, outputs );
         }
         catch ( UnsupportedFormatException e )
         {
-            showFatalError( e.getMessage(), e, showErrors );
+            showFatalError( e.getMessage(), e, showErrors, err );
 
             return 1;
         }
         catch ( ConverterException e )
         {
-            showFatalError( "Converter exception: " + e.getMessage(), e, showErrors );
+            showFatalError( "Converter exception: " + e.getMessage(), e, showErrors, err );
 
             return 1;
         }
         catch ( IllegalArgumentException e )
         {
-            showFatalError( "Illegal argument: " + e.getMessage(), e, showErrors );
+            showFatalError( "Illegal argument: " + e.getMessage(), e, showErrors, err );
 
             return 1;
         }
         catch ( RuntimeException e )
         {
-            showFatalError( "Runtime exception: " + e.getMessage(), e, showErrors );
+            showFatalError( "Runtime exception: " + e.getMessage(), e, showErrors, err );
 
             return 1;
         }
@@ -242,18 +366,18 @@ public class ConverterCli
         }
     }
 
-    private static void showFatalError( String message, Exception e, boolean show )
+    private static void showFatalError( String message, Exception e, boolean show, PrintStream err )
     {
-        System.err.println( "FATAL ERROR: " + message );
+        err.println( "FATAL ERROR: " + message );
         if ( show )
         {
-            System.err.println( "Error stacktrace:" );
+            err.println( "Error stacktrace:" );
 
-            e.printStackTrace();
+            e.printStackTrace( err );
         }
         else
         {
-            System.err.println( "For more information, run with the -e flag" );
+            err.println( "For more information, run with the -e flag" );
         }
     }
 }
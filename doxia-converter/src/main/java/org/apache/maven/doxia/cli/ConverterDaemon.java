@@ -0,0 +1,721 @@
+package org.apache.maven.doxia.cli;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.apache.maven.doxia.Converter;
+import org.apache.maven.doxia.ConverterException;
+import org.apache.maven.doxia.DefaultConverter;
+import org.apache.maven.doxia.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * A converter process serving the conversions of <code>-client</code> calls of {@link ConverterCli}, so that they
+ * don't pay for the JVM startup and the Plexus container boot. It listens on the loopback address only, each
+ * thread serving one conversion at a time with its own started {@link Converter}.
+ * <p>
+ * A request is the protocol version, the token of the daemon and the command line arguments, the input and output
+ * paths being absolute. The response is the exit status followed by the messages of the conversion, including the
+ * ones logged by the converter.
+ * </p>
+ * <p>
+ * The token is a random secret written by the daemon to a file only readable by its user, in the home directory of
+ * the user, so that only the processes of this user can use the daemon, which converts the files with its rights.
+ * The daemon doesn't start if the permissions of the file can't be restricted.
+ * </p>
+ *
+ * @version $Id$
+ */
+class ConverterDaemon
+{
+    /** The default port of the daemon. */
+    static final int DEFAULT_PORT = 9777;
+
+    /** The default directory of the token files, the home directory of the user. */
+    static final File TOKEN_DIRECTORY = new File( System.getProperty( "user.home" ) );
+
+    /** The version of the protocol between the client and the daemon. */
+    private static final int PROTOCOL_VERSION = 2;
+
+    /** The time to wait for the connection to the daemon, in ms. */
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /** The time to wait for each read of a request, in ms. */
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    /** The maximum number of arguments of a request. */
+    private static final int MAX_ARGUMENTS = 1024;
+
+    /**
+     * The maximum number of threads of a conversion, each one keeping a Plexus container until the daemon stops: two
+     * per processor, as the conversions also wait for the files.
+     */
+    private static final int MAX_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final ServerSocket serverSocket;
+
+    private final Log log;
+
+    private final File tokenFile;
+
+    private final String token;
+
+    /**
+     * Listens on the given port, with its token file in the home directory of the user.
+     *
+     * @param port the port to listen on, <code>0</code> for any free port.
+     * @param log not null
+     * @throws IOException if the port can't be listened on, or the token file can't be written.
+     */
+    ConverterDaemon( int port, Log log )
+        throws IOException
+    {
+        this( port, TOKEN_DIRECTORY, log );
+    }
+
+    /**
+     * @param port the port to listen on, <code>0</code> for any free port.
+     * @param tokenDirectory the directory of the token file, not null.
+     * @param log not null
+     * @throws IOException if the port can't be listened on, or the token file can't be written.
+     */
+    ConverterDaemon( int port, File tokenDirectory, Log log )
+        throws IOException
+    {
+        this.serverSocket = new ServerSocket( port, 50, InetAddress.getByName( null ) );
+        this.log = log;
+        this.tokenFile = getTokenFile( tokenDirectory, serverSocket.getLocalPort() );
+        this.token = newToken();
+
+        try
+        {
+            writeToken( tokenFile, token );
+        }
+        catch ( IOException e )
+        {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the port listened on.
+     */
+    int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves the conversions until {@link #close()}.
+     *
+     * @param threads the number of conversions served at the same time.
+     */
+    void run( int threads )
+    {
+        Runnable server = new Runnable()
+        {
+            public void run()
+            {
+                serve();
+            }
+        };
+
+        List handlers = new ArrayList();
+        for ( int i = 1; i < threads; i++ )
+        {
+            Thread handler = new Thread( server, "doxia-converter-daemon-" + i );
+            handler.start();
+            handlers.add( handler );
+        }
+
+        server.run();
+
+        for ( int i = 0; i < handlers.size(); i++ )
+        {
+            try
+            {
+                ( (Thread) handlers.get( i ) ).join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops listening, the conversions being served are completed.
+     */
+    void close()
+    {
+        tokenFile.delete();
+
+        try
+        {
+            serverSocket.close();
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to close the daemon socket: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @param tokenDirectory the directory of the token files.
+     * @param port the port of a daemon.
+     * @return the token file of the daemon listening on the given port.
+     */
+    static File getTokenFile( File tokenDirectory, int port )
+    {
+        return new File( tokenDirectory, ".doxia-converter-daemon-" + port + ".token" );
+    }
+
+    /**
+     * Forwards the conversion of the given command line to the daemon, with the token found in the home directory
+     * of the user.
+     *
+     * @param port the port of the daemon.
+     * @param commandLine not null
+     * @param err the stream printing the messages of the conversion, not null.
+     * @return the exit status of the conversion.
+     * @throws IOException if no daemon listens on the given port, or its token can't be read.
+     */
+    static int forward( int port, CommandLine commandLine, PrintStream err )
+        throws IOException
+    {
+        return forward( port, TOKEN_DIRECTORY, commandLine, err );
+    }
+
+    /**
+     * Forwards the conversion of the given command line to the daemon.
+     *
+     * @param port the port of the daemon.
+     * @param tokenDirectory the directory of the token file of the daemon, not null.
+     * @param commandLine not null
+     * @param err the stream printing the messages of the conversion, not null.
+     * @return the exit status of the conversion.
+     * @throws IOException if no daemon listens on the given port, or its token can't be read.
+     */
+    static int forward( int port, File tokenDirectory, CommandLine commandLine, PrintStream err )
+        throws IOException
+    {
+        String token = FileUtils.fileRead( getTokenFile( tokenDirectory, port ), "UTF-8" ).trim();
+
+        List args = new ArrayList();
+        Option[] options = commandLine.getOptions();
+        for ( int i = 0; i < options.length; i++ )
+        {
+            String opt = options[i].getOpt();
+            if ( opt.equals( CLIManager.CLIENT ) || opt.equals( CLIManager.PORT ) )
+            {
+                continue;
+            }
+
+            args.add( "-" + opt );
+            if ( options[i].hasArg() )
+            {
+                String value = options[i].getValue();
+                if ( opt.equals( CLIManager.IN ) || opt.equals( CLIManager.OUT ) || opt.equals( CLIManager.CACHE ) )
+                {
+                    // the daemon runs in another working directory
+                    value = new File( value ).getAbsolutePath();
+                }
+                args.add( value );
+            }
+        }
+
+        Socket socket = new Socket();
+        try
+        {
+            socket.connect( new InetSocketAddress( InetAddress.getByName( null ), port ), CONNECT_TIMEOUT );
+        }
+        catch ( IOException e )
+        {
+            socket.close();
+            throw e;
+        }
+
+        try
+        {
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            out.writeInt( PROTOCOL_VERSION );
+            out.writeUTF( token );
+            out.writeInt( args.size() );
+            for ( int i = 0; i < args.size(); i++ )
+            {
+                out.writeUTF( (String) args.get( i ) );
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            int status = in.readInt();
+            byte[] messages = new byte[in.readInt()];
+            in.readFully( messages );
+            err.print( new String( messages, "UTF-8" ) );
+
+            return status;
+        }
+        catch ( IOException e )
+        {
+            err.println( "FATAL ERROR: Lost the connection to the Doxia converter daemon: " + e.getMessage() );
+
+            return 1;
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void serve()
+    {
+        ClientLog clientLog = new ClientLog( log );
+        Converter converter = new DefaultConverter();
+        converter.enableLogging( clientLog );
+        try
+        {
+            converter.start();
+        }
+        catch ( ConverterException e )
+        {
+            log.error( "Unable to start the converter: " + e.getMessage(), e );
+            return;
+        }
+
+        try
+        {
+            while ( !serverSocket.isClosed() )
+            {
+                Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch ( IOException e )
+                {
+                    if ( !serverSocket.isClosed() )
+                    {
+                        log.warn( "Unable to accept a connection: " + e.getMessage() );
+                    }
+                    continue;
+                }
+
+                try
+                {
+                    socket.setSoTimeout( REQUEST_TIMEOUT );
+                    handle( converter, clientLog, socket );
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Unable to serve a conversion: " + e.getMessage() );
+                }
+                catch ( RuntimeException e )
+                {
+                    log.error( "Unable to serve a conversion: " + e.getMessage(), e );
+                }
+                finally
+                {
+                    try
+                    {
+                        socket.close();
+                    }
+                    catch ( IOException e )
+                    {
+                        // nop
+                    }
+                }
+            }
+        }
+        finally
+        {
+            converter.close();
+        }
+    }
+
+    private void handle( Converter converter, ClientLog clientLog, Socket socket )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream( messages, true, "UTF-8" );
+
+        int status = 1;
+        int version = in.readInt();
+        if ( version != PROTOCOL_VERSION )
+        {
+            err.println( "FATAL ERROR: Unsupported protocol version " + version + ", the Doxia converter daemon "
+                + "expects the version " + PROTOCOL_VERSION );
+        }
+        else if ( !MessageDigest.isEqual( token.getBytes( "UTF-8" ), in.readUTF().getBytes( "UTF-8" ) ) )
+        {
+            log.warn( "Rejected a request with an invalid token." );
+            err.println( "FATAL ERROR: Invalid token, the Doxia converter daemon only serves the processes of its "
+                + "user." );
+        }
+        else
+        {
+            int count = in.readInt();
+            if ( count < 0 || count > MAX_ARGUMENTS )
+            {
+                throw new IOException( "Illegal number of arguments: " + count );
+            }
+
+            String[] args = new String[count];
+            for ( int i = 0; i < args.length; i++ )
+            {
+                args[i] = in.readUTF();
+            }
+
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Converting: " + StringUtils.join( args, " " ) );
+            }
+
+            try
+            {
+                CommandLine commandLine = new CLIManager().parse( args );
+                clientLog.setOutput( err, commandLine.hasOption( CLIManager.DEBUG ) );
+                status = ConverterCli.convert( commandLine, converter, err, MAX_THREADS );
+            }
+            catch ( ParseException e )
+            {
+                err.println( "Unable to parse command line options: " + e.getMessage() );
+            }
+            catch ( RuntimeException e )
+            {
+                err.println( "FATAL ERROR: Unable to convert: " + e.getMessage() );
+                e.printStackTrace( err );
+            }
+            finally
+            {
+                clientLog.setOutput( null, false );
+            }
+        }
+        err.flush();
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+        out.writeInt( status );
+        out.writeInt( messages.size() );
+        messages.writeTo( out );
+        out.flush();
+    }
+
+    private static String newToken()
+    {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes( bytes );
+
+        StringBuffer sb = new StringBuffer( bytes.length * 2 );
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            sb.append( Character.forDigit( ( bytes[i] >> 4 ) & 0xF, 16 ) );
+            sb.append( Character.forDigit( bytes[i] & 0xF, 16 ) );
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Writes the token to a file only readable and writable by its owner.
+     *
+     * @param file the token file.
+     * @param token the token.
+     * @throws IOException if the file can't be written or its permissions can't be restricted, i.e. on a shared
+     * host without file permissions.
+     */
+    private static void writeToken( File file, String token )
+        throws IOException
+    {
+        file.delete();
+        if ( !file.createNewFile() )
+        {
+            throw new IOException( "Unable to create the token file " + file );
+        }
+
+        // the permissions are restricted before the token is written
+        boolean restricted = file.setReadable( false, false ) && file.setWritable( false, false );
+        restricted = restricted && file.setReadable( true, true ) && file.setWritable( true, true );
+        if ( !restricted )
+        {
+            file.delete();
+            throw new IOException( "Unable to restrict the permissions of the token file " + file
+                + ", the Doxia converter daemon would be usable by the other users." );
+        }
+
+        Writer writer = null;
+        try
+        {
+            writer = WriterFactory.newWriter( file, "UTF-8" );
+            writer.write( token );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * The log of a converter, printing its messages to the client being served, or to the log of the daemon
+     * between two conversions.
+     */
+    private static final class ClientLog
+        implements Log
+    {
+        private final Log daemonLog;
+
+        private volatile PrintStream out;
+
+        private volatile boolean debug;
+
+        /**
+         * @param daemonLog the log of the daemon.
+         */
+        ClientLog( Log daemonLog )
+        {
+            this.daemonLog = daemonLog;
+        }
+
+        /**
+         * @param out the stream of the messages to the client, or null for the log of the daemon.
+         * @param debug <code>true</code> to print the debug messages to the client.
+         */
+        void setOutput( PrintStream out, boolean debug )
+        {
+            this.out = out;
+            this.debug = debug;
+        }
+
+        /** {@inheritDoc} */
+        public void setLogLevel( int level )
+        {
+            // nop, the level is the one of the client
+        }
+
+        /** {@inheritDoc} */
+        public boolean isDebugEnabled()
+        {
+            return ( out == null ? daemonLog.isDebugEnabled() : debug );
+        }
+
+        /** {@inheritDoc} */
+        public void debug( CharSequence content )
+        {
+            log( LEVEL_DEBUG, content, null );
+        }
+
+        /** {@inheritDoc} */
+        public void debug( CharSequence content, Throwable error )
+        {
+            log( LEVEL_DEBUG, content, error );
+        }
+
+        /** {@inheritDoc} */
+        public void debug( Throwable error )
+        {
+            log( LEVEL_DEBUG, "", error );
+        }
+
+        /** {@inheritDoc} */
+        public boolean isInfoEnabled()
+        {
+            return ( out == null ? daemonLog.isInfoEnabled() : true );
+        }
+
+        /** {@inheritDoc} */
+        public void info( CharSequence content )
+        {
+            log( LEVEL_INFO, content, null );
+        }
+
+        /** {@inheritDoc} */
+        public void info( CharSequence content, Throwable error )
+        {
+            log( LEVEL_INFO, content, error );
+        }
+
+        /** {@inheritDoc} */
+        public void info( Throwable error )
+        {
+            log( LEVEL_INFO, "", error );
+        }
+
+        /** {@inheritDoc} */
+        public boolean isWarnEnabled()
+        {
+            return ( out == null ? daemonLog.isWarnEnabled() : true );
+        }
+
+        /** {@inheritDoc} */
+        public void warn( CharSequence content )
+        {
+            log( LEVEL_WARN, content, null );
+        }
+
+        /** {@inheritDoc} */
+        public void warn( CharSequence content, Throwable error )
+        {
+            log( LEVEL_WARN, content, error );
+        }
+
+        /** {@inheritDoc} */
+        public void warn( Throwable error )
+        {
+            log( LEVEL_WARN, "", error );
+        }
+
+        /** {@inheritDoc} */
+        public boolean isErrorEnabled()
+        {
+            return ( out == null ? daemonLog.isErrorEnabled() : true );
+        }
+
+        /** {@inheritDoc} */
+        public void error( CharSequence content )
+        {
+            log( LEVEL_ERROR, content, null );
+        }
+
+        /** {@inheritDoc} */
+        public void error( CharSequence content, Throwable error )
+        {
+            log( LEVEL_ERROR, content, error );
+        }
+
+        /** {@inheritDoc} */
+        public void error( Throwable error )
+        {
+            log( LEVEL_ERROR, "", error );
+        }
+
+        private void log( int level, CharSequence content, Throwable error )
+        {
+            PrintStream stream = out;
+            if ( stream != null )
+            {
+                if ( level != LEVEL_DEBUG || debug )
+                {
+                    print( stream, level, content, error );
+                }
+                return;
+            }
+
+            switch ( level )
+            {
+                case LEVEL_DEBUG:
+                    if ( error == null )
+                    {
+                        daemonLog.debug( content );
+                    }
+                    else
+                    {
+                        daemonLog.debug( content, error );
+                    }
+                    break;
+                case LEVEL_INFO:
+                    if ( error == null )
+                    {
+                        daemonLog.info( content );
+                    }
+                    else
+                    {
+                        daemonLog.info( content, error );
+                    }
+                    break;
+                case LEVEL_WARN:
+                    if ( error == null )
+                    {
+                        daemonLog.warn( content );
+                    }
+                    else
+                    {
+                        daemonLog.warn( content, error );
+                    }
+                    break;
+                default:
+                    if ( error == null )
+                    {
+                        daemonLog.error( content );
+                    }
+                    else
+                    {
+                        daemonLog.error( content, error );
+                    }
+            }
+        }
+
+        private static void print( PrintStream stream, int level, CharSequence content, Throwable error )
+        {
+            String prefix;
+            switch ( level )
+            {
+                case LEVEL_DEBUG:
+                    prefix = "[debug] ";
+                    break;
+                case LEVEL_INFO:
+                    prefix = "[info] ";
+                    break;
+                case LEVEL_WARN:
+                    prefix = "[warning] ";
+                    break;
+                default:
+                    prefix = "[error] ";
+            }
+
+            // the messages of the parallel conversions are printed whole
+            synchronized ( stream )
+            {
+                stream.println( prefix + content );
+                if ( error != null )
+                {
+                    error.printStackTrace( stream );
+                }
+            }
+        }
+    }
+}
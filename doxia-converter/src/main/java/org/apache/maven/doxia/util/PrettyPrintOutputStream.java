@@ -0,0 +1,502 @@
+package org.apache.maven.doxia.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An output stream indenting the XML document written to it, while it is written: the bytes are decoded, the
+ * whitespace between block elements is replaced by a line break and an indentation, and the result is encoded
+ * again into the wrapped stream. Only the current markup or text token is held in memory.
+ * <p>
+ * The tags, comments and declarations are written unchanged, with their attributes. The text is written unchanged
+ * too, and no whitespace is added around inline elements, i.e. <code>&lt;b&gt;</code> or <code>&lt;fo:inline&gt;</code>,
+ * nor in an element containing text. The content of verbatim elements, i.e. <code>&lt;pre&gt;</code>,
+ * <code>&lt;source&gt;</code> or <code>&lt;programlisting&gt;</code>, or of elements preserving the whitespace
+ * with an attribute like <code>xml:space="preserve"</code>, is written as is.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class PrettyPrintOutputStream
+    extends OutputStream
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private static final String INDENT = "  ";
+
+    /** The local names of the inline elements of XHTML, DocBook, FO and iText. */
+    private static final Set INLINE_ELEMENTS = new HashSet( Arrays.asList( new String[] {
+        // XHTML
+        "a", "abbr", "acronym", "b", "big", "br", "cite", "code", "dfn", "em", "font", "i", "img", "kbd", "q", "s",
+        "samp", "small", "span", "strike", "strong", "sub", "sup", "tt", "u", "var",
+        // DocBook
+        "abbrev", "anchor", "citetitle", "command", "email", "emphasis", "filename", "footnoteref",
+        "inlinegraphic", "inlinemediaobject", "link", "literal", "phrase", "quote", "subscript", "superscript",
+        "trademark", "ulink", "xref",
+        // FO
+        "basic-link", "character", "external-graphic", "inline", "leader", "page-number",
+        "page-number-citation",
+        // iText
+        "chunk", "newline" } ) );
+
+    /** The local names of the elements whose whitespace is significant. */
+    private static final Set VERBATIM_ELEMENTS = new HashSet( Arrays.asList( new String[] { "pre", "source",
+        "textarea", "script", "style", "programlisting", "screen", "literallayout", "synopsis" } ) );
+
+    /** The attributes preserving the whitespace of an element. */
+    private static final Pattern PRESERVE_ATTRIBUTE =
+        Pattern.compile( "(?:xml:space|linefeed-treatment|white-space-treatment)\\s*=\\s*[\"']preserve[\"']"
+            + "|white-space-collapse\\s*=\\s*[\"']false[\"']|white-space\\s*=\\s*[\"']pre[\"']" );
+
+    private static final int TEXT = 0;
+
+    private static final int UNKNOWN = 1;
+
+    private static final int TAG = 2;
+
+    private static final int COMMENT = 3;
+
+    private static final int CDATA = 4;
+
+    private static final int INSTRUCTION = 5;
+
+    private static final int DECLARATION = 6;
+
+    private final Writer out;
+
+    private final CharsetDecoder decoder;
+
+    private final ByteBuffer bytes = ByteBuffer.allocate( 8192 );
+
+    private final CharBuffer chars = CharBuffer.allocate( 8192 );
+
+    /** The current token. */
+    private final StringBuffer token = new StringBuffer();
+
+    /** The kind of the current token. */
+    private int kind = TEXT;
+
+    /** The quote opened in the current tag or declaration, <code>0</code> if none. */
+    private char quote;
+
+    /** The depth of the internal subset in the current declaration. */
+    private int brackets;
+
+    /** The whitespace read after the last token, written or replaced by the next one. */
+    private final StringBuffer whitespace = new StringBuffer();
+
+    /** The open elements. */
+    private final List elements = new ArrayList();
+
+    /** The number of open elements when a verbatim element was opened, <code>0</code> if none is open. */
+    private int verbatim;
+
+    /** Flag if the last markup is an inline element tag. */
+    private boolean inline;
+
+    /** Flag if the last token is a start tag. */
+    private boolean startTag;
+
+    /** Flag if something has been written. */
+    private boolean started;
+
+    private boolean closed;
+
+    /**
+     * @param out the stream receiving the indented document, not null.
+     * @param encoding the encoding of the document, UTF-8 if <code>null</code>.
+     */
+    public PrettyPrintOutputStream( OutputStream out, String encoding )
+    {
+        Charset charset = Charset.forName( encoding == null ? "UTF-8" : encoding );
+        this.out = new OutputStreamWriter( out, charset );
+        this.decoder =
+            charset.newDecoder().onMalformedInput( CodingErrorAction.REPLACE )
+                   .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+
+    /** {@inheritDoc} */
+    public void write( int b )
+        throws IOException
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    /** {@inheritDoc} */
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        while ( len > 0 )
+        {
+            int n = Math.min( len, bytes.remaining() );
+            bytes.put( b, off, n );
+            off += n;
+            len -= n;
+
+            decode( false );
+        }
+    }
+
+    /**
+     * Flushes the written tokens, the current token being kept until it is complete.
+     *
+     * @throws IOException if any
+     */
+    public void flush()
+        throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Writes the current token and closes the wrapped stream.
+     *
+     * @throws IOException if any
+     */
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+
+        decode( true );
+        decoder.flush( chars );
+        format();
+
+        if ( kind == TEXT )
+        {
+            text( token.toString() );
+        }
+        else
+        {
+            // an unterminated markup
+            write( whitespace.toString() );
+            write( token.toString() );
+        }
+        if ( started )
+        {
+            write( EOL );
+        }
+
+        out.close();
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void decode( boolean endOfInput )
+        throws IOException
+    {
+        bytes.flip();
+
+        CoderResult result;
+        do
+        {
+            result = decoder.decode( bytes, chars, endOfInput );
+            format();
+        }
+        while ( result.isOverflow() );
+
+        bytes.compact();
+    }
+
+    private void format()
+        throws IOException
+    {
+        chars.flip();
+        while ( chars.hasRemaining() )
+        {
+            format( chars.get() );
+        }
+        chars.clear();
+    }
+
+    private void format( char c )
+        throws IOException
+    {
+        if ( kind == TEXT )
+        {
+            if ( c == '<' )
+            {
+                text( token.toString() );
+                token.setLength( 0 );
+                kind = UNKNOWN;
+                quote = 0;
+                brackets = 0;
+            }
+            token.append( c );
+            return;
+        }
+
+        token.append( c );
+        if ( kind == UNKNOWN )
+        {
+            kind = kindOf( token );
+            if ( kind == UNKNOWN )
+            {
+                return;
+            }
+        }
+
+        boolean end;
+        switch ( kind )
+        {
+            case COMMENT:
+                end = c == '>' && token.length() >= 7 && endsWith( token, "-->" );
+                break;
+            case CDATA:
+                end = c == '>' && token.length() >= 12 && endsWith( token, "]]>" );
+                break;
+            case INSTRUCTION:
+                end = c == '>' && token.length() >= 4 && endsWith( token, "?>" );
+                break;
+            default:
+                end = false;
+                if ( quote != 0 )
+                {
+                    if ( c == quote )
+                    {
+                        quote = 0;
+                    }
+                }
+                else if ( c == '"' || c == '\'' )
+                {
+                    quote = c;
+                }
+                else if ( c == '[' && kind == DECLARATION )
+                {
+                    brackets++;
+                }
+                else if ( c == ']' && kind == DECLARATION )
+                {
+                    brackets--;
+                }
+                else if ( c == '>' && brackets <= 0 )
+                {
+                    end = true;
+                }
+        }
+
+        if ( end )
+        {
+            markup( kind, token.toString() );
+            token.setLength( 0 );
+            kind = TEXT;
+        }
+    }
+
+    private void text( String text )
+        throws IOException
+    {
+        if ( text.length() == 0 )
+        {
+            return;
+        }
+
+        if ( verbatim > 0 )
+        {
+            write( text );
+        }
+        else if ( text.trim().length() == 0 )
+        {
+            whitespace.append( text );
+            return;
+        }
+        else
+        {
+            setMixed();
+            write( whitespace.toString() );
+            whitespace.setLength( 0 );
+            write( text );
+        }
+        inline = false;
+        startTag = false;
+    }
+
+    private void markup( int kind, String markup )
+        throws IOException
+    {
+        if ( kind == CDATA )
+        {
+            text( markup );
+            return;
+        }
+
+        boolean tag = kind == TAG;
+        boolean endTag = tag && markup.startsWith( "</" );
+        boolean emptyTag = tag && !endTag && markup.endsWith( "/>" );
+        String name = tag ? localName( markup, endTag ? 2 : 1 ) : null;
+        boolean inlineTag = tag && INLINE_ELEMENTS.contains( name );
+
+        if ( verbatim > 0 )
+        {
+            write( markup );
+        }
+        else
+        {
+            Element parent = elements.isEmpty() ? null : (Element) elements.get( elements.size() - 1 );
+            boolean mixed = parent != null && parent.mixed;
+
+            if ( !mixed && !inlineTag && !inline && !( endTag && startTag ) )
+            {
+                whitespace.setLength( 0 );
+                if ( started )
+                {
+                    write( EOL );
+                    for ( int i = endTag ? elements.size() - 1 : elements.size(); i > 0; i-- )
+                    {
+                        write( INDENT );
+                    }
+                }
+            }
+            else
+            {
+                write( whitespace.toString() );
+                whitespace.setLength( 0 );
+            }
+            write( markup );
+        }
+
+        if ( endTag )
+        {
+            if ( !elements.isEmpty() )
+            {
+                elements.remove( elements.size() - 1 );
+            }
+            if ( elements.size() < verbatim )
+            {
+                verbatim = 0;
+            }
+        }
+        else if ( tag && !emptyTag )
+        {
+            elements.add( new Element() );
+            if ( verbatim == 0
+                && ( VERBATIM_ELEMENTS.contains( name ) || PRESERVE_ATTRIBUTE.matcher( markup ).find() ) )
+            {
+                verbatim = elements.size();
+            }
+        }
+
+        inline = inlineTag;
+        startTag = tag && !endTag && !emptyTag;
+    }
+
+    private void setMixed()
+    {
+        if ( !elements.isEmpty() )
+        {
+            ( (Element) elements.get( elements.size() - 1 ) ).mixed = true;
+        }
+    }
+
+    private void write( String s )
+        throws IOException
+    {
+        if ( s.length() > 0 )
+        {
+            out.write( s );
+            started = true;
+        }
+    }
+
+    private static int kindOf( StringBuffer token )
+    {
+        if ( token.length() < 2 )
+        {
+            return UNKNOWN;
+        }
+
+        switch ( token.charAt( 1 ) )
+        {
+            case '?':
+                return INSTRUCTION;
+            case '!':
+                if ( token.length() < 3 )
+                {
+                    return UNKNOWN;
+                }
+                if ( token.charAt( 2 ) == '-' )
+                {
+                    return COMMENT;
+                }
+                return token.charAt( 2 ) == '[' ? CDATA : DECLARATION;
+            default:
+                return TAG;
+        }
+    }
+
+    private static boolean endsWith( StringBuffer token, String suffix )
+    {
+        int start = token.length() - suffix.length();
+        for ( int i = 0; i < suffix.length(); i++ )
+        {
+            if ( token.charAt( start + i ) != suffix.charAt( i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String localName( String tag, int start )
+    {
+        int end = start;
+        while ( end < tag.length() )
+        {
+            char c = tag.charAt( end );
+            if ( Character.isWhitespace( c ) || c == '/' || c == '>' )
+            {
+                break;
+            }
+            end++;
+        }
+
+        String name = tag.substring( start, end );
+        return name.substring( name.indexOf( ':' ) + 1 );
+    }
+
+    /** An open element. */
+    private static class Element
+    {
+        /** Flag if the element contains text. */
+        private boolean mixed;
+    }
+}
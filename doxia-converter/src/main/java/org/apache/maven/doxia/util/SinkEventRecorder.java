@@ -0,0 +1,334 @@
+package org.apache.maven.doxia.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.text.AttributeSet;
+
+import org.apache.maven.doxia.sink.Sink;
+
+/**
+ * Records the events of a sink in a compact binary form, to be replayed later by {@link SinkEventReplayer} on any
+ * sink, i.e. to convert the same document to another format without parsing it again.
+ * <p>
+ * Each event is written as the index of its {@link Sink} method, followed by its arguments. A string is written
+ * once, and then referenced by its index. The events <code>flush</code> and <code>close</code>, and the methods
+ * inherited by {@link Sink}, are not recorded: <code>close</code> terminates the recording and closes the output
+ * stream.
+ * </p>
+ * If an argument can't be recorded, i.e. an unknown object given to {@link Sink#unknown(String, Object[],
+ * org.apache.maven.doxia.sink.SinkEventAttributes)}, the recording is stopped and is not {@link #isComplete()}.
+ *
+ * @version $Id$
+ */
+public class SinkEventRecorder
+    implements InvocationHandler
+{
+    /** The version of the recording format, written in the header. */
+    public static final int VERSION = 2;
+
+    /** The methods of {@link Sink}, the index of a method being its id in a recording. */
+    static final Method[] METHODS = Sink.class.getMethods();
+
+    /**
+     * The hash of the signatures of the {@link #METHODS}, written in the header after the version, as the ids of the
+     * events change with the {@link Sink} interface.
+     */
+    public static final int SIGNATURE;
+
+    static final int END = 0xFF;
+
+    static final int NULL = 0;
+
+    static final int STRING = 1;
+
+    static final int STRING_REF = 2;
+
+    static final int INTEGER = 3;
+
+    static final int TRUE = 4;
+
+    static final int FALSE = 5;
+
+    static final int INT_ARRAY = 6;
+
+    static final int ARRAY = 7;
+
+    static final int ATTRIBUTES = 8;
+
+    static
+    {
+        // a stable order, whatever the JVM
+        Arrays.sort( METHODS, new Comparator()
+        {
+            public int compare( Object o1, Object o2 )
+            {
+                return o1.toString().compareTo( o2.toString() );
+            }
+        } );
+    }
+
+    private static final Map IDS = new HashMap();
+
+    static
+    {
+        StringBuffer signatures = new StringBuffer();
+        for ( int i = 0; i < METHODS.length; i++ )
+        {
+            IDS.put( METHODS[i], new Integer( i ) );
+            signatures.append( METHODS[i] ).append( '\n' );
+        }
+        SIGNATURE = signatures.toString().hashCode();
+    }
+
+    private final DataOutputStream out;
+
+    /** The index of each string already written. */
+    private final Map strings = new HashMap();
+
+    private final Sink sink;
+
+    private IOException failure;
+
+    private boolean closed;
+
+    /**
+     * @param out the not null stream receiving the recording, closed when the sink is closed.
+     */
+    public SinkEventRecorder( OutputStream out )
+    {
+        this.out = new DataOutputStream( out );
+        this.sink = (Sink) Proxy.newProxyInstance( SinkEventRecorder.class.getClassLoader(),
+                                                   new Class[] { Sink.class }, this );
+
+        try
+        {
+            this.out.writeInt( VERSION );
+            this.out.writeInt( SIGNATURE );
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+        }
+    }
+
+    /**
+     * @return the sink whose events are recorded.
+     */
+    public Sink getSink()
+    {
+        return sink;
+    }
+
+    /**
+     * @return <code>true</code> if the sink has been closed and all its events have been recorded.
+     */
+    public boolean isComplete()
+    {
+        return closed && failure == null;
+    }
+
+    /**
+     * @return the reason why the events could not be recorded, or <code>null</code>.
+     */
+    public IOException getFailure()
+    {
+        return failure;
+    }
+
+    /** {@inheritDoc} */
+    public Object invoke( Object proxy, Method method, Object[] args )
+        throws Throwable
+    {
+        if ( method.getDeclaringClass() == Object.class )
+        {
+            return method.invoke( this, args );
+        }
+
+        // i.e. enableLogging() is not a document event
+        if ( closed || method.getDeclaringClass() != Sink.class || method.getName().equals( "flush" ) )
+        {
+            return null;
+        }
+
+        if ( method.getName().equals( "close" ) )
+        {
+            closed = true;
+            try
+            {
+                if ( failure == null )
+                {
+                    out.writeByte( END );
+                }
+                out.close();
+            }
+            catch ( IOException e )
+            {
+                if ( failure == null )
+                {
+                    failure = e;
+                }
+            }
+            return null;
+        }
+
+        if ( failure != null )
+        {
+            return null;
+        }
+
+        try
+        {
+            Integer id = (Integer) IDS.get( method );
+            if ( id == null )
+            {
+                throw new IOException( "Unknown sink event: " + method );
+            }
+
+            out.writeByte( id.intValue() );
+            int count = ( args == null ) ? 0 : args.length;
+            for ( int i = 0; i < count; i++ )
+            {
+                writeValue( args[i] );
+            }
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+        }
+
+        return null;
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void writeValue( Object value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            out.writeByte( NULL );
+        }
+        else if ( value instanceof String )
+        {
+            Integer index = (Integer) strings.get( value );
+            if ( index != null )
+            {
+                out.writeByte( STRING_REF );
+                writeInt( index.intValue() );
+            }
+            else
+            {
+                strings.put( value, new Integer( strings.size() ) );
+
+                byte[] bytes = ( (String) value ).getBytes( "UTF-8" );
+                out.writeByte( STRING );
+                writeInt( bytes.length );
+                out.write( bytes );
+            }
+        }
+        else if ( value instanceof Integer )
+        {
+            out.writeByte( INTEGER );
+            writeInt( ( (Integer) value ).intValue() );
+        }
+        else if ( value instanceof Boolean )
+        {
+            out.writeByte( ( (Boolean) value ).booleanValue() ? TRUE : FALSE );
+        }
+        else if ( value instanceof int[] )
+        {
+            int[] ints = (int[]) value;
+            out.writeByte( INT_ARRAY );
+            writeInt( ints.length );
+            for ( int i = 0; i < ints.length; i++ )
+            {
+                writeInt( ints[i] );
+            }
+        }
+        else if ( value instanceof Object[] )
+        {
+            Object[] values = (Object[]) value;
+            out.writeByte( ARRAY );
+            writeInt( values.length );
+            for ( int i = 0; i < values.length; i++ )
+            {
+                writeValue( values[i] );
+            }
+        }
+        else if ( value instanceof AttributeSet )
+        {
+            writeAttributes( (AttributeSet) value );
+        }
+        else
+        {
+            throw new IOException( "Can't record a " + value.getClass().getName() );
+        }
+    }
+
+    private void writeAttributes( AttributeSet attributes )
+        throws IOException
+    {
+        if ( attributes.getResolveParent() != null )
+        {
+            throw new IOException( "Can't record the resolve parent of an attribute set" );
+        }
+
+        out.writeByte( ATTRIBUTES );
+        writeInt( attributes.getAttributeCount() );
+        for ( Enumeration names = attributes.getAttributeNames(); names.hasMoreElements(); )
+        {
+            Object name = names.nextElement();
+            if ( !( name instanceof String ) )
+            {
+                throw new IOException( "Can't record the attribute name " + name );
+            }
+
+            writeValue( name );
+            writeValue( attributes.getAttribute( name ) );
+        }
+    }
+
+    /** Writes an int on 1 to 5 bytes, 7 bits at a time. */
+    private void writeInt( int value )
+        throws IOException
+    {
+        while ( ( value & ~0x7F ) != 0 )
+        {
+            out.writeByte( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+}
@@ -0,0 +1,207 @@
+package org.apache.maven.doxia.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkEventAttributeSet;
+
+/**
+ * Replays the sink events recorded by {@link SinkEventRecorder} on any sink, i.e. one created by a
+ * {@link org.apache.maven.doxia.sink.SinkFactory}. The sink is neither flushed nor closed.
+ *
+ * @version $Id$
+ */
+public class SinkEventReplayer
+{
+    private final DataInputStream in;
+
+    /** The strings read so far, by index. */
+    private final List strings = new ArrayList();
+
+    /**
+     * @param in the not null stream of a recording, not closed by this replayer.
+     */
+    public SinkEventReplayer( InputStream in )
+    {
+        this.in = new DataInputStream( in );
+    }
+
+    /**
+     * Gives all the recorded events to the given sink.
+     *
+     * @param sink the not null sink receiving the events.
+     * @throws IOException if the recording can't be read, or is not a complete one.
+     */
+    public void replay( Sink sink )
+        throws IOException
+    {
+        int version = in.readInt();
+        if ( version != SinkEventRecorder.VERSION )
+        {
+            throw new IOException( "Unsupported recording version: " + version );
+        }
+        if ( in.readInt() != SinkEventRecorder.SIGNATURE )
+        {
+            throw new IOException( "The recording was made with another version of the Sink interface" );
+        }
+
+        int id;
+        while ( ( id = in.readUnsignedByte() ) != SinkEventRecorder.END )
+        {
+            if ( id >= SinkEventRecorder.METHODS.length )
+            {
+                throw new IOException( "Unknown sink event: " + id );
+            }
+
+            Class[] types = SinkEventRecorder.METHODS[id].getParameterTypes();
+            Object[] args = new Object[types.length];
+            for ( int i = 0; i < args.length; i++ )
+            {
+                args[i] = readValue();
+            }
+
+            try
+            {
+                SinkEventRecorder.METHODS[id].invoke( sink, args );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new RuntimeException( e );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw (IOException) new IOException( "Invalid arguments for " + SinkEventRecorder.METHODS[id] )
+                    .initCause( e );
+            }
+            catch ( InvocationTargetException e )
+            {
+                if ( e.getCause() instanceof RuntimeException )
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException( e.getCause() );
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private Object readValue()
+        throws IOException
+    {
+        int type = in.readUnsignedByte();
+        switch ( type )
+        {
+            case SinkEventRecorder.NULL:
+                return null;
+
+            case SinkEventRecorder.STRING:
+                byte[] bytes = new byte[readLength()];
+                in.readFully( bytes );
+                String s = new String( bytes, "UTF-8" );
+                strings.add( s );
+                return s;
+
+            case SinkEventRecorder.STRING_REF:
+                int index = readInt();
+                if ( index < 0 || index >= strings.size() )
+                {
+                    throw new IOException( "Unknown string: " + index );
+                }
+                return strings.get( index );
+
+            case SinkEventRecorder.INTEGER:
+                return new Integer( readInt() );
+
+            case SinkEventRecorder.TRUE:
+                return Boolean.TRUE;
+
+            case SinkEventRecorder.FALSE:
+                return Boolean.FALSE;
+
+            case SinkEventRecorder.INT_ARRAY:
+                int[] ints = new int[readLength()];
+                for ( int i = 0; i < ints.length; i++ )
+                {
+                    ints[i] = readInt();
+                }
+                return ints;
+
+            case SinkEventRecorder.ARRAY:
+                Object[] values = new Object[readLength()];
+                for ( int i = 0; i < values.length; i++ )
+                {
+                    values[i] = readValue();
+                }
+                return values;
+
+            case SinkEventRecorder.ATTRIBUTES:
+                int count = readLength();
+                SinkEventAttributeSet attributes = new SinkEventAttributeSet( count );
+                for ( int i = 0; i < count; i++ )
+                {
+                    Object name = readValue();
+                    attributes.addAttribute( name, readValue() );
+                }
+                return attributes;
+
+            default:
+                throw new IOException( "Unknown value type: " + type );
+        }
+    }
+
+    private int readLength()
+        throws IOException
+    {
+        int length = readInt();
+        if ( length < 0 )
+        {
+            throw new IOException( "Invalid length: " + length );
+        }
+        return length;
+    }
+
+    private int readInt()
+        throws IOException
+    {
+        int value = 0;
+        for ( int shift = 0; shift < 35; shift += 7 )
+        {
+            int b = in.readUnsignedByte();
+            value |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return value;
+            }
+        }
+
+        throw new IOException( "Malformed int" );
+    }
+}
@@ -0,0 +1,250 @@
+package org.apache.maven.doxia.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.maven.doxia.sink.Sink;
+
+/**
+ * A sink forwarding each event to several sinks, each one being called on its own thread, so that the outputs of
+ * a single parse are written concurrently. Unlike {@link org.apache.maven.doxia.sink.PipelineSink}, the parser only
+ * queues the events: they are given to the sinks by batches, in order.
+ * <p>
+ * {@link Sink#close()} waits until all the sinks are closed, and throws the first runtime exception thrown by a
+ * sink, if any. A sink failing stops receiving events, the other ones are not affected.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class TeeSink
+    implements InvocationHandler
+{
+    /** The number of events queued before they are given to the sinks. */
+    private static final int BATCH_SIZE = 256;
+
+    /** The number of batches queued per sink, before the parser waits for it. */
+    private static final int QUEUED_BATCHES = 16;
+
+    /** Marks the end of the events. */
+    private static final List END = new ArrayList();
+
+    private final SinkThread[] threads;
+
+    private List batch = new ArrayList( BATCH_SIZE );
+
+    private boolean closed;
+
+    /**
+     * @param sinks the not null sinks receiving the events.
+     */
+    private TeeSink( List sinks )
+    {
+        threads = new SinkThread[sinks.size()];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new SinkThread( (Sink) sinks.get( i ) );
+            threads[i].setName( "doxia-tee-sink-" + i );
+            threads[i].setDaemon( true );
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Creates a sink forwarding its events to the given sinks.
+     *
+     * @param sinks the not null sinks receiving the events.
+     * @return a sink whose events are forwarded to the given sinks, on one thread per sink.
+     */
+    public static Sink newInstance( List sinks )
+    {
+        return (Sink) Proxy.newProxyInstance( TeeSink.class.getClassLoader(), new Class[] { Sink.class },
+                                              new TeeSink( sinks ) );
+    }
+
+    /** {@inheritDoc} */
+    public Object invoke( Object proxy, Method method, Object[] args )
+        throws Throwable
+    {
+        if ( method.getDeclaringClass() == Object.class )
+        {
+            return method.invoke( this, args );
+        }
+
+        if ( closed )
+        {
+            if ( method.getName().equals( "close" ) || method.getName().equals( "flush" ) )
+            {
+                return null;
+            }
+            throw new IllegalStateException( "The sink is closed." );
+        }
+
+        batch.add( new Event( method, args ) );
+
+        if ( method.getName().equals( "close" ) )
+        {
+            closed = true;
+            dispatch();
+            dispatch( END );
+
+            RuntimeException failure = null;
+            for ( int i = 0; i < threads.length; i++ )
+            {
+                threads[i].join();
+                if ( failure == null )
+                {
+                    failure = threads[i].failure;
+                }
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+        else if ( batch.size() == BATCH_SIZE || method.getName().equals( "flush" ) )
+        {
+            dispatch();
+        }
+
+        return null;
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void dispatch()
+        throws InterruptedException
+    {
+        if ( !batch.isEmpty() )
+        {
+            dispatch( batch );
+            batch = new ArrayList( BATCH_SIZE );
+        }
+    }
+
+    private void dispatch( List events )
+        throws InterruptedException
+    {
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i].batches.put( events );
+        }
+    }
+
+    /** A sink event. */
+    private static class Event
+    {
+        private final Method method;
+
+        private final Object[] args;
+
+        Event( Method method, Object[] args )
+        {
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    /** The thread giving the events to a sink. */
+    private static class SinkThread
+        extends Thread
+    {
+        private final Sink sink;
+
+        private final BlockingQueue batches = new ArrayBlockingQueue( QUEUED_BATCHES );
+
+        private volatile RuntimeException failure;
+
+        SinkThread( Sink sink )
+        {
+            this.sink = sink;
+        }
+
+        /** {@inheritDoc} */
+        public void run()
+        {
+            try
+            {
+                List events;
+                while ( ( events = (List) batches.take() ) != END )
+                {
+                    if ( failure != null )
+                    {
+                        // keep on reading the queue, so that the parser doesn't wait
+                        continue;
+                    }
+
+                    for ( int i = 0; i < events.size(); i++ )
+                    {
+                        Event event = (Event) events.get( i );
+                        try
+                        {
+                            event.method.invoke( sink, event.args );
+                        }
+                        catch ( InvocationTargetException e )
+                        {
+                            failure = ( e.getCause() instanceof RuntimeException ) ? (RuntimeException) e.getCause()
+                                            : new RuntimeException( e.getCause() );
+                        }
+                        catch ( IllegalAccessException e )
+                        {
+                            failure = new RuntimeException( e );
+                        }
+
+                        if ( failure != null )
+                        {
+                            if ( !event.method.getName().equals( "close" ) )
+                            {
+                                closeQuietly();
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                failure = new RuntimeException( e );
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly()
+        {
+            try
+            {
+                sink.close();
+            }
+            catch ( RuntimeException e )
+            {
+                // nop
+            }
+        }
+    }
+}
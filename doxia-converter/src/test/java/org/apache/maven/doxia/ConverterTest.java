@@ -20,15 +20,19 @@ package org.apache.maven.doxia;
  */
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.Iterator;
 
 import junitx.util.PrivateAccessor;
 
+import org.apache.maven.doxia.util.SinkEventRecorder;
 import org.apache.maven.doxia.wrapper.InputFileWrapper;
 import org.apache.maven.doxia.wrapper.InputReaderWrapper;
 import org.apache.maven.doxia.wrapper.OutputFileWrapper;
@@ -617,6 +621,251 @@ public class ConverterTest
         }
     }
 
+    /**
+     * Input directory converted on several threads / output dir
+     *
+     * @see Converter#setThreads(int)
+     * @throws Exception if any
+     */
+    public void testParallelDirectoryConverter()
+        throws Exception
+    {
+        File in = new File( getBasedir(), "target/unit/parallel/in" );
+        File sequential = new File( getBasedir(), "target/unit/parallel/sequential" );
+        File parallel = new File( getBasedir(), "target/unit/parallel/parallel" );
+        FileUtils.deleteDirectory( new File( getBasedir(), "target/unit/parallel" ) );
+
+        File xdoc = new File( getBasedir(), "src/test/resources/unit/xdoc/test.xml" );
+        for ( int i = 0; i < 10; i++ )
+        {
+            FileUtils.copyFile( xdoc, new File( in, "test" + i + ".xdoc" ) );
+        }
+
+        InputFileWrapper input =
+            InputFileWrapper.valueOf( in.getPath(), "xdoc", ReaderFactory.UTF_8, converter.getInputFormats() );
+        converter.convert( input, OutputFileWrapper.valueOf( sequential.getPath(), "xhtml", WriterFactory.UTF_8,
+                                                             converter.getOutputFormats() ) );
+
+        FileUtils.fileWrite( new File( in, "bad.xdoc" ).getPath(), "UTF-8", "<document><body><section>" );
+
+        converter.setThreads( 4 );
+        try
+        {
+            converter.convert( input, OutputFileWrapper.valueOf( parallel.getPath(), "xhtml", WriterFactory.UTF_8,
+                                                                 converter.getOutputFormats() ) );
+            fail( "bad.xdoc is not well-formed" );
+        }
+        catch ( ConverterException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "ParseException" ) );
+        }
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            String name = "test" + i + ".xdoc.xhtml";
+            assertTrue( new File( parallel, name ).length() != 0 );
+            assertEquals( FileUtils.fileRead( new File( sequential, name ) ),
+                          FileUtils.fileRead( new File( parallel, name ) ) );
+        }
+    }
+
+    /**
+     * One input converted to several output formats at once
+     *
+     * @see Converter#convert(InputFileWrapper, OutputFileWrapper[])
+     * @throws Exception if any
+     */
+    public void testFanOutConverter()
+        throws Exception
+    {
+        String in = getBasedir() + "/src/test/resources/unit/xdoc/test.xml";
+        File separate = new File( getBasedir(), "target/unit/fanout/separate" );
+        File fanOut = new File( getBasedir(), "target/unit/fanout/fanout" );
+        String[] formats = { "xhtml", "fo", "docbook", "xdoc" };
+
+        InputFileWrapper input =
+            InputFileWrapper.valueOf( in, "xdoc", ReaderFactory.UTF_8, converter.getInputFormats() );
+
+        OutputFileWrapper[] outputs = new OutputFileWrapper[formats.length];
+        for ( int i = 0; i < formats.length; i++ )
+        {
+            converter.convert( input, OutputFileWrapper.valueOf( separate.getPath(), formats[i], WriterFactory.UTF_8,
+                                                                 converter.getOutputFormats() ) );
+            outputs[i] =
+                OutputFileWrapper.valueOf( fanOut.getPath(), formats[i], WriterFactory.UTF_8,
+                                           converter.getOutputFormats() );
+        }
+
+        converter.convert( input, outputs );
+
+        for ( int i = 0; i < formats.length; i++ )
+        {
+            String name = "test.xml." + formats[i];
+            assertTrue( new File( fanOut, name ).length() != 0 );
+            assertEquals( FileUtils.fileRead( new File( separate, name ) ),
+                          FileUtils.fileRead( new File( fanOut, name ) ) );
+        }
+
+        try
+        {
+            converter.convert( input, new OutputFileWrapper[] { outputs[0], outputs[0] } );
+            fail( "Same output file" );
+        }
+        catch ( ConverterException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Several outputs" ) );
+        }
+    }
+
+    /**
+     * Conversions replaying the cached sink events of the input files
+     *
+     * @see Converter#setCacheDirectory(File)
+     * @throws Exception if any
+     */
+    public void testCachedConverter()
+        throws Exception
+    {
+        File cache = new File( getBasedir(), "target/unit/cached/cache" );
+        File parsed = new File( getBasedir(), "target/unit/cached/parsed" );
+        File cached = new File( getBasedir(), "target/unit/cached/cached" );
+        FileUtils.deleteDirectory( new File( getBasedir(), "target/unit/cached" ) );
+
+        String[][] inputs =
+            { { "apt/test.apt", "apt" }, { "confluence/test.confluence", "confluence" },
+                { "twiki/test.twiki", "twiki" }, { "xdoc/test.xml", "xdoc" } };
+        String[] formats = { "xhtml", "fo" };
+
+        for ( int i = 0; i < inputs.length; i++ )
+        {
+            InputFileWrapper input =
+                InputFileWrapper.valueOf( getBasedir() + "/src/test/resources/unit/" + inputs[i][0], inputs[i][1],
+                                          ReaderFactory.UTF_8, converter.getInputFormats() );
+            for ( int j = 0; j < formats.length; j++ )
+            {
+                converter.setCacheDirectory( null );
+                converter.convert( input, OutputFileWrapper.valueOf( parsed.getPath(), formats[j],
+                                                                     WriterFactory.UTF_8,
+                                                                     converter.getOutputFormats() ) );
+
+                // the first conversion parses and records, the next ones replay
+                converter.setCacheDirectory( cache );
+                converter.convert( input, OutputFileWrapper.valueOf( cached.getPath(), formats[j],
+                                                                     WriterFactory.UTF_8,
+                                                                     converter.getOutputFormats() ) );
+
+                String name = new File( inputs[i][0] ).getName() + "." + formats[j];
+                assertTrue( new File( cached, name ).length() != 0 );
+                assertEquals( name, FileUtils.fileRead( new File( parsed, name ) ),
+                              FileUtils.fileRead( new File( cached, name ) ) );
+            }
+        }
+
+        assertEquals( inputs.length, FileUtils.getFiles( cache, "*.sink", null ).size() );
+
+        // the ids of the recorded events depend on the sink interface
+        for ( Iterator it = FileUtils.getFiles( cache, "*.sink", null ).iterator(); it.hasNext(); )
+        {
+            DataInputStream in = new DataInputStream( new FileInputStream( (File) it.next() ) );
+            try
+            {
+                assertEquals( SinkEventRecorder.VERSION, in.readInt() );
+                assertEquals( SinkEventRecorder.SIGNATURE, in.readInt() );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Several conversions with a started converter
+     *
+     * @see Converter#start()
+     * @see Converter#close()
+     * @throws Exception if any
+     */
+    public void testStartedConverter()
+        throws Exception
+    {
+        String out = getBasedir() + "/target/unit/started/";
+
+        converter.start();
+        try
+        {
+            Object components = PrivateAccessor.getField( converter, "components" );
+            assertNotNull( components );
+
+            String[] formats = { "apt", "xdoc", "apt" };
+            for ( int i = 0; i < formats.length; i++ )
+            {
+                String in = getBasedir() + "/src/test/resources/unit/Doxia.htm";
+                InputFileWrapper input =
+                    InputFileWrapper.valueOf( in, "xhtml", ReaderFactory.UTF_8, converter.getInputFormats() );
+                OutputFileWrapper output =
+                    OutputFileWrapper.valueOf( out + i, formats[i], WriterFactory.UTF_8,
+                                               converter.getOutputFormats() );
+
+                converter.convert( input, output );
+                assertTrue( new File( out + i, "Doxia.htm." + formats[i] ).length() != 0 );
+                assertSame( components, PrivateAccessor.getField( converter, "components" ) );
+            }
+
+            assertEquals( FileUtils.fileRead( new File( out + 0, "Doxia.htm.apt" ) ),
+                          FileUtils.fileRead( new File( out + 2, "Doxia.htm.apt" ) ) );
+        }
+        finally
+        {
+            converter.close();
+        }
+
+        assertNull( PrivateAccessor.getField( converter, "components" ) );
+
+        FileUtils.deleteDirectory( new File( out ) );
+    }
+
+    /**
+     * Input file larger than the sniffed prefix, autodetected / output file
+     *
+     * @see Converter#convert(InputFileWrapper, OutputFileWrapper)
+     * @throws Exception if any
+     */
+    public void testAutoDetectLargeFileConverter()
+        throws Exception
+    {
+        File dir = new File( getBasedir(), "target/unit/sniffer" );
+        FileUtils.deleteDirectory( dir );
+
+        String apt = FileUtils.fileRead( new File( getBasedir(), "src/test/resources/unit/apt/test.apt" ),
+                                         "ISO-8859-1" );
+        StringBuffer content = new StringBuffer( apt );
+        String last = null;
+        while ( content.length() <= InputSniffer.PREFIX_LENGTH )
+        {
+            last = "Section " + content.length();
+            content.append( "\n* " ).append( last ).append( "\n\n Paragraph.\n" );
+        }
+        dir.mkdirs();
+        File in = new File( dir, "large.apt" );
+        FileUtils.fileWrite( in.getPath(), "ISO-8859-1", content.toString() );
+
+        File auto = new File( dir, "auto.xhtml" );
+        converter.convert( InputFileWrapper.valueOf( in.getPath(), null, converter.getInputFormats() ),
+                           OutputFileWrapper.valueOf( auto.getPath(), "xhtml", "ISO-8859-1",
+                                                      converter.getOutputFormats() ) );
+
+        File explicit = new File( dir, "explicit.xhtml" );
+        converter.convert( InputFileWrapper.valueOf( in.getPath(), "apt", "ISO-8859-1",
+                                                     converter.getInputFormats() ),
+                           OutputFileWrapper.valueOf( explicit.getPath(), "xhtml", "ISO-8859-1",
+                                                      converter.getOutputFormats() ) );
+
+        String output = FileUtils.fileRead( explicit, "ISO-8859-1" );
+        assertTrue( output.indexOf( last ) != -1 );
+        assertEquals( output, FileUtils.fileRead( auto, "ISO-8859-1" ) );
+    }
+
     private String autoDetectEncoding( File f )
         throws Throwable
     {
@@ -0,0 +1,239 @@
+package org.apache.maven.doxia.cli;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.maven.doxia.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests the converter daemon.
+ *
+ * @version $Id$
+ */
+public class ConverterDaemonTest
+    extends PlexusTestCase
+{
+    private File tokenDirectory;
+
+    private ConverterDaemon daemon;
+
+    private Thread thread;
+
+    /** {@inheritDoc} */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        tokenDirectory = new File( getBasedir(), "target/unit/daemon-token" );
+        tokenDirectory.mkdirs();
+        daemon = new ConverterDaemon( 0, tokenDirectory, new SystemStreamLog() );
+        thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                daemon.run( 2 );
+            }
+        } );
+        thread.start();
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown()
+        throws Exception
+    {
+        daemon.close();
+        thread.join( 10000 );
+        assertFalse( thread.isAlive() );
+
+        super.tearDown();
+    }
+
+    private int forward( String[] args, ByteArrayOutputStream messages )
+        throws Exception
+    {
+        return ConverterDaemon.forward( daemon.getPort(), tokenDirectory, new CLIManager().parse( args ),
+                                        new PrintStream( messages, true, "UTF-8" ) );
+    }
+
+    /**
+     * Sends a raw request to the daemon.
+     *
+     * @param token the token sent.
+     * @param count the number of arguments sent, without any argument.
+     * @return the response messages.
+     * @throws IOException if the daemon closes the connection.
+     */
+    private String request( String token, int count )
+        throws IOException
+    {
+        Socket socket = new Socket( InetAddress.getByName( null ), daemon.getPort() );
+        try
+        {
+            DataOutputStream out = new DataOutputStream( socket.getOutputStream() );
+            out.writeInt( 2 );
+            out.writeUTF( token );
+            out.writeInt( count );
+            out.flush();
+
+            DataInputStream in = new DataInputStream( socket.getInputStream() );
+            assertEquals( 1, in.readInt() );
+            byte[] messages = new byte[in.readInt()];
+            in.readFully( messages );
+
+            return new String( messages, "UTF-8" );
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testForward()
+        throws Exception
+    {
+        File out = new File( getBasedir(), "target/unit/daemon" );
+        FileUtils.deleteDirectory( out );
+
+        String[] args =
+            { "-client", "-in", getBasedir() + "/src/test/resources/unit/Doxia.htm", "-from", "xhtml", "-out",
+                out.getPath(), "-to", "apt" };
+        for ( int i = 0; i < 3; i++ )
+        {
+            ByteArrayOutputStream messages = new ByteArrayOutputStream();
+            assertEquals( messages.toString( "UTF-8" ), 0, forward( args, messages ) );
+            // the warnings of the sink are printed
+            assertEquals( messages.toString( "UTF-8" ), -1, messages.toString( "UTF-8" ).indexOf( "[error]" ) );
+        }
+        assertTrue( new File( out, "Doxia.htm.apt" ).length() != 0 );
+
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        args = new String[] { "-client", "-in", "unknown.htm", "-from", "xhtml", "-out", out.getPath(), "-to", "apt" };
+        assertEquals( 1, forward( args, messages ) );
+        assertTrue( messages.toString( "UTF-8" ), messages.toString( "UTF-8" ).indexOf( "FATAL ERROR" ) != -1 );
+
+        FileUtils.deleteDirectory( out );
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testToken()
+        throws Exception
+    {
+        File tokenFile = ConverterDaemon.getTokenFile( tokenDirectory, daemon.getPort() );
+        assertTrue( tokenFile.exists() );
+        assertTrue( tokenFile.canRead() );
+
+        assertTrue( request( "invalid", 0 ).indexOf( "Invalid token" ) != -1 );
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testMalformedRequests()
+        throws Exception
+    {
+        String token = FileUtils.fileRead( ConverterDaemon.getTokenFile( tokenDirectory, daemon.getPort() ) );
+        int[] counts = { -1, Integer.MAX_VALUE };
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            try
+            {
+                request( token, counts[i] );
+                fail( "malformed request" );
+            }
+            catch ( EOFException e )
+            {
+                assertTrue( true );
+            }
+        }
+
+        // the handlers still serve the requests
+        File out = new File( getBasedir(), "target/unit/daemon-malformed" );
+        String[] args =
+            { "-client", "-in", getBasedir() + "/src/test/resources/unit/Doxia.htm", "-from", "xhtml", "-out",
+                out.getPath(), "-to", "apt" };
+        for ( int i = 0; i < 2; i++ )
+        {
+            ByteArrayOutputStream messages = new ByteArrayOutputStream();
+            assertEquals( messages.toString( "UTF-8" ), 0, forward( args, messages ) );
+        }
+        FileUtils.deleteDirectory( out );
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testLoggedMessages()
+        throws Exception
+    {
+        File in = new File( getBasedir(), "target/unit/daemon-invalid" );
+        FileUtils.deleteDirectory( in );
+        in.mkdirs();
+        FileUtils.fileWrite( new File( in, "a.xhtml" ).getPath(), "UTF-8", "<html><body><p>a</body></html>" );
+        FileUtils.fileWrite( new File( in, "b.xhtml" ).getPath(), "UTF-8", "<html><body><p>b</body></html>" );
+        File out = new File( getBasedir(), "target/unit/daemon-invalid-out" );
+
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        String[] args =
+            { "-client", "-in", in.getPath(), "-from", "xhtml", "-out", out.getPath(), "-to", "apt", "-T", "2" };
+        assertEquals( 1, forward( args, messages ) );
+
+        // the errors logged by the converter are those of the client
+        String text = messages.toString( "UTF-8" );
+        assertTrue( text, text.indexOf( "[error] Could not convert" ) != -1 );
+        assertTrue( text, text.indexOf( "a.xhtml" ) != -1 );
+        assertTrue( text, text.indexOf( "b.xhtml" ) != -1 );
+    }
+
+    /**
+     * @throws Exception if any
+     */
+    public void testNoDaemon()
+        throws Exception
+    {
+        daemon.close();
+
+        try
+        {
+            forward( new String[] { "-client", "-in", "a.htm" }, new ByteArrayOutputStream() );
+            fail( "no daemon" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( true );
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.apache.maven.doxia.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the XML indentation of {@link PrettyPrintOutputStream}.
+ *
+ * @version $Id$
+ */
+public class PrettyPrintOutputStreamTest
+    extends TestCase
+{
+    private static final String EOL = System.getProperty( "line.separator" );
+
+    private static String format( String xml, String encoding, boolean byteByByte )
+        throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrettyPrintOutputStream pretty = new PrettyPrintOutputStream( out, encoding );
+
+        byte[] bytes = xml.getBytes( encoding );
+        if ( byteByByte )
+        {
+            for ( int i = 0; i < bytes.length; i++ )
+            {
+                pretty.write( bytes[i] );
+            }
+        }
+        else
+        {
+            pretty.write( bytes );
+        }
+        pretty.close();
+
+        return new String( out.toByteArray(), encoding );
+    }
+
+    private static String lines( String[] lines )
+    {
+        StringBuffer sb = new StringBuffer();
+        for ( int i = 0; i < lines.length; i++ )
+        {
+            sb.append( lines[i] ).append( EOL );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @throws IOException if any
+     */
+    public void testBlocks()
+        throws IOException
+    {
+        String xml =
+            "<?xml version=\"1.0\"?>\n<!DOCTYPE doc [ <!ENTITY e \"<c>\"> ]><doc>  <item x=\"1>2\"/>\n\n<list>"
+                + "<item>e</item></list><!-- f --></doc>";
+
+        assertEquals( lines( new String[] { "<?xml version=\"1.0\"?>", "<!DOCTYPE doc [ <!ENTITY e \"<c>\"> ]>",
+            "<doc>", "  <item x=\"1>2\"/>", "  <list>", "    <item>e</item>", "  </list>", "  <!-- f -->",
+            "</doc>" } ), format( xml, "UTF-8", false ) );
+    }
+
+    /**
+     * @throws IOException if any
+     */
+    public void testInlines()
+        throws IOException
+    {
+        String xml = "<div><p><b>a</b><i>b</i> c <br/>d</p><p>\n <em>e</em>\n</p><td></td></div>";
+
+        assertEquals( lines( new String[] { "<div>", "  <p><b>a</b><i>b</i> c <br/>d</p>",
+            "  <p>\n <em>e</em>\n</p>", "  <td></td>", "</div>" } ), format( xml, "UTF-8", false ) );
+    }
+
+    /**
+     * @throws IOException if any
+     */
+    public void testVerbatim()
+        throws IOException
+    {
+        String xml =
+            "<div><pre>  a\n  <b>b</b>\n</pre><programlisting>\n<x>\n</x></programlisting>"
+                + "<fo:block linefeed-treatment=\"preserve\"><fo:block>  c\n</fo:block>\n</fo:block>"
+                + "<p><![CDATA[ <d> ]]></p></div>";
+
+        assertEquals( lines( new String[] { "<div>", "  <pre>  a\n  <b>b</b>\n</pre>",
+            "  <programlisting>\n<x>\n</x></programlisting>",
+            "  <fo:block linefeed-treatment=\"preserve\"><fo:block>  c\n</fo:block>\n</fo:block>",
+            "  <p><![CDATA[ <d> ]]></p>", "</div>" } ), format( xml, "UTF-8", false ) );
+    }
+
+    /**
+     * @throws IOException if any
+     */
+    public void testEncodings()
+        throws IOException
+    {
+        String xml = "<doc><item>\u00e9\u20ac\ud834\udd1e</item></doc>";
+        String expected = lines( new String[] { "<doc>", "  <item>\u00e9\u20ac\ud834\udd1e</item>", "</doc>" } );
+
+        assertEquals( expected, format( xml, "UTF-8", true ) );
+        assertEquals( expected, format( xml, "UTF-16", true ) );
+        assertEquals( lines( new String[] { "<doc>", "  <item>\u00e9</item>", "</doc>" } ),
+                      format( "<doc><item>\u00e9</item></doc>", "ISO-8859-1", true ) );
+    }
+}
@@ -0,0 +1,93 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.benchmark.SiteCorpus;
+import org.apache.maven.doxia.linkcheck.site.DirectorySiteSource;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the link extraction of {@link LinkMatcher#match(File, String)} on javadoc style index pages, on the
+ * bytes of the page and on its decoded characters.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LinkMatcherBenchmark
+{
+    /** The number of index entries, each entry has two or three links. */
+    @Param( { "1000", "10000" } )
+    public int entries;
+
+    private File dir;
+
+    private File page;
+
+    @Setup
+    public void createPage()
+        throws IOException
+    {
+        dir = SiteCorpus.createTempDirectory( "linkmatcher" );
+        String content = SiteCorpus.javadocIndexPage( SiteCorpus.newRandom(), entries );
+        page = SiteCorpus.write( dir, "index-all.html", content );
+    }
+
+    @TearDown
+    public void deletePage()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    @Benchmark
+    public int match()
+        throws IOException
+    {
+        return LinkMatcher.match( page, "UTF-8" ).size();
+    }
+
+    @Benchmark
+    public int matchChars()
+        throws IOException
+    {
+        return LinkMatcher.matchChars( new DirectorySiteSource( dir ), page, "UTF-8" ).size();
+    }
+}
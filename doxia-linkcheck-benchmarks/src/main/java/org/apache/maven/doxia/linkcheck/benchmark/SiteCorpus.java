@@ -0,0 +1,297 @@
+package org.apache.maven.doxia.linkcheck.benchmark;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Generates the pages and link lists used by the benchmarks.
+ * <p>
+ * All generators are driven by a {@link Random} created with {@link #SEED}, so two runs always benchmark
+ * the same content.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class SiteCorpus
+{
+    /** The seed used for all generated corpora. */
+    public static final long SEED = 0x5EEDL;
+
+    private static final String[] PACKAGES =
+        { "org/apache/maven/doxia/sink", "org/apache/maven/doxia/parser", "org/apache/maven/doxia/module/xhtml",
+            "org/apache/maven/doxia/linkcheck", "org/codehaus/plexus/util", "java/lang", "java/util" };
+
+    private static final String[] TYPES =
+        { "java.lang.String", "int", "boolean", "java.io.File", "java.lang.Object[]" };
+
+    private static final String[] HOSTS =
+        { "maven.apache.org", "www.apache.org", "repo.maven.apache.org", "docs.oracle.com", "jira.codehaus.org",
+            "svn.apache.org", "www.example.com", "plexus.codehaus.org" };
+
+    private SiteCorpus()
+    {
+        // utility class
+    }
+
+    /**
+     * @return a new random generator initialized with {@link #SEED}.
+     */
+    public static Random newRandom()
+    {
+        return new Random( SEED );
+    }
+
+    /**
+     * @param random not null
+     * @param index the index of the member
+     * @return a javadoc style member anchor, i.e. <code>getFoo12(java.lang.String, int)</code>.
+     */
+    public static String memberAnchor( Random random, int index )
+    {
+        StringBuffer sb = new StringBuffer( "member" ).append( index ).append( '(' );
+        int params = random.nextInt( 3 );
+        for ( int i = 0; i < params; i++ )
+        {
+            if ( i > 0 )
+            {
+                sb.append( ", " );
+            }
+            sb.append( TYPES[random.nextInt( TYPES.length )] );
+        }
+        return sb.append( ')' ).toString();
+    }
+
+    /**
+     * Generates a page looking like the javadoc <code>index-all.html</code>: navigation bars, comments,
+     * scripts and one definition entry per member, each with links to the declaring class and member.
+     *
+     * @param random not null
+     * @param entries the number of index entries.
+     * @return the page content.
+     */
+    public static String javadocIndexPage( Random random, int entries )
+    {
+        StringBuffer sb = new StringBuffer( entries * 300 );
+        sb.append( "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n" );
+        sb.append( "<HTML>\n<HEAD>\n<!-- Generated by javadoc on Tue Oct 18 2011 -->\n" );
+        sb.append( "<TITLE>Index</TITLE>\n" );
+        sb.append( "<LINK REL =\"stylesheet\" TYPE=\"text/css\" HREF=\"./stylesheet.css\" TITLE=\"Style\">\n" );
+        sb.append( "<SCRIPT type=\"text/javascript\">\nfunction windowTitle()\n{\n" );
+        sb.append( "    parent.document.title=\"Index\";\n}\n</SCRIPT>\n</HEAD>\n" );
+        sb.append( "<BODY BGCOLOR=\"white\" onload=\"windowTitle();\">\n" );
+        navigationBar( sb, "navbar_top" );
+
+        for ( int i = 0; i < entries; i++ )
+        {
+            String pkg = PACKAGES[random.nextInt( PACKAGES.length )];
+            String type = "Type" + random.nextInt( entries / 10 + 1 );
+            String member = memberAnchor( random, i );
+
+            if ( i % 50 == 0 )
+            {
+                sb.append( "<A NAME=\"_" ).append( (char) ( 'A' + ( i / 50 ) % 26 ) ).append( "_\"><!-- --></A>" );
+                sb.append( "<H2>\n<B>" ).append( (char) ( 'A' + ( i / 50 ) % 26 ) ).append( "</B></H2>\n<DL>\n" );
+            }
+
+            sb.append( "<DT><A HREF=\"./" ).append( pkg ).append( '/' ).append( type ).append( ".html#" );
+            sb.append( member ).append( "\"><B>" ).append( member ).append( "</B></A> - \nMethod in class " );
+            sb.append( "<A HREF=\"./" ).append( pkg ).append( '/' ).append( type );
+            sb.append( ".html\" title=\"class in " );
+            sb.append( pkg.replace( '/', '.' ) ).append( "\">" ).append( type ).append( "</A>\n" );
+            sb.append( "<DD>Returns the value of <CODE>" ).append( member ).append( "</CODE>.\n" );
+
+            if ( i % 7 == 0 )
+            {
+                sb.append( "<!-- <A HREF=\"./removed/Old" ).append( i ).append( ".html\">old</A> -->\n" );
+            }
+            if ( i % 13 == 0 )
+            {
+                sb.append( "<DD>See <A HREF=\"http://" ).append( HOSTS[random.nextInt( HOSTS.length )] );
+                sb.append( "/docs/page" ).append( i ).append( ".html\">external docs</A>\n" );
+            }
+        }
+
+        sb.append( "</DL>\n" );
+        navigationBar( sb, "navbar_bottom" );
+        sb.append( "</BODY>\n</HTML>\n" );
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates a page with many anchors, half declared with <code>name</code>, half with <code>id</code>.
+     *
+     * @param random not null
+     * @param anchors the number of anchors.
+     * @return the page content, the anchors are the ones of {@link #memberAnchor(Random, int)} with the same seed.
+     */
+    public static String anchorsPage( Random random, int anchors )
+    {
+        StringBuffer sb = new StringBuffer( anchors * 150 );
+        sb.append( "<html>\n<head><title>Anchors</title></head>\n<body>\n" );
+        for ( int i = 0; i < anchors; i++ )
+        {
+            String anchor = memberAnchor( random, i );
+            if ( i % 2 == 0 )
+            {
+                sb.append( "<a name=\"" ).append( anchor ).append( "\"><!-- --></a>\n" );
+            }
+            else
+            {
+                sb.append( "<h3 id='" ).append( anchor ).append( "'>" ).append( anchor ).append( "</h3>\n" );
+            }
+            sb.append( "<p>Some <b>text</b> describing <code>" ).append( anchor ).append( "</code>.</p>\n" );
+        }
+        sb.append( "</body>\n</html>\n" );
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates exclusion patterns in all the supported flavours: plain links, links ending with a slash and
+     * wildcard patterns.
+     *
+     * @param random not null
+     * @param size the number of patterns.
+     * @return the patterns.
+     */
+    public static String[] excludedLinks( Random random, int size )
+    {
+        String[] excludes = new String[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            String host = HOSTS[random.nextInt( HOSTS.length )];
+            switch ( i % 4 )
+            {
+                case 0:
+                    excludes[i] = "http://" + host + "/excluded" + i + ".html";
+                    break;
+                case 1:
+                    excludes[i] = "http://" + host + "/excluded" + i + "/";
+                    break;
+                case 2:
+                    excludes[i] = "http://" + host + "/excluded" + i + "/**/*.html";
+                    break;
+                default:
+                    excludes[i] = "excluded" + i + "/*";
+                    break;
+            }
+        }
+        return excludes;
+    }
+
+    /**
+     * Generates links as found in a site: relative links, anchors and absolute http links.
+     *
+     * @param random not null
+     * @param size the number of links.
+     * @return the links.
+     */
+    public static String[] links( Random random, int size )
+    {
+        String[] links = new String[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            String host = HOSTS[random.nextInt( HOSTS.length )];
+            switch ( i % 3 )
+            {
+                case 0:
+                    links[i] = "http://" + host + "/docs/page" + random.nextInt( size ) + ".html";
+                    break;
+                case 1:
+                    links[i] = "./" + PACKAGES[random.nextInt( PACKAGES.length )] + "/Type" + i + ".html";
+                    break;
+                default:
+                    links[i] = "Type" + i + ".html#" + memberAnchor( random, i );
+                    break;
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Writes the content in a file, using UTF-8.
+     *
+     * @param dir the parent directory, created if needed.
+     * @param name the file name.
+     * @param content the content.
+     * @return the written file.
+     * @throws IOException if any
+     */
+    public static File write( File dir, String name, String content )
+        throws IOException
+    {
+        File f = new File( dir, name );
+        f.getParentFile().mkdirs();
+
+        Writer writer = null;
+        try
+        {
+            writer = WriterFactory.newWriter( f, WriterFactory.UTF_8 );
+            writer.write( content );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        return f;
+    }
+
+    /**
+     * @param prefix the directory prefix.
+     * @return a new empty temporary directory, deleted on exit.
+     * @throws IOException if any
+     */
+    public static File createTempDirectory( String prefix )
+        throws IOException
+    {
+        File dir = File.createTempFile( prefix, "" );
+        if ( !dir.delete() || !dir.mkdirs() )
+        {
+            throw new IOException( "Unable to create the directory " + dir );
+        }
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static void navigationBar( StringBuffer sb, String name )
+    {
+        sb.append( "<!-- ========= START OF NAVBAR ======= -->\n" );
+        sb.append( "<A NAME=\"" ).append( name ).append( "\"><!-- --></A>\n" );
+        sb.append( "<TABLE BORDER=\"0\" WIDTH=\"100%\"><TR><TD>\n" );
+        sb.append( "<A HREF=\"overview-summary.html\"><FONT CLASS=\"NavBarFont1\"><B>Overview</B></FONT></A>\n" );
+        sb.append( "<A HREF=\"overview-tree.html\"><FONT CLASS=\"NavBarFont1\"><B>Tree</B></FONT></A>\n" );
+        sb.append( "<A HREF=\"deprecated-list.html\"><FONT CLASS=\"NavBarFont1\"><B>Deprecated</B></FONT></A>\n" );
+        sb.append( "<A HREF=\"help-doc.html\"><FONT CLASS=\"NavBarFont1\"><B>Help</B></FONT></A>\n" );
+        sb.append( "<A HREF=\"index.html?index-all.html\" target=\"_top\"><B>FRAMES</B></A>\n" );
+        sb.append( "<SCRIPT type=\"text/javascript\">\n  <!--\n  if(window==top) {\n" );
+        sb.append( "    document.writeln('<A HREF=\"allclasses-noframe.html\"><B>All Classes</B></A>');\n" );
+        sb.append( "  }\n  //-->\n</SCRIPT>\n" );
+        sb.append( "</TD></TR></TABLE>\n<!-- ========= END OF NAVBAR ========= -->\n" );
+    }
+}
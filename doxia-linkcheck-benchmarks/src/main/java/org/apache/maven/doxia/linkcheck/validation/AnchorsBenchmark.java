@@ -0,0 +1,96 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.benchmark.SiteCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Anchors#matchesAnchor(String, String)} on pages with thousands of anchors, looking for
+ * the first anchor, the last one and a missing one.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class AnchorsBenchmark
+{
+    /** The number of anchors in the page. */
+    @Param( { "1000", "5000" } )
+    public int anchors;
+
+    private String content;
+
+    private String first;
+
+    private String last;
+
+    @Setup
+    public void createPage()
+    {
+        content = SiteCorpus.anchorsPage( SiteCorpus.newRandom(), anchors );
+
+        Random random = SiteCorpus.newRandom();
+        for ( int i = 0; i < anchors; i++ )
+        {
+            String anchor = SiteCorpus.memberAnchor( random, i );
+            if ( i == 0 )
+            {
+                first = anchor;
+            }
+            last = anchor;
+        }
+    }
+
+    @Benchmark
+    public boolean matchFirst()
+    {
+        return Anchors.matchesAnchor( content, first );
+    }
+
+    @Benchmark
+    public boolean matchLast()
+    {
+        return Anchors.matchesAnchor( content, last );
+    }
+
+    @Benchmark
+    public boolean matchMissing()
+    {
+        return Anchors.matchesAnchor( content, "missing(java.lang.String)" );
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.benchmark.SiteCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the exclusion matching done by {@link LinkValidatorManager#validateLink(LinkValidationItem)},
+ * i.e. {@link LinkValidatorManager#matchPattern(String, String)} for each link against each excluded link.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ExcludedLinksBenchmark
+{
+    /** The number of excluded links. */
+    @Param( { "10", "100", "1000" } )
+    public int excludes;
+
+    /** The number of links to check against the excluded links. */
+    @Param( { "1000" } )
+    public int links;
+
+    private String[] excludedLinks;
+
+    private String[] checkedLinks;
+
+    @Setup
+    public void createLinks()
+    {
+        Random random = SiteCorpus.newRandom();
+        excludedLinks = SiteCorpus.excludedLinks( random, excludes );
+        checkedLinks = SiteCorpus.links( random, links );
+    }
+
+    @Benchmark
+    public int matchExcludedLinks()
+    {
+        int excluded = 0;
+        for ( int i = 0; i < checkedLinks.length; i++ )
+        {
+            for ( int j = 0; j < excludedLinks.length; j++ )
+            {
+                if ( LinkValidatorManager.matchPattern( checkedLinks[i], excludedLinks[j] ) )
+                {
+                    excluded++;
+                    break;
+                }
+            }
+        }
+        return excluded;
+    }
+}
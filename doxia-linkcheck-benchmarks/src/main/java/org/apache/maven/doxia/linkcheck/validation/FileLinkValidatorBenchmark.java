@@ -0,0 +1,131 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.benchmark.SiteCorpus;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link FileLinkValidator} the way {@link LinkValidatorManager} drives it, without the cache:
+ * {@link FileLinkValidator#getResourceKey(LinkValidationItem)} then
+ * {@link FileLinkValidator#validateLink(LinkValidationItem)}, on links to a page with thousands of anchors.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class FileLinkValidatorBenchmark
+{
+    /** The number of anchors in the target page. */
+    @Param( { "1000", "5000" } )
+    public int anchors;
+
+    /** The number of links to validate. */
+    @Param( { "100" } )
+    public int links;
+
+    private File dir;
+
+    private FileLinkValidator validator;
+
+    private List<LinkValidationItem> items;
+
+    @Setup
+    public void createSite()
+        throws IOException
+    {
+        dir = SiteCorpus.createTempDirectory( "filelinkvalidator" );
+
+        Random random = SiteCorpus.newRandom();
+        SiteCorpus.write( dir, "apidocs/Target.html", SiteCorpus.anchorsPage( random, anchors ) );
+        File source = SiteCorpus.write( dir, "apidocs/Source.html", "<html><body></body></html>" );
+
+        random = SiteCorpus.newRandom();
+        List<String> anchorNames = new ArrayList<String>();
+        for ( int i = 0; i < anchors; i++ )
+        {
+            anchorNames.add( SiteCorpus.memberAnchor( random, i ) );
+        }
+
+        items = new ArrayList<LinkValidationItem>();
+        for ( int i = 0; i < links; i++ )
+        {
+            switch ( i % 4 )
+            {
+                case 0:
+                    items.add( new LinkValidationItem( source, "Target.html" ) );
+                    break;
+                case 1:
+                    items.add( new LinkValidationItem( source, "Missing" + i + ".html" ) );
+                    break;
+                default:
+                    String anchor = anchorNames.get( random.nextInt( anchorNames.size() ) );
+                    items.add( new LinkValidationItem( source, "Target.html#" + anchor ) );
+                    break;
+            }
+        }
+
+        validator = new FileLinkValidator( "UTF-8" );
+    }
+
+    @TearDown
+    public void deleteSite()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    @Benchmark
+    public void validateLinks( Blackhole blackhole )
+    {
+        for ( LinkValidationItem lvi : items )
+        {
+            Object key = validator.getResourceKey( lvi );
+            if ( key != null )
+            {
+                blackhole.consume( validator.validateLink( lvi ) );
+            }
+        }
+    }
+}
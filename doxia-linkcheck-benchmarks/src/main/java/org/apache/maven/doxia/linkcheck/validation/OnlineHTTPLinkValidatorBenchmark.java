@@ -0,0 +1,142 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.HttpBean;
+import org.apache.maven.doxia.linkcheck.http.StandInHttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the latency and the throughput of {@link OnlineHTTPLinkValidator} against a
+ * {@link StandInHttpServer}, for the different kinds of responses it simulates.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class OnlineHTTPLinkValidatorBenchmark
+{
+    /** The kind of response, see {@link #createServer()}. */
+    @Param( { "ok", "notFound", "unavailable", "redirects", "anchor", "deadHost" } )
+    public String response;
+
+    /** The latency added by the server to each response, in ms. */
+    @Param( { "0", "20" } )
+    public int latency;
+
+    /** The HTTP method used by the validator. */
+    @Param( { "head", "get" } )
+    public String method;
+
+    private StandInHttpServer server;
+
+    private OnlineHTTPLinkValidator validator;
+
+    private LinkValidationItem item;
+
+    @Setup
+    public void createServer()
+        throws IOException
+    {
+        server = new StandInHttpServer();
+
+        String link;
+        if ( "ok".equals( response ) )
+        {
+            link = server.url( "/ok" );
+        }
+        else if ( "notFound".equals( response ) )
+        {
+            link = server.url( "/status/404" );
+        }
+        else if ( "unavailable".equals( response ) )
+        {
+            link = server.url( "/status/503" );
+        }
+        else if ( "redirects".equals( response ) )
+        {
+            link = server.url( "/redirect/3" );
+        }
+        else if ( "anchor".equals( response ) )
+        {
+            link = server.url( "/page/1000" );
+        }
+        else if ( "deadHost".equals( response ) )
+        {
+            link = StandInHttpServer.deadHostURL();
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unknown response: " + response );
+        }
+
+        link += "?latency=" + latency;
+        if ( "anchor".equals( response ) )
+        {
+            link += "#a999";
+        }
+
+        HttpBean bean = new HttpBean();
+        bean.setMethod( method );
+        validator = new OnlineHTTPLinkValidator( bean );
+        item = new LinkValidationItem( new File( "index.html" ), link );
+    }
+
+    @TearDown
+    public void stopServer()
+    {
+        server.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.SampleTime )
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public LinkValidationResult latency()
+    {
+        return validator.validateLink( item );
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    @Threads( 8 )
+    public LinkValidationResult throughput()
+    {
+        return validator.validateLink( item );
+    }
+}
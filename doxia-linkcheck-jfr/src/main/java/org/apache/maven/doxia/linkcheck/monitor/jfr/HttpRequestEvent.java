@@ -0,0 +1,55 @@
+package org.apache.maven.doxia.linkcheck.monitor.jfr;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted around an HTTP request done by the online link validator.
+ *
+ * @version $Id$
+ */
+@Name( "org.apache.maven.doxia.linkcheck.HttpRequest" )
+@Label( "HTTP Request" )
+@Description( "An HTTP request done to validate a link" )
+@Category( { "Doxia", "Linkcheck" } )
+@StackTrace( false )
+class HttpRequestEvent
+    extends Event
+{
+    @Label( "Host" )
+    String host;
+
+    @Label( "Method" )
+    String method;
+
+    @Label( "Status" )
+    int status;
+
+    @Label( "Bytes" )
+    @DataAmount
+    long bytes;
+}
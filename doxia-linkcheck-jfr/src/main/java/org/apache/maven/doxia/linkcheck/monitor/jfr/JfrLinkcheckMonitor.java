@@ -0,0 +1,136 @@
+package org.apache.maven.doxia.linkcheck.monitor.jfr;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.EventType;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitor;
+
+/**
+ * Emits the linkcheck notifications as Java Flight Recorder events, see:
+ * <ul>
+ * <li><code>org.apache.maven.doxia.linkcheck.PageScanned</code></li>
+ * <li><code>org.apache.maven.doxia.linkcheck.LinkValidated</code></li>
+ * <li><code>org.apache.maven.doxia.linkcheck.HttpRequest</code></li>
+ * </ul>
+ * When no recording is running, or when these events are disabled, {@link #isEnabled()} returns
+ * <code>false</code> and no event is created.
+ *
+ * @version $Id$
+ */
+public class JfrLinkcheckMonitor
+    implements LinkcheckMonitor
+{
+    private static final EventType PAGE_SCANNED = EventType.getEventType( PageScannedEvent.class );
+
+    private static final EventType LINK_VALIDATED = EventType.getEventType( LinkValidatedEvent.class );
+
+    private static final EventType HTTP_REQUEST = EventType.getEventType( HttpRequestEvent.class );
+
+    /** {@inheritDoc} */
+    public boolean isEnabled()
+    {
+        return PAGE_SCANNED.isEnabled() || LINK_VALIDATED.isEnabled() || HTTP_REQUEST.isEnabled();
+    }
+
+    /** {@inheritDoc} */
+    public Object beginPageScan()
+    {
+        PageScannedEvent event = new PageScannedEvent();
+        event.begin();
+        return event;
+    }
+
+    /** {@inheritDoc} */
+    public void pageScanned( Object handle, String path, long bytes, int links )
+    {
+        PageScannedEvent event = (PageScannedEvent) handle;
+        event.end();
+        if ( event.shouldCommit() )
+        {
+            event.path = path;
+            event.bytes = bytes;
+            event.links = links;
+            event.commit();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Object beginLinkValidation()
+    {
+        LinkValidatedEvent event = new LinkValidatedEvent();
+        event.begin();
+        return event;
+    }
+
+    /** {@inheritDoc} */
+    public void linkValidated( Object handle, String validator, String target, int status, boolean cacheHit )
+    {
+        LinkValidatedEvent event = (LinkValidatedEvent) handle;
+        event.end();
+        if ( event.shouldCommit() )
+        {
+            event.validator = validator;
+            event.target = target;
+            event.status = toStatus( status );
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Object beginHttpRequest()
+    {
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    /** {@inheritDoc} */
+    public void httpRequest( Object handle, String host, String method, int status, long bytes )
+    {
+        HttpRequestEvent event = (HttpRequestEvent) handle;
+        event.end();
+        if ( event.shouldCommit() )
+        {
+            event.host = host;
+            event.method = method;
+            event.status = status;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static String toStatus( int level )
+    {
+        switch ( level )
+        {
+            case LinkcheckFileResult.VALID_LEVEL:
+                return LinkcheckFileResult.VALID;
+            case LinkcheckFileResult.WARNING_LEVEL:
+                return LinkcheckFileResult.WARNING;
+            case LinkcheckFileResult.ERROR_LEVEL:
+                return LinkcheckFileResult.ERROR;
+            default:
+                return LinkcheckFileResult.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.maven.doxia.linkcheck.monitor.jfr;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted when a link has been validated.
+ *
+ * @version $Id$
+ */
+@Name( "org.apache.maven.doxia.linkcheck.LinkValidated" )
+@Label( "Link Validated" )
+@Description( "A link has been validated" )
+@Category( { "Doxia", "Linkcheck" } )
+@StackTrace( false )
+class LinkValidatedEvent
+    extends Event
+{
+    @Label( "Validator" )
+    String validator;
+
+    @Label( "Target" )
+    String target;
+
+    @Label( "Status" )
+    String status;
+
+    @Label( "Cache Hit" )
+    boolean cacheHit;
+}
@@ -0,0 +1,381 @@
+package org.apache.maven.doxia.linkcheck.http;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process HTTP server, bound to the loopback interface, standing in for the remote sites checked by
+ * <code>OnlineHTTPLinkValidator</code>.
+ * <p>
+ * The response is driven by the request path:
+ * </p>
+ * <ul>
+ * <li><code>/ok</code>: a small page with a <code>200</code> status.</li>
+ * <li><code>/status/&lt;code&gt;</code>: an empty page with the given status, <code>429</code> and
+ * <code>503</code> responses have a <code>Retry-After</code> header.</li>
+ * <li><code>/redirect/&lt;n&gt;</code>: a chain of <code>n</code> temporary redirects ending on a
+ * <code>200</code> page.</li>
+ * <li><code>/flaky/&lt;failures&gt;/&lt;code&gt;/&lt;id&gt;</code>: the first <code>failures</code> requests
+ * of this path get the given status, the following ones a <code>200</code>.</li>
+ * <li><code>/slow/&lt;chunks&gt;/&lt;millis&gt;</code>: a <code>200</code> page of <code>chunks</code> chunks of
+ * 1 KB, waiting <code>millis</code> ms before each chunk.</li>
+ * <li><code>/page/&lt;anchors&gt;</code>: a large <code>200</code> page with the anchors <code>a0</code> to
+ * <code>a&lt;anchors - 1&gt;</code>.</li>
+ * <li><code>/nohead/&lt;code&gt;/&lt;id&gt;</code>: <code>HEAD</code> requests get the given status,
+ * <code>GET</code> requests a <code>200</code> page, or a <code>206</code> response with its first byte if
+ * they have a <code>Range</code> header.</li>
+ * </ul>
+ * Any other path gets a <code>404</code>. The <code>latency</code> query parameter delays the response by the
+ * given number of ms, i.e. <code>/ok?latency=100</code>. <code>HEAD</code> requests get the same status and
+ * headers as <code>GET</code> requests, without body. Connections are not kept alive, so that the client never
+ * retries a request on a connection closed by the server, which would skew the request counts.
+ *
+ * @version $Id$
+ */
+public class StandInHttpServer
+{
+    /** The size of a chunk for <code>/slow</code>. */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final ConcurrentHashMap<String, AtomicInteger> requestCounts =
+        new ConcurrentHashMap<String, AtomicInteger>();
+
+    /**
+     * Starts a new server on a free port of the loopback interface.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    public StandInHttpServer()
+        throws IOException
+    {
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getByName( "127.0.0.1" ), 0 ), 0 );
+        server.createContext( "/", new StandInHandler() );
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor( executor );
+        server.start();
+    }
+
+    /**
+     * @return the base URL of the server, i.e. <code>http://127.0.0.1:12345</code>, without trailing slash.
+     */
+    public String getBaseURL()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param path a path starting with a slash, i.e. <code>/redirect/3</code>.
+     * @return the absolute URL of the path on this server.
+     */
+    public String url( String path )
+    {
+        return getBaseURL() + path;
+    }
+
+    /**
+     * @param path the request path, without query.
+     * @return the number of requests received for the path, whatever the method.
+     */
+    public int getRequestCount( String path )
+    {
+        AtomicInteger count = requestCounts.get( path );
+
+        return ( count == null ? 0 : count.get() );
+    }
+
+    /**
+     * @return the total number of requests received.
+     */
+    public int getRequestCount()
+    {
+        int total = 0;
+        for ( AtomicInteger count : requestCounts.values() )
+        {
+            total += count.get();
+        }
+
+        return total;
+    }
+
+    /**
+     * Forgets the requests received so far.
+     */
+    public void resetRequestCounts()
+    {
+        requestCounts.clear();
+    }
+
+    /**
+     * Stops the server immediately.
+     */
+    public void stop()
+    {
+        server.stop( 0 );
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return an URL on the loopback interface where nothing is listening, so that connections are refused.
+     * @throws IOException if no free port can be found.
+     */
+    public static String deadHostURL()
+        throws IOException
+    {
+        ServerSocket socket = new ServerSocket( 0, 1, InetAddress.getByName( "127.0.0.1" ) );
+        int port = socket.getLocalPort();
+        socket.close();
+
+        return "http://127.0.0.1:" + port + "/";
+    }
+
+    /**
+     * @param anchors the number of anchors.
+     * @return the content of <code>/page/&lt;anchors&gt;</code>.
+     */
+    public static String anchorsPage( int anchors )
+    {
+        StringBuffer sb = new StringBuffer( anchors * 96 );
+        sb.append( "<html><head><title>Anchors</title></head><body>\n" );
+        for ( int i = 0; i < anchors; i++ )
+        {
+            sb.append( "<h2><a name=\"a" ).append( i ).append( "\">Section " ).append( i ).append( "</a></h2>\n" );
+            sb.append( "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n" );
+        }
+        sb.append( "</body></html>\n" );
+
+        return sb.toString();
+    }
+
+    private int countRequest( String path )
+    {
+        AtomicInteger count = requestCounts.get( path );
+        if ( count == null )
+        {
+            AtomicInteger newCount = new AtomicInteger();
+            count = requestCounts.putIfAbsent( path, newCount );
+            if ( count == null )
+            {
+                count = newCount;
+            }
+        }
+
+        return count.incrementAndGet();
+    }
+
+    private static long getLatency( String query )
+    {
+        if ( query != null )
+        {
+            String[] params = query.split( "&" );
+            for ( int i = 0; i < params.length; i++ )
+            {
+                if ( params[i].startsWith( "latency=" ) )
+                {
+                    return Long.parseLong( params[i].substring( "latency=".length() ) );
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    private static void sleep( long millis )
+        throws IOException
+    {
+        if ( millis <= 0 )
+        {
+            return;
+        }
+
+        try
+        {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted" );
+        }
+    }
+
+    /**
+     * Handles all the requests.
+     */
+    private class StandInHandler
+        implements HttpHandler
+    {
+        /** {@inheritDoc} */
+        public void handle( HttpExchange exchange )
+            throws IOException
+        {
+            try
+            {
+                String path = exchange.getRequestURI().getPath();
+                int count = countRequest( path );
+
+                sleep( getLatency( exchange.getRequestURI().getRawQuery() ) );
+
+                String[] segments = path.substring( 1 ).split( "/" );
+                String scenario = segments[0];
+
+                if ( "ok".equals( scenario ) && segments.length == 1 )
+                {
+                    send( exchange, 200, "<html><body><a name=\"ok\">ok</a></body></html>" );
+                }
+                else if ( "status".equals( scenario ) && segments.length == 2 )
+                {
+                    int status = Integer.parseInt( segments[1] );
+                    if ( status == 429 || status == 503 )
+                    {
+                        exchange.getResponseHeaders().set( "Retry-After", "1" );
+                    }
+                    send( exchange, status, null );
+                }
+                else if ( "redirect".equals( scenario ) && segments.length == 2 )
+                {
+                    int remaining = Integer.parseInt( segments[1] );
+                    if ( remaining > 0 )
+                    {
+                        exchange.getResponseHeaders().set( "Location", "/redirect/" + ( remaining - 1 ) );
+                        send( exchange, 302, null );
+                    }
+                    else
+                    {
+                        send( exchange, 200, "<html><body>redirected</body></html>" );
+                    }
+                }
+                else if ( "flaky".equals( scenario ) && segments.length == 4 )
+                {
+                    int failures = Integer.parseInt( segments[1] );
+                    int status = Integer.parseInt( segments[2] );
+                    if ( count <= failures )
+                    {
+                        send( exchange, status, null );
+                    }
+                    else
+                    {
+                        send( exchange, 200, "<html><body>recovered</body></html>" );
+                    }
+                }
+                else if ( "slow".equals( scenario ) && segments.length == 3 )
+                {
+                    sendSlowly( exchange, Integer.parseInt( segments[1] ), Long.parseLong( segments[2] ) );
+                }
+                else if ( "nohead".equals( scenario ) && segments.length == 3 )
+                {
+                    String content = "<html><body>no head</body></html>";
+                    if ( "HEAD".equals( exchange.getRequestMethod() ) )
+                    {
+                        send( exchange, Integer.parseInt( segments[1] ), null );
+                    }
+                    else if ( exchange.getRequestHeaders().getFirst( "Range" ) != null )
+                    {
+                        exchange.getResponseHeaders().set( "Content-Range", "bytes 0-0/" + content.length() );
+                        send( exchange, 206, content.substring( 0, 1 ) );
+                    }
+                    else
+                    {
+                        send( exchange, 200, content );
+                    }
+                }
+                else if ( "page".equals( scenario ) && segments.length == 2 )
+                {
+                    send( exchange, 200, anchorsPage( Integer.parseInt( segments[1] ) ) );
+                }
+                else
+                {
+                    send( exchange, 404, null );
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                send( exchange, 400, null );
+            }
+            finally
+            {
+                exchange.close();
+            }
+        }
+
+        private void send( HttpExchange exchange, int status, String content )
+            throws IOException
+        {
+            byte[] body = ( content == null ? new byte[0] : content.getBytes( "UTF-8" ) );
+            exchange.getResponseHeaders().set( "Content-Type", "text/html; charset=UTF-8" );
+            exchange.getResponseHeaders().set( "Connection", "close" );
+
+            if ( "HEAD".equals( exchange.getRequestMethod() ) || body.length == 0 )
+            {
+                exchange.sendResponseHeaders( status, -1 );
+                return;
+            }
+
+            exchange.sendResponseHeaders( status, body.length );
+            OutputStream out = exchange.getResponseBody();
+            out.write( body );
+            out.flush();
+        }
+
+        private void sendSlowly( HttpExchange exchange, int chunks, long millis )
+            throws IOException
+        {
+            exchange.getResponseHeaders().set( "Content-Type", "text/html; charset=UTF-8" );
+            exchange.getResponseHeaders().set( "Connection", "close" );
+
+            if ( "HEAD".equals( exchange.getRequestMethod() ) )
+            {
+                sleep( millis );
+                exchange.sendResponseHeaders( 200, -1 );
+                return;
+            }
+
+            exchange.sendResponseHeaders( 200, 0 );
+            OutputStream out = exchange.getResponseBody();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            for ( int i = 0; i < chunk.length; i++ )
+            {
+                chunk[i] = ' ';
+            }
+            for ( int i = 0; i < chunks; i++ )
+            {
+                sleep( millis );
+                out.write( chunk );
+                out.flush();
+            }
+        }
+    }
+}
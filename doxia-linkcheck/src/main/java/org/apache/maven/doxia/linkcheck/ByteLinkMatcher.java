@@ -0,0 +1,442 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Finds the links of a file the same way as the pattern of {@link LinkMatcher}, but on the raw bytes of the file,
+ * for the encodings where the ASCII characters are encoded as single ASCII bytes. Only the links found are
+ * decoded. The files are read into a buffer reused by the thread, which grows up to {@link #MAX_BUFFER}: they are not
+ * memory-mapped, since a mapped file stays locked on Windows until the buffer is garbage collected, which would
+ * prevent the site from being regenerated, i.e. in watch mode.
+ * <p>
+ * The XML comments are skipped, as if they were removed before the matching.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class ByteLinkMatcher
+{
+    /** The initial size of the buffers of the threads. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The largest buffer kept by a thread, the larger files being read into a buffer of their own. */
+    private static final int MAX_BUFFER = 1024 * 1024;
+
+    /** The tags containing links, in the order of the pattern. */
+    private static final byte[][] TAGS = { ascii( "link" ), ascii( "a" ), ascii( "img" ), ascii( "script" ) };
+
+    /** The attributes containing links, in the order of the pattern. */
+    private static final byte[][] ATTRIBUTES = { ascii( "href" ), ascii( "src" ) };
+
+    private static final byte[] COMMENT_START = ascii( "<!--" );
+
+    private static final byte[] COMMENT_END = ascii( "-->" );
+
+    /** The buffers the files are read into. */
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>()
+    {
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocate( BUFFER_SIZE );
+        }
+    };
+
+    private final ByteBuffer bytes;
+
+    private final int length;
+
+    private final Charset charset;
+
+    /** The starts of the comments, sorted. */
+    private int[] commentStarts = new int[8];
+
+    /** The ends of the comments, exclusive. */
+    private int[] commentEnds = new int[8];
+
+    private int comments;
+
+    /** The bytes of the link being decoded. */
+    private byte[] link = new byte[256];
+
+    private ByteLinkMatcher( ByteBuffer bytes, Charset charset )
+    {
+        this.bytes = bytes;
+        this.length = bytes.limit();
+        this.charset = charset;
+    }
+
+    /**
+     * @param encoding an encoding.
+     * @return the charset of the encoding if its ASCII characters are single ASCII bytes and it is supported,
+     * <code>null</code> otherwise.
+     */
+    static Charset getCharset( String encoding )
+    {
+        if ( encoding == null )
+        {
+            return null;
+        }
+
+        Charset charset;
+        try
+        {
+            charset = Charset.forName( encoding );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return null;
+        }
+
+        String name = charset.name();
+        if ( "UTF-8".equals( name ) || "US-ASCII".equals( name ) || name.startsWith( "ISO-8859-" )
+            || name.startsWith( "windows-125" ) )
+        {
+            return charset;
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the links of a file.
+     *
+     * @param file the file.
+     * @param charset a charset returned by {@link #getCharset(String)}.
+     * @param links the set to add the links found to, the same as {@link LinkMatcher#matchChars} would find.
+     * @throws IOException if the file can't be read.
+     */
+    static void match( File file, Charset charset, Set<String> links )
+        throws IOException
+    {
+        FileInputStream in = new FileInputStream( file );
+        ByteBuffer bytes;
+        try
+        {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if ( size > Integer.MAX_VALUE )
+            {
+                throw new IOException( "Too large file: " + file );
+            }
+
+            bytes = BUFFERS.get();
+            if ( size > bytes.capacity() )
+            {
+                bytes = ByteBuffer.allocate( (int) size );
+                if ( size <= MAX_BUFFER )
+                {
+                    BUFFERS.set( bytes );
+                }
+            }
+
+            bytes.clear();
+            while ( bytes.hasRemaining() && channel.read( bytes ) >= 0 )
+            {
+                // read until full or at the end
+            }
+            bytes.flip();
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        new ByteLinkMatcher( bytes, charset ).match( links );
+    }
+
+    private void match( Set<String> links )
+    {
+        findComments();
+
+        int i = skipComments( 0 );
+        while ( i < length )
+        {
+            if ( bytes.get( i ) == '<' )
+            {
+                int end = matchLink( i, links );
+                if ( end != -1 )
+                {
+                    i = end;
+                    continue;
+                }
+            }
+            i = next( i );
+        }
+    }
+
+    /**
+     * Matches <code>&lt;(?&gt;link|a|img|script)[^&gt;]*?(?&gt;href|src)\s*?=\s*?[\"'](.*?)[\"']</code>.
+     *
+     * @param start the position of a <code>&lt;</code>.
+     * @param links the links found.
+     * @return the position following the match, or <code>-1</code>.
+     */
+    private int matchLink( int start, Set<String> links )
+    {
+        int i = next( start );
+        int tagEnd = -1;
+        for ( int t = 0; t < TAGS.length && tagEnd == -1; t++ )
+        {
+            tagEnd = matchWord( i, TAGS[t] );
+        }
+        if ( tagEnd == -1 )
+        {
+            return -1;
+        }
+
+        for ( i = tagEnd; i < length; i = next( i ) )
+        {
+            int end = matchAttribute( i, links );
+            if ( end != -1 )
+            {
+                return end;
+            }
+            if ( bytes.get( i ) == '>' )
+            {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private int matchAttribute( int start, Set<String> links )
+    {
+        int i = -1;
+        for ( int a = 0; a < ATTRIBUTES.length && i == -1; a++ )
+        {
+            i = matchWord( start, ATTRIBUTES[a] );
+        }
+        if ( i == -1 )
+        {
+            return -1;
+        }
+
+        i = skipWhitespaces( i );
+        if ( i >= length || bytes.get( i ) != '=' )
+        {
+            return -1;
+        }
+        i = skipWhitespaces( next( i ) );
+        if ( i >= length || !isQuote( bytes.get( i ) ) )
+        {
+            return -1;
+        }
+
+        int linkLength = 0;
+        for ( i = next( i ); i < length; i = next( i ) )
+        {
+            byte b = bytes.get( i );
+            if ( isQuote( b ) )
+            {
+                String value = new String( link, 0, linkLength, charset );
+                if ( hasLineTerminator( value ) )
+                {
+                    // '.' doesn't match it
+                    return -1;
+                }
+
+                LinkMatcher.addLink( value, links );
+                return next( i );
+            }
+            if ( b == '\n' || b == '\r' )
+            {
+                return -1;
+            }
+
+            if ( linkLength == link.length )
+            {
+                link = Arrays.copyOf( link, linkLength * 2 );
+            }
+            link[linkLength++] = b;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param start a position.
+     * @param word a lower case ASCII word.
+     * @return the position following the word if it is found at the given position ignoring case, or
+     * <code>-1</code>.
+     */
+    private int matchWord( int start, byte[] word )
+    {
+        int i = start;
+        for ( int w = 0; w < word.length; w++ )
+        {
+            if ( i >= length )
+            {
+                return -1;
+            }
+
+            int b = bytes.get( i );
+            if ( b >= 'A' && b <= 'Z' )
+            {
+                b += 'a' - 'A';
+            }
+            if ( b != word[w] )
+            {
+                return -1;
+            }
+            i = next( i );
+        }
+
+        return i;
+    }
+
+    private int skipWhitespaces( int start )
+    {
+        int i = start;
+        while ( i < length )
+        {
+            byte b = bytes.get( i );
+            if ( b != ' ' && b != '\t' && b != '\n' && b != 0x0B && b != '\f' && b != '\r' )
+            {
+                break;
+            }
+            i = next( i );
+        }
+
+        return i;
+    }
+
+    /**
+     * @param i a position outside of the comments.
+     * @return the next position outside of the comments.
+     */
+    private int next( int i )
+    {
+        return skipComments( i + 1 );
+    }
+
+    private int skipComments( int start )
+    {
+        int i = start;
+        while ( comments > 0 && i < length && bytes.get( i ) == '<' )
+        {
+            int c = Arrays.binarySearch( commentStarts, 0, comments, i );
+            if ( c < 0 )
+            {
+                break;
+            }
+            i = commentEnds[c];
+        }
+
+        return i;
+    }
+
+    /**
+     * Finds the comments the same way as <code>(?s)&lt;!--.*?--&gt;</code>.
+     */
+    private void findComments()
+    {
+        int i = indexOf( COMMENT_START, 0 );
+        while ( i != -1 )
+        {
+            int end = indexOf( COMMENT_END, i + COMMENT_START.length );
+            if ( end == -1 )
+            {
+                return;
+            }
+
+            if ( comments == commentStarts.length )
+            {
+                commentStarts = Arrays.copyOf( commentStarts, comments * 2 );
+                commentEnds = Arrays.copyOf( commentEnds, comments * 2 );
+            }
+            commentStarts[comments] = i;
+            commentEnds[comments] = end + COMMENT_END.length;
+            comments++;
+
+            i = indexOf( COMMENT_START, end + COMMENT_END.length );
+        }
+    }
+
+    private int indexOf( byte[] sequence, int start )
+    {
+        int last = length - sequence.length;
+        for ( int i = start; i <= last; i++ )
+        {
+            if ( bytes.get( i ) != sequence[0] )
+            {
+                continue;
+            }
+
+            int s = 1;
+            while ( s < sequence.length && bytes.get( i + s ) == sequence[s] )
+            {
+                s++;
+            }
+            if ( s == sequence.length )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isQuote( byte b )
+    {
+        return b == '"' || b == '\'';
+    }
+
+    /**
+     * @param s a string.
+     * @return <code>true</code> if the string contains a line terminator of <code>java.util.regex</code>, the
+     * ASCII ones excepted.
+     */
+    private static boolean hasLineTerminator( String s )
+    {
+        for ( int i = 0; i < s.length(); i++ )
+        {
+            char c = s.charAt( i );
+            if ( c == '\u0085' || c == '\u2028' || c == '\u2029' )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static byte[] ascii( String s )
+    {
+        byte[] b = new byte[s.length()];
+        for ( int i = 0; i < b.length; i++ )
+        {
+            b[i] = (byte) s.charAt( i );
+        }
+
+        return b;
+    }
+}
@@ -24,10 +24,21 @@ import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,14 +47,27 @@ import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
 import org.apache.maven.doxia.linkcheck.model.io.xpp3.LinkcheckModelXpp3Writer;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitor;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitors;
+import org.apache.maven.doxia.linkcheck.report.ReportFormat;
+import org.apache.maven.doxia.linkcheck.report.ReportWriter;
+import org.apache.maven.doxia.linkcheck.report.StringPool;
+import org.apache.maven.doxia.linkcheck.site.ArchiveSiteSource;
+import org.apache.maven.doxia.linkcheck.site.DirectorySiteSource;
+import org.apache.maven.doxia.linkcheck.site.SiteSource;
+import org.apache.maven.doxia.linkcheck.validation.DiskValidationCache;
 import org.apache.maven.doxia.linkcheck.validation.FileLinkValidator;
 import org.apache.maven.doxia.linkcheck.validation.HTTPLinkValidationResult;
 import org.apache.maven.doxia.linkcheck.validation.LinkValidationItem;
 import org.apache.maven.doxia.linkcheck.validation.LinkValidationResult;
+import org.apache.maven.doxia.linkcheck.validation.LinkValidator;
 import org.apache.maven.doxia.linkcheck.validation.LinkValidatorManager;
 import org.apache.maven.doxia.linkcheck.validation.MailtoLinkValidator;
 import org.apache.maven.doxia.linkcheck.validation.OfflineHTTPLinkValidator;
 import org.apache.maven.doxia.linkcheck.validation.OnlineHTTPLinkValidator;
+import org.apache.maven.doxia.linkcheck.validation.SharedValidationCache;
+import org.apache.maven.doxia.linkcheck.validation.SiteIndex;
+import org.apache.maven.doxia.linkcheck.validation.ValidationScheduler;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.util.FileUtils;
@@ -74,9 +98,18 @@ public final class DefaultLinkCheck
     /** The basedir to check. */
     private File basedir;
 
+    /** The source of the files to check, null to use the basedir. */
+    private SiteSource siteSource;
+
+    /** The archive opened for the current check when the basedir is an archive, null otherwise. */
+    private ArchiveSiteSource archiveSource;
+
     /** Linkcheck Cache. */
     private File linkCheckCache;
 
+    /** Share the validation results with the other checks using the same cache file. */
+    private boolean sharedCache;
+
     /**
      * To exclude some links. Could contains a link, i.e. <code>http:&#47;&#47;maven.apache.org</code>,
      * or pattern links i.e. <code>http:&#47;&#47;maven.apache.org&#47;**&#47;*.html</code>
@@ -115,12 +148,63 @@ public final class DefaultLinkCheck
     /** Report output encoding for the xml document, UTF-8 by default. */
     private String reportOutputEncoding = "UTF-8";
 
+    /** Report output format, XML by default. */
+    private ReportFormat reportFormat = ReportFormat.XML;
+
     /** The base URL for links that start with '/'. */
     private String baseURL;
 
     /** The encoding used to process files, UTF-8 by default. */
     private String encoding = ReaderFactory.UTF_8;
 
+    /** Large site mode. */
+    private boolean largeSite;
+
+    /** Shares the equal link targets and error messages of the results kept in the model. */
+    private StringPool strings = new StringPool();
+
+    /** The index of the site files, null to use the file system. */
+    private SiteIndex siteIndex;
+
+    /** The report writer in large site mode, null if there is no report output. */
+    private ReportWriter reportWriter;
+
+    /** The number of files checked so far. */
+    private int checkedFiles;
+
+    /** The maximum number of errors before the check is terminated, 0 for no limit. */
+    private int maxErrors;
+
+    /** The maximum duration of the check in milliseconds, 0 for no limit. */
+    private long maxDuration;
+
+    /** Check the local links of all files before the external ones. */
+    private boolean internalLinksFirst;
+
+    /** The number of threads checking the links through the network, 0 to check all the links sequentially. */
+    private int threads;
+
+    /** The pages to crawl the site from, relative to the base directory, null to check all the pages. */
+    private String[] entryPages;
+
+    /** Whether the pages not reached from the entry pages are listed in the model. */
+    private boolean listOrphans;
+
+    /** The crawler of the pages, while executing from entry pages. */
+    private PageCrawler crawler;
+
+    /** Whether the error budget applies, only while executing. */
+    private boolean budgetActive;
+
+    /** The number of errors found so far. */
+    private int errors;
+
+    /** The time the check has to be terminated at, in milliseconds. */
+    private long deadline;
+
+    /** Why the check was terminated early, null if it wasn't. */
+    private volatile String terminationReason;
+
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
@@ -131,6 +215,14 @@ public final class DefaultLinkCheck
         this.basedir = base;
     }
 
+    /** {@inheritDoc} */
+    public void setSiteSource( SiteSource source )
+    {
+        this.siteSource = source;
+
+        setValidatorSiteSource( source );
+    }
+
     /** {@inheritDoc} */
     public void setBaseURL( String url )
     {
@@ -167,12 +259,60 @@ public final class DefaultLinkCheck
         this.http = http;
     }
 
+    /** {@inheritDoc} */
+    public void setLargeSite( boolean largeSite )
+    {
+        this.largeSite = largeSite;
+    }
+
     /** {@inheritDoc} */
     public void setLinkCheckCache( File cacheFile )
     {
         this.linkCheckCache = cacheFile;
     }
 
+    /** {@inheritDoc} */
+    public void setSharedCache( boolean sharedCache )
+    {
+        this.sharedCache = sharedCache;
+    }
+
+    /** {@inheritDoc} */
+    public void setMaxErrors( int maxErrors )
+    {
+        this.maxErrors = maxErrors;
+    }
+
+    /** {@inheritDoc} */
+    public void setMaxDuration( long maxDuration )
+    {
+        this.maxDuration = maxDuration;
+    }
+
+    /** {@inheritDoc} */
+    public void setInternalLinksFirst( boolean internalLinksFirst )
+    {
+        this.internalLinksFirst = internalLinksFirst;
+    }
+
+    /** {@inheritDoc} */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    /** {@inheritDoc} */
+    public void setEntryPages( String[] entryPages )
+    {
+        this.entryPages = entryPages;
+    }
+
+    /** {@inheritDoc} */
+    public void setListOrphans( boolean listOrphans )
+    {
+        this.listOrphans = listOrphans;
+    }
+
     /** {@inheritDoc} */
     public void setOnline( boolean onLine )
     {
@@ -191,11 +331,17 @@ public final class DefaultLinkCheck
         this.reportOutputEncoding = encoding;
     }
 
+    /** {@inheritDoc} */
+    public void setReportFormat( String format )
+    {
+        this.reportFormat = ReportFormat.forName( format );
+    }
+
     /** {@inheritDoc} */
     public LinkcheckModel execute()
         throws LinkCheckException
     {
-        if ( this.basedir == null )
+        if ( this.basedir == null && this.siteSource == null )
         {
             LOG.error( "No base directory specified!" );
 
@@ -207,85 +353,288 @@ public final class DefaultLinkCheck
             LOG.warn( "No output file specified! Results will not be written!" );
         }
 
+        if ( largeSite && internalLinksFirst )
+        {
+            // the checked files are kept in memory until all the local links are checked
+            throw new IllegalStateException( "The local links can't be checked first in large site mode." );
+        }
+
         LinkcheckModel model = new LinkcheckModel();
         model.setModelEncoding( reportOutputEncoding );
         model.setFiles( new LinkedList<LinkcheckFile>() );
 
+        strings = new StringPool();
+        checkedFiles = 0;
+
         displayMemoryConsumption();
 
         LinkValidatorManager validator = getLinkValidatorManager();
+
+        File cacheDirectory = null;
+        DiskValidationCache diskCache = null;
+        boolean shared = false;
+        validator.setSharedCacheFile( sharedCache );
         try
         {
-            validator.loadCache( this.linkCheckCache );
+            if ( this.siteSource == null && ArchiveSiteSource.isArchive( this.basedir ) )
+            {
+                archiveSource = new ArchiveSiteSource( this.basedir );
+                setValidatorSiteSource( archiveSource );
+            }
+
+            if ( largeSite )
+            {
+                cacheDirectory = File.createTempFile( "linkcheck", ".cache" );
+                cacheDirectory.delete();
+                cacheDirectory.mkdirs();
+                diskCache = new DiskValidationCache( cacheDirectory );
+                validator.setCache( diskCache );
+
+                startReport();
+            }
+            else if ( sharedCache && this.linkCheckCache != null )
+            {
+                validator.setCache( SharedValidationCache.getCache( this.linkCheckCache ) );
+                shared = true;
+            }
+
+            execute( model, validator );
         }
         catch ( IOException e )
         {
-            throw new LinkCheckException( "Could not load cache: " + e.getMessage(), e );
+            throw new LinkCheckException( "Could not set up the check: " + e.getMessage(), e );
         }
+        finally
+        {
+            if ( archiveSource != null )
+            {
+                setValidatorSiteSource( null );
+                closeQuietly( archiveSource );
+                archiveSource = null;
+            }
 
-        displayMemoryConsumption();
+            if ( reportWriter != null )
+            {
+                // the check failed
+                closeQuietly( reportWriter );
+                reportWriter = null;
+            }
 
-        LOG.info( "Begin to check links in files..." );
+            if ( diskCache != null )
+            {
+                validator.setCache( new HashMap<Object, LinkValidationResult>() );
+                closeQuietly( diskCache );
+                cacheDirectory.delete();
+            }
+
+            if ( shared )
+            {
+                // the local file results only make sense for this check
+                validator.removeNonPersistentResults();
+                validator.setCache( new HashMap<Object, LinkValidationResult>() );
+            }
+        }
+
+        return model;
+    }
 
+    /** {@inheritDoc} */
+    public void setEncoding( String encoding )
+    {
+        if ( StringUtils.isEmpty( encoding ) )
+        {
+            throw new IllegalArgumentException( "encoding is required" );
+        }
         try
         {
-            findAndCheckFiles( this.basedir, model );
+            Charset.forName( encoding );
         }
-        catch ( IOException e )
+        catch ( UnsupportedCharsetException e )
         {
-            throw new LinkCheckException( "Could not scan base directory: " + basedir.getAbsolutePath(), e );
+            throw new IllegalArgumentException( "encoding '" + encoding + "' is unsupported" );
         }
 
-        LOG.info( "Links checked." );
+        this.encoding = encoding;
+    }
 
-        displayMemoryConsumption();
+    // ----------------------------------------------------------------------
+    // Package methods, used by LinkcheckWatcher
+    // ----------------------------------------------------------------------
+
+    /**
+     * @return the base directory to check, the one of the site source if set.
+     */
+    File getBasedir()
+    {
+        return getSiteSource().getBasedir();
+    }
+
+    /**
+     * @return the source of the files to check, a directory source on the basedir if no site source is set.
+     */
+    SiteSource getSiteSource()
+    {
+        if ( this.siteSource != null )
+        {
+            return this.siteSource;
+        }
+
+        return ( this.archiveSource != null ? this.archiveSource : new DirectorySiteSource( this.basedir ) );
+    }
+
+    /**
+     * @return <code>true</code> in large site mode.
+     */
+    boolean isLargeSite()
+    {
+        return this.largeSite;
+    }
 
+    /**
+     * @return the encoding used to process files.
+     */
+    String getEncoding()
+    {
+        return this.encoding;
+    }
+
+    /**
+     * Saves the validation cache, if a cache file is set.
+     *
+     * @throws IOException if any
+     */
+    void saveCache()
+        throws IOException
+    {
+        if ( this.linkCheckCache != null )
+        {
+            getLinkValidatorManager().saveCache( this.linkCheckCache );
+        }
+    }
+
+    /**
+     * Sets the index used to validate the local links, instead of the file system.
+     *
+     * @param index the index, or null to use the file system.
+     */
+    void setSiteIndex( SiteIndex index )
+    {
+        this.siteIndex = index;
+
+        if ( this.lvm != null )
+        {
+            for ( LinkValidator lv : this.lvm.getValidators() )
+            {
+                if ( lv instanceof FileLinkValidator )
+                {
+                    ( (FileLinkValidator) lv ).setSiteIndex( index );
+                }
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * Checks the files and writes the report and the cache.
+     *
+     * @param model the model to fill.
+     * @param validator the validator to use.
+     * @throws LinkCheckException if any
+     */
+    private void execute( LinkcheckModel model, LinkValidatorManager validator )
+        throws LinkCheckException
+    {
         try
         {
-            createDocument( model );
+            validator.loadCache( this.linkCheckCache );
         }
         catch ( IOException e )
         {
-            throw new LinkCheckException( "Could not write the linkcheck document: " + e.getMessage(), e );
+            throw new LinkCheckException( "Could not load cache: " + e.getMessage(), e );
         }
 
+        displayMemoryConsumption();
+
+        LOG.info( "Begin to check links in files..." );
+
+        errors = 0;
+        terminationReason = null;
+        deadline = ( maxDuration > 0 ? System.currentTimeMillis() + maxDuration : Long.MAX_VALUE );
+        budgetActive = true;
+        setValidatorDeadline( validator, deadline );
         try
         {
-            validator.saveCache( this.linkCheckCache );
+            findAndCheckFiles( getSiteSource(), model );
+
+            if ( crawler != null && listOrphans && terminationReason == null )
+            {
+                addOrphans( crawler.getOrphans(), model );
+                if ( reportWriter != null )
+                {
+                    reportWriter.setOrphans( model.getOrphans() );
+                }
+            }
         }
         catch ( IOException e )
         {
-            throw new LinkCheckException( "Could not save cache: " + e.getMessage(), e );
+            throw new LinkCheckException( "Could not scan base directory: " + getBasedir().getAbsolutePath(), e );
+        }
+        finally
+        {
+            budgetActive = false;
+            crawler = null;
+            setValidatorDeadline( validator, Long.MAX_VALUE );
         }
 
-        displayMemoryConsumption();
+        if ( terminationReason != null )
+        {
+            LOG.warn( "Links partially checked: " + terminationReason );
 
-        return model;
-    }
+            model.setPartial( true );
+            model.setTerminationReason( terminationReason );
+            if ( reportWriter != null )
+            {
+                reportWriter.setPartial( terminationReason );
+            }
+        }
+        else
+        {
+            LOG.info( "Links checked." );
+        }
 
-    /** {@inheritDoc} */
-    public void setEncoding( String encoding )
-    {
-        if ( StringUtils.isEmpty( encoding ) )
+        displayMemoryConsumption();
+
+        try
         {
-            throw new IllegalArgumentException( "encoding is required" );
+            if ( largeSite )
+            {
+                endReport();
+            }
+            else
+            {
+                createDocument( model );
+            }
         }
+        catch ( IOException e )
+        {
+            throw new LinkCheckException( "Could not write the linkcheck document: " + e.getMessage(), e );
+        }
+
         try
         {
-            Charset.forName( encoding );
+            validator.saveCache( this.linkCheckCache );
         }
-        catch ( UnsupportedCharsetException e )
+        catch ( IOException e )
         {
-            throw new IllegalArgumentException( "encoding '" + encoding + "' is unsupported" );
+            throw new LinkCheckException( "Could not save cache: " + e.getMessage(), e );
         }
 
-        this.encoding = encoding;
+        displayMemoryConsumption();
     }
 
-    // ----------------------------------------------------------------------
-    // Private methods
-    // ----------------------------------------------------------------------
-
     /**
      * Whether links are checked in online mode.
      *
@@ -313,7 +662,7 @@ public final class DefaultLinkCheck
      *
      * @return The comma separated list of effective exclude patterns, never <code>null</code>.
      */
-    private String getExcludedPages()
+    String getExcludedPages()
     {
         @SuppressWarnings( "unchecked" )
         LinkedList<String> patternList = new LinkedList<String>( FileUtils.getDefaultExcludesAsList() );
@@ -331,7 +680,7 @@ public final class DefaultLinkCheck
      *
      * @return The comma separated list of effective include patterns, never <code>null</code>.
      */
-    private String getIncludedPages()
+    String getIncludedPages()
     {
         return "**/*.html,**/*.htm";
     }
@@ -365,7 +714,7 @@ public final class DefaultLinkCheck
      *
      * @return the LinkValidatorManager
      */
-    private LinkValidatorManager getLinkValidatorManager()
+    LinkValidatorManager getLinkValidatorManager()
     {
         if ( this.lvm == null )
         {
@@ -387,7 +736,10 @@ public final class DefaultLinkCheck
             this.lvm.setExcludedLinks( getExcludedLinks() );
         }
 
-        this.lvm.addLinkValidator( new FileLinkValidator( encoding ) );
+        FileLinkValidator flv = new FileLinkValidator( encoding );
+        flv.setSiteIndex( siteIndex );
+        flv.setSiteSource( siteSource );
+        this.lvm.addLinkValidator( flv );
 
         if ( isOnline() )
         {
@@ -409,72 +761,467 @@ public final class DefaultLinkCheck
     }
 
     /**
-     * Recurses through the given base directory and adds/checks
+     * Recurses through the given site source and adds/checks
      * files to the model that pass through the current filter.
      *
-     * @param base the base directory to traverse.
+     * @param source the site source to traverse.
      */
-    @SuppressWarnings( "unchecked" )
-    private void findAndCheckFiles( File base, LinkcheckModel model )
+    private void findAndCheckFiles( SiteSource source, LinkcheckModel model )
         throws IOException
     {
-        for ( File file : (List<File>) FileUtils.getFiles( base, getIncludedPages(), getExcludedPages() ) )
+        if ( threads > 0 )
         {
-            checkFile( file, model );
+            scheduleAndCheckFiles( source, model );
+
+            return;
         }
-    }
 
-    private void checkFile( File file, LinkcheckModel model )
-    {
-        if ( LOG.isDebugEnabled() )
+        if ( !internalLinksFirst )
         {
-            LOG.debug( " File - " + file );
+            for ( File file : getPages( source ) )
+            {
+                if ( isTerminated() )
+                {
+                    break;
+                }
+
+                addFile( checkFile( file ), model );
+            }
+
+            return;
         }
 
-        String fileRelativePath = file.getAbsolutePath();
+        // the local links of all files first, then the external links, the files are kept until then so that
+        // they are added in the same order
+        List<LinkcheckFile> pendingFiles = new LinkedList<LinkcheckFile>();
+        List<List<String>> pendingLinks = new LinkedList<List<String>>();
 
-        if ( fileRelativePath.startsWith( this.basedir.getAbsolutePath() ) )
+        for ( File file : getPages( source ) )
         {
-            fileRelativePath = fileRelativePath.substring( this.basedir.getAbsolutePath().length() + 1 );
+            if ( isTerminated() )
+            {
+                break;
+            }
+
+            LinkcheckFile linkcheckFile = newLinkcheckFile( file );
+            List<String> externalLinks = new ArrayList<String>();
+            check( linkcheckFile, externalLinks );
+
+            pendingFiles.add( linkcheckFile );
+            pendingLinks.add( externalLinks );
         }
 
-        fileRelativePath = fileRelativePath.replace( '\\', '/' );
+        Iterator<List<String>> links = pendingLinks.iterator();
+        for ( LinkcheckFile linkcheckFile : pendingFiles )
+        {
+            List<String> externalLinks = links.next();
+            if ( externalLinks.isEmpty() )
+            {
+                addFile( linkcheckFile, model );
+                continue;
+            }
 
-        LinkcheckFile linkcheckFile = new LinkcheckFile();
-        linkcheckFile.setAbsolutePath( file.getAbsolutePath() );
-        linkcheckFile.setRelativePath( fileRelativePath );
+            for ( String href : externalLinks )
+            {
+                if ( isTerminated() )
+                {
+                    break;
+                }
 
-        check( linkcheckFile );
+                validate( linkcheckFile, new File( linkcheckFile.getAbsolutePath() ), href );
+            }
 
-        model.addFile( linkcheckFile );
+            // in the order of the links, as when they are all checked at once
+            Collections.sort( linkcheckFile.getResults(), new Comparator<LinkcheckFileResult>()
+            {
+                public int compare( LinkcheckFileResult r1, LinkcheckFileResult r2 )
+                {
+                    return r1.getTarget().compareTo( r2.getTarget() );
+                }
+            } );
 
-        if ( ( model.getFiles().size() % 100 == 0 ) && LOG.isInfoEnabled() )
-        {
-            LOG.info( "Found " + model.getFiles().size() + " files so far." );
+            addFile( linkcheckFile, model );
         }
     }
 
     /**
-     * Validates a linkcheck file.
+     * Returns the pages to check: all the pages of the site source, or the pages reached from the entry pages if
+     * set, through a new {@link PageCrawler} following the links of each page when it is scanned.
      *
-     * @param linkcheckFile the linkcheckFile object to validate
+     * @param source the site source.
+     * @return the pages to check.
+     * @throws IOException if the pages of the site source can't be listed.
      */
-    private void check( LinkcheckFile linkcheckFile )
+    private Iterable<File> getPages( SiteSource source )
+        throws IOException
     {
-        linkcheckFile.setSuccessful( 0 );
-
-        linkcheckFile.setUnsuccessful( 0 );
-
-        if ( LOG.isDebugEnabled() )
+        List<File> pages = source.getFiles( getIncludedPages(), getExcludedPages() );
+        if ( entryPages == null )
         {
-            LOG.debug( "Validating " + linkcheckFile.getRelativePath() );
+            return pages;
         }
 
-        final Set<String> hrefs;
+        crawler = new PageCrawler( pages );
+        for ( String entryPage : entryPages )
+        {
+            if ( !crawler.addEntryPage( new File( source.getBasedir(), entryPage ) ) )
+            {
+                LOG.warn( "The entry page " + entryPage + " is not one of the pages to check, ignoring it." );
+            }
+        }
+
+        return crawler;
+    }
+
+    /**
+     * Adds the pages not reached from the entry pages to the model.
+     *
+     * @param orphans the pages.
+     * @param model the model.
+     */
+    private void addOrphans( List<File> orphans, LinkcheckModel model )
+    {
+        if ( !orphans.isEmpty() && LOG.isInfoEnabled() )
+        {
+            LOG.info( orphans.size() + " pages can't be reached from the entry pages." );
+        }
+
+        for ( File orphan : orphans )
+        {
+            model.addOrphan( newLinkcheckFile( orphan ).getRelativePath() );
+        }
+    }
+
+    /**
+     * Checks the files of the given site source with a {@link ValidationScheduler}: the links of each file are
+     * submitted as soon as the file is scanned, and the files are added in order, once all their links are
+     * validated. The local links of all files are validated first, as the links checked through the network are
+     * queued separately.
+     *
+     * @param source the site source to traverse.
+     * @param model the model.
+     * @throws IOException if the report can't be written.
+     */
+    private void scheduleAndCheckFiles( SiteSource source, LinkcheckModel model )
+        throws IOException
+    {
+        ValidationScheduler scheduler = new ValidationScheduler( lvm, threads );
 
+        LinkedList<LinkcheckFile> pendingFiles = new LinkedList<LinkcheckFile>();
+        LinkedList<List<String>> pendingLinks = new LinkedList<List<String>>();
+        LinkedList<List<Future<LinkValidationResult>>> pendingResults =
+            new LinkedList<List<Future<LinkValidationResult>>>();
         try
         {
-            hrefs = LinkMatcher.match( new File( linkcheckFile.getAbsolutePath() ), encoding );
+            for ( File file : getPages( source ) )
+            {
+                if ( isTerminated() )
+                {
+                    break;
+                }
+
+                LinkcheckFile linkcheckFile = newLinkcheckFile( file );
+                Set<String> hrefs = scan( linkcheckFile );
+
+                // the links are kept until the file is added, the set of the matcher is reused for the next file
+                List<String> links = new ArrayList<String>();
+                List<Future<LinkValidationResult>> results = new ArrayList<Future<LinkValidationResult>>();
+                if ( hrefs != null )
+                {
+                    for ( String href : hrefs )
+                    {
+                        links.add( href );
+                        results.add( scheduler.submit( new LinkValidationItem( file, href ) ) );
+                    }
+                }
+
+                pendingFiles.add( linkcheckFile );
+                pendingLinks.add( links );
+                pendingResults.add( results );
+
+                // the files already validated
+                while ( !pendingFiles.isEmpty() && isDone( pendingResults.getFirst() ) )
+                {
+                    addResults( pendingFiles.removeFirst(), pendingLinks.removeFirst(),
+                                pendingResults.removeFirst(), model );
+                }
+            }
+
+            while ( !pendingFiles.isEmpty() )
+            {
+                addResults( pendingFiles.removeFirst(), pendingLinks.removeFirst(), pendingResults.removeFirst(),
+                            model );
+            }
+        }
+        finally
+        {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Adds the results of the links of a file, once validated, and adds the file.
+     *
+     * @param linkcheckFile the file.
+     * @param links its links.
+     * @param results the future results of its links.
+     * @param model the model.
+     * @throws IOException if the report can't be written.
+     */
+    private void addResults( LinkcheckFile linkcheckFile, List<String> links,
+                             List<Future<LinkValidationResult>> results, LinkcheckModel model )
+        throws IOException
+    {
+        Iterator<Future<LinkValidationResult>> it = results.iterator();
+        for ( String href : links )
+        {
+            LinkValidationResult result = getResult( it.next() );
+            if ( result != null )
+            {
+                addResult( linkcheckFile, href, result );
+            }
+        }
+
+        addFile( linkcheckFile, model );
+    }
+
+    /**
+     * Waits for the result of a validation, until the check is terminated.
+     *
+     * @param future the future result.
+     * @return the result, a {@link LinkValidationResult#TIMED_OUT} error if the maximum duration is reached while
+     * waiting, or null if the check is terminated.
+     */
+    private LinkValidationResult getResult( Future<LinkValidationResult> future )
+    {
+        if ( isTerminated() )
+        {
+            return null;
+        }
+
+        try
+        {
+            if ( deadline == Long.MAX_VALUE )
+            {
+                return future.get();
+            }
+
+            return future.get( Math.max( deadline - System.currentTimeMillis(), 1 ), TimeUnit.MILLISECONDS );
+        }
+        catch ( TimeoutException e )
+        {
+            isTerminated();
+
+            // aborted by the validator at the same deadline
+            return new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, LinkValidationResult.TIMED_OUT );
+        }
+        catch ( CancellationException e )
+        {
+            return null;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            if ( terminationReason == null )
+            {
+                terminationReason = "The check has been interrupted.";
+            }
+
+            return null;
+        }
+        catch ( ExecutionException e )
+        {
+            LOG.debug( e.getMessage(), e.getCause() );
+
+            return new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false,
+                                             String.valueOf( e.getCause() ) );
+        }
+    }
+
+    private static boolean isDone( List<Future<LinkValidationResult>> results )
+    {
+        for ( Future<LinkValidationResult> result : results )
+        {
+            if ( !result.isDone() )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a checked file to the model, or to the report in large site mode.
+     *
+     * @param linkcheckFile the checked file.
+     * @param model the model.
+     * @throws IOException if the report can't be written.
+     */
+    private void addFile( LinkcheckFile linkcheckFile, LinkcheckModel model )
+        throws IOException
+    {
+        if ( largeSite )
+        {
+            if ( reportWriter != null )
+            {
+                reportWriter.writeFile( linkcheckFile );
+            }
+
+            if ( linkcheckFile.getUnsuccessful() > 0 )
+            {
+                removeValidResults( linkcheckFile );
+                model.addFile( linkcheckFile );
+            }
+        }
+        else
+        {
+            model.addFile( linkcheckFile );
+        }
+
+        checkedFiles++;
+        if ( ( checkedFiles % 100 == 0 ) && LOG.isInfoEnabled() )
+        {
+            LOG.info( "Found " + checkedFiles + " files so far." );
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the check has to be terminated, i.e. the maximum number of errors or the maximum
+     * duration has been reached.
+     */
+    private boolean isTerminated()
+    {
+        if ( !budgetActive )
+        {
+            return false;
+        }
+
+        if ( terminationReason == null && System.currentTimeMillis() > deadline )
+        {
+            terminationReason = "The maximum duration of " + maxDuration + " ms has been reached.";
+        }
+
+        return terminationReason != null;
+    }
+
+    /**
+     * @param href a link.
+     * @return <code>true</code> if the link is checked through the network, in online mode.
+     */
+    private static boolean isExternal( String href )
+    {
+        String lowerCaseHref = href.toLowerCase( Locale.ENGLISH );
+
+        return lowerCaseHref.startsWith( "http://" ) || lowerCaseHref.startsWith( "https://" )
+            || href.startsWith( "/" );
+    }
+
+    /**
+     * Checks the links of a file.
+     *
+     * @param file the file to check.
+     * @return the checked file.
+     */
+    LinkcheckFile checkFile( File file )
+    {
+        LinkcheckFile linkcheckFile = newLinkcheckFile( file );
+
+        check( linkcheckFile, null );
+
+        return linkcheckFile;
+    }
+
+    /**
+     * @param file a file to check.
+     * @return a new linkcheck file, without results.
+     */
+    private LinkcheckFile newLinkcheckFile( File file )
+    {
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( " File - " + file );
+        }
+
+        String fileRelativePath = file.getAbsolutePath();
+        String basePath = getBasedir().getAbsolutePath();
+        if ( !basePath.endsWith( File.separator ) )
+        {
+            basePath += File.separator;
+        }
+
+        if ( fileRelativePath.startsWith( basePath ) )
+        {
+            fileRelativePath = fileRelativePath.substring( basePath.length() );
+        }
+
+        fileRelativePath = fileRelativePath.replace( '\\', '/' );
+
+        LinkcheckFile linkcheckFile = new LinkcheckFile();
+        linkcheckFile.setAbsolutePath( file.getAbsolutePath() );
+        linkcheckFile.setRelativePath( fileRelativePath );
+
+        return linkcheckFile;
+    }
+
+    /**
+     * Validates a linkcheck file.
+     *
+     * @param linkcheckFile the linkcheckFile object to validate
+     * @param externalLinks where to add the external links instead of validating them, null to validate them.
+     */
+    private void check( LinkcheckFile linkcheckFile, List<String> externalLinks )
+    {
+        Set<String> hrefs = scan( linkcheckFile );
+        if ( hrefs == null )
+        {
+            return;
+        }
+
+        final File file = new File( linkcheckFile.getAbsolutePath() );
+
+        for ( String href : hrefs )
+        {
+            if ( externalLinks != null && isExternal( href ) )
+            {
+                externalLinks.add( href );
+            }
+            else if ( !isTerminated() )
+            {
+                validate( linkcheckFile, file, href );
+            }
+        }
+    }
+
+    /**
+     * Finds the links of a linkcheck file.
+     *
+     * @param linkcheckFile the linkcheckFile object to scan
+     * @return the links of the file, or null if the file can't be parsed, in which case a failure is added to it.
+     */
+    private Set<String> scan( LinkcheckFile linkcheckFile )
+    {
+        linkcheckFile.setSuccessful( 0 );
+
+        linkcheckFile.setUnsuccessful( 0 );
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( "Validating " + linkcheckFile.getRelativePath() );
+        }
+
+        final Set<String> hrefs;
+
+        final SiteSource source = getSiteSource();
+        final File file = new File( linkcheckFile.getAbsolutePath() );
+
+        LinkcheckMonitor monitor = LinkcheckMonitors.getMonitor();
+        Object scan = ( monitor.isEnabled() ? monitor.beginPageScan() : null );
+
+        try
+        {
+            hrefs = LinkMatcher.match( source, file, encoding );
         }
         catch ( Throwable t )
         {
@@ -492,99 +1239,181 @@ public final class DefaultLinkCheck
 
             linkcheckFile.addResult( lcr );
 
-            return;
+            return null;
+        }
+
+        if ( scan != null )
+        {
+            monitor.pageScanned( scan, linkcheckFile.getRelativePath(), source.getLength( file ), hrefs.size() );
+        }
+
+        preResolve( file, hrefs );
+
+        if ( crawler != null )
+        {
+            crawler.addLinks( file, hrefs );
         }
 
-        LinkcheckFileResult lcr;
-        LinkValidationItem lvi;
-        LinkValidationResult result;
+        return hrefs;
+    }
 
+    /**
+     * Resolves in advance the hosts of the external links of a file, neither excluded nor cached, in online mode.
+     *
+     * @param file the scanned file.
+     * @param hrefs the links of the file.
+     */
+    private void preResolve( File file, Set<String> hrefs )
+    {
+        if ( !isOnline() )
+        {
+            return;
+        }
+
+        List<String> links = new ArrayList<String>();
         for ( String href : hrefs )
         {
-            lcr = new LinkcheckFileResult();
-            lvi = new LinkValidationItem( new File( linkcheckFile.getAbsolutePath() ), href );
-            result = lvm.validateLink( lvi );
-            lcr.setTarget( href );
-            lcr.setErrorMessage( result.getErrorMessage() );
+            if ( isExternal( href ) && !lvm.isExcluded( href )
+                && lvm.getCachedResult( new LinkValidationItem( file, href ) ) == null )
+            {
+                links.add( href );
+            }
+        }
+
+        if ( links.isEmpty() )
+        {
+            return;
+        }
 
-            switch ( result.getStatus() )
+        for ( LinkValidator lv : lvm.getValidators() )
+        {
+            if ( lv instanceof OnlineHTTPLinkValidator )
             {
-                case LinkcheckFileResult.VALID_LEVEL:
-                    linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
+                ( (OnlineHTTPLinkValidator) lv ).preResolve( links );
+            }
+        }
+    }
 
-                    lcr.setStatus( LinkcheckFileResult.VALID );
+    /**
+     * Validates a link of a linkcheck file and adds the result to it.
+     *
+     * @param linkcheckFile the linkcheckFile object to validate
+     * @param file the file of the linkcheck file
+     * @param href the link to validate
+     */
+    private void validate( LinkcheckFile linkcheckFile, File file, String href )
+    {
+        LinkValidationItem lvi = new LinkValidationItem( file, href );
 
-                    // At some point we won't want to store valid links. The tests require that we do at present.
-                    linkcheckFile.addResult( lcr );
+        addResult( linkcheckFile, href, lvm.validateLink( lvi ) );
+    }
 
-                    break;
-                case LinkcheckFileResult.ERROR_LEVEL:
-                    boolean ignoredError = false;
-                    if ( result instanceof HTTPLinkValidationResult )
-                    {
-                        HTTPLinkValidationResult httpResult = (HTTPLinkValidationResult) result;
-
-                        if ( httpResult.getHttpStatusCode() > 0
-                            && getExcludedHttpStatusErrors() != null
-                            && StringUtils.indexOfAny( String.valueOf( httpResult.getHttpStatusCode() ),
-                                                       toStringArray( getExcludedHttpStatusErrors() ) ) >= 0 )
-                        {
-                            ignoredError = true;
-                        }
-                    }
+    /**
+     * Adds the result of a link to a linkcheck file.
+     *
+     * @param linkcheckFile the linkcheckFile object validated
+     * @param href the validated link
+     * @param result the result of the validation
+     */
+    private void addResult( LinkcheckFile linkcheckFile, String href, LinkValidationResult result )
+    {
+        LinkcheckFileResult lcr = new LinkcheckFileResult();
+        lcr.setTarget( href );
+        lcr.setErrorMessage( result.getErrorMessage() );
 
-                    if ( ignoredError )
-                    {
-                        linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
-                    }
-                    else
-                    {
-                        linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
-                    }
+        switch ( result.getStatus() )
+        {
+            case LinkcheckFileResult.VALID_LEVEL:
+                linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
 
-                    lcr.setStatus( ignoredError ? LinkcheckFileResult.VALID : LinkcheckFileResult.ERROR );
+                lcr.setStatus( LinkcheckFileResult.VALID );
 
-                    linkcheckFile.addResult( lcr );
+                // At some point we won't want to store valid links. The tests require that we do at present.
+                linkcheckFile.addResult( lcr );
 
-                    break;
-                case LinkcheckFileResult.WARNING_LEVEL:
-                    boolean ignoredWarning = false;
-                    if ( result instanceof HTTPLinkValidationResult )
-                    {
-                        HTTPLinkValidationResult httpResult = (HTTPLinkValidationResult) result;
-
-                        if ( httpResult.getHttpStatusCode() > 0
-                            && getExcludedHttpStatusWarnings() != null
-                            && StringUtils.indexOfAny( String.valueOf( httpResult.getHttpStatusCode() ),
-                                                       toStringArray( getExcludedHttpStatusWarnings() ) ) >= 0 )
-                        {
-                            ignoredWarning = true;
-                        }
-                    }
+                break;
+            case LinkcheckFileResult.ERROR_LEVEL:
+                boolean ignoredError = false;
+                if ( result instanceof HTTPLinkValidationResult )
+                {
+                    HTTPLinkValidationResult httpResult = (HTTPLinkValidationResult) result;
 
-                    if ( ignoredWarning )
+                    if ( httpResult.getHttpStatusCode() > 0
+                        && getExcludedHttpStatusErrors() != null
+                        && StringUtils.indexOfAny( String.valueOf( httpResult.getHttpStatusCode() ),
+                                                   toStringArray( getExcludedHttpStatusErrors() ) ) >= 0 )
                     {
-                        linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
+                        ignoredError = true;
                     }
-                    else
+                }
+
+                if ( ignoredError )
+                {
+                    linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
+                }
+                else
+                {
+                    linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
+                }
+
+                lcr.setStatus( ignoredError ? LinkcheckFileResult.VALID : LinkcheckFileResult.ERROR );
+
+                linkcheckFile.addResult( lcr );
+
+                break;
+            case LinkcheckFileResult.WARNING_LEVEL:
+                boolean ignoredWarning = false;
+                if ( result instanceof HTTPLinkValidationResult )
+                {
+                    HTTPLinkValidationResult httpResult = (HTTPLinkValidationResult) result;
+
+                    if ( httpResult.getHttpStatusCode() > 0
+                        && getExcludedHttpStatusWarnings() != null
+                        && StringUtils.indexOfAny( String.valueOf( httpResult.getHttpStatusCode() ),
+                                                   toStringArray( getExcludedHttpStatusWarnings() ) ) >= 0 )
                     {
-                        linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
+                        ignoredWarning = true;
                     }
+                }
 
-                    lcr.setStatus( ignoredWarning ? LinkcheckFileResult.VALID : LinkcheckFileResult.WARNING );
+                if ( ignoredWarning )
+                {
+                    linkcheckFile.setSuccessful( linkcheckFile.getSuccessful() + 1 );
+                }
+                else
+                {
+                    linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
+                }
 
-                    linkcheckFile.addResult( lcr );
+                lcr.setStatus( ignoredWarning ? LinkcheckFileResult.VALID : LinkcheckFileResult.WARNING );
 
-                    break;
-                case LinkcheckFileResult.UNKNOWN_LEVEL:
-                default:
-                    linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
+                linkcheckFile.addResult( lcr );
 
-                    lcr.setStatus( LinkcheckFileResult.UNKNOWN );
+                break;
+            case LinkcheckFileResult.UNKNOWN_LEVEL:
+            default:
+                linkcheckFile.setUnsuccessful( linkcheckFile.getUnsuccessful() + 1 );
 
-                    linkcheckFile.addResult( lcr );
+                lcr.setStatus( LinkcheckFileResult.UNKNOWN );
 
-                    break;
+                linkcheckFile.addResult( lcr );
+
+                break;
+        }
+
+        // in large site mode, the valid results are not kept in the model: don't grow the pool with them
+        if ( !( largeSite && LinkcheckFileResult.VALID.equals( lcr.getStatus() ) ) )
+        {
+            lcr.setTarget( strings.intern( lcr.getTarget() ) );
+            lcr.setErrorMessage( strings.intern( lcr.getErrorMessage() ) );
+        }
+
+        if ( LinkcheckFileResult.ERROR.equals( lcr.getStatus() ) )
+        {
+            errors++;
+            if ( budgetActive && maxErrors > 0 && errors >= maxErrors && terminationReason == null )
+            {
+                terminationReason = "The maximum number of " + maxErrors + " errors has been reached.";
             }
         }
     }
@@ -607,7 +1436,7 @@ public final class DefaultLinkCheck
      *
      * @throws IOException if any
      */
-    private void createDocument( LinkcheckModel model )
+    void createDocument( LinkcheckModel model )
         throws IOException
     {
         if ( this.reportOutput == null )
@@ -621,6 +1450,34 @@ public final class DefaultLinkCheck
             dir.mkdirs();
         }
 
+        if ( reportFormat != ReportFormat.XML )
+        {
+            ReportWriter writer = reportFormat.newWriter( this.reportOutput, reportOutputEncoding );
+            try
+            {
+                if ( model.isPartial() )
+                {
+                    writer.setPartial( model.getTerminationReason() );
+                }
+                writer.setOrphans( model.getOrphans() );
+                for ( LinkcheckFile linkcheckFile : model.getFiles() )
+                {
+                    writer.writeFile( linkcheckFile );
+                }
+                writer.close();
+                writer = null;
+            }
+            finally
+            {
+                if ( writer != null )
+                {
+                    // the report failed
+                    closeQuietly( writer );
+                }
+            }
+            return;
+        }
+
         Writer writer = null;
         LinkcheckModelXpp3Writer xpp3Writer = new LinkcheckModelXpp3Writer();
         try
@@ -644,6 +1501,145 @@ public final class DefaultLinkCheck
         dir = null;
     }
 
+    /**
+     * Starts the report written while the files are checked, in large site mode.
+     *
+     * @throws IOException if any
+     */
+    private void startReport()
+        throws IOException
+    {
+        if ( this.reportOutput == null )
+        {
+            return;
+        }
+
+        File dir = this.reportOutput.getParentFile();
+        if ( dir != null )
+        {
+            dir.mkdirs();
+        }
+
+        reportWriter = reportFormat.newWriter( this.reportOutput, reportOutputEncoding );
+    }
+
+    /**
+     * Ends the report written while the files are checked, in large site mode.
+     *
+     * @throws IOException if any
+     */
+    private void endReport()
+        throws IOException
+    {
+        if ( reportWriter == null )
+        {
+            return;
+        }
+
+        try
+        {
+            reportWriter.close();
+            reportWriter = null;
+        }
+        catch ( IllegalStateException e )
+        {
+            IOException ioe =
+                new IOException( e.getMessage() + " Maybe try to specify an other encoding instead of '"
+                    + encoding + "'." );
+            ioe.initCause( e );
+            throw ioe;
+        }
+    }
+
+    private static void closeQuietly( ReportWriter writer )
+    {
+        try
+        {
+            writer.close();
+        }
+        catch ( Exception e )
+        {
+            LOG.debug( "Unable to close the report: " + e.getMessage(), e );
+        }
+    }
+
+    private static void closeQuietly( DiskValidationCache cache )
+    {
+        try
+        {
+            cache.close();
+        }
+        catch ( IOException e )
+        {
+            LOG.debug( "Unable to close the validation cache: " + e.getMessage(), e );
+        }
+    }
+
+    private static void closeQuietly( ArchiveSiteSource archive )
+    {
+        try
+        {
+            archive.close();
+        }
+        catch ( IOException e )
+        {
+            LOG.debug( "Unable to close the site archive: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Sets the site source of the file link validator, if already created.
+     *
+     * @param source the source, or null to use the file system.
+     */
+    private void setValidatorSiteSource( SiteSource source )
+    {
+        if ( this.lvm != null )
+        {
+            for ( LinkValidator lv : this.lvm.getValidators() )
+            {
+                if ( lv instanceof FileLinkValidator )
+                {
+                    ( (FileLinkValidator) lv ).setSiteSource( source );
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the time the online validator has to check the links by, if any.
+     *
+     * @param validator the validator manager.
+     * @param time the time in milliseconds, <code>Long.MAX_VALUE</code> for no deadline.
+     */
+    private static void setValidatorDeadline( LinkValidatorManager validator, long time )
+    {
+        for ( LinkValidator lv : validator.getValidators() )
+        {
+            if ( lv instanceof OnlineHTTPLinkValidator )
+            {
+                ( (OnlineHTTPLinkValidator) lv ).setDeadline( time );
+            }
+        }
+    }
+
+    /**
+     * Removes the valid results of a checked file, already written in the report.
+     *
+     * @param linkcheckFile the checked file.
+     */
+    private static void removeValidResults( LinkcheckFile linkcheckFile )
+    {
+        for ( Iterator<?> it = linkcheckFile.getResults().iterator(); it.hasNext(); )
+        {
+            LinkcheckFileResult result = (LinkcheckFileResult) it.next();
+            if ( LinkcheckFileResult.VALID.equals( result.getStatus() ) )
+            {
+                it.remove();
+            }
+        }
+    }
+
     private static String[] toStringArray( int[] array )
     {
         if ( array == null )
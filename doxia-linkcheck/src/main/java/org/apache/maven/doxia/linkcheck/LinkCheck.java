@@ -22,6 +22,7 @@ package org.apache.maven.doxia.linkcheck;
 import java.io.File;
 
 import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.apache.maven.doxia.linkcheck.site.SiteSource;
 
 /**
  * Tool to check links from html files in a given directory.
@@ -35,12 +36,23 @@ public interface LinkCheck
     String ROLE = LinkCheck.class.getName();
 
     /**
-     * Set the base directory for the files to be linkchecked.
+     * Set the base directory for the files to be linkchecked. It may also be a zip or jar archive of the site,
+     * i.e. a <code>-site.zip</code>, which is then checked without being extracted.
      *
-     * @param base the base directory
+     * @param base the base directory, or the site archive
      */
     void setBasedir( File base );
 
+    /**
+     * Set the source of the files to be linkchecked instead of a base directory, i.e. a map of contents or a zip
+     * file system. The links are resolved and the files are read through it.
+     *
+     * @param source the site source, or null to use the base directory.
+     * @see org.apache.maven.doxia.linkcheck.site.PathSiteSource
+     * @see org.apache.maven.doxia.linkcheck.site.MapSiteSource
+     */
+    void setSiteSource( SiteSource source );
+
     /**
      * Sets the base URL. This is prepended to links that start with '/'.
      *
@@ -87,6 +99,21 @@ public interface LinkCheck
      */
     void setHttp( HttpBean http );
 
+    /**
+     * Sets the large site mode, which keeps the memory used roughly constant in the number of pages:
+     * <ul>
+     * <li>the validation results are cached on disk, in the temporary directory,</li>
+     * <li>the report is written while the pages are checked,</li>
+     * <li>the model returned by {@link #execute()} only contains the pages with unsuccessful links, without their
+     * valid links.</li>
+     * </ul>
+     * The report is the same as without this mode. Disabled by default. Can't be combined with
+     * {@link #setInternalLinksFirst(boolean)}.
+     *
+     * @param largeSite <code>true</code> to enable the large site mode.
+     */
+    void setLargeSite( boolean largeSite );
+
     /**
      * Sets the cache File.
      *
@@ -94,6 +121,80 @@ public interface LinkCheck
      */
     void setLinkCheckCache( File cacheFile );
 
+    /**
+     * Whether the validation results are shared with the other checks of the JVM using the same cache file, i.e.
+     * the other modules of a reactor build, so that the same external links are only checked once per build.
+     * The cache file is then locked while being read or written and the results are merged into it, so that it can
+     * be used by concurrent checks, even in other processes. The results are only shared in memory outside of the
+     * large site mode.
+     *
+     * @param sharedCache <code>true</code> to share the validation results in memory.
+     * @see #setLinkCheckCache(File)
+     * @see org.apache.maven.doxia.linkcheck.validation.SharedValidationCache
+     */
+    void setSharedCache( boolean sharedCache );
+
+    /**
+     * Sets the maximum number of errors: once reached, the check is terminated and the returned model is marked
+     * as partial, i.e. to fail a pull request validation as soon as possible.
+     *
+     * @param maxErrors the maximum number of errors, 0 for no limit.
+     * @see LinkcheckModel#isPartial()
+     */
+    void setMaxErrors( int maxErrors );
+
+    /**
+     * Sets the maximum duration of the check: once elapsed, the check is terminated and the returned model is
+     * marked as partial. The links being checked online are aborted and get an error with the
+     * <code>timed out (budget)</code> message. See also {@link HttpBean#setLinkTimeout(int)} to limit the time
+     * given to each link.
+     *
+     * @param maxDuration the maximum duration in milliseconds, 0 for no limit.
+     * @see LinkcheckModel#isPartial()
+     */
+    void setMaxDuration( long maxDuration );
+
+    /**
+     * Whether the local links of all files are checked before the external ones, which are slower to check. The
+     * report is the same, but with a maximum number of errors or a maximum duration, the broken local links are
+     * found first. The checked files are kept in memory until all the local links are checked, hence this can't be
+     * combined with the {@link #setLargeSite(boolean) large site mode}.
+     *
+     * @param internalLinksFirst <code>true</code> to check the local links first.
+     */
+    void setInternalLinksFirst( boolean internalLinksFirst );
+
+    /**
+     * Sets the number of threads checking the links through the network, i.e. in online mode. If set, the local
+     * links are checked on as many other threads as available processors, before the links checked through the
+     * network, so that the local results are complete first. The report is the same, but the checked files are
+     * kept in memory until all their links are checked. By default, all the links are checked sequentially.
+     *
+     * @param threads the number of threads, 0 to check the links sequentially in the calling thread.
+     * @see org.apache.maven.doxia.linkcheck.validation.ValidationScheduler
+     */
+    void setThreads( int threads );
+
+    /**
+     * Sets the pages to crawl the site from. If set, only the pages reached from them, following the local links
+     * breadth-first, are checked, instead of all the pages of the base directory. The pages are still filtered by
+     * the included and excluded pages, and the links to the other pages aren't followed.
+     *
+     * @param entryPages the paths of the entry pages, relative to the base directory, i.e.
+     * <code>index.html</code>, or null to check all the pages.
+     */
+    void setEntryPages( String[] entryPages );
+
+    /**
+     * Whether the pages not reached from the entry pages are listed in the model, and in the xml report unless
+     * for a large site. They are not listed when the check is terminated early.
+     *
+     * @param listOrphans <code>true</code> to list the orphan pages.
+     * @see #setEntryPages(String[])
+     * @see LinkcheckModel#getOrphans()
+     */
+    void setListOrphans( boolean listOrphans );
+
     /**
      * Set the online mode.
      *
@@ -117,7 +218,17 @@ public interface LinkCheck
     void setReportOutputEncoding( String encoding );
 
     /**
-     * Execute the link check. The basedir <b>should</b> be set before.
+     * Sets the format of the report output: <code>xml</code>, the default, <code>jsonl</code> for JSON Lines with
+     * one record per result, or <code>binary</code> for a compact binary format.
+     *
+     * @param format The report format to set.
+     * @throws IllegalArgumentException if the format is unknown.
+     * @see org.apache.maven.doxia.linkcheck.report.ReportFormat
+     */
+    void setReportFormat( String format );
+
+    /**
+     * Execute the link check. The basedir or the site source <b>should</b> be set before.
      *
      * @return the analysis in a <code>LinkCheck</code> model.
      * @throws LinkCheckException if any
@@ -22,12 +22,15 @@ package org.apache.maven.doxia.linkcheck;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.maven.doxia.linkcheck.site.DirectorySiteSource;
+import org.apache.maven.doxia.linkcheck.site.SiteSource;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
 
@@ -39,6 +42,8 @@ import org.codehaus.plexus.util.ReaderFactory;
  * &lt;img src="".../&gt;
  * &lt;script src="".../&gt;
  * </pre>
+ * The files of a {@link DirectorySiteSource} in an ASCII compatible encoding, i.e. <code>UTF-8</code> or
+ * <code>ISO-8859-1</code>, are matched on their bytes by {@link ByteLinkMatcher}, without decoding them.
  *
  * @author <a href="mailto:mac@apache.org">Ignacio G. Mac Dowell </a>
  * @version $Id$
@@ -50,9 +55,6 @@ class LinkMatcher
         Pattern.compile( "<(?>link|a|img|script)[^>]*?(?>href|src)\\s*?=\\s*?[\\\"'](.*?)[\\\"'][^>]*?",
                          Pattern.CASE_INSENSITIVE );
 
-    /** No need to create a new object each time a file is processed. Just clear it. */
-    private static final Set<String> LINK_LIST = new TreeSet<String>();
-
     private LinkMatcher()
     {
         // nop
@@ -61,21 +63,22 @@ class LinkMatcher
     /**
      * Reads a file and returns its contents without any XML comments.
      *
+     * @param source the site source to read the file from
      * @param file the file we are reading
      * @param encoding the encoding file used
      * @return a StringBuffer with file's contents.
      * @throws IOException if something goes wrong.
-     * @see ReaderFactory#newReader(File, String)
+     * @see SiteSource#newReader(File, String)
      * @see IOUtil#toString(Reader)
      */
-    private static String toString( File file, String encoding )
+    private static String toString( SiteSource source, File file, String encoding )
         throws IOException
     {
         String content;
         Reader reader = null;
         try
         {
-            reader = ReaderFactory.newReader( file, encoding );
+            reader = source.newReader( file, encoding );
 
             content = IOUtil.toString( reader );
         }
@@ -99,34 +102,84 @@ class LinkMatcher
     static Set<String> match( File file, String encoding )
         throws IOException
     {
-        LINK_LIST.clear();
+        return match( new DirectorySiteSource( file.getParentFile() ), file, encoding );
+    }
+
+    /**
+     * Performs the actual matching on a file of a site source.
+     *
+     * @param source the site source to read the file from
+     * @param file the file to check
+     * @param encoding the encoding file used
+     * @return a set with all links to check
+     * @throws IOException if something goes wrong
+     */
+    static Set<String> match( SiteSource source, File file, String encoding )
+        throws IOException
+    {
+        Charset charset = ByteLinkMatcher.getCharset( encoding );
+        if ( charset == null || source.getClass() != DirectorySiteSource.class )
+        {
+            return matchChars( source, file, encoding );
+        }
+
+        // a new set per file, the files being matched concurrently by the checks of a JVM
+        Set<String> links = new TreeSet<String>();
 
-        final Matcher m = MATCH_PATTERN.matcher( toString( file, encoding ) );
+        ByteLinkMatcher.match( file, charset, links );
+
+        return links;
+    }
+
+    /**
+     * Performs the actual matching on the decoded contents of a file of a site source, whatever the encoding.
+     *
+     * @param source the site source to read the file from
+     * @param file the file to check
+     * @param encoding the encoding file used
+     * @return a set with all links to check
+     * @throws IOException if something goes wrong
+     */
+    static Set<String> matchChars( SiteSource source, File file, String encoding )
+        throws IOException
+    {
+        Set<String> links = new TreeSet<String>();
 
-        String link;
+        final Matcher m = MATCH_PATTERN.matcher( toString( source, file, encoding ) );
 
         while ( m.find() )
         {
-            link = m.group( 1 ).trim();
-
-            if ( link.length() < 1 )
-            {
-                continue;
-            }
-
-            if ( link.toLowerCase( Locale.ENGLISH ).indexOf( "javascript" ) != -1 )
-            {
-                continue;
-            }
-            // TODO: Review dead code and delete if not needed
-            // else if ( link.toLowerCase( Locale.ENGLISH ).indexOf( "mailto:" ) != -1 )
-            // {
-            // continue;
-            // }
-
-            LINK_LIST.add( link );
+            addLink( m.group( 1 ), links );
+        }
+
+        return links;
+    }
+
+    /**
+     * Adds a matched link to a set, unless it is empty or a javascript one.
+     *
+     * @param link the matched link, not trimmed.
+     * @param links the set of links.
+     */
+    static void addLink( String link, Set<String> links )
+    {
+        link = link.trim();
+
+        if ( link.length() < 1 )
+        {
+            return;
+        }
+
+        if ( link.toLowerCase( Locale.ENGLISH ).indexOf( "javascript" ) != -1 )
+        {
+            return;
         }
+        // TODO: Review dead code and delete if not needed
+        // else if ( link.toLowerCase( Locale.ENGLISH ).indexOf( "mailto:" ) != -1 )
+        // {
+        // return;
+        // }
 
-        return LINK_LIST;
+        links.add( link );
     }
 }
@@ -0,0 +1,580 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.apache.maven.doxia.linkcheck.site.AbstractSiteSource;
+import org.apache.maven.doxia.linkcheck.site.ArchiveSiteSource;
+import org.apache.maven.doxia.linkcheck.site.DirectorySiteSource;
+import org.apache.maven.doxia.linkcheck.validation.SiteIndex;
+
+/**
+ * Keeps checking the links of a site while it changes, i.e. while authors edit the documentation.
+ * <p>
+ * After a first full check, the changes under the base directory are watched with a {@link WatchService}. For
+ * each batch of changes, only the modified pages and the pages linking to the modified files are checked again,
+ * with the site index and the validation cache kept from the previous checks. The report is then written again
+ * and the unsuccessful links of the whole site are printed.
+ * </p>
+ * Usage:
+ * <pre>
+ * LinkcheckWatcher watcher = new LinkcheckWatcher( linkCheck, System.out );
+ * watcher.start();
+ * watcher.run(); // until watcher.close() is called
+ * </pre>
+ * The large site mode is not supported: {@link #start()} fails if it is set.
+ *
+ * @version $Id$
+ */
+public class LinkcheckWatcher
+    implements Runnable
+{
+    /** Log. */
+    private static final Log LOG = LogFactory.getLog( LinkcheckWatcher.class );
+
+    /** The time to wait for more changes before checking a batch, in ms. */
+    private static final long QUIET_PERIOD = 20;
+
+    private final DefaultLinkCheck linkCheck;
+
+    private final PrintStream out;
+
+    private Path basedir;
+
+    private SiteIndex siteIndex;
+
+    private WatchService watchService;
+
+    /** The watched directories. */
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+
+    /** The checked pages, by normalized path. */
+    private final Map<Path, LinkcheckFile> pages = new LinkedHashMap<Path, LinkcheckFile>();
+
+    /** The local files targeted by each page. */
+    private final Map<Path, Set<Path>> targets = new HashMap<Path, Set<Path>>();
+
+    /** The pages linking to each local file. */
+    private final Map<Path, Set<Path>> referrers = new HashMap<Path, Set<Path>>();
+
+    /**
+     * @param linkCheck the configured link check, its base directory must be set.
+     * @param out where to print the unsuccessful links after each check.
+     */
+    public LinkcheckWatcher( DefaultLinkCheck linkCheck, PrintStream out )
+    {
+        this.linkCheck = linkCheck;
+        this.out = out;
+    }
+
+    /**
+     * Checks the whole site and starts watching it.
+     *
+     * @return the result of the full check.
+     * @throws LinkCheckException if the check fails.
+     * @throws IOException if the site can't be indexed or watched.
+     * @throws IllegalStateException if the link check has a site source or is in large site mode.
+     */
+    public LinkcheckModel start()
+        throws LinkCheckException, IOException
+    {
+        long start = System.currentTimeMillis();
+
+        if ( !( linkCheck.getSiteSource() instanceof DirectorySiteSource )
+            || ArchiveSiteSource.isArchive( linkCheck.getBasedir() ) )
+        {
+            throw new IllegalStateException( "Only a base directory can be watched, not a site source." );
+        }
+        if ( linkCheck.isLargeSite() )
+        {
+            // the watcher keeps all the results in memory
+            throw new IllegalStateException( "The large site mode can't be watched." );
+        }
+
+        basedir = normalize( linkCheck.getBasedir() );
+        siteIndex = new SiteIndex( basedir.toFile(), linkCheck.getEncoding() );
+        linkCheck.setSiteIndex( siteIndex );
+
+        LinkcheckModel model = linkCheck.execute();
+        for ( LinkcheckFile linkcheckFile : model.getFiles() )
+        {
+            Path page = normalize( new File( linkcheckFile.getAbsolutePath() ) );
+            pages.put( page, linkcheckFile );
+            updateLinks( page, linkcheckFile );
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        register( basedir );
+
+        printReport( "Checked " + pages.size() + " page(s)", start );
+
+        return model;
+    }
+
+    /**
+     * Waits for changes, then checks the pages affected by them.
+     *
+     * @param timeout how long to wait for a first change.
+     * @param unit the unit of the timeout.
+     * @return <code>false</code> if there was no change before the timeout.
+     * @throws IOException if the changes can't be processed.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ClosedWatchServiceException if {@link #close()} has been called.
+     */
+    public boolean processChanges( long timeout, TimeUnit unit )
+        throws IOException, InterruptedException
+    {
+        WatchKey key = watchService.poll( timeout, unit );
+        if ( key == null )
+        {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+
+        // collect the changes until there is a quiet period
+        Set<Path> changes = new LinkedHashSet<Path>();
+        boolean overflow = false;
+        while ( key != null )
+        {
+            Path dir = directories.get( key );
+            for ( WatchEvent<?> event : key.pollEvents() )
+            {
+                if ( event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null )
+                {
+                    overflow = true;
+                    continue;
+                }
+
+                Path child = dir.resolve( (Path) event.context() );
+                changes.add( child );
+
+                if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( child ) )
+                {
+                    register( child );
+                }
+            }
+
+            if ( !key.reset() )
+            {
+                directories.remove( key );
+            }
+
+            key = watchService.poll( QUIET_PERIOD, TimeUnit.MILLISECONDS );
+        }
+
+        if ( overflow )
+        {
+            // some events are lost, check everything
+            changes.clear();
+            changes.add( basedir );
+        }
+
+        int checked = processChanges( changes );
+
+        printReport( changes.size() + " change(s), " + checked + " page(s) checked", start );
+
+        return true;
+    }
+
+    /**
+     * Processes the changes until {@link #close()} is called or the thread is interrupted.
+     */
+    public void run()
+    {
+        try
+        {
+            while ( true )
+            {
+                processChanges( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+            }
+        }
+        catch ( ClosedWatchServiceException e )
+        {
+            // closed
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( IOException e )
+        {
+            LOG.error( "Unable to check the changes: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @return the current result of the check, with the pages in the order they were first checked.
+     */
+    public LinkcheckModel getModel()
+    {
+        LinkcheckModel model = new LinkcheckModel();
+        model.setFiles( new LinkedList<LinkcheckFile>( pages.values() ) );
+
+        return model;
+    }
+
+    /**
+     * Stops watching the site and saves the validation cache.
+     *
+     * @throws IOException if any
+     */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            if ( watchService != null )
+            {
+                watchService.close();
+            }
+        }
+        finally
+        {
+            linkCheck.saveCache();
+        }
+    }
+
+    /**
+     * Watches a directory until interrupted, printing the unsuccessful links after each batch of changes.
+     *
+     * @param args the base directory, then the optional report output file.
+     * @throws Exception if any
+     */
+    public static void main( String[] args )
+        throws Exception
+    {
+        if ( args.length < 1 || args.length > 2 )
+        {
+            System.err.println( "Usage: LinkcheckWatcher <basedir> [<report output>]" );
+            return;
+        }
+
+        DefaultLinkCheck linkCheck = new DefaultLinkCheck();
+        linkCheck.setBasedir( new File( args[0] ) );
+        if ( args.length > 1 )
+        {
+            linkCheck.setReportOutput( new File( args[1] ) );
+        }
+
+        LinkcheckWatcher watcher = new LinkcheckWatcher( linkCheck, System.out );
+        watcher.start();
+        watcher.run();
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private static Path normalize( File file )
+    {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Watches a directory and its sub-directories.
+     */
+    private void register( Path dir )
+        throws IOException
+    {
+        Files.walkFileTree( dir, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory( Path d, BasicFileAttributes attrs )
+                throws IOException
+            {
+                WatchKey key =
+                    d.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+                directories.put( key, d );
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed( Path file, IOException exc )
+            {
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    /**
+     * @return the number of checked pages.
+     */
+    private int processChanges( Set<Path> changes )
+        throws IOException
+    {
+        Set<Path> toCheck = new LinkedHashSet<Path>();
+
+        for ( Path changed : changes )
+        {
+            siteIndex.update( changed.toFile() );
+        }
+
+        // the results of the local links may have changed, the external ones are kept
+        linkCheck.getLinkValidatorManager().removeLocalResults();
+
+        for ( Path changed : changes )
+        {
+            if ( Files.isRegularFile( changed ) )
+            {
+                if ( isPage( changed ) )
+                {
+                    toCheck.add( changed );
+                }
+                addReferrers( changed, toCheck );
+            }
+            else if ( Files.isDirectory( changed ) )
+            {
+                // the links to the directory itself, i.e. apidocs/
+                addReferrers( changed, toCheck );
+                for ( Path file : findFiles( changed ) )
+                {
+                    if ( isPage( file ) )
+                    {
+                        toCheck.add( file );
+                    }
+                    addReferrers( file, toCheck );
+                }
+            }
+            else
+            {
+                removePages( changed );
+                addReferrers( changed, toCheck );
+            }
+        }
+
+        int checked = 0;
+        for ( Path page : toCheck )
+        {
+            if ( !Files.isRegularFile( page ) )
+            {
+                continue;
+            }
+
+            LinkcheckFile linkcheckFile = linkCheck.checkFile( page.toFile() );
+            pages.put( page, linkcheckFile );
+            updateLinks( page, linkcheckFile );
+            checked++;
+        }
+
+        linkCheck.createDocument( getModel() );
+
+        return checked;
+    }
+
+    /**
+     * @return <code>true</code> if the file is a page to check, according to the included and excluded pages.
+     */
+    private boolean isPage( Path file )
+    {
+        if ( !file.startsWith( basedir ) )
+        {
+            return false;
+        }
+
+        String relativePath = basedir.relativize( file ).toString();
+
+        return AbstractSiteSource.matchesAny( linkCheck.getIncludedPages(), relativePath )
+            && !AbstractSiteSource.matchesAny( linkCheck.getExcludedPages(), relativePath );
+    }
+
+    private static List<Path> findFiles( Path dir )
+        throws IOException
+    {
+        final List<Path> files = new ArrayList<Path>();
+        Files.walkFileTree( dir, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( !attrs.isDirectory() )
+                {
+                    files.add( file );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed( Path file, IOException exc )
+            {
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+
+        return files;
+    }
+
+    /**
+     * Adds the pages linking to the given file, or to a file under the given directory.
+     */
+    private void addReferrers( Path changed, Set<Path> toCheck )
+    {
+        Set<Path> direct = referrers.get( changed );
+        if ( direct != null )
+        {
+            toCheck.addAll( direct );
+        }
+
+        if ( !pages.containsKey( changed ) && !Files.isRegularFile( changed ) )
+        {
+            // maybe a directory
+            for ( Map.Entry<Path, Set<Path>> entry : referrers.entrySet() )
+            {
+                if ( entry.getKey().startsWith( changed ) )
+                {
+                    toCheck.addAll( entry.getValue() );
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the deleted page, or the pages under the deleted directory.
+     */
+    private void removePages( Path deleted )
+    {
+        for ( Iterator<Path> it = pages.keySet().iterator(); it.hasNext(); )
+        {
+            Path page = it.next();
+            if ( page.startsWith( deleted ) )
+            {
+                it.remove();
+                updateLinks( page, null );
+            }
+        }
+    }
+
+    /**
+     * Updates the links between the pages and the local files.
+     *
+     * @param page the page.
+     * @param linkcheckFile the result of the page check, or null if it has been deleted.
+     */
+    private void updateLinks( Path page, LinkcheckFile linkcheckFile )
+    {
+        Set<Path> oldTargets = targets.remove( page );
+        if ( oldTargets != null )
+        {
+            for ( Path target : oldTargets )
+            {
+                Set<Path> pageReferrers = referrers.get( target );
+                if ( pageReferrers != null )
+                {
+                    pageReferrers.remove( page );
+                    if ( pageReferrers.isEmpty() )
+                    {
+                        referrers.remove( target );
+                    }
+                }
+            }
+        }
+
+        if ( linkcheckFile == null )
+        {
+            return;
+        }
+
+        Set<Path> newTargets = new HashSet<Path>();
+        for ( LinkcheckFileResult result : linkcheckFile.getResults() )
+        {
+            File target =
+                ( result.getTarget() == null ? null : SiteIndex.resolve( page.toFile(), result.getTarget() ) );
+            if ( target != null )
+            {
+                newTargets.add( target.toPath() );
+            }
+        }
+
+        targets.put( page, newTargets );
+        for ( Path target : newTargets )
+        {
+            Set<Path> pageReferrers = referrers.get( target );
+            if ( pageReferrers == null )
+            {
+                pageReferrers = new HashSet<Path>();
+                referrers.put( target, pageReferrers );
+            }
+            pageReferrers.add( page );
+        }
+    }
+
+    /**
+     * Prints the unsuccessful links of the site.
+     */
+    private void printReport( String message, long start )
+    {
+        out.println( "[linkcheck] " + message + " in " + ( System.currentTimeMillis() - start ) + " ms" );
+
+        int unsuccessful = 0;
+        int unsuccessfulPages = 0;
+        for ( LinkcheckFile linkcheckFile : pages.values() )
+        {
+            if ( linkcheckFile.getUnsuccessful() == 0 )
+            {
+                continue;
+            }
+
+            unsuccessful += linkcheckFile.getUnsuccessful();
+            unsuccessfulPages++;
+
+            out.println( "  " + linkcheckFile.getRelativePath() );
+            for ( LinkcheckFileResult result : linkcheckFile.getResults() )
+            {
+                if ( !LinkcheckFileResult.VALID.equals( result.getStatus() ) )
+                {
+                    String error = result.getErrorMessage();
+                    out.println( "    [" + result.getStatus() + "] " + result.getTarget()
+                        + ( error == null || error.length() == 0 ? "" : ": " + error ) );
+                }
+            }
+        }
+
+        out.println( "[linkcheck] " + unsuccessful + " unsuccessful link(s) in " + unsuccessfulPages + " page(s)" );
+        out.flush();
+    }
+}
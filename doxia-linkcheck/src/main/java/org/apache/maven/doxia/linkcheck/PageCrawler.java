@@ -0,0 +1,168 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.maven.doxia.linkcheck.validation.SiteIndex;
+
+/**
+ * The pages of a site reachable from entry pages, iterated breadth-first: the pages linked by a page are queued
+ * once the links of the page are added, so that the links of each page have to be added before the next page is
+ * asked for. Only the local links to the pages to check are followed, each page is iterated once. A link to a
+ * directory, i.e. <code>apidocs/</code> or <code>./</code>, is followed to its <code>index.html</code> page.
+ * <p>
+ * The pages to check which are never reached are the orphans.
+ * </p>
+ *
+ * @version $Id$
+ */
+class PageCrawler
+    implements Iterable<File>
+{
+    /** The page a link to a directory leads to. */
+    private static final String INDEX_PAGE = "index.html";
+
+    /** The pages to check, by normalized file. */
+    private final Map<File, File> pages = new LinkedHashMap<File, File>();
+
+    /** The normalized pages reached so far. */
+    private final Set<File> visited = new HashSet<File>();
+
+    /** The pages reached but not iterated yet. */
+    private final LinkedList<File> queue = new LinkedList<File>();
+
+    /**
+     * @param pages the pages to check.
+     */
+    PageCrawler( List<File> pages )
+    {
+        for ( File page : pages )
+        {
+            this.pages.put( normalize( page ), page );
+        }
+    }
+
+    /**
+     * Adds an entry page.
+     *
+     * @param entryPage a page to start from.
+     * @return <code>false</code> if the page is not one of the pages to check.
+     */
+    boolean addEntryPage( File entryPage )
+    {
+        File target = normalize( entryPage );
+        reach( target );
+
+        return pages.containsKey( target );
+    }
+
+    /**
+     * Adds the links of an iterated page, queuing the pages it links to which are not reached yet.
+     *
+     * @param page the page.
+     * @param links its links.
+     */
+    void addLinks( File page, Set<String> links )
+    {
+        for ( String link : links )
+        {
+            File target = SiteIndex.resolve( page, link );
+            if ( target != null && !reach( target ) )
+            {
+                // a directory, the resolved target being normalized without its trailing separator
+                reach( new File( target, INDEX_PAGE ) );
+            }
+        }
+    }
+
+    /**
+     * @return the pages to check never reached so far, in the order they were given.
+     */
+    List<File> getOrphans()
+    {
+        List<File> orphans = new ArrayList<File>();
+        for ( Map.Entry<File, File> page : pages.entrySet() )
+        {
+            if ( !visited.contains( page.getKey() ) )
+            {
+                orphans.add( page.getValue() );
+            }
+        }
+
+        return orphans;
+    }
+
+    /** {@inheritDoc} */
+    public Iterator<File> iterator()
+    {
+        return new Iterator<File>()
+        {
+            public boolean hasNext()
+            {
+                return !queue.isEmpty();
+            }
+
+            public File next()
+            {
+                if ( queue.isEmpty() )
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return queue.removeFirst();
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @param target a normalized file.
+     * @return <code>true</code> if the file is one of the pages to check.
+     */
+    private boolean reach( File target )
+    {
+        File page = pages.get( target );
+        if ( page != null && visited.add( target ) )
+        {
+            queue.add( page );
+        }
+
+        return page != null;
+    }
+
+    private static File normalize( File file )
+    {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+}
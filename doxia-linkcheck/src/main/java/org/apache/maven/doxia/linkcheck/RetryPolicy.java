@@ -0,0 +1,214 @@
+package org.apache.maven.doxia.linkcheck;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.httpclient.NoHttpResponseException;
+
+/**
+ * The policy retrying the links checked online which failed for a transient reason, i.e. a <code>503</code>
+ * response of a CDN or a connection reset. Only <code>HEAD</code> and <code>GET</code> requests are sent, which
+ * are idempotent.
+ * <p>
+ * A failed link is retried if its status matches one of the retried statuses, i.e. <code>503</code> or a status
+ * class like <code>5xx</code>, or if its request failed with an instance of one of the retried exception classes,
+ * until the maximum number of attempts is reached. The attempts are separated by an exponential backoff with
+ * jitter: the <code>n</code>th retry waits <code>initialDelay * multiplier^(n - 1)</code> ms, at most
+ * <code>maxDelay</code> ms, reduced by a random part of up to <code>jitter</code> of it, so that the links to a
+ * host don't retry all at once.
+ * </p>
+ * By default, a link is tried 3 times, the <code>429</code>, <code>502</code>, <code>503</code> and
+ * <code>504</code> statuses and the connection failures and timeouts are retried, after up to 500 ms then up
+ * to 1 s.
+ *
+ * @version $Id$
+ * @see HttpBean#setRetryPolicy(RetryPolicy)
+ */
+public class RetryPolicy
+    implements Serializable
+{
+    /** serialVersionUID. */
+    private static final long serialVersionUID = 6502311876459803162L;
+
+    /** The maximum number of attempts, including the first one. */
+    private int maxAttempts = 3;
+
+    /** The delay before the first retry, in ms. */
+    private long initialDelay = 500;
+
+    /** The maximum delay between two attempts, in ms. */
+    private long maxDelay = 30000;
+
+    /** The factor applied to the delay at each retry. */
+    private double multiplier = 2;
+
+    /** The random part of the delays, between 0 and 1. */
+    private double jitter = 0.5;
+
+    /** The retried statuses or status classes. */
+    private final Set<String> retryStatuses = new HashSet<String>( Arrays.asList( "429", "502", "503", "504" ) );
+
+    /** The retried exception classes. */
+    private final Set<Class<? extends Throwable>> retryExceptions = new HashSet<Class<? extends Throwable>>();
+
+    /**
+     * Creates the default policy.
+     */
+    public RetryPolicy()
+    {
+        retryExceptions.add( ConnectException.class );
+        retryExceptions.add( SocketException.class );
+        retryExceptions.add( SocketTimeoutException.class );
+        retryExceptions.add( NoHttpResponseException.class );
+    }
+
+    /**
+     * @return the maximum number of attempts, including the first one.
+     */
+    public int getMaxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts the maximum number of attempts, including the first one, 1 to never retry.
+     */
+    public void setMaxAttempts( int maxAttempts )
+    {
+        if ( maxAttempts < 1 )
+        {
+            throw new IllegalArgumentException( maxAttempts + " should be positive." );
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param initialDelay the delay before the first retry, in ms.
+     */
+    public void setInitialDelay( long initialDelay )
+    {
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * @param maxDelay the maximum delay between two attempts, in ms.
+     */
+    public void setMaxDelay( long maxDelay )
+    {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @param multiplier the factor applied to the delay at each retry, at least 1.
+     */
+    public void setMultiplier( double multiplier )
+    {
+        if ( multiplier < 1 )
+        {
+            throw new IllegalArgumentException( multiplier + " should be at least 1." );
+        }
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * @param jitter the random part of the delays, between 0 for fixed delays and 1.
+     */
+    public void setJitter( double jitter )
+    {
+        if ( jitter < 0 || jitter > 1 )
+        {
+            throw new IllegalArgumentException( jitter + " should be between 0 and 1." );
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * Sets the retried statuses, replacing the default ones.
+     *
+     * @param statuses statuses, i.e. <code>503</code>, or status classes, i.e. <code>5xx</code>.
+     */
+    public void setRetryStatuses( String... statuses )
+    {
+        retryStatuses.clear();
+        for ( String status : statuses )
+        {
+            retryStatuses.add( status.trim().toLowerCase( Locale.ENGLISH ) );
+        }
+    }
+
+    /**
+     * Sets the retried exception classes, replacing the default ones.
+     *
+     * @param exceptions the exception classes, their subclasses are retried too.
+     */
+    public void setRetryExceptions( Collection<Class<? extends Throwable>> exceptions )
+    {
+        retryExceptions.clear();
+        retryExceptions.addAll( exceptions );
+    }
+
+    /**
+     * @param status an HTTP status.
+     * @return <code>true</code> if a link with this status is retried.
+     */
+    public boolean isRetried( int status )
+    {
+        return retryStatuses.contains( String.valueOf( status ) ) || retryStatuses.contains( status / 100 + "xx" );
+    }
+
+    /**
+     * @param t the failure of a request.
+     * @return <code>true</code> if a link failing this way is retried.
+     */
+    public boolean isRetried( Throwable t )
+    {
+        for ( Class<? extends Throwable> exception : retryExceptions )
+        {
+            if ( exception.isInstance( t ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param attempt the number of the failed attempt, starting at 1.
+     * @return the delay before the next attempt, in ms.
+     */
+    public long getDelay( int attempt )
+    {
+        double delay = Math.min( maxDelay, initialDelay * Math.pow( multiplier, attempt - 1 ) );
+
+        return (long) ( delay * ( 1 - jitter * ThreadLocalRandom.current().nextDouble() ) );
+    }
+}
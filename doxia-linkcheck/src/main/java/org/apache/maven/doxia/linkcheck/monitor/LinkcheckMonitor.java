@@ -0,0 +1,88 @@
+package org.apache.maven.doxia.linkcheck.monitor;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Receives notifications from the linkcheck hot paths, i.e. to emit profiling events.
+ * <p>
+ * Each notification is done in two steps: a <code>begin*</code> method is called before the work starts and
+ * returns a handle, which is then given back when the work is done. Callers should only call the
+ * <code>begin*</code> methods if {@link #isEnabled()} returns <code>true</code>.
+ * </p>
+ * Implementations are discovered with {@link java.util.ServiceLoader}, see {@link LinkcheckMonitors}.
+ *
+ * @version $Id$
+ */
+public interface LinkcheckMonitor
+{
+    /**
+     * @return <code>true</code> if the notifications are currently recorded, <code>false</code> otherwise.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return a handle to give to {@link #pageScanned(Object, String, long, int)}.
+     */
+    Object beginPageScan();
+
+    /**
+     * A page has been scanned for links.
+     *
+     * @param handle the handle returned by {@link #beginPageScan()}.
+     * @param path the relative path of the page.
+     * @param bytes the size of the page in bytes.
+     * @param links the number of distinct links found in the page.
+     */
+    void pageScanned( Object handle, String path, long bytes, int links );
+
+    /**
+     * @return a handle to give to {@link #linkValidated(Object, String, String, int, boolean)}.
+     */
+    Object beginLinkValidation();
+
+    /**
+     * A link has been validated.
+     *
+     * @param handle the handle returned by {@link #beginLinkValidation()}.
+     * @param validator the class name of the validator used, or <code>null</code> if the link was excluded
+     * or the result comes from the cache.
+     * @param target the link.
+     * @param status the validation status level, i.e.
+     * {@link org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult#VALID_LEVEL}.
+     * @param cacheHit <code>true</code> if the result comes from the cache.
+     */
+    void linkValidated( Object handle, String validator, String target, int status, boolean cacheHit );
+
+    /**
+     * @return a handle to give to {@link #httpRequest(Object, String, String, int, long)}.
+     */
+    Object beginHttpRequest();
+
+    /**
+     * An HTTP request has been executed.
+     *
+     * @param handle the handle returned by {@link #beginHttpRequest()}.
+     * @param host the requested host.
+     * @param method the HTTP method name, i.e. <code>HEAD</code>.
+     * @param status the HTTP status code, <code>-1</code> if no response was received.
+     * @param bytes the response content length, <code>-1</code> if unknown.
+     */
+    void httpRequest( Object handle, String host, String method, int status, long bytes );
+}
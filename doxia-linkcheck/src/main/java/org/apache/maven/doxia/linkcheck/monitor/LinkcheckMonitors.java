@@ -0,0 +1,133 @@
+package org.apache.maven.doxia.linkcheck.monitor;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Gives access to the {@link LinkcheckMonitor} used by linkcheck.
+ * <p>
+ * The first implementation registered in <code>META-INF/services</code> is used, i.e. the JFR monitor
+ * provided by <code>doxia-linkcheck-jfr</code>. If none is found, a no-op monitor is used.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class LinkcheckMonitors
+{
+    /** Log. */
+    private static final Log LOG = LogFactory.getLog( LinkcheckMonitors.class );
+
+    /** The shared monitor. */
+    private static final LinkcheckMonitor MONITOR = loadMonitor();
+
+    private LinkcheckMonitors()
+    {
+        // utility class
+    }
+
+    /**
+     * @return the monitor to notify, never <code>null</code>.
+     */
+    public static LinkcheckMonitor getMonitor()
+    {
+        return MONITOR;
+    }
+
+    private static LinkcheckMonitor loadMonitor()
+    {
+        try
+        {
+            Iterator<LinkcheckMonitor> it =
+                ServiceLoader.load( LinkcheckMonitor.class, LinkcheckMonitor.class.getClassLoader() ).iterator();
+            if ( it.hasNext() )
+            {
+                LinkcheckMonitor monitor = it.next();
+
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( "Using linkcheck monitor: " + monitor.getClass().getName() );
+                }
+
+                return monitor;
+            }
+        }
+        catch ( Throwable t )
+        {
+            // i.e. the JFR monitor on a JVM without jdk.jfr
+            LOG.debug( "Unable to load a linkcheck monitor: " + t.getMessage(), t );
+        }
+
+        return new NoopMonitor();
+    }
+
+    /**
+     * Monitor used when no implementation is available.
+     */
+    private static final class NoopMonitor
+        implements LinkcheckMonitor
+    {
+        /** {@inheritDoc} */
+        public boolean isEnabled()
+        {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public Object beginPageScan()
+        {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public void pageScanned( Object handle, String path, long bytes, int links )
+        {
+            // nop
+        }
+
+        /** {@inheritDoc} */
+        public Object beginLinkValidation()
+        {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public void linkValidated( Object handle, String validator, String target, int status, boolean cacheHit )
+        {
+            // nop
+        }
+
+        /** {@inheritDoc} */
+        public Object beginHttpRequest()
+        {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public void httpRequest( Object handle, String host, String method, int status, long bytes )
+        {
+            // nop
+        }
+    }
+}
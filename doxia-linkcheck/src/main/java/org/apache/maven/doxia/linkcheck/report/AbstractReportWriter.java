@@ -0,0 +1,127 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+
+/**
+ * Base class for the report writers: the files of a {@link LinkcheckFile} or of a {@link CompactLinkcheckModel}
+ * are written as a sequence of {@link #startFile(String, String, int, int, int)},
+ * {@link #writeResult(String, String, String)} and {@link #endFile()} calls.
+ *
+ * @version $Id$
+ */
+public abstract class AbstractReportWriter
+    implements ReportWriter
+{
+    /** Whether the report is partial. */
+    protected boolean partial;
+
+    /** Why the check was terminated early, may be null. */
+    protected String terminationReason;
+
+    /** The relative paths of the orphan pages. */
+    protected List<String> orphans = new ArrayList<String>();
+
+    /** {@inheritDoc} */
+    public void setPartial( String terminationReason )
+    {
+        this.partial = true;
+        this.terminationReason = terminationReason;
+    }
+
+    /** {@inheritDoc} */
+    public void setOrphans( List<String> orphans )
+    {
+        this.orphans = new ArrayList<String>( orphans );
+    }
+
+    /** {@inheritDoc} */
+    public void writeFile( LinkcheckFile linkcheckFile )
+        throws IOException
+    {
+        List<LinkcheckFileResult> results = linkcheckFile.getResults();
+
+        startFile( linkcheckFile.getAbsolutePath(), linkcheckFile.getRelativePath(), linkcheckFile.getSuccessful(),
+                   linkcheckFile.getUnsuccessful(), results.size() );
+        for ( LinkcheckFileResult result : results )
+        {
+            writeResult( result.getTarget(), result.getStatus(), result.getErrorMessage() );
+        }
+        endFile();
+    }
+
+    /** {@inheritDoc} */
+    public void writeFiles( CompactLinkcheckModel model )
+        throws IOException
+    {
+        for ( int i = 0; i < model.getFileCount(); i++ )
+        {
+            int first = model.getFirstResult( i );
+            int end = model.getFirstResult( i + 1 );
+
+            startFile( model.getAbsolutePath( i ), model.getRelativePath( i ), model.getSuccessful( i ),
+                       model.getUnsuccessful( i ), end - first );
+            for ( int r = first; r < end; r++ )
+            {
+                writeResult( model.getTarget( r ), model.getStatus( r ), model.getErrorMessage( r ) );
+            }
+            endFile();
+        }
+    }
+
+    /**
+     * Writes the start of a file.
+     *
+     * @param absolutePath the absolute path of the file, may be null.
+     * @param relativePath the relative path of the file, may be null.
+     * @param successful the number of successful links, <code>-1</code> if unknown.
+     * @param unsuccessful the number of unsuccessful links, <code>-1</code> if unknown.
+     * @param resultCount the number of results written next.
+     * @throws IOException if any
+     */
+    protected abstract void startFile( String absolutePath, String relativePath, int successful, int unsuccessful,
+                                       int resultCount )
+        throws IOException;
+
+    /**
+     * Writes a result of the current file.
+     *
+     * @param target the target of the link, may be null.
+     * @param status the status, may be null.
+     * @param errorMessage the error message, may be null.
+     * @throws IOException if any
+     */
+    protected abstract void writeResult( String target, String status, String errorMessage )
+        throws IOException;
+
+    /**
+     * Writes the end of the current file.
+     *
+     * @throws IOException if any
+     */
+    protected abstract void endFile()
+        throws IOException;
+}
@@ -0,0 +1,201 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Reads a report written by {@link BinaryReportWriter}, sharing the equal targets, statuses and error messages of
+ * the results through a {@link StringPool}.
+ *
+ * @version $Id$
+ */
+public class BinaryReportReader
+{
+    private final StringPool strings;
+
+    /**
+     * Creates a reader with its own string pool.
+     */
+    public BinaryReportReader()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * @param strings the pool of the result strings, may be shared with other readers.
+     */
+    public BinaryReportReader( StringPool strings )
+    {
+        this.strings = strings;
+    }
+
+    /**
+     * @param file the report.
+     * @return the model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public LinkcheckModel read( File file )
+        throws IOException
+    {
+        return readCompact( file ).toModel();
+    }
+
+    /**
+     * @param file the report.
+     * @return the compact model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public CompactLinkcheckModel readCompact( File file )
+        throws IOException
+    {
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( file );
+            return readCompact( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * @param input the report, closed by the caller.
+     * @return the compact model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public CompactLinkcheckModel readCompact( InputStream input )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( input, 64 * 1024 ) );
+
+        if ( in.readInt() != BinaryReportWriter.MAGIC )
+        {
+            throw new IOException( "Not a binary linkcheck report." );
+        }
+        int version = in.readUnsignedByte();
+        if ( version != BinaryReportWriter.VERSION )
+        {
+            throw new IOException( "Unsupported binary linkcheck report version: " + version );
+        }
+
+        CompactLinkcheckModel model = new CompactLinkcheckModel( strings );
+        model.setModelEncoding( readString( in ) );
+
+        // the shared instances of the string table entries, by id
+        List<String> table = new ArrayList<String>();
+
+        while ( true )
+        {
+            int tag = in.readUnsignedByte();
+            switch ( tag )
+            {
+                case BinaryReportWriter.STRING:
+                    table.add( strings.intern( readString( in ) ) );
+                    break;
+                case BinaryReportWriter.FILE:
+                    model.addFile( readString( in ), readString( in ), readVarInt( in ) - 1, readVarInt( in ) - 1 );
+                    break;
+                case BinaryReportWriter.RESULT:
+                    if ( model.getFileCount() == 0 )
+                    {
+                        throw new IOException( "Result without file." );
+                    }
+                    model.addResult( getString( table, readVarInt( in ) ), getString( table, readVarInt( in ) ),
+                                     getString( table, readVarInt( in ) ) );
+                    break;
+                case BinaryReportWriter.ORPHAN:
+                    model.addOrphan( readString( in ) );
+                    break;
+                case BinaryReportWriter.PARTIAL:
+                    model.setPartial( true );
+                    model.setTerminationReason( readString( in ) );
+                    break;
+                case BinaryReportWriter.END:
+                    return model;
+                default:
+                    throw new IOException( "Unknown record tag: " + tag );
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private static String getString( List<String> table, int reference )
+        throws IOException
+    {
+        if ( reference == 0 )
+        {
+            return null;
+        }
+        if ( reference > table.size() )
+        {
+            throw new IOException( "Unknown string reference: " + reference );
+        }
+
+        return table.get( reference - 1 );
+    }
+
+    private static String readString( DataInputStream in )
+        throws IOException
+    {
+        int length = readVarInt( in );
+        if ( length == 0 )
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length - 1];
+        in.readFully( bytes );
+
+        return new String( bytes, BinaryReportWriter.UTF_8 );
+    }
+
+    private static int readVarInt( DataInputStream in )
+        throws IOException
+    {
+        int value = 0;
+        for ( int shift = 0; shift < 35; shift += 7 )
+        {
+            int b = in.readUnsignedByte();
+            value |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return value;
+            }
+        }
+
+        throw new IOException( "Malformed variable length integer." );
+    }
+}
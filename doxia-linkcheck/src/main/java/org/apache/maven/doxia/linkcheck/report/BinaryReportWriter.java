@@ -0,0 +1,214 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a linkcheck report in a compact binary format, read back by {@link BinaryReportReader}.
+ * <p>
+ * After a header made of the magic number {@link #MAGIC}, the format {@link #VERSION} and the model encoding, the
+ * report is a sequence of records, each one starting with a tag byte:
+ * </p>
+ * <ul>
+ * <li>{@link #STRING}: a new entry of the string table, the next id starting from <code>0</code>,</li>
+ * <li>{@link #FILE}: a file, with its absolute and relative paths inline and its link counts,</li>
+ * <li>{@link #RESULT}: a result of the last file, made of the string table references of its target, status and
+ * error message,</li>
+ * <li>{@link #ORPHAN}: an orphan page, with its relative path inline,</li>
+ * <li>{@link #PARTIAL}: the mark of a partial report, with its termination reason inline,</li>
+ * <li>{@link #END}: the end of the report.</li>
+ * </ul>
+ * The strings of the results are only written the first time they appear. Integers are written as unsigned
+ * variable length integers, counts and references being shifted by one so that <code>-1</code> and
+ * <code>null</code> are written as <code>0</code>. Strings are written in UTF-8, prefixed by their length in bytes,
+ * or as <code>0</code> for <code>null</code> and as the byte length plus one otherwise.
+ *
+ * @version $Id$
+ */
+public class BinaryReportWriter
+    extends AbstractReportWriter
+{
+    /** The magic number of the format, <code>LCKB</code>. */
+    public static final int MAGIC = 0x4C434B42;
+
+    /** The version of the format. */
+    public static final int VERSION = 1;
+
+    /** Tag of a string table entry. */
+    static final int STRING = 1;
+
+    /** Tag of a file. */
+    static final int FILE = 2;
+
+    /** Tag of a result. */
+    static final int RESULT = 3;
+
+    /** Tag of the mark of a partial report. */
+    static final int PARTIAL = 4;
+
+    /** Tag of an orphan page. */
+    static final int ORPHAN = 5;
+
+    /** Tag of the end of the report. */
+    static final int END = 0;
+
+    static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final DataOutputStream out;
+
+    /** The ids of the string table entries written so far. */
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    /**
+     * Writes the header of the report.
+     *
+     * @param output the stream to write to, closed by {@link #close()}.
+     * @param encoding the encoding of the model.
+     * @throws IOException if any
+     */
+    public BinaryReportWriter( OutputStream output, String encoding )
+        throws IOException
+    {
+        this.out = new DataOutputStream( new BufferedOutputStream( output, 64 * 1024 ) );
+
+        out.writeInt( MAGIC );
+        out.writeByte( VERSION );
+        writeString( encoding );
+    }
+
+    /** {@inheritDoc} */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            for ( String orphan : orphans )
+            {
+                out.writeByte( ORPHAN );
+                writeString( orphan );
+            }
+            if ( partial )
+            {
+                out.writeByte( PARTIAL );
+                writeString( terminationReason );
+            }
+            out.writeByte( END );
+            out.flush();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected void startFile( String absolutePath, String relativePath, int successful, int unsuccessful,
+                              int resultCount )
+        throws IOException
+    {
+        out.writeByte( FILE );
+        writeString( absolutePath );
+        writeString( relativePath );
+        writeVarInt( successful + 1 );
+        writeVarInt( unsuccessful + 1 );
+    }
+
+    /** {@inheritDoc} */
+    protected void writeResult( String target, String status, String errorMessage )
+        throws IOException
+    {
+        int targetRef = getReference( target );
+        int statusRef = getReference( status );
+        int errorMessageRef = getReference( errorMessage );
+
+        out.writeByte( RESULT );
+        writeVarInt( targetRef );
+        writeVarInt( statusRef );
+        writeVarInt( errorMessageRef );
+    }
+
+    /** {@inheritDoc} */
+    protected void endFile()
+    {
+        // nop
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param s a string, may be null.
+     * @return the reference of the string, written first in the string table if needed.
+     * @throws IOException if any
+     */
+    private int getReference( String s )
+        throws IOException
+    {
+        if ( s == null )
+        {
+            return 0;
+        }
+
+        Integer id = ids.get( s );
+        if ( id == null )
+        {
+            id = Integer.valueOf( ids.size() );
+            ids.put( s, id );
+
+            out.writeByte( STRING );
+            writeString( s );
+        }
+
+        return id.intValue() + 1;
+    }
+
+    private void writeString( String s )
+        throws IOException
+    {
+        if ( s == null )
+        {
+            writeVarInt( 0 );
+            return;
+        }
+
+        byte[] bytes = s.getBytes( UTF_8 );
+        writeVarInt( bytes.length + 1 );
+        out.write( bytes );
+    }
+
+    private void writeVarInt( int value )
+        throws IOException
+    {
+        while ( ( value & ~0x7F ) != 0 )
+        {
+            out.writeByte( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+}
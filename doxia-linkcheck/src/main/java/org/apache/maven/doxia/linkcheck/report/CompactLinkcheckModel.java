@@ -0,0 +1,418 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+
+/**
+ * A compact representation of a {@link LinkcheckModel} for large reports: the files and the results are stored in
+ * arrays, and the strings of the results are stored as ids of a {@link StringPool}, so that each result takes
+ * twelve bytes instead of a {@link LinkcheckFileResult} object and its list entry.
+ * <p>
+ * Files are added in order, each one followed by its results. The files and results are indexed from
+ * <code>0</code>, the results of the file <code>i</code> being those from {@link #getFirstResult(int)} included
+ * to {@link #getFirstResult(int) getFirstResult( i + 1 )} excluded. This class is not thread-safe.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class CompactLinkcheckModel
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StringPool strings;
+
+    private String modelEncoding = "UTF-8";
+
+    private boolean partial;
+
+    private String terminationReason;
+
+    /** The relative paths of the orphan pages. */
+    private final List<String> orphans = new ArrayList<String>();
+
+    private int fileCount;
+
+    private String[] absolutePaths = new String[INITIAL_CAPACITY];
+
+    private String[] relativePaths = new String[INITIAL_CAPACITY];
+
+    private int[] successful = new int[INITIAL_CAPACITY];
+
+    private int[] unsuccessful = new int[INITIAL_CAPACITY];
+
+    /** The index of the first result of each file, plus the total number of results. */
+    private int[] firstResults = new int[INITIAL_CAPACITY + 1];
+
+    private int resultCount;
+
+    /** The ids of the target, status and error message of each result, in sequence. */
+    private int[] results = new int[INITIAL_CAPACITY * 3];
+
+    /**
+     * Creates an empty model with its own string pool.
+     */
+    public CompactLinkcheckModel()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * @param strings the pool of the result strings, may be shared with other models.
+     */
+    public CompactLinkcheckModel( StringPool strings )
+    {
+        this.strings = strings;
+    }
+
+    /**
+     * @param model a model.
+     * @return a compact copy of the model.
+     */
+    public static CompactLinkcheckModel of( LinkcheckModel model )
+    {
+        CompactLinkcheckModel compact = new CompactLinkcheckModel();
+        compact.setModelEncoding( model.getModelEncoding() );
+        compact.setPartial( model.isPartial() );
+        compact.setTerminationReason( model.getTerminationReason() );
+        for ( String orphan : model.getOrphans() )
+        {
+            compact.addOrphan( orphan );
+        }
+        for ( Iterator<?> it = model.getFiles().iterator(); it.hasNext(); )
+        {
+            compact.addFile( (LinkcheckFile) it.next() );
+        }
+
+        return compact;
+    }
+
+    /**
+     * @return the pool of the result strings.
+     */
+    public StringPool getStrings()
+    {
+        return strings;
+    }
+
+    /**
+     * @return the encoding of the report.
+     */
+    public String getModelEncoding()
+    {
+        return modelEncoding;
+    }
+
+    /**
+     * @param modelEncoding the encoding of the report.
+     */
+    public void setModelEncoding( String modelEncoding )
+    {
+        this.modelEncoding = modelEncoding;
+    }
+
+    /**
+     * @return <code>true</code> if the check was terminated early.
+     */
+    public boolean isPartial()
+    {
+        return partial;
+    }
+
+    /**
+     * @param partial <code>true</code> if the check was terminated early.
+     */
+    public void setPartial( boolean partial )
+    {
+        this.partial = partial;
+    }
+
+    /**
+     * @return why the check was terminated early, may be null.
+     */
+    public String getTerminationReason()
+    {
+        return terminationReason;
+    }
+
+    /**
+     * @param terminationReason why the check was terminated early.
+     */
+    public void setTerminationReason( String terminationReason )
+    {
+        this.terminationReason = terminationReason;
+    }
+
+    /**
+     * @return the relative paths of the orphan pages, not null.
+     */
+    public List<String> getOrphans()
+    {
+        return orphans;
+    }
+
+    /**
+     * @param orphan the relative path of an orphan page.
+     */
+    public void addOrphan( String orphan )
+    {
+        orphans.add( orphan );
+    }
+
+    /**
+     * Adds a file and its results.
+     *
+     * @param linkcheckFile a checked file.
+     */
+    public void addFile( LinkcheckFile linkcheckFile )
+    {
+        addFile( linkcheckFile.getAbsolutePath(), linkcheckFile.getRelativePath(), linkcheckFile.getSuccessful(),
+                 linkcheckFile.getUnsuccessful() );
+        for ( Iterator<?> it = linkcheckFile.getResults().iterator(); it.hasNext(); )
+        {
+            LinkcheckFileResult result = (LinkcheckFileResult) it.next();
+            addResult( result.getTarget(), result.getStatus(), result.getErrorMessage() );
+        }
+    }
+
+    /**
+     * Adds a file, its results are added next with {@link #addResult(String, String, String)}.
+     *
+     * @param absolutePath the absolute path of the file.
+     * @param relativePath the relative path of the file.
+     * @param successfulLinks the number of successful links, <code>-1</code> if unknown.
+     * @param unsuccessfulLinks the number of unsuccessful links, <code>-1</code> if unknown.
+     */
+    public void addFile( String absolutePath, String relativePath, int successfulLinks, int unsuccessfulLinks )
+    {
+        if ( fileCount == absolutePaths.length )
+        {
+            int capacity = fileCount * 2;
+            absolutePaths = Arrays.copyOf( absolutePaths, capacity );
+            relativePaths = Arrays.copyOf( relativePaths, capacity );
+            successful = Arrays.copyOf( successful, capacity );
+            unsuccessful = Arrays.copyOf( unsuccessful, capacity );
+            firstResults = Arrays.copyOf( firstResults, capacity + 1 );
+        }
+
+        absolutePaths[fileCount] = absolutePath;
+        relativePaths[fileCount] = relativePath;
+        successful[fileCount] = successfulLinks;
+        unsuccessful[fileCount] = unsuccessfulLinks;
+        firstResults[fileCount] = resultCount;
+        fileCount++;
+        firstResults[fileCount] = resultCount;
+    }
+
+    /**
+     * Adds a result to the last added file.
+     *
+     * @param target the target of the link.
+     * @param status the status, i.e. {@link LinkcheckFileResult#VALID}.
+     * @param errorMessage the error message.
+     */
+    public void addResult( String target, String status, String errorMessage )
+    {
+        if ( fileCount == 0 )
+        {
+            throw new IllegalStateException( "No file added." );
+        }
+
+        if ( resultCount * 3 == results.length )
+        {
+            results = Arrays.copyOf( results, results.length * 2 );
+        }
+
+        int i = resultCount * 3;
+        results[i] = strings.getId( target );
+        results[i + 1] = strings.getId( status );
+        results[i + 2] = strings.getId( errorMessage );
+        resultCount++;
+        firstResults[fileCount] = resultCount;
+    }
+
+    /**
+     * @return the number of files.
+     */
+    public int getFileCount()
+    {
+        return fileCount;
+    }
+
+    /**
+     * @return the number of results of all files.
+     */
+    public int getResultCount()
+    {
+        return resultCount;
+    }
+
+    /**
+     * @param file the index of a file.
+     * @return the absolute path of the file.
+     */
+    public String getAbsolutePath( int file )
+    {
+        checkFile( file );
+        return absolutePaths[file];
+    }
+
+    /**
+     * @param file the index of a file.
+     * @return the relative path of the file.
+     */
+    public String getRelativePath( int file )
+    {
+        checkFile( file );
+        return relativePaths[file];
+    }
+
+    /**
+     * @param file the index of a file.
+     * @return the number of successful links of the file.
+     */
+    public int getSuccessful( int file )
+    {
+        checkFile( file );
+        return successful[file];
+    }
+
+    /**
+     * @param file the index of a file.
+     * @return the number of unsuccessful links of the file.
+     */
+    public int getUnsuccessful( int file )
+    {
+        checkFile( file );
+        return unsuccessful[file];
+    }
+
+    /**
+     * @param file the index of a file, or the number of files.
+     * @return the index of the first result of the file, or the number of results.
+     */
+    public int getFirstResult( int file )
+    {
+        if ( file < 0 || file > fileCount )
+        {
+            throw new IndexOutOfBoundsException( "File: " + file + ", files: " + fileCount );
+        }
+        return firstResults[file];
+    }
+
+    /**
+     * @param result the index of a result.
+     * @return the target of the result.
+     */
+    public String getTarget( int result )
+    {
+        return getResultString( result, 0 );
+    }
+
+    /**
+     * @param result the index of a result.
+     * @return the status of the result.
+     */
+    public String getStatus( int result )
+    {
+        return getResultString( result, 1 );
+    }
+
+    /**
+     * @param result the index of a result.
+     * @return the error message of the result.
+     */
+    public String getErrorMessage( int result )
+    {
+        return getResultString( result, 2 );
+    }
+
+    /**
+     * @param file the index of a file.
+     * @return a new checked file, sharing the strings of the pool.
+     */
+    public LinkcheckFile getFile( int file )
+    {
+        LinkcheckFile linkcheckFile = new LinkcheckFile();
+        linkcheckFile.setAbsolutePath( getAbsolutePath( file ) );
+        linkcheckFile.setRelativePath( getRelativePath( file ) );
+        linkcheckFile.setSuccessful( getSuccessful( file ) );
+        linkcheckFile.setUnsuccessful( getUnsuccessful( file ) );
+
+        for ( int r = firstResults[file]; r < firstResults[file + 1]; r++ )
+        {
+            LinkcheckFileResult result = new LinkcheckFileResult();
+            result.setTarget( getTarget( r ) );
+            result.setStatus( getStatus( r ) );
+            result.setErrorMessage( getErrorMessage( r ) );
+            linkcheckFile.addResult( result );
+        }
+
+        return linkcheckFile;
+    }
+
+    /**
+     * @return a new model with all the files, sharing the strings of the pool.
+     */
+    public LinkcheckModel toModel()
+    {
+        LinkcheckModel model = new LinkcheckModel();
+        model.setModelEncoding( modelEncoding );
+        model.setPartial( partial );
+        model.setTerminationReason( terminationReason );
+        model.setOrphans( new ArrayList<String>( orphans ) );
+        model.setFiles( new LinkedList<LinkcheckFile>() );
+        for ( int i = 0; i < fileCount; i++ )
+        {
+            model.addFile( getFile( i ) );
+        }
+
+        return model;
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void checkFile( int file )
+    {
+        if ( file < 0 || file >= fileCount )
+        {
+            throw new IndexOutOfBoundsException( "File: " + file + ", files: " + fileCount );
+        }
+    }
+
+    private String getResultString( int result, int field )
+    {
+        if ( result < 0 || result >= resultCount )
+        {
+            throw new IndexOutOfBoundsException( "Result: " + result + ", results: " + resultCount );
+        }
+        return strings.get( results[result * 3 + field] );
+    }
+}
@@ -0,0 +1,352 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Reads a report written by {@link JsonLinesReportWriter}, sharing the equal targets, statuses and error messages
+ * of the results through a {@link StringPool}. Only the flat objects written by the writer are supported, the
+ * unknown fields are ignored.
+ *
+ * @version $Id$
+ */
+public class JsonLinesReportReader
+{
+    private final StringPool strings;
+
+    /**
+     * Creates a reader with its own string pool.
+     */
+    public JsonLinesReportReader()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * @param strings the pool of the result strings, may be shared with other readers.
+     */
+    public JsonLinesReportReader( StringPool strings )
+    {
+        this.strings = strings;
+    }
+
+    /**
+     * @param file the report.
+     * @return the model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public LinkcheckModel read( File file )
+        throws IOException
+    {
+        return readCompact( file ).toModel();
+    }
+
+    /**
+     * @param file the report.
+     * @return the compact model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public CompactLinkcheckModel readCompact( File file )
+        throws IOException
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newReader( file, ReaderFactory.UTF_8 );
+            return readCompact( reader );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * @param reader the report, closed by the caller.
+     * @return the compact model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public CompactLinkcheckModel readCompact( Reader reader )
+        throws IOException
+    {
+        CompactLinkcheckModel model = new CompactLinkcheckModel( strings );
+
+        BufferedReader in = new BufferedReader( reader );
+        Map<String, Object> record = new HashMap<String, Object>();
+        int lineNumber = 0;
+        String line;
+        while ( ( line = in.readLine() ) != null )
+        {
+            lineNumber++;
+            if ( line.trim().length() == 0 )
+            {
+                continue;
+            }
+
+            record.clear();
+            new RecordParser( line, lineNumber ).parse( record );
+
+            if ( record.containsKey( "orphan" ) )
+            {
+                model.addOrphan( (String) record.get( "orphan" ) );
+            }
+            else if ( record.containsKey( "partial" ) )
+            {
+                model.setPartial( Boolean.TRUE.equals( record.get( "partial" ) ) );
+                model.setTerminationReason( (String) record.get( "terminationReason" ) );
+            }
+            else if ( record.containsKey( "target" ) || record.containsKey( "status" ) )
+            {
+                if ( model.getFileCount() == 0 )
+                {
+                    throw new IOException( "Line " + lineNumber + ": result without file." );
+                }
+                model.addResult( (String) record.get( "target" ), (String) record.get( "status" ),
+                                 (String) record.get( "errorMessage" ) );
+            }
+            else
+            {
+                model.addFile( (String) record.get( "absolutePath" ), (String) record.get( "file" ),
+                               getInt( record, "successful" ), getInt( record, "unsuccessful" ) );
+            }
+        }
+
+        return model;
+    }
+
+    private static int getInt( Map<String, Object> record, String name )
+    {
+        Object value = record.get( name );
+
+        return ( value instanceof Integer ? ( (Integer) value ).intValue() : -1 );
+    }
+
+    /**
+     * Parses a flat JSON object, with string, integer, boolean and null values.
+     */
+    private static final class RecordParser
+    {
+        private final String line;
+
+        private final int lineNumber;
+
+        private int pos;
+
+        RecordParser( String line, int lineNumber )
+        {
+            this.line = line;
+            this.lineNumber = lineNumber;
+        }
+
+        void parse( Map<String, Object> record )
+            throws IOException
+        {
+            expect( '{' );
+            if ( peek() == '}' )
+            {
+                pos++;
+            }
+            else
+            {
+                char c;
+                do
+                {
+                    String name = parseString();
+                    expect( ':' );
+                    record.put( name, parseValue() );
+                    c = next();
+                }
+                while ( c == ',' );
+
+                if ( c != '}' )
+                {
+                    throw error( "',' or '}' expected" );
+                }
+            }
+
+            if ( peek() != 0 )
+            {
+                throw error( "end of line expected" );
+            }
+        }
+
+        private Object parseValue()
+            throws IOException
+        {
+            char c = peek();
+            if ( c == '"' )
+            {
+                return parseString();
+            }
+            if ( c == '-' || ( c >= '0' && c <= '9' ) )
+            {
+                int start = pos++;
+                while ( pos < line.length() && Character.isDigit( line.charAt( pos ) ) )
+                {
+                    pos++;
+                }
+                try
+                {
+                    return Integer.valueOf( line.substring( start, pos ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw error( "integer expected" );
+                }
+            }
+            if ( line.startsWith( "null", pos ) )
+            {
+                pos += 4;
+                return null;
+            }
+            if ( line.startsWith( "true", pos ) )
+            {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if ( line.startsWith( "false", pos ) )
+            {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+
+            throw error( "value expected" );
+        }
+
+        private String parseString()
+            throws IOException
+        {
+            expect( '"' );
+
+            StringBuilder sb = null;
+            int start = pos;
+            while ( pos < line.length() )
+            {
+                char c = line.charAt( pos++ );
+                if ( c == '"' )
+                {
+                    if ( sb == null )
+                    {
+                        return line.substring( start, pos - 1 );
+                    }
+                    return sb.toString();
+                }
+
+                if ( c == '\\' )
+                {
+                    if ( sb == null )
+                    {
+                        sb = new StringBuilder( line.substring( start, pos - 1 ) );
+                    }
+                    sb.append( unescape() );
+                }
+                else if ( sb != null )
+                {
+                    sb.append( c );
+                }
+            }
+
+            throw error( "unterminated string" );
+        }
+
+        private char unescape()
+            throws IOException
+        {
+            if ( pos >= line.length() )
+            {
+                throw error( "unterminated escape" );
+            }
+
+            char c = line.charAt( pos++ );
+            switch ( c )
+            {
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    if ( pos + 4 > line.length() )
+                    {
+                        throw error( "unterminated escape" );
+                    }
+                    try
+                    {
+                        char u = (char) Integer.parseInt( line.substring( pos, pos + 4 ), 16 );
+                        pos += 4;
+                        return u;
+                    }
+                    catch ( NumberFormatException e )
+                    {
+                        throw error( "invalid unicode escape" );
+                    }
+                default:
+                    // '"', '\\' and '/'
+                    return c;
+            }
+        }
+
+        private void expect( char expected )
+            throws IOException
+        {
+            if ( next() != expected )
+            {
+                throw error( "'" + expected + "' expected" );
+            }
+        }
+
+        private char next()
+        {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private char peek()
+        {
+            while ( pos < line.length() && Character.isWhitespace( line.charAt( pos ) ) )
+            {
+                pos++;
+            }
+
+            return ( pos < line.length() ? line.charAt( pos ) : 0 );
+        }
+
+        private IOException error( String message )
+        {
+            return new IOException( "Line " + lineNumber + ", column " + ( pos + 1 ) + ": " + message );
+        }
+    }
+}
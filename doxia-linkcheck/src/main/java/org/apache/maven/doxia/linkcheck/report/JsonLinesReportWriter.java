@@ -0,0 +1,196 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a linkcheck report in the JSON Lines format, one JSON object per line, i.e. to be filtered with
+ * <code>grep</code> or <code>jq</code>. Each file is written as a file record, followed by one record per result:
+ * <pre>
+ * {"file":"testA.html","absolutePath":"/site/testA.html","successful":1,"unsuccessful":2}
+ * {"file":"testA.html","target":"style.css","status":"error","errorMessage":"doesn't exist."}
+ * </pre>
+ * The records of the results repeat the relative path of their file, so that each line stands on its own. The
+ * <code>null</code> values and the <code>-1</code> counts are not written. The orphan pages are written after the
+ * files, as <code>{"orphan":"orphan.html"}</code> records, and a partial report ends with a
+ * <code>{"partial":true,"terminationReason":"..."}</code> record.
+ *
+ * @version $Id$
+ * @see JsonLinesReportReader
+ */
+public class JsonLinesReportWriter
+    extends AbstractReportWriter
+{
+    private final Writer writer;
+
+    private final StringBuilder line = new StringBuilder( 256 );
+
+    private String relativePath;
+
+    /**
+     * @param writer the writer to write to, should encode in UTF-8, closed by {@link #close()}.
+     */
+    public JsonLinesReportWriter( Writer writer )
+    {
+        this.writer = writer;
+    }
+
+    /** {@inheritDoc} */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            for ( String orphan : orphans )
+            {
+                line.setLength( 0 );
+                line.append( '{' );
+                appendField( "orphan", orphan );
+                writeLine();
+            }
+            if ( partial )
+            {
+                line.setLength( 0 );
+                line.append( "{\"partial\":true" );
+                appendField( "terminationReason", terminationReason );
+                writeLine();
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected void startFile( String absolutePath, String relativePath, int successful, int unsuccessful,
+                              int resultCount )
+        throws IOException
+    {
+        this.relativePath = relativePath;
+
+        line.setLength( 0 );
+        line.append( '{' );
+        appendField( "file", relativePath );
+        appendField( "absolutePath", absolutePath );
+        appendField( "successful", successful );
+        appendField( "unsuccessful", unsuccessful );
+        writeLine();
+    }
+
+    /** {@inheritDoc} */
+    protected void writeResult( String target, String status, String errorMessage )
+        throws IOException
+    {
+        line.setLength( 0 );
+        line.append( '{' );
+        appendField( "file", relativePath );
+        appendField( "target", target );
+        appendField( "status", status );
+        appendField( "errorMessage", errorMessage );
+        writeLine();
+    }
+
+    /** {@inheritDoc} */
+    protected void endFile()
+    {
+        relativePath = null;
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void writeLine()
+        throws IOException
+    {
+        line.append( "}\n" );
+        writer.write( line.toString() );
+    }
+
+    private void appendField( String name, int value )
+    {
+        if ( value != -1 )
+        {
+            appendName( name );
+            line.append( value );
+        }
+    }
+
+    private void appendField( String name, String value )
+    {
+        if ( value == null )
+        {
+            return;
+        }
+
+        appendName( name );
+        line.append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    line.append( "\\\"" );
+                    break;
+                case '\\':
+                    line.append( "\\\\" );
+                    break;
+                case '\n':
+                    line.append( "\\n" );
+                    break;
+                case '\r':
+                    line.append( "\\r" );
+                    break;
+                case '\t':
+                    line.append( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 )
+                    {
+                        String hex = Integer.toHexString( c );
+                        line.append( "\\u" );
+                        for ( int j = hex.length(); j < 4; j++ )
+                        {
+                            line.append( '0' );
+                        }
+                        line.append( hex );
+                    }
+                    else
+                    {
+                        line.append( c );
+                    }
+            }
+        }
+        line.append( '"' );
+    }
+
+    private void appendName( String name )
+    {
+        if ( line.length() > 1 )
+        {
+            line.append( ',' );
+        }
+        line.append( '"' ).append( name ).append( "\":" );
+    }
+}
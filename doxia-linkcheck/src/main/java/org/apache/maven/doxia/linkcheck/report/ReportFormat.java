@@ -0,0 +1,150 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * The formats of the linkcheck report.
+ *
+ * @version $Id$
+ */
+public enum ReportFormat
+{
+    /** The <code>linkcheck.xml</code> format, the default. */
+    XML( "xml" )
+    {
+        /** {@inheritDoc} */
+        public ReportWriter newWriter( File file, String encoding )
+            throws IOException
+        {
+            return new XmlReportWriter( WriterFactory.newXmlWriter( file ), encoding );
+        }
+
+        /** {@inheritDoc} */
+        public CompactLinkcheckModel read( File file, StringPool strings )
+            throws IOException
+        {
+            try
+            {
+                return new XmlReportReader( strings ).readCompact( file );
+            }
+            catch ( XmlPullParserException e )
+            {
+                IOException ioe = new IOException( "Unable to parse " + file + ": " + e.getMessage() );
+                ioe.initCause( e );
+                throw ioe;
+            }
+        }
+    },
+
+    /** The JSON Lines format, one record per line, always in UTF-8. */
+    JSON_LINES( "jsonl" )
+    {
+        /** {@inheritDoc} */
+        public ReportWriter newWriter( File file, String encoding )
+            throws IOException
+        {
+            return new JsonLinesReportWriter( WriterFactory.newWriter( file, WriterFactory.UTF_8 ) );
+        }
+
+        /** {@inheritDoc} */
+        public CompactLinkcheckModel read( File file, StringPool strings )
+            throws IOException
+        {
+            return new JsonLinesReportReader( strings ).readCompact( file );
+        }
+    },
+
+    /** The compact binary format, with a string table. */
+    BINARY( "binary" )
+    {
+        /** {@inheritDoc} */
+        public ReportWriter newWriter( File file, String encoding )
+            throws IOException
+        {
+            return new BinaryReportWriter( new FileOutputStream( file ), encoding );
+        }
+
+        /** {@inheritDoc} */
+        public CompactLinkcheckModel read( File file, StringPool strings )
+            throws IOException
+        {
+            return new BinaryReportReader( strings ).readCompact( file );
+        }
+    };
+
+    private final String name;
+
+    private ReportFormat( String name )
+    {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the format, i.e. <code>jsonl</code>.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @param file the report to write.
+     * @param encoding the encoding of the report, only used by the XML format.
+     * @return a new writer on the file.
+     * @throws IOException if the file can't be opened.
+     */
+    public abstract ReportWriter newWriter( File file, String encoding )
+        throws IOException;
+
+    /**
+     * @param file the report to read.
+     * @param strings the pool of the result strings.
+     * @return the compact model read.
+     * @throws IOException if the report can't be read or is malformed.
+     */
+    public abstract CompactLinkcheckModel read( File file, StringPool strings )
+        throws IOException;
+
+    /**
+     * @param name a format name: <code>xml</code>, <code>jsonl</code> or <code>binary</code>, case insensitive.
+     * @return the format.
+     * @throws IllegalArgumentException if the format is unknown.
+     */
+    public static ReportFormat forName( String name )
+    {
+        for ( ReportFormat format : values() )
+        {
+            if ( format.name.equals( name.toLowerCase( Locale.ENGLISH ) ) )
+            {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException( "Unknown report format: '" + name + "'" );
+    }
+}
@@ -0,0 +1,78 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+
+/**
+ * Writes a linkcheck report one file at a time, so that the checked files don't have to be kept in memory.
+ *
+ * @version $Id$
+ * @see ReportFormat
+ */
+public interface ReportWriter
+    extends Closeable
+{
+    /**
+     * Writes a checked file and its results.
+     *
+     * @param linkcheckFile the checked file.
+     * @throws IOException if any
+     */
+    void writeFile( LinkcheckFile linkcheckFile )
+        throws IOException;
+
+    /**
+     * Writes all the files of a compact model and their results, without creating an object per result.
+     *
+     * @param model the compact model.
+     * @throws IOException if any
+     */
+    void writeFiles( CompactLinkcheckModel model )
+        throws IOException;
+
+    /**
+     * Marks the report as partial, i.e. when the check was terminated early. The mark is written by
+     * {@link #close()}.
+     *
+     * @param terminationReason why the check was terminated, may be null.
+     */
+    void setPartial( String terminationReason );
+
+    /**
+     * Sets the orphan pages, written by {@link #close()}.
+     *
+     * @param orphans the relative paths of the pages which can't be reached from the entry pages.
+     * @see org.apache.maven.doxia.linkcheck.model.LinkcheckModel#getOrphans()
+     */
+    void setOrphans( List<String> orphans );
+
+    /**
+     * Writes the end of the report and closes the underlying output.
+     *
+     * @throws IOException if any
+     */
+    void close()
+        throws IOException;
+}
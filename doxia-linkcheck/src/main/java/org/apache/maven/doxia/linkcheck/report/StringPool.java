@@ -0,0 +1,106 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+
+/**
+ * A symbol table giving a shared instance and a numeric id to equal strings, i.e. to the link targets, statuses
+ * and error messages repeated over the results of a report. The ids are assigned in order from <code>0</code>,
+ * <code>-1</code> standing for <code>null</code>.
+ * <p>
+ * The pool only grows, it should only be given the strings kept afterwards. This class is not thread-safe.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class StringPool
+{
+    /** The ids by string. */
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    /** The strings by id. */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Creates a pool holding the result statuses.
+     */
+    public StringPool()
+    {
+        getId( LinkcheckFileResult.VALID );
+        getId( LinkcheckFileResult.ERROR );
+        getId( LinkcheckFileResult.WARNING );
+        getId( LinkcheckFileResult.UNKNOWN );
+        getId( "" );
+    }
+
+    /**
+     * @param s a string, may be null.
+     * @return the shared instance equal to the given string, the given one if it is new.
+     */
+    public String intern( String s )
+    {
+        return ( s == null ? null : strings.get( getId( s ) ) );
+    }
+
+    /**
+     * @param s a string, may be null.
+     * @return the id of the string, added to the pool if it is new, or <code>-1</code> for <code>null</code>.
+     */
+    public int getId( String s )
+    {
+        if ( s == null )
+        {
+            return -1;
+        }
+
+        Integer id = ids.get( s );
+        if ( id == null )
+        {
+            id = Integer.valueOf( strings.size() );
+            ids.put( s, id );
+            strings.add( s );
+        }
+
+        return id.intValue();
+    }
+
+    /**
+     * @param id an id returned by {@link #getId(String)}.
+     * @return the string with the given id, <code>null</code> for <code>-1</code>.
+     */
+    public String get( int id )
+    {
+        return ( id == -1 ? null : strings.get( id ) );
+    }
+
+    /**
+     * @return the number of strings in the pool.
+     */
+    public int size()
+    {
+        return strings.size();
+    }
+}
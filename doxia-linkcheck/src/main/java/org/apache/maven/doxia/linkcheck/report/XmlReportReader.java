@@ -0,0 +1,255 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Reads a <code>linkcheck.xml</code> report, like
+ * {@link org.apache.maven.doxia.linkcheck.model.io.xpp3.LinkcheckModelXpp3Reader}, but sharing the equal targets,
+ * statuses and error messages of the results through a {@link StringPool}. The report can also be read into a
+ * {@link CompactLinkcheckModel}, without creating an object per result.
+ *
+ * @version $Id$
+ */
+public class XmlReportReader
+{
+    private final StringPool strings;
+
+    /**
+     * Creates a reader with its own string pool.
+     */
+    public XmlReportReader()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * @param strings the pool of the result strings, may be shared with other readers.
+     */
+    public XmlReportReader( StringPool strings )
+    {
+        this.strings = strings;
+    }
+
+    /**
+     * @param file the report.
+     * @return the model read.
+     * @throws IOException if any
+     * @throws XmlPullParserException if the report is not well-formed.
+     */
+    public LinkcheckModel read( File file )
+        throws IOException, XmlPullParserException
+    {
+        return readCompact( file ).toModel();
+    }
+
+    /**
+     * @param reader the report, closed by the caller.
+     * @return the model read.
+     * @throws IOException if any
+     * @throws XmlPullParserException if the report is not well-formed.
+     */
+    public LinkcheckModel read( Reader reader )
+        throws IOException, XmlPullParserException
+    {
+        return readCompact( reader ).toModel();
+    }
+
+    /**
+     * @param file the report.
+     * @return the compact model read.
+     * @throws IOException if any
+     * @throws XmlPullParserException if the report is not well-formed.
+     */
+    public CompactLinkcheckModel readCompact( File file )
+        throws IOException, XmlPullParserException
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newXmlReader( file );
+            return readCompact( reader );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * @param reader the report, closed by the caller.
+     * @return the compact model read.
+     * @throws IOException if any
+     * @throws XmlPullParserException if the report is not well-formed.
+     */
+    public CompactLinkcheckModel readCompact( Reader reader )
+        throws IOException, XmlPullParserException
+    {
+        XmlPullParser parser = new MXParser();
+        parser.setInput( reader );
+
+        CompactLinkcheckModel model = new CompactLinkcheckModel( strings );
+
+        FileFields file = null;
+        String target = null;
+        String status = null;
+        String errorMessage = null;
+
+        int eventType = parser.getEventType();
+        while ( eventType != XmlPullParser.END_DOCUMENT )
+        {
+            if ( eventType == XmlPullParser.START_TAG )
+            {
+                String name = parser.getName();
+                if ( parser.getDepth() == 1 )
+                {
+                    if ( !"linkcheckModel".equals( name ) )
+                    {
+                        throw new XmlPullParserException( "Expected root element 'linkcheckModel' but found '" + name
+                            + "'", parser, null );
+                    }
+                    model.setModelEncoding( parser.getInputEncoding() );
+                }
+                else if ( "file".equals( name ) )
+                {
+                    file = new FileFields();
+                }
+                else if ( parser.getDepth() == 2 && "partial".equals( name ) )
+                {
+                    model.setPartial( Boolean.valueOf( parser.nextText().trim() ).booleanValue() );
+                }
+                else if ( parser.getDepth() == 2 && "terminationReason".equals( name ) )
+                {
+                    model.setTerminationReason( parser.nextText().trim() );
+                }
+                else if ( parser.getDepth() == 3 && "orphan".equals( name ) )
+                {
+                    model.addOrphan( parser.nextText().trim() );
+                }
+                else if ( file != null && "absolutePath".equals( name ) )
+                {
+                    file.absolutePath = parser.nextText().trim();
+                }
+                else if ( file != null && "relativePath".equals( name ) )
+                {
+                    file.relativePath = parser.nextText().trim();
+                }
+                else if ( file != null && "successful".equals( name ) )
+                {
+                    file.successful = getIntValue( parser );
+                }
+                else if ( file != null && "unsuccessful".equals( name ) )
+                {
+                    file.unsuccessful = getIntValue( parser );
+                }
+                else if ( file != null && "results".equals( name ) )
+                {
+                    file.add( model );
+                }
+                else if ( "result".equals( name ) )
+                {
+                    target = null;
+                    status = null;
+                    errorMessage = null;
+                }
+                else if ( "target".equals( name ) )
+                {
+                    target = parser.nextText().trim();
+                }
+                else if ( "status".equals( name ) )
+                {
+                    status = parser.nextText().trim();
+                }
+                else if ( "errorMessage".equals( name ) )
+                {
+                    errorMessage = parser.nextText().trim();
+                }
+            }
+            else if ( eventType == XmlPullParser.END_TAG )
+            {
+                String name = parser.getName();
+                if ( "result".equals( name ) )
+                {
+                    model.addResult( target, status, errorMessage );
+                }
+                else if ( "file".equals( name ) && file != null )
+                {
+                    file.add( model );
+                    file = null;
+                }
+            }
+
+            eventType = parser.next();
+        }
+
+        return model;
+    }
+
+    private static int getIntValue( XmlPullParser parser )
+        throws IOException, XmlPullParserException
+    {
+        String name = parser.getName();
+        String text = parser.nextText().trim();
+        try
+        {
+            return Integer.parseInt( text );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new XmlPullParserException( "Unable to parse element '" + name + "', must be an integer", parser,
+                                              e );
+        }
+    }
+
+    /**
+     * The fields of a file, read before its results.
+     */
+    private static final class FileFields
+    {
+        private String absolutePath;
+
+        private String relativePath;
+
+        private int successful = -1;
+
+        private int unsuccessful = -1;
+
+        private boolean added;
+
+        void add( CompactLinkcheckModel model )
+        {
+            if ( !added )
+            {
+                model.addFile( absolutePath, relativePath, successful, unsuccessful );
+                added = true;
+            }
+        }
+    }
+}
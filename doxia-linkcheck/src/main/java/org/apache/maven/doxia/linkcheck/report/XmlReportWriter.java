@@ -0,0 +1,174 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.codehaus.plexus.util.xml.pull.MXSerializer;
+import org.codehaus.plexus.util.xml.pull.XmlSerializer;
+
+/**
+ * Writes a <code>linkcheck.xml</code> report one file at a time, so that the checked files don't have to be
+ * kept in memory. The output is the same as the one of
+ * {@link org.apache.maven.doxia.linkcheck.model.io.xpp3.LinkcheckModelXpp3Writer} for a model with the same files.
+ *
+ * @version $Id$
+ */
+public class XmlReportWriter
+    extends AbstractReportWriter
+{
+    private final Writer writer;
+
+    private final XmlSerializer serializer;
+
+    private boolean filesStarted;
+
+    private boolean resultsStarted;
+
+    /**
+     * Writes the start of the report.
+     *
+     * @param writer the writer to write to, closed by {@link #close()}.
+     * @param encoding the encoding declared in the XML prolog.
+     * @throws IOException if any
+     */
+    public XmlReportWriter( Writer writer, String encoding )
+        throws IOException
+    {
+        this.writer = writer;
+
+        serializer = new MXSerializer();
+        serializer.setProperty( "http://xmlpull.org/v1/doc/properties.html#serializer-indentation", "  " );
+        serializer.setProperty( "http://xmlpull.org/v1/doc/properties.html#serializer-line-separator", "\n" );
+        serializer.setOutput( writer );
+        serializer.startDocument( encoding, null );
+        serializer.startTag( null, "linkcheckModel" );
+    }
+
+    /** {@inheritDoc} */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            if ( filesStarted )
+            {
+                serializer.endTag( null, "files" );
+            }
+            if ( partial )
+            {
+                writeElement( "partial", "true" );
+            }
+            if ( terminationReason != null )
+            {
+                writeElement( "terminationReason", terminationReason );
+            }
+            if ( !orphans.isEmpty() )
+            {
+                serializer.startTag( null, "orphans" );
+                for ( String orphan : orphans )
+                {
+                    writeElement( "orphan", orphan );
+                }
+                serializer.endTag( null, "orphans" );
+            }
+            serializer.endTag( null, "linkcheckModel" );
+            serializer.endDocument();
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected void startFile( String absolutePath, String relativePath, int successful, int unsuccessful,
+                              int resultCount )
+        throws IOException
+    {
+        if ( !filesStarted )
+        {
+            serializer.startTag( null, "files" );
+            filesStarted = true;
+        }
+
+        serializer.startTag( null, "file" );
+        if ( absolutePath != null )
+        {
+            writeElement( "absolutePath", absolutePath );
+        }
+        if ( relativePath != null )
+        {
+            writeElement( "relativePath", relativePath );
+        }
+        if ( successful != -1 )
+        {
+            writeElement( "successful", String.valueOf( successful ) );
+        }
+        if ( unsuccessful != -1 )
+        {
+            writeElement( "unsuccessful", String.valueOf( unsuccessful ) );
+        }
+        if ( resultCount > 0 )
+        {
+            serializer.startTag( null, "results" );
+            resultsStarted = true;
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected void writeResult( String target, String status, String errorMessage )
+        throws IOException
+    {
+        serializer.startTag( null, "result" );
+        if ( target != null )
+        {
+            writeElement( "target", target );
+        }
+        if ( status != null )
+        {
+            writeElement( "status", status );
+        }
+        if ( errorMessage != null )
+        {
+            writeElement( "errorMessage", errorMessage );
+        }
+        serializer.endTag( null, "result" );
+    }
+
+    /** {@inheritDoc} */
+    protected void endFile()
+        throws IOException
+    {
+        if ( resultsStarted )
+        {
+            serializer.endTag( null, "results" );
+            resultsStarted = false;
+        }
+        serializer.endTag( null, "file" );
+    }
+
+    private void writeElement( String name, String text )
+        throws IOException
+    {
+        serializer.startTag( null, name ).text( text ).endTag( null, name );
+    }
+}
@@ -0,0 +1,214 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.validation.Anchors;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Base class for the site sources which are not a directory: the files are mapped to paths relative to the base
+ * directory, with <code>/</code> as separator, i.e. <code>apidocs/index.html</code>.
+ *
+ * @version $Id$
+ */
+public abstract class AbstractSiteSource
+    implements SiteSource
+{
+    private final File basedir;
+
+    private final Path basePath;
+
+    /**
+     * @param basedir the directory the files are resolved against, not necessarily on disk.
+     */
+    protected AbstractSiteSource( File basedir )
+    {
+        this.basePath = basedir.getAbsoluteFile().toPath().normalize();
+        this.basedir = basePath.toFile();
+    }
+
+    /** {@inheritDoc} */
+    public File getBasedir()
+    {
+        return basedir;
+    }
+
+    /** {@inheritDoc} */
+    public List<File> getFiles( String includes, String excludes )
+        throws IOException
+    {
+        List<File> files = new ArrayList<File>();
+        for ( String path : getPaths() )
+        {
+            if ( matchesAny( includes, path ) && !matchesAny( excludes, path ) )
+            {
+                files.add( new File( basedir, path ) );
+            }
+        }
+
+        return files;
+    }
+
+    /** {@inheritDoc} */
+    public boolean exists( File file )
+    {
+        String path = getRelativePath( file );
+
+        return path != null && exists( path );
+    }
+
+    /** {@inheritDoc} */
+    public Reader newReader( File file, String encoding )
+        throws IOException
+    {
+        String path = getRelativePath( file );
+        if ( path == null || !exists( path ) )
+        {
+            throw new FileNotFoundException( file.getPath() );
+        }
+
+        return ReaderFactory.newReader( getInputStream( path ), encoding );
+    }
+
+    /** {@inheritDoc} */
+    public boolean hasAnchor( File file, String anchor, String encoding )
+    {
+        String content = read( file, encoding );
+
+        return content != null && Anchors.matchesAnchor( content, anchor );
+    }
+
+    /** {@inheritDoc} */
+    public long getLength( File file )
+    {
+        String path = getRelativePath( file );
+
+        return ( path == null ? -1 : getLength( path ) );
+    }
+
+    /**
+     * @return the relative paths of all the files, directories excluded.
+     * @throws IOException if the files can't be listed.
+     */
+    protected abstract Iterable<String> getPaths()
+        throws IOException;
+
+    /**
+     * @param path a relative path, the empty string for the base directory.
+     * @return <code>true</code> if the file or directory exists.
+     */
+    protected abstract boolean exists( String path );
+
+    /**
+     * @param path the relative path of an existing file.
+     * @return a new stream on the file content.
+     * @throws IOException if the file can't be read.
+     */
+    protected abstract InputStream getInputStream( String path )
+        throws IOException;
+
+    /**
+     * @param path a relative path.
+     * @return the length of the file in bytes, or <code>-1</code> if unknown.
+     */
+    protected long getLength( String path )
+    {
+        return -1;
+    }
+
+    /**
+     * @param file a file.
+     * @return the relative path of the file, or <code>null</code> if it is not under the base directory.
+     */
+    protected String getRelativePath( File file )
+    {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        if ( !path.startsWith( basePath ) )
+        {
+            return null;
+        }
+
+        return basePath.relativize( path ).toString().replace( File.separatorChar, '/' );
+    }
+
+    /**
+     * @param file a file.
+     * @param encoding the encoding of the file.
+     * @return the content of the file, or <code>null</code> if it can't be read.
+     */
+    protected String read( File file, String encoding )
+    {
+        Reader reader = null;
+        try
+        {
+            reader = newReader( file, encoding );
+            return IOUtil.toString( reader );
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * @param patterns a comma separated list of patterns, may be null.
+     * @param path a relative path.
+     * @return <code>true</code> if the path matches one of the patterns.
+     */
+    public static boolean matchesAny( String patterns, String path )
+    {
+        if ( patterns == null )
+        {
+            return false;
+        }
+
+        String platformPath = path.replace( '/', File.separatorChar );
+        for ( String pattern : patterns.split( "," ) )
+        {
+            pattern = pattern.trim().replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+            if ( pattern.endsWith( File.separator ) )
+            {
+                pattern += "**";
+            }
+
+            if ( pattern.length() > 0 && SelectorUtils.matchPath( pattern, platformPath ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,194 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.doxia.linkcheck.validation.Anchors;
+
+/**
+ * The files of a site packaged in a zip or jar archive, i.e. a <code>-site.zip</code> or a
+ * <code>-javadoc.jar</code>, checked without extracting it.
+ * <p>
+ * The existence of files and directories is answered from the central directory of the archive, read once when
+ * the source is opened. The pages are read by streaming their entries, and the anchors of a file are indexed the
+ * first time they are needed, so that each entry is inflated at most twice: once to find its links and once to
+ * find its anchors. No temporary file is written.
+ * </p>
+ * The base directory is the archive itself, i.e. the reported path of <code>index.html</code> is
+ * <code>target/site.zip/index.html</code>. The entries can be read concurrently, the anchors are indexed under the
+ * lock of the source.
+ *
+ * @version $Id$
+ */
+public class ArchiveSiteSource
+    extends AbstractSiteSource
+    implements Closeable
+{
+    private final ZipFile zipFile;
+
+    /** The entries of the files, by relative path, in the order of the central directory. */
+    private final List<String> paths = new ArrayList<String>();
+
+    /** The entries by relative path. */
+    private final Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+
+    /** The relative paths of the directories, explicit or not. */
+    private final Set<String> directories = new HashSet<String>();
+
+    /** The anchors of the files read so far. */
+    private final Map<String, Set<String>> anchors = new HashMap<String, Set<String>>();
+
+    /**
+     * Opens the archive and reads its central directory.
+     *
+     * @param archive the zip or jar archive of the site.
+     * @throws IOException if the archive can't be read.
+     */
+    public ArchiveSiteSource( File archive )
+        throws IOException
+    {
+        super( archive );
+        this.zipFile = new ZipFile( archive );
+
+        directories.add( "" );
+        for ( Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); )
+        {
+            ZipEntry entry = e.nextElement();
+            String name = entry.getName();
+            while ( name.startsWith( "/" ) )
+            {
+                name = name.substring( 1 );
+            }
+
+            if ( entry.isDirectory() )
+            {
+                addDirectories( name.substring( 0, Math.max( 0, name.length() - 1 ) ) );
+            }
+            else if ( !entries.containsKey( name ) )
+            {
+                paths.add( name );
+                entries.put( name, entry );
+                addDirectories( parent( name ) );
+            }
+        }
+    }
+
+    /**
+     * @param file a file.
+     * @return <code>true</code> if the file is a zip or jar archive, judging by its name.
+     */
+    public static boolean isArchive( File file )
+    {
+        String name = file.getName().toLowerCase( Locale.ENGLISH );
+
+        return file.isFile() && ( name.endsWith( ".zip" ) || name.endsWith( ".jar" ) );
+    }
+
+    /** {@inheritDoc} */
+    public synchronized boolean hasAnchor( File file, String anchor, String encoding )
+    {
+        String path = getRelativePath( file );
+        if ( path == null || !entries.containsKey( path ) )
+        {
+            return false;
+        }
+
+        Set<String> fileAnchors = anchors.get( path );
+        if ( fileAnchors == null )
+        {
+            fileAnchors = Anchors.findAnchors( read( file, encoding ) );
+            anchors.put( path, fileAnchors );
+        }
+
+        return fileAnchors.contains( anchor );
+    }
+
+    /**
+     * Closes the archive.
+     *
+     * @throws IOException if any
+     */
+    public synchronized void close()
+        throws IOException
+    {
+        anchors.clear();
+        zipFile.close();
+    }
+
+    /** {@inheritDoc} */
+    protected Iterable<String> getPaths()
+    {
+        return paths;
+    }
+
+    /** {@inheritDoc} */
+    protected boolean exists( String path )
+    {
+        return entries.containsKey( path ) || directories.contains( path );
+    }
+
+    /** {@inheritDoc} */
+    protected InputStream getInputStream( String path )
+        throws IOException
+    {
+        return zipFile.getInputStream( entries.get( path ) );
+    }
+
+    /** {@inheritDoc} */
+    protected long getLength( String path )
+    {
+        ZipEntry entry = entries.get( path );
+
+        return ( entry == null ? -1 : entry.getSize() );
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private void addDirectories( String path )
+    {
+        while ( directories.add( path ) )
+        {
+            path = parent( path );
+        }
+    }
+
+    private static String parent( String path )
+    {
+        int idx = path.lastIndexOf( '/' );
+
+        return ( idx == -1 ? "" : path.substring( 0, idx ) );
+    }
+}
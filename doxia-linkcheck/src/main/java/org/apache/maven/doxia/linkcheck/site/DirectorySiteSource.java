@@ -0,0 +1,101 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.maven.doxia.linkcheck.validation.Anchors;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * The files of a site rendered in a directory.
+ *
+ * @version $Id$
+ */
+public class DirectorySiteSource
+    implements SiteSource
+{
+    private final File basedir;
+
+    /**
+     * @param basedir the directory of the site.
+     */
+    public DirectorySiteSource( File basedir )
+    {
+        this.basedir = basedir;
+    }
+
+    /** {@inheritDoc} */
+    public File getBasedir()
+    {
+        return basedir;
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings( "unchecked" )
+    public List<File> getFiles( String includes, String excludes )
+        throws IOException
+    {
+        return FileUtils.getFiles( basedir, includes, excludes );
+    }
+
+    /** {@inheritDoc} */
+    public boolean exists( File file )
+    {
+        return file.exists();
+    }
+
+    /** {@inheritDoc} */
+    public Reader newReader( File file, String encoding )
+        throws IOException
+    {
+        return ReaderFactory.newReader( file, encoding );
+    }
+
+    /** {@inheritDoc} */
+    public boolean hasAnchor( File file, String anchor, String encoding )
+    {
+        Reader reader = null;
+        try
+        {
+            reader = newReader( file, encoding );
+            return Anchors.matchesAnchor( IOUtil.toString( reader ), anchor );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public long getLength( File file )
+    {
+        return file.length();
+    }
+}
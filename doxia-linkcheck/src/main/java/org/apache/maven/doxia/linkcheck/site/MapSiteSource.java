@@ -0,0 +1,116 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * The files of a site given as a map of relative paths to content suppliers, i.e. straight from the memory of a
+ * renderer. The paths use <code>/</code> as separator, i.e. <code>apidocs/index.html</code>, and the files are
+ * checked in the iteration order of the map.
+ *
+ * @version $Id$
+ */
+public class MapSiteSource
+    extends AbstractSiteSource
+{
+    private final Map<String, ContentSupplier> contents;
+
+    /**
+     * Creates a source with the root directory as base directory, so that the reported paths are
+     * <code>/apidocs/index.html</code>.
+     *
+     * @param contents the contents by relative path, used as is.
+     */
+    public MapSiteSource( Map<String, ContentSupplier> contents )
+    {
+        this( new File( File.separator ), contents );
+    }
+
+    /**
+     * @param basedir the directory the files are resolved against, not necessarily on disk.
+     * @param contents the contents by relative path, used as is.
+     */
+    public MapSiteSource( File basedir, Map<String, ContentSupplier> contents )
+    {
+        super( basedir );
+        this.contents = contents;
+    }
+
+    /**
+     * @param content some content.
+     * @return a supplier of the given content.
+     */
+    public static ContentSupplier content( final byte[] content )
+    {
+        return new ContentSupplier()
+        {
+            public InputStream getInputStream()
+            {
+                return new ByteArrayInputStream( content );
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    protected Iterable<String> getPaths()
+    {
+        return contents.keySet();
+    }
+
+    /** {@inheritDoc} */
+    protected boolean exists( String path )
+    {
+        if ( path.length() == 0 || contents.containsKey( path ) )
+        {
+            return true;
+        }
+
+        // a directory?
+        String prefix = path + '/';
+        for ( String key : contents.keySet() )
+        {
+            if ( key.startsWith( prefix ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    protected InputStream getInputStream( String path )
+        throws IOException
+    {
+        ContentSupplier supplier = contents.get( path );
+        if ( supplier == null )
+        {
+            throw new FileNotFoundException( path );
+        }
+
+        return supplier.getInputStream();
+    }
+}
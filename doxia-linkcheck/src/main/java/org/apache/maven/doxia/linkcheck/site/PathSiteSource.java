@@ -0,0 +1,132 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The files of a site under a {@link Path} of any {@link java.nio.file.FileSystem}, i.e. a zip file system:
+ * <pre>
+ * FileSystem zip = FileSystems.newFileSystem( Paths.get( "target/site.zip" ), null );
+ * linkCheck.setSiteSource( new PathSiteSource( zip.getPath( "/" ) ) );
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class PathSiteSource
+    extends AbstractSiteSource
+{
+    private final Path root;
+
+    /**
+     * Creates a source with a base directory named after the file system, i.e. <code>target/site.zip</code> for a
+     * zip file system.
+     *
+     * @param root the root directory of the site.
+     */
+    public PathSiteSource( Path root )
+    {
+        this( getDefaultBasedir( root ), root );
+    }
+
+    /**
+     * @param basedir the directory the files are resolved against, not necessarily on disk.
+     * @param root the root directory of the site.
+     */
+    public PathSiteSource( File basedir, Path root )
+    {
+        super( basedir );
+        this.root = root;
+    }
+
+    /** {@inheritDoc} */
+    protected Iterable<String> getPaths()
+        throws IOException
+    {
+        final List<String> paths = new ArrayList<String>();
+        final String separator = root.getFileSystem().getSeparator();
+
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( !attrs.isDirectory() )
+                {
+                    paths.add( root.relativize( file ).toString().replace( separator, "/" ) );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+
+        return paths;
+    }
+
+    /** {@inheritDoc} */
+    protected boolean exists( String path )
+    {
+        return Files.exists( resolve( path ) );
+    }
+
+    /** {@inheritDoc} */
+    protected InputStream getInputStream( String path )
+        throws IOException
+    {
+        return Files.newInputStream( resolve( path ) );
+    }
+
+    /** {@inheritDoc} */
+    protected long getLength( String path )
+    {
+        try
+        {
+            return Files.size( resolve( path ) );
+        }
+        catch ( IOException e )
+        {
+            return -1;
+        }
+    }
+
+    private Path resolve( String path )
+    {
+        return ( path.length() == 0 ? root : root.resolve( path ) );
+    }
+
+    private static File getDefaultBasedir( Path root )
+    {
+        if ( root.getFileSystem() == FileSystems.getDefault() )
+        {
+            return root.toFile();
+        }
+
+        // i.e. the path of the zip file
+        return new File( root.getFileSystem().toString(), root.toString() );
+    }
+}
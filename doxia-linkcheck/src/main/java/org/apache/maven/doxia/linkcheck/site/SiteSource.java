@@ -0,0 +1,81 @@
+package org.apache.maven.doxia.linkcheck.site;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * The files of a site to check, i.e. a directory, a {@link java.nio.file.FileSystem} like a zip file system, or
+ * contents held in memory.
+ * <p>
+ * The files are addressed as {@link File}s under {@link #getBasedir()}, which may not exist on disk, so that the
+ * links are resolved the same way for all sources.
+ * </p>
+ *
+ * @version $Id$
+ */
+public interface SiteSource
+{
+    /**
+     * @return the directory the files are resolved against, not necessarily on disk.
+     */
+    File getBasedir();
+
+    /**
+     * @param includes the comma separated list of include patterns, i.e. <code>**&#47;*.html</code>.
+     * @param excludes the comma separated list of exclude patterns, may be null.
+     * @return the included files, under the base directory.
+     * @throws IOException if the files can't be listed.
+     */
+    List<File> getFiles( String includes, String excludes )
+        throws IOException;
+
+    /**
+     * @param file a file, resolved against the base directory.
+     * @return <code>true</code> if the file or directory exists.
+     */
+    boolean exists( File file );
+
+    /**
+     * @param file a file, resolved against the base directory.
+     * @param encoding the encoding of the file.
+     * @return a reader on the file content.
+     * @throws IOException if the file doesn't exist or can't be read.
+     */
+    Reader newReader( File file, String encoding )
+        throws IOException;
+
+    /**
+     * @param file a file, resolved against the base directory.
+     * @param anchor an anchor, without the leading <code>#</code>.
+     * @param encoding the encoding of the file.
+     * @return <code>true</code> if the file exists and declares the anchor.
+     */
+    boolean hasAnchor( File file, String anchor, String encoding );
+
+    /**
+     * @param file a file, resolved against the base directory.
+     * @return the length of the file in bytes, or <code>-1</code> if unknown.
+     */
+    long getLength( File file );
+}
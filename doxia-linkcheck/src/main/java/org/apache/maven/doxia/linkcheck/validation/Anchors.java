@@ -17,6 +17,8 @@
  */
 package org.apache.maven.doxia.linkcheck.validation;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,6 +27,9 @@ import java.util.regex.Pattern;
  */
 public class Anchors
 {
+    /** Regexp for the anchors declared in a content. */
+    private static final Pattern ANCHOR_PATTERN = Pattern.compile( "(?i)(name|id)(?-i)\\s*=\\s*('|\")([^'\"]*)('|\")" );
+
     /**
      * Returns true if the given anchor can be found in the content markup.
      *
@@ -45,6 +50,30 @@ public class Anchors
         return false;
     }
 
+    /**
+     * Returns all the anchors declared in the content markup, i.e. to look them up repeatedly.
+     * Contrary to {@link #matchesAnchor(String, String)}, the anchors are not regular expressions.
+     *
+     * @param content the content string.
+     * @return the anchors, never null.
+     */
+    public static Set<String> findAnchors( String content )
+    {
+        Set<String> anchors = new LinkedHashSet<String>();
+        if ( content != null )
+        {
+            Matcher matcher = ANCHOR_PATTERN.matcher( content );
+            while ( matcher.find() )
+            {
+                if ( matcher.group( 3 ).length() > 0 )
+                {
+                    anchors.add( matcher.group( 3 ) );
+                }
+            }
+        }
+        return anchors;
+    }
+
     // for javadoc links, see DOXIA-410
     private static String escapeBrackets( String content )
     {
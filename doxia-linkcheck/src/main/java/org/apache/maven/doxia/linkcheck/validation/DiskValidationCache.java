@@ -0,0 +1,493 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A validation cache which keeps its entries on disk, so that the heap use doesn't depend on the number of
+ * validated links.
+ * <p>
+ * The entries are serialized and appended to a data file. They are found back with an open addressing hash
+ * table, stored in a memory mapped index file, which gives for each key hash the offset of the entry in the data
+ * file. Only the most recently used entries are kept on the heap.
+ * </p>
+ * This cache doesn't support the removal of single entries and is not thread-safe. The files are deleted by
+ * {@link #close()}.
+ *
+ * @version $Id$
+ */
+public class DiskValidationCache
+    extends AbstractMap<Object, LinkValidationResult>
+    implements Closeable
+{
+    /** The default number of entries kept on the heap. */
+    public static final int DEFAULT_MEMORY_ENTRIES = 10000;
+
+    /** The initial number of slots of the index, always a power of two. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The size of an index slot: the entry offset + 1 (0 for an empty slot), then the key hash. */
+    private static final int SLOT_SIZE = 16;
+
+    /** The directory containing the files. */
+    private final File directory;
+
+    /** The data file. */
+    private final File dataFile;
+
+    /** The entries. */
+    private final RandomAccessFile data;
+
+    /** The length of the data file. */
+    private long dataLength;
+
+    /** The index file. */
+    private File indexFile;
+
+    /** The index file channel. */
+    private FileChannel indexChannel;
+
+    /** The index slots. */
+    private MappedByteBuffer index;
+
+    /** The number of slots in the index. */
+    private int capacity;
+
+    /** The number of entries. */
+    private int size;
+
+    /** The number of index files created so far, to name the next one. */
+    private int indexFiles;
+
+    /** The most recently used entries. */
+    private final Map<Object, LinkValidationResult> recent;
+
+    /**
+     * Creates a cache keeping {@link #DEFAULT_MEMORY_ENTRIES} entries on the heap.
+     *
+     * @param directory an existing directory where to store the files.
+     * @throws IOException if the files can't be created.
+     */
+    public DiskValidationCache( File directory )
+        throws IOException
+    {
+        this( directory, DEFAULT_MEMORY_ENTRIES );
+    }
+
+    /**
+     * @param directory an existing directory where to store the files.
+     * @param memoryEntries the number of most recently used entries to keep on the heap.
+     * @throws IOException if the files can't be created.
+     */
+    public DiskValidationCache( File directory, final int memoryEntries )
+        throws IOException
+    {
+        this.directory = directory;
+        this.dataFile = File.createTempFile( "linkcheck-cache", ".dat", directory );
+        this.data = new RandomAccessFile( dataFile, "rw" );
+        this.recent = new LinkedHashMap<Object, LinkValidationResult>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry( Map.Entry<Object, LinkValidationResult> eldest )
+            {
+                return size() > memoryEntries;
+            }
+        };
+
+        createIndex( INITIAL_CAPACITY );
+    }
+
+    /** {@inheritDoc} */
+    public LinkValidationResult get( Object key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+
+        LinkValidationResult result = recent.get( key );
+        if ( result != null )
+        {
+            return result;
+        }
+
+        int slot = findSlot( key, hash( key ) );
+        long offset = index.getLong( slot * SLOT_SIZE );
+        if ( offset == 0 )
+        {
+            return null;
+        }
+
+        result = (LinkValidationResult) readEntry( offset - 1 )[1];
+        recent.put( key, result );
+
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
+    /** {@inheritDoc} */
+    public LinkValidationResult put( Object key, LinkValidationResult value )
+    {
+        if ( key == null || value == null )
+        {
+            throw new IllegalArgumentException( "key and value are required" );
+        }
+
+        int hash = hash( key );
+        int slot = findSlot( key, hash );
+        long previousOffset = index.getLong( slot * SLOT_SIZE );
+        LinkValidationResult previous =
+            ( previousOffset == 0 ? null : (LinkValidationResult) readEntry( previousOffset - 1 )[1] );
+
+        long offset = writeEntry( key, value );
+        index.putLong( slot * SLOT_SIZE, offset + 1 );
+        index.putInt( slot * SLOT_SIZE + 8, hash );
+        recent.put( key, value );
+
+        if ( previousOffset == 0 )
+        {
+            size++;
+            if ( size * 2 > capacity )
+            {
+                grow();
+            }
+        }
+
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    public int size()
+    {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    public void clear()
+    {
+        try
+        {
+            data.setLength( 0 );
+            dataLength = 0;
+            size = 0;
+            recent.clear();
+
+            closeIndex();
+            createIndex( INITIAL_CAPACITY );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "Unable to clear the cache in " + directory + ": " + e.getMessage() );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Set<Map.Entry<Object, LinkValidationResult>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<Object, LinkValidationResult>>()
+        {
+            public Iterator<Map.Entry<Object, LinkValidationResult>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Closes and deletes the files of this cache.
+     *
+     * @throws IOException if any
+     */
+    public void close()
+        throws IOException
+    {
+        recent.clear();
+        try
+        {
+            data.close();
+            closeIndex();
+        }
+        finally
+        {
+            dataFile.delete();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private static int hash( Object key )
+    {
+        int h = key.hashCode();
+
+        return h ^ ( h >>> 16 );
+    }
+
+    /**
+     * @return the slot of the given key, or the empty slot where to put it.
+     */
+    private int findSlot( Object key, int hash )
+    {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while ( true )
+        {
+            long offset = index.getLong( slot * SLOT_SIZE );
+            if ( offset == 0
+                || ( index.getInt( slot * SLOT_SIZE + 8 ) == hash && key.equals( readEntry( offset - 1 )[0] ) ) )
+            {
+                return slot;
+            }
+
+            slot = ( slot + 1 ) & mask;
+        }
+    }
+
+    private void createIndex( int slots )
+        throws IOException
+    {
+        indexFile = new File( directory, dataFile.getName() + "." + ( indexFiles++ ) + ".idx" );
+        RandomAccessFile raf = new RandomAccessFile( indexFile, "rw" );
+        raf.setLength( 0 );
+        indexChannel = raf.getChannel();
+        index = indexChannel.map( FileChannel.MapMode.READ_WRITE, 0, (long) slots * SLOT_SIZE );
+        capacity = slots;
+    }
+
+    private void closeIndex()
+        throws IOException
+    {
+        index = null;
+        try
+        {
+            indexChannel.close();
+        }
+        finally
+        {
+            // the file may still be mapped on some platforms
+            if ( !indexFile.delete() )
+            {
+                indexFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Doubles the number of slots of the index.
+     */
+    private void grow()
+    {
+        MappedByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        FileChannel oldChannel = indexChannel;
+        File oldFile = indexFile;
+
+        try
+        {
+            createIndex( oldCapacity * 2 );
+
+            int mask = capacity - 1;
+            for ( int i = 0; i < oldCapacity; i++ )
+            {
+                long offset = oldIndex.getLong( i * SLOT_SIZE );
+                if ( offset != 0 )
+                {
+                    int hash = oldIndex.getInt( i * SLOT_SIZE + 8 );
+                    int slot = hash & mask;
+                    while ( index.getLong( slot * SLOT_SIZE ) != 0 )
+                    {
+                        slot = ( slot + 1 ) & mask;
+                    }
+                    index.putLong( slot * SLOT_SIZE, offset );
+                    index.putInt( slot * SLOT_SIZE + 8, hash );
+                }
+            }
+
+            oldChannel.close();
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "Unable to grow the cache index in " + directory + ": "
+                + e.getMessage() );
+        }
+        finally
+        {
+            if ( !oldFile.delete() )
+            {
+                oldFile.deleteOnExit();
+            }
+        }
+    }
+
+    private long writeEntry( Object key, LinkValidationResult value )
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 256 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            out.writeInt( 0 );
+            ObjectOutputStream oos = new ObjectOutputStream( out );
+            oos.writeObject( key );
+            oos.writeObject( value );
+            oos.close();
+
+            byte[] entry = bytes.toByteArray();
+            int length = entry.length - 4;
+            entry[0] = (byte) ( length >>> 24 );
+            entry[1] = (byte) ( length >>> 16 );
+            entry[2] = (byte) ( length >>> 8 );
+            entry[3] = (byte) length;
+
+            long offset = dataLength;
+            data.seek( offset );
+            data.write( entry );
+            dataLength += entry.length;
+
+            return offset;
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "Unable to write to the cache in " + directory + ": "
+                + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the key and the value of the entry at the given offset.
+     */
+    private Object[] readEntry( long offset )
+    {
+        try
+        {
+            data.seek( offset );
+            byte[] entry = new byte[data.readInt()];
+            data.readFully( entry );
+
+            ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( entry ) );
+
+            return new Object[] { ois.readObject(), ois.readObject() };
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "Unable to read from the cache in " + directory + ": "
+                + e.getMessage() );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new IllegalStateException( "Unable to read from the cache in " + directory + ": "
+                + e.getMessage() );
+        }
+    }
+
+    /**
+     * Iterates over the entries in the order of the index slots.
+     */
+    private class EntryIterator
+        implements Iterator<Map.Entry<Object, LinkValidationResult>>
+    {
+        private int slot = -1;
+
+        private int next = nextSlot( -1 );
+
+        private int nextSlot( int from )
+        {
+            for ( int i = from + 1; i < capacity; i++ )
+            {
+                if ( index.getLong( i * SLOT_SIZE ) != 0 )
+                {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        public boolean hasNext()
+        {
+            return next != -1;
+        }
+
+        public Map.Entry<Object, LinkValidationResult> next()
+        {
+            if ( next == -1 )
+            {
+                throw new NoSuchElementException();
+            }
+
+            slot = next;
+            next = nextSlot( slot );
+
+            final Object[] entry = readEntry( index.getLong( slot * SLOT_SIZE ) - 1 );
+
+            return new Map.Entry<Object, LinkValidationResult>()
+            {
+                public Object getKey()
+                {
+                    return entry[0];
+                }
+
+                public LinkValidationResult getValue()
+                {
+                    return (LinkValidationResult) entry[1];
+                }
+
+                public LinkValidationResult setValue( LinkValidationResult value )
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.io.Reader;
 import java.util.Locale;
 
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.site.SiteSource;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
@@ -42,6 +43,12 @@ public final class FileLinkValidator
 {
     private String encoding;
 
+    /** The index of the site files, null if the file system is used directly. */
+    private SiteIndex siteIndex;
+
+    /** The source of the site files, null if the file system is used directly. */
+    private SiteSource siteSource;
+
     /**
      * @param encoding the encoding file used. If empty, using UTF-8.
      */
@@ -54,12 +61,32 @@ public final class FileLinkValidator
         this.encoding = encoding;
     }
 
+    /**
+     * Sets the index used to look up the files and their anchors, instead of the file system.
+     *
+     * @param siteIndex the index, or null to use the file system.
+     */
+    public void setSiteIndex( SiteIndex siteIndex )
+    {
+        this.siteIndex = siteIndex;
+    }
+
+    /**
+     * Sets the source used to look up and read the files, instead of the file system.
+     *
+     * @param siteSource the source, or null to use the file system.
+     */
+    public void setSiteSource( SiteSource siteSource )
+    {
+        this.siteSource = siteSource;
+    }
+
     /** {@inheritDoc} */
     public LinkValidationResult validateLink( LinkValidationItem lvi )
     {
         File f = getFile( lvi );
 
-        if ( f.exists() )
+        if ( exists( f ) )
         {
             return new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, false, "" );
         }
@@ -81,7 +108,17 @@ public final class FileLinkValidator
             return null;
         }
 
-        return getFile( lvi ).getAbsolutePath();
+        return getFile( lvi ).getAbsoluteFile();
+    }
+
+    /**
+     * @param resourceKey a key of the validation cache.
+     * @return <code>true</code> if the key has been returned by {@link #getResourceKey(LinkValidationItem)}, i.e. the
+     * key of a local file result.
+     */
+    public static boolean isResourceKey( Object resourceKey )
+    {
+        return resourceKey instanceof File;
     }
 
     // ----------------------------------------------------------------------
@@ -107,8 +144,7 @@ public final class FileLinkValidator
             if ( link.trim().length() == 0 ) // in the same file
             {
                 // the anchor exists?
-                String content = read( lvi.getSource(), encoding );
-                if ( Anchors.matchesAnchor( content, anchor ) )
+                if ( matchesAnchor( lvi.getSource(), anchor ) )
                 {
                     return lvi.getSource();
                 }
@@ -118,8 +154,7 @@ public final class FileLinkValidator
             }
 
             // the anchor exists?
-            String content = read( new File( lvi.getSource().getParentFile(), link ), encoding );
-            if ( Anchors.matchesAnchor( content, anchor ) )
+            if ( matchesAnchor( new File( lvi.getSource().getParentFile(), link ), anchor ) )
             {
                 return new File( lvi.getSource().getParentFile(), link );
             }
@@ -145,10 +180,43 @@ public final class FileLinkValidator
 
     /**
      * @param f not null
-     * @param encoding the encoding file used
+     * @param anchor not null
+     * @return true if the file declares the anchor.
+     */
+    private boolean matchesAnchor( File f, String anchor )
+    {
+        if ( siteIndex != null )
+        {
+            return siteIndex.hasAnchor( f, anchor );
+        }
+
+        if ( siteSource != null )
+        {
+            return siteSource.hasAnchor( f, anchor, encoding );
+        }
+
+        return Anchors.matchesAnchor( read( f ), anchor );
+    }
+
+    /**
+     * @param f not null
+     * @return true if the file or directory exists.
+     */
+    private boolean exists( File f )
+    {
+        if ( siteIndex != null )
+        {
+            return siteIndex.exists( f );
+        }
+
+        return ( siteSource != null ? siteSource.exists( f ) : f.exists() );
+    }
+
+    /**
+     * @param f not null
      * @return the content of the file or null if an error occurred.
      */
-    private static String read( File f, String encoding )
+    private String read( File f )
     {
         Reader reader = null;
         try
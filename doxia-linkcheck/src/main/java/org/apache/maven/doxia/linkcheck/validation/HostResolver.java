@@ -0,0 +1,255 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves host names, and caches the addresses found for a time, and the unknown hosts for another time, so that
+ * the links to a host which can't be resolved fail at once. The hosts can be resolved in advance, in parallel, a
+ * host being resolved once even if it is asked for again meanwhile.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class HostResolver
+{
+    /** The number of threads resolving hosts in advance. */
+    private static final int PRE_RESOLUTION_THREADS = 8;
+
+    private final long ttl;
+
+    private final long negativeTtl;
+
+    private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param ttl the time to keep a resolved address, in milliseconds.
+     * @param negativeTtl the time to keep an unknown host, in milliseconds.
+     */
+    public HostResolver( long ttl, long negativeTtl )
+    {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+
+        this.executor =
+            new ThreadPoolExecutor( PRE_RESOLUTION_THREADS, PRE_RESOLUTION_THREADS, 10, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                                    {
+                                        private final AtomicInteger count = new AtomicInteger();
+
+                                        public Thread newThread( Runnable r )
+                                        {
+                                            Thread thread =
+                                                new Thread( r, "linkcheck-resolver-" + count.incrementAndGet() );
+                                            thread.setDaemon( true );
+                                            return thread;
+                                        }
+                                    } );
+        this.executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Resolves a host, or waits for its resolution in progress.
+     *
+     * @param host a host name or address.
+     * @return the address of the host.
+     * @throws UnknownHostException if the host can't be resolved, now or within the negative time to live.
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the resolution in progress.
+     */
+    public InetAddress resolve( String host )
+        throws IOException
+    {
+        Resolution resolution = resolutions.get( host );
+        if ( resolution == null || resolution.isExpired() )
+        {
+            Resolution newResolution = new Resolution( newLookup( host ) );
+            if ( putResolution( host, resolution, newResolution ) )
+            {
+                resolution = newResolution;
+            }
+            else
+            {
+                resolution = resolutions.get( host );
+                if ( resolution == null )
+                {
+                    // cleared meanwhile
+                    resolution = newResolution;
+                }
+            }
+
+            // nop if already run
+            resolution.run();
+        }
+
+        return resolution.getAddress();
+    }
+
+    /**
+     * Resolves hosts in advance, in the background. The hosts already resolved or being resolved are skipped.
+     *
+     * @param hosts some host names.
+     */
+    public void preResolve( Collection<String> hosts )
+    {
+        for ( String host : hosts )
+        {
+            Resolution resolution = resolutions.get( host );
+            if ( resolution == null || resolution.isExpired() )
+            {
+                Resolution newResolution = new Resolution( newLookup( host ) );
+                if ( putResolution( host, resolution, newResolution ) )
+                {
+                    executor.execute( newResolution );
+                }
+            }
+        }
+    }
+
+    /**
+     * @param host a host name.
+     * @return <code>true</code> if the host is known to be unknown.
+     */
+    public boolean isUnknown( String host )
+    {
+        Resolution resolution = resolutions.get( host );
+
+        return resolution != null && !resolution.isExpired() && resolution.isDone() && resolution.failed;
+    }
+
+    /**
+     * Forgets all the resolved hosts.
+     */
+    public void clear()
+    {
+        resolutions.clear();
+    }
+
+    /**
+     * Looks a host up, without caching.
+     *
+     * @param host a host name or address.
+     * @return the address of the host.
+     * @throws UnknownHostException if the host can't be resolved.
+     */
+    protected InetAddress lookup( String host )
+        throws UnknownHostException
+    {
+        return InetAddress.getByName( host );
+    }
+
+    private Callable<InetAddress> newLookup( final String host )
+    {
+        return new Callable<InetAddress>()
+        {
+            public InetAddress call()
+                throws UnknownHostException
+            {
+                return lookup( host );
+            }
+        };
+    }
+
+    private boolean putResolution( String host, Resolution expired, Resolution resolution )
+    {
+        if ( expired == null )
+        {
+            return resolutions.putIfAbsent( host, resolution ) == null;
+        }
+
+        return resolutions.replace( host, expired, resolution );
+    }
+
+    /**
+     * The resolution of a host, expiring after a time depending on its outcome.
+     */
+    private final class Resolution
+        extends FutureTask<InetAddress>
+    {
+        private volatile long expiry = Long.MAX_VALUE;
+
+        private volatile boolean failed;
+
+        Resolution( Callable<InetAddress> lookup )
+        {
+            super( lookup );
+        }
+
+        /** {@inheritDoc} */
+        protected void setException( Throwable t )
+        {
+            failed = true;
+            expiry = System.currentTimeMillis() + negativeTtl;
+            super.setException( t );
+        }
+
+        /** {@inheritDoc} */
+        protected void set( InetAddress address )
+        {
+            expiry = System.currentTimeMillis() + ttl;
+            super.set( address );
+        }
+
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() >= expiry;
+        }
+
+        InetAddress getAddress()
+            throws IOException
+        {
+            try
+            {
+                return get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while resolving a host" );
+            }
+            catch ( ExecutionException e )
+            {
+                // a new exception for each link, the cached one being shared
+                UnknownHostException uhe = new UnknownHostException( e.getCause().getMessage() );
+                uhe.initCause( e.getCause() );
+                throw uhe;
+            }
+        }
+    }
+}
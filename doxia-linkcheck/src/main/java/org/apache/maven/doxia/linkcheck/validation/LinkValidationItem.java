@@ -34,6 +34,9 @@ public class LinkValidationItem
     /** The link. */
     private final String link;
 
+    /** The number of the current validation attempt. */
+    private int attempt = 1;
+
     /**
      * Constructor: initializes the source and link.
      *
@@ -76,6 +79,27 @@ public class LinkValidationItem
         return this.source;
     }
 
+    /**
+     * Returns the number of the current validation attempt, greater than 1 when the link is retried.
+     *
+     * @return int
+     * @see RetryLinkValidationResult
+     */
+    public int getAttempt()
+    {
+        return this.attempt;
+    }
+
+    /**
+     * Sets the number of the current validation attempt.
+     *
+     * @param attempt the attempt number, starting at 1.
+     */
+    public void setAttempt( int attempt )
+    {
+        this.attempt = attempt;
+    }
+
     /** {@inheritDoc} */
     public boolean equals( Object obj )
     {
@@ -38,6 +38,9 @@ public class LinkValidationResult
     /** Validation result level: not mine. */
     public static final int NOTMINE = 0;
 
+    /** The error message of a link which couldn't be checked in the time given to it. */
+    public static final String TIMED_OUT = "timed out (budget)";
+
     /** The persistent property. */
     private final boolean persistent;
 
@@ -22,10 +22,15 @@ package org.apache.maven.doxia.linkcheck.validation;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitor;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitors;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.SelectorUtils;
 import org.codehaus.plexus.util.StringUtils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -38,13 +43,22 @@ import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 /**
  * A LinkValidator manager which manages validators with a cache.
+ * <p>
+ * Links can be validated concurrently, i.e. by a {@link ValidationScheduler}: the cache is only accessed while
+ * holding the lock of the manager, and the validators are expected to be thread-safe.
+ * </p>
  *
  * @author <a href="mailto:bwalding@apache.org">Ben Walding</a>
  * @author <a href="mailto:carlos@apache.org">Carlos Sanchez</a>
@@ -61,6 +75,9 @@ public class LinkValidatorManager
     /** Log for debug output. */
     private static final Log LOG = LogFactory.getLog( LinkValidatorManager.class );
 
+    /** The version of the cache file format, written after an empty map read by the previous versions. */
+    private static final int CACHE_FORMAT = 2;
+
     /** validators. */
     private List<LinkValidator> validators = new LinkedList<LinkValidator>();
 
@@ -70,6 +87,9 @@ public class LinkValidatorManager
     /** cache. */
     private Map<Object, LinkValidationResult> cache = new HashMap<Object, LinkValidationResult>();
 
+    /** Whether the cache file is shared with concurrent checks. */
+    private boolean sharedCacheFile;
+
     /**
      * Returns the list of validators.
      *
@@ -104,6 +124,29 @@ public class LinkValidatorManager
         this.excludedLinks = excl;
     }
 
+    /**
+     * Sets the map used to cache the validation results, i.e. a {@link DiskValidationCache} for large sites.
+     * By default, the results are cached in a <code>HashMap</code>.
+     *
+     * @param cache the cache to use, not null.
+     */
+    public synchronized void setCache( Map<Object, LinkValidationResult> cache )
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets whether the cache file is shared with concurrent checks, even in other processes: it is then locked while
+     * being read or written, and the results are merged into it. By default, the cache file is overwritten.
+     *
+     * @param sharedCacheFile <code>true</code> to lock the cache file and merge the results into it.
+     * @see SharedValidationCache#lock(File)
+     */
+    public void setSharedCacheFile( boolean sharedCacheFile )
+    {
+        this.sharedCacheFile = sharedCacheFile;
+    }
+
     /**
      * Adds a LinkValidator to this manager.
      *
@@ -115,31 +158,56 @@ public class LinkValidatorManager
     }
 
     /**
-     * Validates the links of the given LinkValidationItem.
+     * Validates the links of the given LinkValidationItem. A link to retry later is retried here, after waiting for
+     * the delay.
      *
      * @param lvi The LinkValidationItem to validate.
      * @return A LinkValidationResult.
      */
     public LinkValidationResult validateLink( LinkValidationItem lvi )
     {
+        return validateLink( lvi, true );
+    }
+
+    /**
+     * Validates the links of the given LinkValidationItem.
+     *
+     * @param lvi The LinkValidationItem to validate.
+     * @param waitForRetries <code>true</code> to retry here a link to retry later, after waiting for the delay,
+     * <code>false</code> to return the {@link RetryLinkValidationResult}, the caller validating the item again after
+     * the delay, with the next attempt number.
+     * @return A LinkValidationResult.
+     */
+    public LinkValidationResult validateLink( LinkValidationItem lvi, boolean waitForRetries )
+    {
+        LinkcheckMonitor monitor = LinkcheckMonitors.getMonitor();
+        Object validation = ( monitor.isEnabled() ? monitor.beginLinkValidation() : null );
+
         LinkValidationResult cachedResult = getCachedResult( lvi );
 
         if ( cachedResult != null )
         {
+            if ( validation != null )
+            {
+                monitor.linkValidated( validation, null, lvi.getLink(), cachedResult.getStatus(), true );
+            }
+
             return cachedResult;
         }
 
-        for ( int i = 0; i < this.excludedLinks.length; i++ )
+        if ( isExcluded( lvi.getLink() ) )
         {
-            if ( this.excludedLinks[i] != null && matchPattern( lvi.getLink(), this.excludedLinks[i] ) )
+            if ( LOG.isDebugEnabled() )
             {
-                if ( LOG.isDebugEnabled() )
-                {
-                    LOG.debug( "Excluded " + lvi.getLink() );
-                }
+                LOG.debug( "Excluded " + lvi.getLink() );
+            }
 
-                return new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, false, "" );
+            if ( validation != null )
+            {
+                monitor.linkValidated( validation, null, lvi.getLink(), LinkcheckFileResult.VALID_LEVEL, false );
             }
+
+            return new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, false, "" );
         }
 
         for ( LinkValidator lv : this.validators )
@@ -160,8 +228,24 @@ public class LinkValidatorManager
                     continue;
                 }
 
+                if ( lvr instanceof RetryLinkValidationResult )
+                {
+                    if ( !waitForRetries )
+                    {
+                        return lvr;
+                    }
+
+                    lvr = retry( lv, lvi, lvr );
+                }
+
                 setCachedResult( resourceKey, lvr );
 
+                if ( validation != null )
+                {
+                    monitor.linkValidated( validation, lv.getClass().getName(), lvi.getLink(), lvr.getStatus(),
+                                           false );
+                }
+
                 return lvr;
             }
         }
@@ -175,13 +259,50 @@ public class LinkValidatorManager
     }
 
     /**
-     * Loads a cache file.
+     * @param link a link.
+     * @return <code>true</code> if the link matches one of the excluded links, in which case it is valid without
+     * being checked.
+     */
+    public boolean isExcluded( String link )
+    {
+        for ( int i = 0; i < this.excludedLinks.length; i++ )
+        {
+            if ( this.excludedLinks[i] != null && matchPattern( link, this.excludedLinks[i] ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the validator of the given LinkValidationItem, the first one knowing its resource.
+     *
+     * @param lvi The LinkValidationItem.
+     * @return the validator, or null if no validator knows the link.
+     */
+    public LinkValidator getValidator( LinkValidationItem lvi )
+    {
+        for ( LinkValidator lv : this.validators )
+        {
+            if ( lv.getResourceKey( lvi ) != null )
+            {
+                return lv;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Loads a cache file. The results already in the cache are kept, i.e. those of a
+     * {@link SharedValidationCache shared cache}, as they are at least as recent.
      *
      * @param cacheFile The cache file.
      * May be null, in which case the request is ignored.
      * @throws IOException if any
      */
-    @SuppressWarnings( "unchecked" )
     public void loadCache( File cacheFile )
         throws IOException
     {
@@ -203,37 +324,44 @@ public class LinkValidatorManager
             return;
         }
 
-        ObjectInputStream is = null;
+        boolean loaded;
+        SharedValidationCache.Lock lock = ( sharedCacheFile ? SharedValidationCache.lock( cacheFile ) : null );
         try
         {
-            is = new ObjectInputStream( new FileInputStream( cacheFile ) );
-
-            this.cache = (Map<Object, LinkValidationResult>) is.readObject();
-
-            if ( LOG.isDebugEnabled() )
+            // the results are streamed, i.e. into a DiskValidationCache
+            loaded = readCache( cacheFile, new ResultHandler()
             {
-                LOG.debug( "Cache file loaded: " + cacheFile.getAbsolutePath() );
-            }
-        }
-        catch ( InvalidClassException e )
-        {
-            LOG.warn( "Your cache is incompatible with this version of linkcheck. It will be recreated." );
+                public void handle( Object key, LinkValidationResult result )
+                {
+                    synchronized ( LinkValidatorManager.this )
+                    {
+                        if ( !cache.containsKey( key ) )
+                        {
+                            cache.put( key, result );
+                        }
+                    }
+                }
+            } );
         }
-        catch ( ClassNotFoundException e )
+        finally
         {
-            if ( LOG.isErrorEnabled() )
+            if ( lock != null )
             {
-                LOG.error( "Unable to load the cache: " + cacheFile.getAbsolutePath(), e );
+                lock.release();
             }
         }
-        finally
+
+        if ( loaded && LOG.isDebugEnabled() )
         {
-            IOUtil.close( is );
+            LOG.debug( "Cache file loaded: " + cacheFile.getAbsolutePath() );
         }
     }
 
     /**
-     * Saves a cache file.
+     * Saves a cache file. The file is replaced at once, so that it is never read partially written. If the
+     * {@link #setSharedCacheFile(boolean) cache file is shared}, the persistent results are merged into the results
+     * already saved, i.e. by other checks, while holding the {@link SharedValidationCache#lock(File) lock} of the
+     * file, so that concurrent checks, even in other processes, don't lose their results.
      *
      * @param cacheFile The name of the cache file.
      * May be null, in which case the request is ignored.
@@ -254,39 +382,87 @@ public class LinkValidatorManager
             return;
         }
 
-        // Remove non-persistent items from cache
-        Map<Object, LinkValidationResult> persistentCache = new HashMap<Object, LinkValidationResult>();
-
-        for ( Map.Entry<Object, LinkValidationResult> resource : this.cache.entrySet() )
-        {
-            if ( resource.getValue().isPersistent() )
-            {
-                persistentCache.put( resource.getKey(), resource.getValue() );
-
-                if ( LOG.isDebugEnabled() )
-                {
-                    LOG.debug( "[" + resource.getKey() + "] with result [" + resource.getValue()
-                        + "] is stored in the cache." );
-                }
-            }
-        }
-
-        File dir = cacheFile.getParentFile();
+        File dir = cacheFile.getAbsoluteFile().getParentFile();
         if ( dir != null )
         {
             dir.mkdirs();
         }
 
-        ObjectOutputStream os = null;
+        SharedValidationCache.Lock lock = ( sharedCacheFile ? SharedValidationCache.lock( cacheFile ) : null );
         try
         {
-            os = new ObjectOutputStream( new FileOutputStream( cacheFile ) );
+            File tmpFile = File.createTempFile( cacheFile.getName(), ".tmp", dir );
+            ObjectOutputStream os = null;
+            try
+            {
+                os = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+
+                // the previous versions read a single map: they load an empty cache, instead of failing
+                os.writeObject( new HashMap<Object, LinkValidationResult>() );
+                os.writeInt( CACHE_FORMAT );
+                final CacheWriter out = new CacheWriter( os );
+
+                // the results are streamed, i.e. from a DiskValidationCache, without being copied in memory
+                synchronized ( this )
+                {
+                    if ( sharedCacheFile && cacheFile.exists() )
+                    {
+                        try
+                        {
+                            readCache( cacheFile, new ResultHandler()
+                            {
+                                public void handle( Object key, LinkValidationResult result )
+                                    throws IOException
+                                {
+                                    LinkValidationResult ownResult = cache.get( key );
+                                    if ( ownResult == null || !ownResult.isPersistent() )
+                                    {
+                                        out.write( key, result );
+                                    }
+                                }
+                            } );
+                        }
+                        catch ( IOException e )
+                        {
+                            LOG.warn( "Unable to read the cache " + cacheFile.getAbsolutePath()
+                                + ", it will be recreated: " + e.getMessage() );
+                        }
+                    }
+
+                    // only the persistent results are saved
+                    for ( Map.Entry<Object, LinkValidationResult> resource : this.cache.entrySet() )
+                    {
+                        if ( resource.getValue().isPersistent() )
+                        {
+                            out.write( resource.getKey(), resource.getValue() );
+
+                            if ( LOG.isDebugEnabled() )
+                            {
+                                LOG.debug( "[" + resource.getKey() + "] with result [" + resource.getValue()
+                                    + "] is stored in the cache." );
+                            }
+                        }
+                    }
+                }
+                os.writeObject( null );
 
-            os.writeObject( persistentCache );
+                os.close();
+                os = null;
+
+                replace( tmpFile, cacheFile );
+            }
+            finally
+            {
+                IOUtil.close( os );
+                tmpFile.delete();
+            }
         }
         finally
         {
-            IOUtil.close( os );
+            if ( lock != null )
+            {
+                lock.release();
+            }
         }
     }
 
@@ -297,21 +473,22 @@ public class LinkValidatorManager
      * @param lvi The LinkValidationItem.
      * @return LinkValidationResult
      */
-    public LinkValidationResult getCachedResult( LinkValidationItem lvi )
+    public synchronized LinkValidationResult getCachedResult( LinkValidationItem lvi )
     {
         for ( LinkValidator lv :  getValidators() )
         {
             Object resourceKey = lv.getResourceKey( lvi );
 
-            if ( resourceKey != null && this.cache.containsKey( resourceKey ) )
+            LinkValidationResult cachedResult = ( resourceKey == null ? null : this.cache.get( resourceKey ) );
+
+            if ( cachedResult != null )
             {
                 if ( LOG.isDebugEnabled() )
                 {
-                    LOG.debug( "The cache returns for [" + resourceKey + "] the result ["
-                        + this.cache.get( resourceKey ) + "]." );
+                    LOG.debug( "The cache returns for [" + resourceKey + "] the result [" + cachedResult + "]." );
                 }
 
-                return (LinkValidationResult) this.cache.get( resourceKey );
+                return cachedResult;
             }
         }
 
@@ -324,11 +501,183 @@ public class LinkValidatorManager
      * @param resourceKey The key to retrieve the result.
      * @param lvr the LinkValidationResult to cache.
      */
-    public void setCachedResult( Object resourceKey, LinkValidationResult lvr )
+    public synchronized void setCachedResult( Object resourceKey, LinkValidationResult lvr )
     {
         this.cache.put( resourceKey, lvr );
     }
 
+    /**
+     * Removes the non persistent results from the cache, i.e. the local file results, which may change with the
+     * files. The cache must support the removal of entries.
+     */
+    public synchronized void removeNonPersistentResults()
+    {
+        for ( Iterator<LinkValidationResult> it = this.cache.values().iterator(); it.hasNext(); )
+        {
+            if ( !it.next().isPersistent() )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the results of the local links from the cache, i.e. those of the {@link FileLinkValidator}, which may
+     * change with the files. The other results are kept, even the non persistent ones. The cache must support the
+     * removal of entries.
+     */
+    public synchronized void removeLocalResults()
+    {
+        for ( Iterator<Object> it = this.cache.keySet().iterator(); it.hasNext(); )
+        {
+            if ( FileLinkValidator.isResourceKey( it.next() ) )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Retries a link until it doesn't have to be retried anymore.
+     *
+     * @param lv the validator of the link.
+     * @param lvi the link.
+     * @param lvr the result of the first attempt.
+     * @return the result of the last attempt.
+     */
+    private static LinkValidationResult retry( LinkValidator lv, LinkValidationItem lvi, LinkValidationResult lvr )
+    {
+        LinkValidationResult result = lvr;
+        while ( result instanceof RetryLinkValidationResult )
+        {
+            RetryLinkValidationResult retry = (RetryLinkValidationResult) result;
+            try
+            {
+                Thread.sleep( retry.getDelay() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+
+                return retry.getResult();
+            }
+
+            lvi.setAttempt( lvi.getAttempt() + 1 );
+
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( lv.getClass().getName() + " - Retrying link " + lvi.getLink() + ", attempt "
+                    + lvi.getAttempt() );
+            }
+
+            result = lv.validateLink( lvi );
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a cache file: an empty map, the {@link #CACHE_FORMAT format} and a sequence of key and result pairs
+     * terminated by a <code>null</code> key. A cache file written by a previous version, a single serialized map, is
+     * read too.
+     *
+     * @param cacheFile the cache file.
+     * @param handler the handler of each cached result.
+     * @return false if the file is incompatible with this version.
+     * @throws IOException if any
+     */
+    private static boolean readCache( File cacheFile, ResultHandler handler )
+        throws IOException
+    {
+        ObjectInputStream is = null;
+        try
+        {
+            is = new ObjectInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+
+            Object results = is.readObject();
+            if ( !( results instanceof Map ) )
+            {
+                LOG.warn( "Your cache is incompatible with this version of linkcheck. It will be recreated." );
+                return false;
+            }
+
+            if ( !( (Map<?, ?>) results ).isEmpty() )
+            {
+                for ( Object o : ( (Map<?, ?>) results ).entrySet() )
+                {
+                    Map.Entry<?, ?> resource = (Map.Entry<?, ?>) o;
+                    handler.handle( resource.getKey(), (LinkValidationResult) resource.getValue() );
+                }
+
+                return true;
+            }
+
+            int format;
+            try
+            {
+                format = is.readInt();
+            }
+            catch ( EOFException e )
+            {
+                // an empty cache of a previous version
+                return true;
+            }
+
+            if ( format != CACHE_FORMAT )
+            {
+                LOG.warn( "Your cache is incompatible with this version of linkcheck. It will be recreated." );
+                return false;
+            }
+
+            Object key = is.readObject();
+            while ( key != null )
+            {
+                handler.handle( key, (LinkValidationResult) is.readObject() );
+                key = is.readObject();
+            }
+
+            return true;
+        }
+        catch ( InvalidClassException e )
+        {
+            LOG.warn( "Your cache is incompatible with this version of linkcheck. It will be recreated." );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            if ( LOG.isErrorEnabled() )
+            {
+                LOG.error( "Unable to load the cache: " + cacheFile.getAbsolutePath(), e );
+            }
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+
+        return false;
+    }
+
+    /**
+     * Replaces a file at once, so that it is never read partially written.
+     *
+     * @param source the new file.
+     * @param target the file to replace.
+     * @throws IOException if any
+     */
+    private static void replace( File source, File target )
+        throws IOException
+    {
+        try
+        {
+            Files.move( source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
     /**
      * @param link not null
      * @param pattern not null
@@ -377,4 +726,52 @@ public class LinkValidatorManager
 
         return SelectorUtils.match( pattern, link );
     }
+
+    /** Writes the results of a cache file. */
+    private static class CacheWriter
+    {
+        /** The number of results written before the stream is reset. */
+        private static final int RESET_INTERVAL = 1000;
+
+        private final ObjectOutputStream os;
+
+        private int count;
+
+        CacheWriter( ObjectOutputStream os )
+        {
+            this.os = os;
+        }
+
+        /**
+         * Writes a result. The stream is reset from time to time, so that it doesn't keep a reference to all the
+         * written objects.
+         *
+         * @param key the key of the result.
+         * @param result the result.
+         * @throws IOException if any
+         */
+        void write( Object key, LinkValidationResult result )
+            throws IOException
+        {
+            os.writeObject( key );
+            os.writeObject( result );
+
+            if ( ++count % RESET_INTERVAL == 0 )
+            {
+                os.reset();
+            }
+        }
+    }
+
+    /** Handles the results read from a cache file. */
+    private interface ResultHandler
+    {
+        /**
+         * @param key the key of a result.
+         * @param result the result.
+         * @throws IOException if any
+         */
+        void handle( Object key, LinkValidationResult result )
+            throws IOException;
+    }
 }
@@ -21,8 +21,20 @@ package org.apache.maven.doxia.linkcheck.validation;
 
 import java.io.IOException;
 
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.Header;
@@ -39,13 +51,19 @@ import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.params.DefaultHttpParams;
 import org.apache.commons.httpclient.params.HttpClientParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.maven.doxia.linkcheck.HttpBean;
+import org.apache.maven.doxia.linkcheck.RetryPolicy;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitor;
+import org.apache.maven.doxia.linkcheck.monitor.LinkcheckMonitors;
 import org.codehaus.plexus.util.StringUtils;
 
 /**
@@ -65,12 +83,21 @@ public final class OnlineHTTPLinkValidator
     /** The maximum number of redirections for a link. */
     private static final int MAX_NB_REDIRECT = 10;
 
+    /** The user agent sent, some web servers don't allow the default one of HttpClient. */
+    private static final String USER_AGENT = "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)";
+
     /** Use the get method to test pages. */
     private static final String GET_METHOD = "get";
 
     /** Use the head method to test pages. */
     private static final String HEAD_METHOD = "head";
 
+    /** Use the head method to test pages, or the get method on the hosts rejecting it. */
+    private static final String AUTO_METHOD = "auto";
+
+    /** Aborts the requests of the links out of time. */
+    private static final ScheduledThreadPoolExecutor WATCHDOG = newWatchdog();
+
     /** The http bean encapsuling all http parameters supported. */
     private HttpBean http;
 
@@ -80,6 +107,21 @@ public final class OnlineHTTPLinkValidator
     /** The HttpClient. */
     private transient HttpClient cl;
 
+    /** The resolver of the hosts, caching the addresses and the unknown hosts. */
+    private transient HostResolver resolver;
+
+    /** The http protocol, connecting to the addresses of the resolver. */
+    private transient Protocol httpProtocol;
+
+    /** The https protocol, connecting to the addresses of the resolver. */
+    private transient Protocol httpsProtocol;
+
+    /** The time the links have to be checked by, in milliseconds. */
+    private volatile long deadline = Long.MAX_VALUE;
+
+    /** The hosts rejecting the head method, checked with the get method in "auto" mode. */
+    private final Set<String> getHosts = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
     /**
      * Constructor: initialize settings, use "head" method.
      */
@@ -130,28 +172,65 @@ public final class OnlineHTTPLinkValidator
         this.baseURL = url;
     }
 
-    /** {@inheritDoc} */
-    public LinkValidationResult validateLink( LinkValidationItem lvi )
+    /**
+     * Sets the time all the links have to be checked by, i.e. the end of the run: the checks still running are
+     * aborted, and the links get an error with the {@link LinkValidationResult#TIMED_OUT} message.
+     *
+     * @param deadline the time in milliseconds, <code>Long.MAX_VALUE</code> for no deadline.
+     * @see HttpBean#getLinkTimeout()
+     */
+    public void setDeadline( long deadline )
     {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Resolves in advance, in the background, the hosts of the given links not resolved yet, so that their checks
+     * don't wait for it, and the links to unknown hosts fail at once. Nothing is done with a proxy, which resolves
+     * the hosts itself.
+     *
+     * @param links some links, only the absolute http and https ones are considered.
+     * @see HttpBean#getDnsTtl()
+     */
+    public void preResolve( Collection<String> links )
+    {
+        if ( StringUtils.isNotEmpty( this.http.getProxyHost() ) )
+        {
+            return;
+        }
+
         if ( this.cl == null )
         {
             initHttpClient();
         }
 
-        if ( this.http.getHttpClientParameters() != null )
+        Set<String> hosts = new HashSet<String>();
+        for ( String link : links )
         {
-            for ( Map.Entry<Object, Object> entry : this.http.getHttpClientParameters().entrySet() )
+            String lowerCaseLink = link.toLowerCase( Locale.ENGLISH );
+            if ( lowerCaseLink.startsWith( "http://" ) || lowerCaseLink.startsWith( "https://" ) )
             {
-                if ( entry.getValue() != null )
+                try
+                {
+                    hosts.add( new URL( link ).getHost() );
+                }
+                catch ( MalformedURLException e )
                 {
-                    System.setProperty( entry.getKey().toString(), entry.getValue().toString() );
+                    // reported by the check
                 }
             }
         }
 
-        // Some web servers don't allow the default user-agent sent by httpClient
-        System.setProperty( HttpMethodParams.USER_AGENT, "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)" );
-        this.cl.getParams().setParameter( HttpMethodParams.USER_AGENT, "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)" );
+        resolver.preResolve( hosts );
+    }
+
+    /** {@inheritDoc} */
+    public LinkValidationResult validateLink( LinkValidationItem lvi )
+    {
+        if ( this.cl == null )
+        {
+            initHttpClient();
+        }
 
         String link = lvi.getLink();
         String anchor = "";
@@ -181,10 +260,26 @@ public final class OnlineHTTPLinkValidator
                 link = getBaseURL() + link;
             }
 
+            long expiry = deadline;
+            if ( this.http.getLinkTimeout() > 0 )
+            {
+                expiry = Math.min( expiry, System.currentTimeMillis() + this.http.getLinkTimeout() );
+            }
+
             HttpMethod hm = null;
             try
             {
-                hm = checkLink( link, 0 );
+                hm = checkLink( link, 0, anchor.length() > 0, expiry );
+            }
+            catch ( TimedOutException e )
+            {
+                if ( LOG.isDebugEnabled() )
+                {
+                    LOG.debug( "Timed out: [" + link + "] in page [" + lvi.getSource() + "]" );
+                }
+
+                return new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false,
+                                                 LinkValidationResult.TIMED_OUT );
             }
             catch ( Throwable t )
             {
@@ -193,8 +288,9 @@ public final class OnlineHTTPLinkValidator
                     LOG.debug( "Received: [" + t + "] for [" + link + "] in page [" + lvi.getSource() + "]", t );
                 }
 
-                return new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, t.getClass().getName()
-                    + " : " + t.getMessage() );
+                return retry( lvi, new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false,
+                                                             t.getClass().getName() + " : " + t.getMessage() ),
+                              this.http.getRetryPolicy() != null && this.http.getRetryPolicy().isRetried( t ) );
             }
 
             if ( hm == null )
@@ -203,7 +299,7 @@ public final class OnlineHTTPLinkValidator
                                                  "Cannot retreive HTTP Status" );
             }
 
-            if ( hm.getStatusCode() == HttpStatus.SC_OK )
+            if ( isOk( hm ) )
             {
                 // lets check if the anchor is present
                 if ( anchor.length() > 0 )
@@ -235,8 +331,10 @@ public final class OnlineHTTPLinkValidator
 
             LOG.debug( msg );
 
-            return new HTTPLinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, hm.getStatusCode(),
-                                                 hm.getStatusText() );
+            return retry( lvi, new HTTPLinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false,
+                                                             hm.getStatusCode(), hm.getStatusText() ),
+                          this.http.getRetryPolicy() != null
+                              && this.http.getRetryPolicy().isRetried( hm.getStatusCode() ) );
         }
         catch ( Throwable t )
         {
@@ -252,21 +350,78 @@ public final class OnlineHTTPLinkValidator
 
             return new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, t.getMessage() );
         }
-        finally
+    }
+
+    /**
+     * Returns the result of a failed attempt, or a result to retry the link later if the failure is transient
+     * and the maximum number of attempts of the retry policy isn't reached.
+     *
+     * @param lvi the link.
+     * @param result the result of the attempt.
+     * @param retried <code>true</code> if the retry policy retries this failure.
+     * @return the result.
+     */
+    private LinkValidationResult retry( LinkValidationItem lvi, LinkValidationResult result, boolean retried )
+    {
+        RetryPolicy policy = this.http.getRetryPolicy();
+        if ( !retried || lvi.getAttempt() >= policy.getMaxAttempts() )
         {
-            System.getProperties().remove( HttpMethodParams.USER_AGENT );
+            return result;
+        }
 
-            if ( this.http.getHttpClientParameters() != null )
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( "Attempt " + lvi.getAttempt() + " of [" + lvi.getLink() + "] failed: "
+                + result.getErrorMessage() );
+        }
+
+        return new RetryLinkValidationResult( result, policy.getDelay( lvi.getAttempt() ) );
+    }
+
+    /**
+     * Converts the value of an HttpClient parameter to the type expected by HttpClient, i.e. an
+     * <code>Integer</code> for <code>http.socket.timeout</code>.
+     *
+     * @param name the name of the parameter.
+     * @param value the value of the parameter, usually a String.
+     * @return the value with the type of the default value of the parameter, an Integer or a Boolean for the
+     * parameters without default value which look like one, or the value itself.
+     */
+    private static Object toParameterValue( String name, Object value )
+    {
+        if ( !( value instanceof String ) )
+        {
+            return value;
+        }
+
+        String s = ( (String) value ).trim();
+        Object defaultValue = DefaultHttpParams.getDefaultParams().getParameter( name );
+        try
+        {
+            if ( defaultValue instanceof Long )
             {
-                for ( Map.Entry<Object, Object> entry : this.http.getHttpClientParameters().entrySet() )
-                {
-                    if ( entry.getValue() != null )
-                    {
-                        System.getProperties().remove( entry.getKey().toString() );
-                    }
-                }
+                return Long.valueOf( s );
+            }
+            if ( defaultValue instanceof Integer || ( defaultValue == null && s.matches( "-?\\d{1,9}" ) ) )
+            {
+                return Integer.valueOf( s );
             }
         }
+        catch ( NumberFormatException e )
+        {
+            if ( LOG.isWarnEnabled() )
+            {
+                LOG.warn( "HttpClient parameter '" + name + "' is not a number. Ignoring!" );
+            }
+            return defaultValue;
+        }
+        if ( defaultValue instanceof Boolean || ( defaultValue == null
+            && ( "true".equalsIgnoreCase( s ) || "false".equalsIgnoreCase( s ) ) ) )
+        {
+            return Boolean.valueOf( s );
+        }
+
+        return value;
     }
 
     /** Initialize the HttpClient. */
@@ -276,6 +431,11 @@ public final class OnlineHTTPLinkValidator
 
         this.cl = new HttpClient( new MultiThreadedHttpConnectionManager() );
 
+        this.resolver = new HostResolver( this.http.getDnsTtl(), this.http.getDnsNegativeTtl() );
+        this.httpProtocol = new Protocol( "http", new ResolvingSocketFactory( resolver ), 80 );
+        this.httpsProtocol =
+            new Protocol( "https", (ProtocolSocketFactory) new ResolvingSocketFactory.Secure( resolver ), 443 );
+
         // Default params
         if ( this.http.getTimeout() != 0 )
         {
@@ -284,6 +444,21 @@ public final class OnlineHTTPLinkValidator
         }
         this.cl.getParams().setBooleanParameter( HttpClientParams.ALLOW_CIRCULAR_REDIRECTS, true );
 
+        this.cl.getParams().setParameter( HttpMethodParams.USER_AGENT, USER_AGENT );
+
+        // set once on the client, and not as system properties, the links being validated by several threads
+        if ( this.http.getHttpClientParameters() != null )
+        {
+            for ( Map.Entry<Object, Object> entry : this.http.getHttpClientParameters().entrySet() )
+            {
+                String name = entry.getKey().toString();
+                if ( entry.getValue() != null && !HttpClientParams.MAX_REDIRECTS.equals( name ) )
+                {
+                    this.cl.getParams().setParameter( name, toParameterValue( name, entry.getValue() ) );
+                }
+            }
+        }
+
         HostConfiguration hc = new HostConfiguration();
 
         HttpState state = new HttpState();
@@ -336,10 +511,14 @@ public final class OnlineHTTPLinkValidator
      *
      * @param link the link to check.
      * @param nbRedirect the number of current redirects.
+     * @param readBody <code>true</code> to keep the response body of a successful request, i.e. to look for an
+     * anchor, as the connection is released before returning.
+     * @param expiry the time the link has to be checked by, including its redirects, in milliseconds.
      * @return HttpMethod
      * @throws IOException if something goes wrong.
+     * @throws TimedOutException if the link isn't checked by the expiry time.
      */
-    private HttpMethod checkLink( String link, int nbRedirect )
+    private HttpMethod checkLink( String link, int nbRedirect, boolean readBody, long expiry )
         throws IOException
     {
         int max = MAX_NB_REDIRECT;
@@ -367,34 +546,44 @@ public final class OnlineHTTPLinkValidator
             throw new HttpException( "Maximum number of redirections (" + max + ") exceeded" );
         }
 
-        HttpMethod hm;
-        if ( HEAD_METHOD.equalsIgnoreCase( this.http.getMethod() ) )
-        {
-            hm = new HeadMethod( link );
-        }
-        else if ( GET_METHOD.equalsIgnoreCase( this.http.getMethod() ) )
-        {
-            hm = new GetMethod( link );
-        }
-        else
-        {
-            if ( LOG.isErrorEnabled() )
-            {
-                LOG.error( "Unsupported method: " + this.http.getMethod() + ", using 'get'." );
-            }
-            hm = new GetMethod( link );
-        }
+        URL url = new URL( link );
+        String host = url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
 
-        // Default
-        hm.setFollowRedirects( this.http.isFollowRedirects() );
+        HttpMethod hm = newMethod( link, host, readBody );
 
         try
         {
-            URL url = new URL( link );
+            // not shared between requests, the links may be checked concurrently
+            HostConfiguration hc = new HostConfiguration( cl.getHostConfiguration() );
+            hc.setHost( url.getHost(), url.getPort(), getProtocol( url.getProtocol() ) );
+
+            execute( url, hc, hm, readBody, expiry );
+
+            if ( hm instanceof HeadMethod && AUTO_METHOD.equalsIgnoreCase( this.http.getMethod() )
+                && isHeadRejected( hm.getStatusCode() ) )
+            {
+                int headStatus = hm.getStatusCode();
+                hm.releaseConnection();
+
+                hm = newGetMethod( link, readBody );
+                execute( url, hc, hm, readBody, expiry );
+
+                if ( hm.getStatusCode() != headStatus )
+                {
+                    if ( LOG.isDebugEnabled() )
+                    {
+                        LOG.debug( "[" + host + "] rejects HEAD requests with " + headStatus + ", using GET" );
+                    }
 
-            cl.getHostConfiguration().setHost( url.getHost(), url.getPort(), url.getProtocol() );
+                    getHosts.add( host );
+                }
+            }
 
-            cl.executeMethod( hm );
+            if ( hm.getRequestHeader( "Range" ) != null && hm.getStatusCode() == HttpStatus.SC_OK )
+            {
+                // the server ignores the range, don't download the whole body
+                hm.abort();
+            }
 
             StatusLine sl = hm.getStatusLine();
             if ( sl == null )
@@ -427,11 +616,9 @@ public final class OnlineHTTPLinkValidator
                 {
                     if ( newLink.startsWith( "/" ) )
                     {
-                        URL oldUrl = new URL( link );
-
                         newLink =
-                            oldUrl.getProtocol() + "://" + oldUrl.getHost()
-                                + ( oldUrl.getPort() > 0 ? ":" + oldUrl.getPort() : "" ) + newLink;
+                            url.getProtocol() + "://" + url.getHost()
+                                + ( url.getPort() > 0 ? ":" + url.getPort() : "" ) + newLink;
                     }
                     else
                     {
@@ -448,11 +635,11 @@ public final class OnlineHTTPLinkValidator
 
                 oldHm.releaseConnection();
 
-                hm = checkLink( newLink, nbRedirect + 1 );
+                hm = checkLink( newLink, nbRedirect + 1, readBody, expiry );
 
                 // Restore the hm to "Moved permanently" | "Moved temporarily" | "Temporary redirect"
                 // if the new location is found to allow us to report it
-                if ( hm.getStatusCode() == HttpStatus.SC_OK && nbRedirect == 0 )
+                if ( isOk( hm ) && nbRedirect == 0 )
                 {
                     return oldHm;
                 }
@@ -466,4 +653,265 @@ public final class OnlineHTTPLinkValidator
 
         return hm;
     }
+
+    /**
+     * @param scheme the scheme of a link.
+     * @return the protocol of the scheme, resolving the hosts through the resolver for http and https.
+     */
+    private Protocol getProtocol( String scheme )
+    {
+        if ( "http".equalsIgnoreCase( scheme ) )
+        {
+            return httpProtocol;
+        }
+        if ( "https".equalsIgnoreCase( scheme ) )
+        {
+            return httpsProtocol;
+        }
+
+        return Protocol.getProtocol( scheme );
+    }
+
+    /**
+     * Creates the method checking a link, according to the method of the http bean.
+     *
+     * @param link the link.
+     * @param host the protocol, host and port of the link.
+     * @param readBody <code>true</code> if the response body is needed.
+     * @return a new method, following redirects as configured.
+     */
+    private HttpMethod newMethod( String link, String host, boolean readBody )
+    {
+        HttpMethod hm;
+        if ( HEAD_METHOD.equalsIgnoreCase( this.http.getMethod() ) )
+        {
+            hm = new HeadMethod( link );
+        }
+        else if ( GET_METHOD.equalsIgnoreCase( this.http.getMethod() ) )
+        {
+            hm = new GetMethod( link );
+        }
+        else if ( AUTO_METHOD.equalsIgnoreCase( this.http.getMethod() ) )
+        {
+            if ( readBody || getHosts.contains( host ) )
+            {
+                return newGetMethod( link, readBody );
+            }
+            hm = new HeadMethod( link );
+        }
+        else
+        {
+            if ( LOG.isErrorEnabled() )
+            {
+                LOG.error( "Unsupported method: " + this.http.getMethod() + ", using 'get'." );
+            }
+            hm = new GetMethod( link );
+        }
+
+        // Default
+        hm.setFollowRedirects( this.http.isFollowRedirects() );
+
+        return hm;
+    }
+
+    /**
+     * Creates a get method, only asking for the first byte of the body when the body isn't needed.
+     *
+     * @param link the link.
+     * @param readBody <code>true</code> if the response body is needed.
+     * @return a new get method, following redirects as configured.
+     */
+    private HttpMethod newGetMethod( String link, boolean readBody )
+    {
+        HttpMethod hm = new GetMethod( link );
+        if ( !readBody )
+        {
+            hm.setRequestHeader( "Range", "bytes=0-0" );
+        }
+        hm.setFollowRedirects( this.http.isFollowRedirects() );
+
+        return hm;
+    }
+
+    /**
+     * @param status the status of a head request.
+     * @return <code>true</code> if the status is the one of a server not supporting head requests.
+     */
+    private static boolean isHeadRejected( int status )
+    {
+        return status == HttpStatus.SC_METHOD_NOT_ALLOWED || status == HttpStatus.SC_FORBIDDEN
+            || status == HttpStatus.SC_NOT_IMPLEMENTED;
+    }
+
+    /**
+     * @param hm an executed method.
+     * @return <code>true</code> if the request is successful, including the partial response to a ranged request.
+     */
+    private static boolean isOk( HttpMethod hm )
+    {
+        return hm.getStatusCode() == HttpStatus.SC_OK
+            || ( hm.getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT && hm.getRequestHeader( "Range" ) != null );
+    }
+
+    /**
+     * Executes the given method and reads its body if needed, before the expiry time: the method is aborted once
+     * expired.
+     *
+     * @param url the requested URL.
+     * @param hc the host configuration of the request.
+     * @param hm the method to execute.
+     * @param readBody <code>true</code> to read the response body of a successful request.
+     * @param expiry the time the method has to be executed by, in milliseconds.
+     * @throws IOException if something goes wrong.
+     * @throws TimedOutException if the method isn't executed by the expiry time.
+     */
+    private void execute( URL url, HostConfiguration hc, final HttpMethod hm, boolean readBody, long expiry )
+        throws IOException
+    {
+        ScheduledFuture<?> abort = null;
+        final AtomicBoolean aborted = new AtomicBoolean();
+        if ( expiry != Long.MAX_VALUE )
+        {
+            long remaining = expiry - System.currentTimeMillis();
+            if ( remaining <= 0 )
+            {
+                throw new TimedOutException();
+            }
+
+            if ( this.http.getTimeout() == 0 || remaining < this.http.getTimeout() )
+            {
+                int timeout = (int) Math.min( remaining, Integer.MAX_VALUE );
+                hm.getParams().setSoTimeout( timeout );
+                // the connection params are shared by the connection manager, the socket factory takes it per thread
+                ResolvingSocketFactory.setConnectionTimeout( timeout );
+            }
+
+            abort = WATCHDOG.schedule( new Runnable()
+            {
+                public void run()
+                {
+                    aborted.set( true );
+                    hm.abort();
+                }
+            }, remaining, TimeUnit.MILLISECONDS );
+        }
+
+        try
+        {
+            executeMethod( url, hc, hm );
+
+            if ( readBody && hm.getStatusCode() == HttpStatus.SC_OK )
+            {
+                hm.getResponseBody();
+            }
+        }
+        catch ( IOException e )
+        {
+            if ( aborted.get() || System.currentTimeMillis() >= expiry )
+            {
+                throw new TimedOutException();
+            }
+
+            throw e;
+        }
+        catch ( IllegalStateException e )
+        {
+            // the method has been aborted before being executed
+            if ( aborted.get() )
+            {
+                throw new TimedOutException();
+            }
+
+            throw e;
+        }
+        finally
+        {
+            ResolvingSocketFactory.setConnectionTimeout( 0 );
+
+            if ( abort != null )
+            {
+                abort.cancel( false );
+            }
+        }
+
+        if ( aborted.get() )
+        {
+            throw new TimedOutException();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newWatchdog()
+    {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+        {
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, "linkcheck-http-watchdog" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        watchdog.setRemoveOnCancelPolicy( true );
+
+        return watchdog;
+    }
+
+    /**
+     * Thrown when a link isn't checked in the time given to it.
+     */
+    private static final class TimedOutException
+        extends IOException
+    {
+        private static final long serialVersionUID = 2187458254316487153L;
+
+        TimedOutException()
+        {
+            super( LinkValidationResult.TIMED_OUT );
+        }
+    }
+
+    /**
+     * Executes the given method and notifies the {@link LinkcheckMonitor}.
+     *
+     * @param url the requested URL.
+     * @param hc the host configuration of the request.
+     * @param hm the method to execute.
+     * @throws IOException if something goes wrong.
+     */
+    private void executeMethod( URL url, HostConfiguration hc, HttpMethod hm )
+        throws IOException
+    {
+        LinkcheckMonitor monitor = LinkcheckMonitors.getMonitor();
+        if ( !monitor.isEnabled() )
+        {
+            cl.executeMethod( hc, hm );
+
+            return;
+        }
+
+        Object request = monitor.beginHttpRequest();
+        int status = -1;
+        try
+        {
+            status = cl.executeMethod( hc, hm );
+        }
+        finally
+        {
+            long bytes = -1;
+            Header contentLength = ( status == -1 ? null : hm.getResponseHeader( "Content-Length" ) );
+            if ( contentLength != null )
+            {
+                try
+                {
+                    bytes = Long.parseLong( contentLength.getValue().trim() );
+                }
+                catch ( NumberFormatException e )
+                {
+                    // unknown
+                }
+            }
+
+            monitor.httpRequest( request, url.getHost(), hm.getName(), status, bytes );
+        }
+    }
 }
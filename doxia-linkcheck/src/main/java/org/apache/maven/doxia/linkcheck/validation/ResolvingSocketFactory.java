@@ -0,0 +1,165 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+
+/**
+ * Creates the sockets of the HttpClient, connected to the address of the host found by a {@link HostResolver}.
+ *
+ * @version $Id$
+ */
+class ResolvingSocketFactory
+    implements ProtocolSocketFactory
+{
+    /** The connection timeout of the request executed by the current thread, if shorter than the params one. */
+    private static final ThreadLocal<Integer> CONNECTION_TIMEOUT = new ThreadLocal<Integer>();
+
+    private final HostResolver resolver;
+
+    /**
+     * @param resolver the resolver of the hosts.
+     */
+    ResolvingSocketFactory( HostResolver resolver )
+    {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Sets the connection timeout of the request executed by the current thread, i.e. the time left to its deadline.
+     * A longer connection timeout of the connection params is ignored.
+     *
+     * @param timeout the connection timeout in milliseconds, <code>0</code> to remove it.
+     */
+    static void setConnectionTimeout( int timeout )
+    {
+        if ( timeout > 0 )
+        {
+            CONNECTION_TIMEOUT.set( Integer.valueOf( timeout ) );
+        }
+        else
+        {
+            CONNECTION_TIMEOUT.remove();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Socket createSocket( String host, int port )
+        throws IOException
+    {
+        return connect( host, port, null, 0, 0 );
+    }
+
+    /** {@inheritDoc} */
+    public Socket createSocket( String host, int port, InetAddress localAddress, int localPort )
+        throws IOException
+    {
+        return connect( host, port, localAddress, localPort, 0 );
+    }
+
+    /** {@inheritDoc} */
+    public Socket createSocket( String host, int port, InetAddress localAddress, int localPort,
+                                HttpConnectionParams params )
+        throws IOException
+    {
+        return connect( host, port, localAddress, localPort, params.getConnectionTimeout() );
+    }
+
+    /**
+     * Connects a socket to a host.
+     *
+     * @param host the host name.
+     * @param port the port.
+     * @param localAddress the local address to bind the socket to, <code>null</code> for any.
+     * @param localPort the local port to bind the socket to, <code>0</code> for any.
+     * @param timeout the connection timeout in milliseconds, <code>0</code> for no timeout.
+     * @return the connected socket.
+     * @throws IOException if the host can't be resolved or connected to.
+     */
+    Socket connect( String host, int port, InetAddress localAddress, int localPort, int timeout )
+        throws IOException
+    {
+        InetAddress address = resolver.resolve( host );
+
+        int connectionTimeout = timeout;
+        Integer requestTimeout = CONNECTION_TIMEOUT.get();
+        if ( requestTimeout != null && ( timeout == 0 || requestTimeout.intValue() < timeout ) )
+        {
+            connectionTimeout = requestTimeout.intValue();
+        }
+
+        Socket socket = new Socket();
+        try
+        {
+            if ( localAddress != null || localPort != 0 )
+            {
+                socket.bind( new InetSocketAddress( localAddress, localPort ) );
+            }
+            socket.connect( new InetSocketAddress( address, port ), connectionTimeout );
+        }
+        catch ( IOException e )
+        {
+            socket.close();
+            throw e;
+        }
+
+        return socket;
+    }
+
+    /**
+     * Creates SSL sockets, layered over the sockets connected to the address found by the resolver.
+     */
+    static final class Secure
+        extends ResolvingSocketFactory
+        implements SecureProtocolSocketFactory
+    {
+        /**
+         * @param resolver the resolver of the hosts.
+         */
+        Secure( HostResolver resolver )
+        {
+            super( resolver );
+        }
+
+        /** {@inheritDoc} */
+        Socket connect( String host, int port, InetAddress localAddress, int localPort, int timeout )
+            throws IOException
+        {
+            return createSocket( super.connect( host, port, localAddress, localPort, timeout ), host, port, true );
+        }
+
+        /** {@inheritDoc} */
+        public Socket createSocket( Socket socket, String host, int port, boolean autoClose )
+            throws IOException
+        {
+            return ( (SSLSocketFactory) SSLSocketFactory.getDefault() ).createSocket( socket, host, port, autoClose );
+        }
+    }
+}
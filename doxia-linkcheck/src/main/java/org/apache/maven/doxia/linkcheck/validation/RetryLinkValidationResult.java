@@ -0,0 +1,74 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The result of a failed validation to retry later, i.e. after a <code>503</code> response. It is never cached.
+ * <p>
+ * {@link LinkValidatorManager#validateLink(LinkValidationItem)} waits for the delay and validates the link again
+ * itself, while a {@link ValidationScheduler} validates it again after the delay without blocking a thread.
+ * </p>
+ *
+ * @version $Id$
+ * @see org.apache.maven.doxia.linkcheck.RetryPolicy
+ */
+public class RetryLinkValidationResult
+    extends LinkValidationResult
+{
+    /** serialVersionUID. */
+    private static final long serialVersionUID = -3069407467294823811L;
+
+    /** The result of the failed attempt. */
+    private final LinkValidationResult result;
+
+    /** The delay before the next attempt, in ms. */
+    private final long delay;
+
+    /**
+     * Constructor: initializes the result of the failed attempt and the delay.
+     *
+     * @param result the result of the failed attempt, kept if the link can't be retried.
+     * @param delay the delay before the next attempt, in ms.
+     */
+    public RetryLinkValidationResult( LinkValidationResult result, long delay )
+    {
+        super( result.getStatus(), false, result.getErrorMessage() );
+
+        this.result = result;
+        this.delay = delay;
+    }
+
+    /**
+     * @return the result of the failed attempt.
+     */
+    public LinkValidationResult getResult()
+    {
+        return this.result;
+    }
+
+    /**
+     * @return the delay before the next attempt, in ms.
+     */
+    public long getDelay()
+    {
+        return this.delay;
+    }
+}
@@ -0,0 +1,250 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The validation caches shared by the checks of a JVM using the same cache file, i.e. the modules of a reactor
+ * build, so that a link is checked once per build instead of once per module.
+ * <p>
+ * The cache file itself is shared with the other processes through {@link #lock(File)}: the
+ * {@link LinkValidatorManager} merges its results into the file while holding the lock, instead of overwriting the
+ * results of the others.
+ * </p>
+ * <p>
+ * A shared cache is dropped after {@link #MAX_AGE}, or once its cache file has been deleted, so that a long-lived
+ * JVM, i.e. an IDE or a daemonized build, checks the links again. A caller knowing when its build ends, i.e. at the
+ * end of a reactor build, should call {@link #clear()}.
+ * </p>
+ *
+ * @version $Id$
+ * @see LinkValidatorManager#saveCache(File)
+ */
+public final class SharedValidationCache
+{
+    /** The maximum age of a shared cache, in ms: one hour. */
+    public static final long MAX_AGE = 60 * 60 * 1000L;
+
+    /** The shared caches, by canonical cache file. */
+    private static final Map<File, SharedCache> CACHES = new HashMap<File, SharedCache>();
+
+    /** The locks guarding the lock files in this JVM, by canonical cache file, while they are used. */
+    private static final Map<File, ThreadLock> LOCKS = new HashMap<File, ThreadLock>();
+
+    private SharedValidationCache()
+    {
+        // nop
+    }
+
+    /**
+     * Returns the cache shared by the checks using the given cache file. The returned map is thread-safe.
+     *
+     * @param cacheFile the cache file, not null.
+     * @return the shared cache, initially empty, and empty again after {@link #MAX_AGE} or once the cache file has
+     * been deleted.
+     * @throws IOException if the canonical path of the file can't be computed.
+     */
+    public static Map<Object, LinkValidationResult> getCache( File cacheFile )
+        throws IOException
+    {
+        File key = cacheFile.getCanonicalFile();
+        boolean exists = key.exists();
+        long now = System.currentTimeMillis();
+
+        synchronized ( CACHES )
+        {
+            SharedCache cache = CACHES.get( key );
+            if ( cache == null || now - cache.created > MAX_AGE || ( cache.saved && !exists ) )
+            {
+                cache = new SharedCache( now );
+                CACHES.put( key, cache );
+            }
+            cache.saved |= exists;
+
+            return cache.results;
+        }
+    }
+
+    /**
+     * Drops all the shared caches, the next checks starting with empty caches.
+     */
+    public static void clear()
+    {
+        synchronized ( CACHES )
+        {
+            CACHES.clear();
+        }
+    }
+
+    /**
+     * Locks a cache file against the other threads and processes using it, through the <code>.lock</code> file
+     * next to it. The lock has to be released by the same thread, with {@link Lock#release()}.
+     *
+     * @param cacheFile the cache file, not null.
+     * @return the lock.
+     * @throws IOException if the lock file can't be locked.
+     */
+    public static Lock lock( File cacheFile )
+        throws IOException
+    {
+        File key = cacheFile.getCanonicalFile();
+
+        ThreadLock threadLock;
+        synchronized ( LOCKS )
+        {
+            threadLock = LOCKS.get( key );
+            if ( threadLock == null )
+            {
+                threadLock = new ThreadLock();
+                LOCKS.put( key, threadLock );
+            }
+            threadLock.users++;
+        }
+
+        return new Lock( key, threadLock, new File( key.getPath() + ".lock" ) );
+    }
+
+    /** A shared cache. */
+    private static final class SharedCache
+    {
+        private final Map<Object, LinkValidationResult> results =
+            new ConcurrentHashMap<Object, LinkValidationResult>();
+
+        /** When the cache was created. */
+        private final long created;
+
+        /** Whether the cache file has been seen, so that its deletion can be detected. */
+        private boolean saved;
+
+        private SharedCache( long created )
+        {
+            this.created = created;
+        }
+    }
+
+    /** The lock of a cache file in this JVM, kept while it is used. */
+    private static final class ThreadLock
+        extends ReentrantLock
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** The number of threads holding or waiting for the lock, guarded by {@link #LOCKS}. */
+        private int users;
+    }
+
+    /**
+     * The lock of a cache file, held by a single thread of a single process at a time.
+     */
+    public static final class Lock
+    {
+        private final File key;
+
+        private final ThreadLock threadLock;
+
+        private RandomAccessFile file;
+
+        private FileLock fileLock;
+
+        private boolean released;
+
+        private Lock( File key, ThreadLock threadLock, File lockFile )
+            throws IOException
+        {
+            this.key = key;
+            this.threadLock = threadLock;
+
+            // a file lock is held by the whole JVM, the threads wait for each other first
+            threadLock.lock();
+            try
+            {
+                File dir = lockFile.getParentFile();
+                if ( dir != null )
+                {
+                    dir.mkdirs();
+                }
+
+                this.file = new RandomAccessFile( lockFile, "rw" );
+                this.fileLock = file.getChannel().lock();
+            }
+            catch ( IOException e )
+            {
+                release();
+                throw e;
+            }
+        }
+
+        /**
+         * Releases the lock.
+         *
+         * @throws IOException if the lock file can't be released.
+         */
+        public void release()
+            throws IOException
+        {
+            try
+            {
+                if ( fileLock != null )
+                {
+                    fileLock.release();
+                    fileLock = null;
+                }
+            }
+            finally
+            {
+                try
+                {
+                    if ( file != null )
+                    {
+                        file.close();
+                        file = null;
+                    }
+                }
+                finally
+                {
+                    if ( threadLock.isHeldByCurrentThread() )
+                    {
+                        threadLock.unlock();
+                    }
+
+                    if ( !released )
+                    {
+                        released = true;
+                        synchronized ( LOCKS )
+                        {
+                            if ( --threadLock.users == 0 )
+                            {
+                                LOCKS.remove( key );
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * An index of the files of a site and of their anchors, kept up to date by the caller, i.e. on file system
+ * changes. It saves the file system accesses of {@link FileLinkValidator} when the same site is checked again and
+ * again.
+ * <p>
+ * The anchors of a file are read the first time they are needed. Files outside the base directory are not
+ * indexed.
+ * </p>
+ * This class is thread-safe: the files are looked up by the validations running on several threads. The anchors of
+ * a file may be read twice by concurrent lookups.
+ *
+ * @version $Id$
+ */
+public class SiteIndex
+{
+    /** The normalized base directory. */
+    private final Path basedir;
+
+    /** The encoding used to read the files. */
+    private final String encoding;
+
+    /** The normalized paths of the files under the base directory. */
+    private final Set<Path> files = Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+
+    /** The normalized paths of the directories under the base directory, including the base directory. */
+    private final Set<Path> directories = Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+
+    /** The anchors of the files read so far. */
+    private final ConcurrentMap<Path, Set<String>> anchors = new ConcurrentHashMap<Path, Set<String>>();
+
+    /**
+     * Indexes the files under the given directory.
+     *
+     * @param basedir the base directory of the site.
+     * @param encoding the encoding used to read the files.
+     * @throws IOException if the directory can't be walked.
+     */
+    public SiteIndex( File basedir, String encoding )
+        throws IOException
+    {
+        this.basedir = normalize( basedir );
+        this.encoding = encoding;
+
+        addFiles( this.basedir );
+    }
+
+    /**
+     * @param file a file or a directory.
+     * @return <code>true</code> if the file or directory exists.
+     */
+    public boolean exists( File file )
+    {
+        Path path = normalize( file );
+        if ( !path.startsWith( basedir ) )
+        {
+            return file.exists();
+        }
+
+        return files.contains( path ) || directories.contains( path );
+    }
+
+    /**
+     * @param file a file.
+     * @param anchor an anchor.
+     * @return <code>true</code> if the file exists and declares the given anchor.
+     */
+    public boolean hasAnchor( File file, String anchor )
+    {
+        Path path = normalize( file );
+        if ( !path.startsWith( basedir ) )
+        {
+            return Anchors.matchesAnchor( read( file ), anchor );
+        }
+
+        if ( !files.contains( path ) )
+        {
+            return false;
+        }
+
+        Set<String> fileAnchors = anchors.get( path );
+        if ( fileAnchors == null )
+        {
+            fileAnchors = Anchors.findAnchors( read( file ) );
+            Set<String> previous = anchors.putIfAbsent( path, fileAnchors );
+            if ( previous != null )
+            {
+                fileAnchors = previous;
+            }
+        }
+
+        return fileAnchors.contains( anchor );
+    }
+
+    /**
+     * Updates the index after a file or a directory has been created, modified or deleted.
+     *
+     * @param file the changed file or directory.
+     * @throws IOException if a created directory can't be walked.
+     */
+    public void update( File file )
+        throws IOException
+    {
+        Path path = normalize( file );
+        anchors.remove( path );
+
+        if ( files.remove( path ) || Files.isRegularFile( path ) )
+        {
+            if ( Files.isRegularFile( path ) )
+            {
+                files.add( path );
+            }
+            return;
+        }
+
+        // a created or deleted directory
+        removeFiles( path );
+        if ( Files.isDirectory( path ) )
+        {
+            addFiles( path );
+        }
+    }
+
+    /**
+     * Resolves a link of a page to the local file it targets, the same way as {@link FileLinkValidator}.
+     *
+     * @param source the page containing the link.
+     * @param link the link.
+     * @return the targeted file, normalized, or <code>null</code> if the link is not a local one.
+     */
+    public static File resolve( File source, String link )
+    {
+        String lowerCaseLink = link.toLowerCase( Locale.ENGLISH );
+        if ( lowerCaseLink.startsWith( "http://" ) || lowerCaseLink.startsWith( "https://" )
+            || link.indexOf( '@' ) != -1 || link.startsWith( "/" ) )
+        {
+            return null;
+        }
+
+        if ( link.indexOf( '#' ) != -1 )
+        {
+            link = link.substring( 0, link.indexOf( '#' ) );
+        }
+        if ( link.indexOf( '?' ) != -1 )
+        {
+            link = link.substring( 0, link.indexOf( '?' ) );
+        }
+
+        if ( link.trim().length() == 0 )
+        {
+            return normalize( source ).toFile();
+        }
+
+        try
+        {
+            return normalize( new File( source.getParentFile(), link ) ).toFile();
+        }
+        catch ( RuntimeException e )
+        {
+            // invalid path
+            return null;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private static Path normalize( File file )
+    {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    private void addFiles( Path path )
+        throws IOException
+    {
+        Files.walkFileTree( path, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+            {
+                directories.add( dir );
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( !attrs.isDirectory() )
+                {
+                    files.add( file );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed( Path file, IOException exc )
+            {
+                // i.e. deleted while walking
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private void removeFiles( Path path )
+    {
+        for ( Iterator<Path> it = files.iterator(); it.hasNext(); )
+        {
+            if ( it.next().startsWith( path ) )
+            {
+                it.remove();
+            }
+        }
+
+        for ( Iterator<Path> it = directories.iterator(); it.hasNext(); )
+        {
+            if ( it.next().startsWith( path ) )
+            {
+                it.remove();
+            }
+        }
+
+        for ( Iterator<Path> it = anchors.keySet().iterator(); it.hasNext(); )
+        {
+            if ( it.next().startsWith( path ) )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    private String read( File f )
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newReader( f, encoding );
+            return IOUtil.toString( reader );
+        }
+        catch ( IOException e )
+        {
+            // nop
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+
+        return null;
+    }
+}
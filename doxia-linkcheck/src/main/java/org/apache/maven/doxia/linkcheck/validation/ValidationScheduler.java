@@ -0,0 +1,368 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules the validations of a {@link LinkValidatorManager} on two thread pools, by estimated cost:
+ * <ul>
+ * <li>the local links, checked by {@link FileLinkValidator} or {@link MailtoLinkValidator}, or offline, are
+ * validated on as many threads as available processors,</li>
+ * <li>the links checked through the network by {@link OnlineHTTPLinkValidator} are validated on a separate pool,
+ * sized for I/O bound work,</li>
+ * <li>the cached and excluded links are answered right away, in the calling thread.</li>
+ * </ul>
+ * In each pool, the cheapest links are validated first, i.e. the links without anchor, which don't need to read
+ * the targeted page, then in the order they were submitted. So the local results are complete within seconds,
+ * even when the remote checks take minutes.
+ * <p>
+ * A link already submitted with the same resource, i.e. the same page linked from several pages, is validated
+ * once and shares its result, as it would through the cache of the manager. A link to retry later, according to
+ * the {@link org.apache.maven.doxia.linkcheck.RetryPolicy}, is queued again once its delay has elapsed, so that
+ * the other links are validated meanwhile.
+ * </p>
+ *
+ * @version $Id$
+ * @see LinkValidatorManager
+ */
+public class ValidationScheduler
+{
+    /** The cost of a cached or excluded link. */
+    public static final int CACHED_COST = 0;
+
+    /** The cost of a local link. */
+    public static final int LOCAL_COST = 1;
+
+    /** The cost of a link checked through the network. */
+    public static final int NETWORK_COST = 100;
+
+    /** The manager validating the links. */
+    private final LinkValidatorManager lvm;
+
+    /** The pool of the local validations. */
+    private final ThreadPoolExecutor localPool;
+
+    /** The pool of the network validations. */
+    private final ThreadPoolExecutor networkPool;
+
+    /** Submits again the links to retry, after their delay. */
+    private final ScheduledThreadPoolExecutor retries;
+
+    /** The validations waiting to be retried. */
+    private final Set<Validation> waiting =
+        Collections.newSetFromMap( new ConcurrentHashMap<Validation, Boolean>() );
+
+    /**
+     * The validations submitted and not completed yet, by resource. A completed validation is removed, its result
+     * being held by the cache of the manager, i.e. on disk in large site mode.
+     */
+    private final ConcurrentMap<Object, Future<LinkValidationResult>> validations =
+        new ConcurrentHashMap<Object, Future<LinkValidationResult>>();
+
+    /** The submission order of the validations. */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Starts the thread pools, with as many local threads as available processors.
+     *
+     * @param lvm the manager validating the links.
+     * @param networkThreads the number of threads validating the links through the network.
+     */
+    public ValidationScheduler( LinkValidatorManager lvm, int networkThreads )
+    {
+        this( lvm, Runtime.getRuntime().availableProcessors(), networkThreads );
+    }
+
+    /**
+     * Starts the thread pools.
+     *
+     * @param lvm the manager validating the links.
+     * @param localThreads the number of threads validating the local links.
+     * @param networkThreads the number of threads validating the links through the network.
+     */
+    public ValidationScheduler( LinkValidatorManager lvm, int localThreads, int networkThreads )
+    {
+        if ( localThreads < 1 || networkThreads < 1 )
+        {
+            throw new IllegalArgumentException( "At least one thread is needed per pool" );
+        }
+
+        this.lvm = lvm;
+        this.localPool = newPool( "linkcheck-local", localThreads );
+        this.networkPool = newPool( "linkcheck-network", networkThreads );
+        this.retries = new ScheduledThreadPoolExecutor( 1, newThreadFactory( "linkcheck-retry" ) );
+    }
+
+    /**
+     * Estimates the cost of validating a link: {@link #CACHED_COST}, {@link #LOCAL_COST} or {@link #NETWORK_COST},
+     * twice as much for a link with an anchor, as the targeted page has to be read.
+     *
+     * @param lvi The LinkValidationItem.
+     * @return the estimated cost.
+     */
+    public int getCost( LinkValidationItem lvi )
+    {
+        if ( lvm.isExcluded( lvi.getLink() ) || lvm.getCachedResult( lvi ) != null )
+        {
+            return CACHED_COST;
+        }
+
+        int cost = ( lvm.getValidator( lvi ) instanceof OnlineHTTPLinkValidator ? NETWORK_COST : LOCAL_COST );
+
+        return ( lvi.getLink().indexOf( '#' ) != -1 ? 2 * cost : cost );
+    }
+
+    /**
+     * Submits a link to validate.
+     *
+     * @param lvi The LinkValidationItem.
+     * @return the future result of the validation, through {@link LinkValidatorManager#validateLink}.
+     */
+    public Future<LinkValidationResult> submit( LinkValidationItem lvi )
+    {
+        int cost = getCost( lvi );
+
+        Validation validation = new Validation( lvi, cost, sequence.getAndIncrement() );
+
+        if ( cost == CACHED_COST )
+        {
+            validation.run();
+
+            return validation.future;
+        }
+
+        LinkValidator lv = lvm.getValidator( lvi );
+        Object resourceKey = ( lv == null ? null : lv.getResourceKey( lvi ) );
+        if ( resourceKey != null )
+        {
+            Future<LinkValidationResult> submitted = validations.putIfAbsent( resourceKey, validation.future );
+            if ( submitted != null )
+            {
+                return submitted;
+            }
+            validation.resourceKey = resourceKey;
+        }
+
+        ( cost < NETWORK_COST ? localPool : networkPool ).execute( validation );
+
+        return validation.future;
+    }
+
+    /**
+     * Stops the thread pools: the validations not started yet, or waiting to be retried, are cancelled, the running
+     * ones are completed.
+     */
+    public void shutdown()
+    {
+        shutdown( localPool );
+        shutdown( networkPool );
+
+        for ( Runnable retry : retries.shutdownNow() )
+        {
+            ( (Future<?>) retry ).cancel( false );
+        }
+        for ( Validation validation : waiting )
+        {
+            validation.future.cancel( false );
+        }
+    }
+
+    /**
+     * @return the number of validations submitted and not completed yet.
+     */
+    int getPendingValidations()
+    {
+        return validations.size();
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private static void shutdown( ThreadPoolExecutor pool )
+    {
+        for ( Runnable validation : pool.shutdownNow() )
+        {
+            ( (Validation) validation ).future.cancel( false );
+        }
+    }
+
+    private static ThreadPoolExecutor newPool( String name, int threads )
+    {
+        return new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                       new PriorityBlockingQueue<Runnable>(), newThreadFactory( name ) );
+    }
+
+    private static ThreadFactory newThreadFactory( final String name )
+    {
+        return new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, name + "-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * A validation, ordered by cost, then in submission order. A link to retry later is submitted again after the
+     * delay, without blocking a thread in the meantime.
+     */
+    private final class Validation
+        implements Runnable, Comparable<Validation>
+    {
+        private final LinkValidationItem lvi;
+
+        private final int cost;
+
+        private final long order;
+
+        /** The future result, completed with the final result. */
+        private final FutureTask<LinkValidationResult> future;
+
+        private volatile LinkValidationResult result;
+
+        private volatile RuntimeException failure;
+
+        /** The resource of the link, while it is in {@link #validations}. */
+        private volatile Object resourceKey;
+
+        Validation( LinkValidationItem lvi, int cost, long order )
+        {
+            this.lvi = lvi;
+            this.cost = cost;
+            this.order = order;
+            this.future = new FutureTask<LinkValidationResult>( new Callable<LinkValidationResult>()
+            {
+                public LinkValidationResult call()
+                {
+                    if ( failure != null )
+                    {
+                        throw failure;
+                    }
+                    return result;
+                }
+            } );
+        }
+
+        /** {@inheritDoc} */
+        public void run()
+        {
+            if ( future.isDone() )
+            {
+                return;
+            }
+
+            final LinkValidationResult lvr;
+            try
+            {
+                lvr = lvm.validateLink( lvi, false );
+            }
+            catch ( RuntimeException e )
+            {
+                failure = e;
+                complete();
+                return;
+            }
+
+            if ( lvr instanceof RetryLinkValidationResult )
+            {
+                lvi.setAttempt( lvi.getAttempt() + 1 );
+
+                waiting.add( this );
+                try
+                {
+                    retries.schedule( new Runnable()
+                    {
+                        public void run()
+                        {
+                            waiting.remove( Validation.this );
+                            try
+                            {
+                                networkPool.execute( Validation.this );
+                            }
+                            catch ( RejectedExecutionException e )
+                            {
+                                // shut down
+                                future.cancel( false );
+                            }
+                        }
+                    }, ( (RetryLinkValidationResult) lvr ).getDelay(), TimeUnit.MILLISECONDS );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    // shut down
+                    waiting.remove( this );
+                    result = ( (RetryLinkValidationResult) lvr ).getResult();
+                    complete();
+                }
+                return;
+            }
+
+            result = lvr;
+            complete();
+        }
+
+        /**
+         * Completes the future result. The validation is forgotten first, as the cache of the manager now holds
+         * its result: a link with the same resource submitted meanwhile is answered by the cache.
+         */
+        private void complete()
+        {
+            if ( resourceKey != null )
+            {
+                validations.remove( resourceKey, future );
+            }
+
+            future.run();
+        }
+
+        /** {@inheritDoc} */
+        public int compareTo( Validation other )
+        {
+            if ( cost != other.cost )
+            {
+                return ( cost < other.cost ? -1 : 1 );
+            }
+
+            return ( order < other.order ? -1 : ( order == other.order ? 0 : 1 ) );
+        }
+    }
+}
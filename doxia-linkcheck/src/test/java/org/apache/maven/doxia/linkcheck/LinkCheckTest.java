@@ -19,14 +19,36 @@ package org.apache.maven.doxia.linkcheck;
  * under the License.
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.maven.doxia.linkcheck.http.StandInHttpServer;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.apache.maven.doxia.linkcheck.report.CompactLinkcheckModel;
+import org.apache.maven.doxia.linkcheck.report.ReportFormat;
+import org.apache.maven.doxia.linkcheck.report.StringPool;
+import org.apache.maven.doxia.linkcheck.site.ContentSupplier;
+import org.apache.maven.doxia.linkcheck.site.MapSiteSource;
+import org.apache.maven.doxia.linkcheck.site.PathSiteSource;
 import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 
 /**
  * @author Ben Walding
@@ -100,6 +122,465 @@ public class LinkCheckTest
         //assertEquals( "Non-existent links", 0, ftc.getSuccessful() );
     }
 
+    /**
+     * @throws Exception
+     */
+    public void testLargeSite()
+        throws Exception
+    {
+        File expected = new File( getBasedir(), "target/linkcheck/linkcheck-default.xml" );
+        LinkcheckModel model = execute( false, expected );
+
+        File actual = new File( getBasedir(), "target/linkcheck/linkcheck-largesite.xml" );
+        LinkcheckModel largeSiteModel = execute( true, actual );
+
+        assertEquals( FileUtils.fileRead( expected, "UTF-8" ), FileUtils.fileRead( actual, "UTF-8" ) );
+
+        int unsuccessfulFiles = 0;
+        for ( Iterator iter = model.getFiles().iterator(); iter.hasNext(); )
+        {
+            if ( ( (LinkcheckFile) iter.next() ).getUnsuccessful() > 0 )
+            {
+                unsuccessfulFiles++;
+            }
+        }
+        assertTrue( unsuccessfulFiles > 0 );
+        assertEquals( unsuccessfulFiles, largeSiteModel.getFiles().size() );
+
+        for ( Iterator iter = largeSiteModel.getFiles().iterator(); iter.hasNext(); )
+        {
+            LinkcheckFile ftc = (LinkcheckFile) iter.next();
+            assertEquals( ftc.getRelativePath(), ftc.getUnsuccessful(), ftc.getResults().size() );
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testZipFileSystemSource()
+        throws Exception
+    {
+        File resources = new File( getBasedir(), "src/test/resources" );
+        File zip = new File( getBasedir(), "target/linkcheck/site.zip" );
+        zip( resources, zip );
+
+        LinkcheckModel expected = execute( false, null );
+
+        FileSystem fs = FileSystems.newFileSystem( zip.toPath(), null );
+        try
+        {
+            LinkCheck lc = new DefaultLinkCheck();
+            lc.setOnline( false );
+            lc.setSiteSource( new PathSiteSource( fs.getPath( "/" ) ) );
+            LinkcheckModel actual = lc.execute();
+
+            assertEquals( toMap( expected ), toMap( actual ) );
+        }
+        finally
+        {
+            fs.close();
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testArchive()
+        throws Exception
+    {
+        File resources = new File( getBasedir(), "src/test/resources" );
+        File zip = new File( getBasedir(), "target/linkcheck/site-archive.zip" );
+        zip( resources, zip );
+
+        LinkcheckModel expected = execute( false, null );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setBasedir( zip );
+        LinkcheckModel actual = lc.execute();
+
+        assertEquals( toMap( expected ), toMap( actual ) );
+
+        LinkcheckFile ftc = (LinkcheckFile) actual.getFiles().get( 0 );
+        assertEquals( new File( zip, ftc.getRelativePath() ).getAbsolutePath(), ftc.getAbsolutePath() );
+
+        // the archive is closed after the check
+        assertTrue( zip.delete() );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testMapSource()
+        throws Exception
+    {
+        Map<String, ContentSupplier> contents = new LinkedHashMap<String, ContentSupplier>();
+        contents.put( "index.html", MapSiteSource.content( ( "<a href=\"apidocs/index.html#top\">api</a>"
+            + "<a href=\"apidocs/\">dir</a><a href=\"missing.html\">missing</a>"
+            + "<a href=\"apidocs/index.html#bottom\">no anchor</a><a href=\"../outside.html\">out</a>" )
+            .getBytes( "UTF-8" ) ) );
+        contents.put( "apidocs/index.html", MapSiteSource.content( "<a name=\"top\"/>".getBytes( "UTF-8" ) ) );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setSiteSource( new MapSiteSource( contents ) );
+        LinkcheckModel model = lc.execute();
+
+        assertEquals( 2, model.getFiles().size() );
+        LinkcheckFile index = (LinkcheckFile) model.getFiles().get( 0 );
+        assertEquals( "index.html", index.getRelativePath() );
+        assertEquals( new File( File.separator, "index.html" ).getAbsolutePath(), index.getAbsolutePath() );
+
+        Map<String, String> statuses = new HashMap<String, String>();
+        for ( Iterator iter = index.getResults().iterator(); iter.hasNext(); )
+        {
+            LinkcheckFileResult result = (LinkcheckFileResult) iter.next();
+            statuses.put( result.getTarget(), result.getStatus() );
+        }
+        assertEquals( LinkcheckFileResult.VALID, statuses.get( "apidocs/index.html#top" ) );
+        assertEquals( LinkcheckFileResult.VALID, statuses.get( "apidocs/" ) );
+        assertEquals( LinkcheckFileResult.ERROR, statuses.get( "missing.html" ) );
+        assertEquals( LinkcheckFileResult.ERROR, statuses.get( "apidocs/index.html#bottom" ) );
+        assertEquals( LinkcheckFileResult.ERROR, statuses.get( "../outside.html" ) );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testInternalLinksFirst()
+        throws Exception
+    {
+        File expected = new File( getBasedir(), "target/linkcheck/linkcheck-default.xml" );
+        execute( false, expected );
+
+        File actual = new File( getBasedir(), "target/linkcheck/linkcheck-internalfirst.xml" );
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setInternalLinksFirst( true );
+        lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+        lc.setReportOutput( actual );
+        lc.setReportOutputEncoding( "UTF-8" );
+        assertFalse( lc.execute().isPartial() );
+
+        assertEquals( FileUtils.fileRead( expected, "UTF-8" ), FileUtils.fileRead( actual, "UTF-8" ) );
+
+        lc.setLargeSite( true );
+        try
+        {
+            lc.execute();
+            fail( "The local links can't be checked first in large site mode" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testMaxErrors()
+        throws Exception
+    {
+        for ( boolean internalLinksFirst : new boolean[] { false, true } )
+        {
+            File report = new File( getBasedir(), "target/linkcheck/linkcheck-maxerrors.xml" );
+            LinkCheck lc = new DefaultLinkCheck();
+            lc.setOnline( false );
+            lc.setMaxErrors( 3 );
+            lc.setInternalLinksFirst( internalLinksFirst );
+            lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+            lc.setReportOutput( report );
+            LinkcheckModel model = lc.execute();
+
+            assertTrue( model.isPartial() );
+            assertNotNull( model.getTerminationReason() );
+
+            int errors = 0;
+            for ( Iterator iter = model.getFiles().iterator(); iter.hasNext(); )
+            {
+                errors += ( (LinkcheckFile) iter.next() ).getNumberOfLinks( LinkcheckFileResult.ERROR_LEVEL );
+            }
+            assertEquals( 3, errors );
+            assertTrue( FileUtils.fileRead( report, "UTF-8" ).indexOf( "<partial>true</partial>" ) != -1 );
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testMaxErrorsReportFormats()
+        throws Exception
+    {
+        for ( ReportFormat format : new ReportFormat[] { ReportFormat.JSON_LINES, ReportFormat.BINARY } )
+        {
+            File report = new File( getBasedir(), "target/linkcheck/linkcheck-maxerrors." + format.getName() );
+            LinkCheck lc = new DefaultLinkCheck();
+            lc.setOnline( false );
+            lc.setMaxErrors( 3 );
+            lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+            lc.setReportOutput( report );
+            lc.setReportFormat( format.getName() );
+            LinkcheckModel model = lc.execute();
+            assertTrue( model.isPartial() );
+
+            CompactLinkcheckModel read = format.read( report, new StringPool() );
+            assertTrue( format.getName(), read.isPartial() );
+            assertEquals( model.getTerminationReason(), read.getTerminationReason() );
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testMaxDuration()
+        throws Exception
+    {
+        final ContentSupplier slowPage = new ContentSupplier()
+        {
+            public InputStream getInputStream()
+                throws IOException
+            {
+                try
+                {
+                    Thread.sleep( 100 );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return new ByteArrayInputStream( "<a href=\"index.html\">self</a>".getBytes( "UTF-8" ) );
+            }
+        };
+        Map<String, ContentSupplier> contents = new LinkedHashMap<String, ContentSupplier>();
+        contents.put( "index.html", slowPage );
+        contents.put( "other.html", slowPage );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setMaxDuration( 50 );
+        lc.setSiteSource( new MapSiteSource( contents ) );
+        LinkcheckModel model = lc.execute();
+
+        assertTrue( model.isPartial() );
+        assertEquals( 1, model.getFiles().size() );
+        assertEquals( 0, ( (LinkcheckFile) model.getFiles().get( 0 ) ).getResults().size() );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testCrawl()
+        throws Exception
+    {
+        File dir = new File( getBasedir(), "target/linkcheck/crawl" );
+        FileUtils.deleteDirectory( dir );
+        new File( dir, "sub" ).mkdirs();
+        FileUtils.fileWrite( new File( dir, "index.html" ).getPath(), "UTF-8",
+                             "<a href=\"a.html\">a</a><a href=\"index.html#top\">top</a>" );
+        FileUtils.fileWrite( new File( dir, "a.html" ).getPath(), "UTF-8",
+                             "<a href=\"sub/b.html#x\">b</a><a href=\"missing.html\">missing</a>" );
+        FileUtils.fileWrite( new File( dir, "sub/b.html" ).getPath(), "UTF-8",
+                             "<a name=\"x\"></a><a href=\"../index.html\">index</a>"
+                                 + "<a href=\"../excluded.html\">excluded</a>" );
+        FileUtils.fileWrite( new File( dir, "excluded.html" ).getPath(), "UTF-8",
+                             "<a href=\"orphan.html\">orphan</a>" );
+        FileUtils.fileWrite( new File( dir, "orphan.html" ).getPath(), "UTF-8", "<a href=\"a.html\">a</a>" );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setBasedir( dir );
+        lc.setExcludedPages( new String[] { "excluded.html" } );
+        lc.setEntryPages( new String[] { "index.html", "notfound.html" } );
+        lc.setListOrphans( true );
+
+        for ( int threads = 0; threads < 2; threads++ )
+        {
+            lc.setThreads( threads );
+            LinkcheckModel model = lc.execute();
+
+            assertEquals( 3, model.getFiles().size() );
+            assertEquals( "index.html", ( (LinkcheckFile) model.getFiles().get( 0 ) ).getRelativePath() );
+            assertEquals( "a.html", ( (LinkcheckFile) model.getFiles().get( 1 ) ).getRelativePath() );
+            assertEquals( "sub/b.html", ( (LinkcheckFile) model.getFiles().get( 2 ) ).getRelativePath() );
+            assertEquals( 1, ( (LinkcheckFile) model.getFiles().get( 1 ) ).getUnsuccessful() );
+            assertEquals( 1, model.getOrphans().size() );
+            assertEquals( "orphan.html", model.getOrphans().get( 0 ) );
+        }
+
+        lc.setListOrphans( false );
+        assertTrue( lc.execute().getOrphans().isEmpty() );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testCrawlDirectories()
+        throws Exception
+    {
+        File dir = new File( getBasedir(), "target/linkcheck/crawl-directories" );
+        FileUtils.deleteDirectory( dir );
+        new File( dir, "sub" ).mkdirs();
+        new File( dir, "docs" ).mkdirs();
+        FileUtils.fileWrite( new File( dir, "index.html" ).getPath(), "UTF-8", "<a href=\"sub/\">sub</a>" );
+        FileUtils.fileWrite( new File( dir, "sub/index.html" ).getPath(), "UTF-8",
+                             "<a href=\"../docs?lang=en#top\">docs</a>" );
+        FileUtils.fileWrite( new File( dir, "docs/index.html" ).getPath(), "UTF-8",
+                             "<a href=\"./\">self</a><a href=\"../page.html?x=1#y\">page</a>" );
+        FileUtils.fileWrite( new File( dir, "page.html" ).getPath(), "UTF-8", "<a name=\"y\"></a>" );
+        FileUtils.fileWrite( new File( dir, "orphan.html" ).getPath(), "UTF-8", "<a href=\"page.html\">page</a>" );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setBasedir( dir );
+        lc.setEntryPages( new String[] { "index.html" } );
+        lc.setListOrphans( true );
+
+        LinkcheckModel model = lc.execute();
+        assertEquals( 4, model.getFiles().size() );
+        assertEquals( "sub/index.html", ( (LinkcheckFile) model.getFiles().get( 1 ) ).getRelativePath() );
+        assertEquals( "docs/index.html", ( (LinkcheckFile) model.getFiles().get( 2 ) ).getRelativePath() );
+        assertEquals( "page.html", ( (LinkcheckFile) model.getFiles().get( 3 ) ).getRelativePath() );
+        assertEquals( 1, model.getOrphans().size() );
+        assertEquals( "orphan.html", model.getOrphans().get( 0 ) );
+
+        // the orphans are written in all the formats, also in large site mode
+        for ( int large = 0; large < 2; large++ )
+        {
+            lc.setLargeSite( large == 1 );
+            for ( ReportFormat format : ReportFormat.values() )
+            {
+                File report = new File( getBasedir(), "target/linkcheck/linkcheck-orphans." + format.getName() );
+                lc.setReportOutput( report );
+                lc.setReportFormat( format.getName() );
+                lc.execute();
+
+                CompactLinkcheckModel read = format.read( report, new StringPool() );
+                assertEquals( format.getName(), model.getOrphans(), read.getOrphans() );
+                assertEquals( model.getOrphans(), read.toModel().getOrphans() );
+            }
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testThreads()
+        throws Exception
+    {
+        File expected = new File( getBasedir(), "target/linkcheck/linkcheck-default.xml" );
+        execute( false, expected );
+
+        File actual = new File( getBasedir(), "target/linkcheck/linkcheck-threads.xml" );
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setThreads( 4 );
+        lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+        lc.setReportOutput( actual );
+        lc.setReportOutputEncoding( "UTF-8" );
+        assertFalse( lc.execute().isPartial() );
+
+        assertEquals( FileUtils.fileRead( expected, "UTF-8" ), FileUtils.fileRead( actual, "UTF-8" ) );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testThreadsOnline()
+        throws Exception
+    {
+        StandInHttpServer server = new StandInHttpServer();
+        try
+        {
+            Map<String, ContentSupplier> contents = new LinkedHashMap<String, ContentSupplier>();
+            for ( int i = 0; i < 10; i++ )
+            {
+                contents.put( "page" + i + ".html", MapSiteSource.content( ( "<a href=\"" + server.url( "/ok" )
+                    + "?latency=50&page=" + i + "\">slow</a><a href=\"" + server.url( "/status/404" )
+                    + "\">missing</a><a href=\"page" + ( i + 1 ) + ".html\">next</a>" ).getBytes( "UTF-8" ) ) );
+            }
+
+            Map<String, String> sequential = toMap( executeOnline( contents, 0 ) );
+            assertTrue( sequential.get( "page9.html" ).indexOf( "page10.html=error" ) != -1 );
+
+            server.resetRequestCounts();
+            LinkcheckModel model = executeOnline( contents, 4 );
+            assertEquals( sequential, toMap( model ) );
+            assertEquals( "page0.html", ( (LinkcheckFile) model.getFiles().get( 0 ) ).getRelativePath() );
+
+            // the link shared by all pages is checked once
+            assertEquals( 1, server.getRequestCount( "/status/404" ) );
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static LinkcheckModel executeOnline( Map<String, ContentSupplier> contents, int threads )
+        throws Exception
+    {
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( true );
+        lc.setThreads( threads );
+        lc.setSiteSource( new MapSiteSource( contents ) );
+        return lc.execute();
+    }
+
+    private static Map<String, String> toMap( LinkcheckModel model )
+    {
+        Map<String, String> map = new HashMap<String, String>();
+        for ( Iterator iter = model.getFiles().iterator(); iter.hasNext(); )
+        {
+            LinkcheckFile ftc = (LinkcheckFile) iter.next();
+            StringBuilder results = new StringBuilder();
+            for ( Iterator it = ftc.getResults().iterator(); it.hasNext(); )
+            {
+                LinkcheckFileResult result = (LinkcheckFileResult) it.next();
+                results.append( result.getTarget() ).append( '=' ).append( result.getStatus() ).append( '\n' );
+            }
+            map.put( ftc.getRelativePath(), results.toString() );
+        }
+        return map;
+    }
+
+    private static void zip( File dir, File zip )
+        throws Exception
+    {
+        zip.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( zip );
+        try
+        {
+            ZipOutputStream zos = new ZipOutputStream( out );
+            String base = dir.getAbsolutePath() + File.separator;
+            for ( File file : (List<File>) FileUtils.getFiles( dir, "**", null ) )
+            {
+                zos.putNextEntry( new ZipEntry( file.getAbsolutePath().substring( base.length() )
+                    .replace( File.separatorChar, '/' ) ) );
+                zos.write( Files.readAllBytes( file.toPath() ) );
+                zos.closeEntry();
+            }
+            zos.finish();
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private LinkcheckModel execute( boolean largeSite, File reportOutput )
+        throws Exception
+    {
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setLargeSite( largeSite );
+        lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+        lc.setReportOutput( reportOutput );
+        lc.setReportOutputEncoding( "UTF-8" );
+
+        return lc.execute();
+    }
+
     private void check( Map map, String name, int linkCount )
     {
         LinkcheckFile ftc = (LinkcheckFile) map.get( name );
@@ -0,0 +1,138 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.doxia.linkcheck.site.DirectorySiteSource;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Checks that the links found on the bytes of a file are the ones found on its characters.
+ *
+ * @version $Id$
+ */
+public class LinkMatcherTest
+    extends PlexusTestCase
+{
+    private static final String TRICKY = "<html><body>\n"
+        + "<A HREF=\"upper.html\">upper</A>\n"
+        + "<area href='area.html'>\n"
+        + "<a name=\"top\" title=\"src=\" href=\"title.html\">\n"
+        + "<a <!-- hidden --> href=\"commented.html\">\n"
+        + "<!-- <a href=\"incomment.html\"> --><img src=\"after.png\">\n"
+        + "<a href=\"split<!-- x -->.html\">\n"
+        + "<a href=\"broken\n"
+        + "line.html\" href=\"second.html\">\n"
+        + "<a href='mixed.html\">\n"
+        + "<script src = \"  spaced.js  \"></script>\n"
+        + "<a href=\"javascript:void(0)\">\n"
+        + "<a href=\"\">\n"
+        + "<a href=\"caf\u00e9.html\">\n"
+        + "<a href=\"next\u0085line.html\" src=\"fallback.html\">\n"
+        + "<link rel=\"stylesheet\" href=\"style.css\"\n"
+        + "<!-- unclosed <a href=\"unclosed.html\">\n"
+        + "</body></html>";
+
+    /**
+     * @throws Exception
+     */
+    public void testTestResources()
+        throws Exception
+    {
+        File dir = new File( getBasedir(), "src/test/resources" );
+        List files = FileUtils.getFiles( dir, "**/*.html", null );
+        assertFalse( files.isEmpty() );
+
+        for ( Iterator it = files.iterator(); it.hasNext(); )
+        {
+            File file = (File) it.next();
+            assertSameLinks( file, "UTF-8" );
+            assertSameLinks( file, "ISO-8859-1" );
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testTrickyLinks()
+        throws Exception
+    {
+        File dir = new File( getBasedir(), "target/linkmatcher" );
+        dir.mkdirs();
+
+        String[] encodings = { "UTF-8", "ISO-8859-1", "windows-1252", "UTF-16" };
+        for ( int i = 0; i < encodings.length; i++ )
+        {
+            File file = write( new File( dir, "tricky-" + encodings[i] + ".html" ), TRICKY, encodings[i] );
+            Set links = assertSameLinks( file, encodings[i] );
+            assertTrue( links.contains( "commented.html" ) );
+            assertTrue( links.contains( "split.html" ) );
+            assertTrue( links.contains( "caf\u00e9.html" ) );
+            assertFalse( links.contains( "incomment.html" ) );
+        }
+
+        // read into a grown buffer, the file isn't kept open or mapped
+        StringBuffer large = new StringBuffer();
+        while ( large.length() < 256 * 1024 )
+        {
+            large.append( TRICKY );
+        }
+        File file = write( new File( dir, "large.html" ), large.toString(), "UTF-8" );
+        assertEquals( assertSameLinks( file, "UTF-8" ),
+                      assertSameLinks( new File( dir, "tricky-UTF-8.html" ), "UTF-8" ) );
+        assertTrue( file.delete() );
+    }
+
+    private static Set assertSameLinks( File file, String encoding )
+        throws Exception
+    {
+        DirectorySiteSource source = new DirectorySiteSource( file.getParentFile() );
+        Set expected = new TreeSet( LinkMatcher.matchChars( source, file, encoding ) );
+        Set actual = new TreeSet( LinkMatcher.match( source, file, encoding ) );
+        assertEquals( file + " in " + encoding, expected, actual );
+
+        return actual;
+    }
+
+    private static File write( File file, String content, String encoding )
+        throws Exception
+    {
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( encoding ) );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        return file;
+    }
+}
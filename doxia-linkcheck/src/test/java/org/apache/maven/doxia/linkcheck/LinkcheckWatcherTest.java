@@ -0,0 +1,198 @@
+package org.apache.maven.doxia.linkcheck;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * @version $Id$
+ */
+public class LinkcheckWatcherTest
+    extends PlexusTestCase
+{
+    private File site;
+
+    private DefaultLinkCheck linkCheck;
+
+    private LinkcheckWatcher watcher;
+
+    private ByteArrayOutputStream output;
+
+    /** {@inheritDoc} */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        site = new File( getBasedir(), "target/linkcheck-watcher" );
+        FileUtils.deleteDirectory( site );
+        site.mkdirs();
+
+        write( "index.html", "<a href=\"guide/target.html#section\">guide</a> <a href=\"other.html\">other</a>" );
+        write( "other.html", "<a href=\"index.html\">index</a>" );
+        write( "guide/target.html", "<h2 id=\"section\">Section</h2>" );
+
+        linkCheck = new DefaultLinkCheck();
+        linkCheck.setBasedir( site );
+        linkCheck.setReportOutput( new File( getBasedir(), "target/linkcheck/linkcheck-watcher.xml" ) );
+
+        output = new ByteArrayOutputStream();
+        watcher = new LinkcheckWatcher( linkCheck, new PrintStream( output, true ) );
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown()
+        throws Exception
+    {
+        watcher.close();
+
+        super.tearDown();
+    }
+
+    public void testWatch()
+        throws Exception
+    {
+        LinkcheckModel model = watcher.start();
+        assertEquals( 3, model.getFiles().size() );
+        assertEquals( 0, getFile( "index.html" ).getUnsuccessful() );
+
+        // the anchor disappears: index.html is checked again
+        write( "guide/target.html", "<h2 id=\"renamed\">Section</h2>" );
+        waitForChanges();
+        assertEquals( 1, getFile( "index.html" ).getUnsuccessful() );
+        assertTrue( output.toString(), output.toString().indexOf( "guide/target.html#section" ) != -1 );
+
+        // a page is deleted
+        new File( site, "other.html" ).delete();
+        waitForChanges();
+        assertNull( getFile( "other.html" ) );
+        assertEquals( 2, getFile( "index.html" ).getUnsuccessful() );
+
+        // a page is created in a new directory, with a link to the deleted page
+        write( "news/latest.html", "<a href=\"../other.html\">other</a>" );
+        waitForChanges();
+        assertEquals( 1, getFile( "news/latest.html" ).getUnsuccessful() );
+
+        // the deleted page comes back
+        write( "other.html", "<a href=\"index.html\">index</a>" );
+        waitForChanges();
+        assertEquals( 1, getFile( "index.html" ).getUnsuccessful() );
+        assertEquals( 0, getFile( "news/latest.html" ).getUnsuccessful() );
+        assertEquals( 0, getFile( "other.html" ).getUnsuccessful() );
+    }
+
+    public void testWatchDirectoryLinks()
+        throws Exception
+    {
+        write( "dirs.html", "<a href=\"guide/\">guide</a> <a href=\"./\">index</a> <a href=\"news/\">news</a>" );
+
+        watcher.start();
+        assertEquals( 1, getFile( "dirs.html" ).getUnsuccessful() );
+
+        // the missing directory is created
+        write( "news/latest.html", "<a href=\"../index.html\">index</a>" );
+        waitForChanges();
+        assertEquals( 0, getFile( "dirs.html" ).getUnsuccessful() );
+    }
+
+    public void testWatchWithThreads()
+        throws Exception
+    {
+        // the pages are checked concurrently against the same site index
+        for ( int i = 0; i < 20; i++ )
+        {
+            write( "pages/page" + i + ".html", "<a href=\"../guide/target.html#section\">guide</a> "
+                + "<a href=\"../guide/target.html#other\">other</a> <a href=\"page" + ( ( i + 1 ) % 20 )
+                + ".html\">next</a>" );
+        }
+        linkCheck.setThreads( 4 );
+
+        watcher.start();
+        for ( int i = 0; i < 20; i++ )
+        {
+            assertEquals( 1, getFile( "pages/page" + i + ".html" ).getUnsuccessful() );
+        }
+
+        // the missing anchor appears: all the pages are checked again
+        write( "guide/target.html", "<h2 id=\"section\">Section</h2> <h2 id=\"other\">Other</h2>" );
+        waitForChanges();
+        for ( int i = 0; i < 20; i++ )
+        {
+            assertEquals( 0, getFile( "pages/page" + i + ".html" ).getUnsuccessful() );
+        }
+    }
+
+    public void testLargeSite()
+        throws Exception
+    {
+        linkCheck.setLargeSite( true );
+        try
+        {
+            watcher.start();
+            fail( "The large site mode can't be watched" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    private void waitForChanges()
+        throws Exception
+    {
+        // some platforms poll the file system
+        assertTrue( "no change detected", watcher.processChanges( 30, TimeUnit.SECONDS ) );
+
+        // all the events may not be in the same batch
+        while ( watcher.processChanges( 200, TimeUnit.MILLISECONDS ) )
+        {
+            // nop
+        }
+    }
+
+    private LinkcheckFile getFile( String relativePath )
+    {
+        for ( LinkcheckFile linkcheckFile : watcher.getModel().getFiles() )
+        {
+            if ( relativePath.equals( linkcheckFile.getRelativePath() ) )
+            {
+                return linkcheckFile;
+            }
+        }
+
+        return null;
+    }
+
+    private void write( String path, String body )
+        throws Exception
+    {
+        File file = new File( site, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", "<html><body>" + body + "</body></html>" );
+    }
+}
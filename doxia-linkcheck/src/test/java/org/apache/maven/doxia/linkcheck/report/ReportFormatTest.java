@@ -0,0 +1,116 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.maven.doxia.linkcheck.DefaultLinkCheck;
+import org.apache.maven.doxia.linkcheck.LinkCheck;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.apache.maven.doxia.linkcheck.model.io.xpp3.LinkcheckModelXpp3Writer;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * @version $Id$
+ */
+public class ReportFormatTest
+    extends PlexusTestCase
+{
+    /**
+     * @throws Exception
+     */
+    public void testRoundTrip()
+        throws Exception
+    {
+        File xml = check( ReportFormat.XML, false );
+        String expected = FileUtils.fileRead( xml, "UTF-8" );
+
+        for ( ReportFormat format : ReportFormat.values() )
+        {
+            for ( boolean largeSite : new boolean[] { false, true } )
+            {
+                File report = check( format, largeSite );
+                LinkcheckModel model = format.read( report, new StringPool() ).toModel();
+
+                StringWriter writer = new StringWriter();
+                new LinkcheckModelXpp3Writer().write( writer, model );
+                assertEquals( format + ", large site: " + largeSite, expected, writer.toString() );
+            }
+        }
+
+        assertTrue( check( ReportFormat.BINARY, false ).length() < xml.length() / 2 );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testJsonLines()
+        throws Exception
+    {
+        LinkcheckFile file = new LinkcheckFile();
+        file.setRelativePath( "a \"quoted\"\\path.html" );
+        file.setSuccessful( 0 );
+        file.setUnsuccessful( 1 );
+        LinkcheckFileResult result = new LinkcheckFileResult();
+        result.setTarget( "tab\tand\u0001control" );
+        result.setStatus( LinkcheckFileResult.ERROR );
+        file.addResult( result );
+
+        StringWriter out = new StringWriter();
+        JsonLinesReportWriter writer = new JsonLinesReportWriter( out );
+        writer.writeFile( file );
+        writer.close();
+
+        assertEquals( "{\"file\":\"a \\\"quoted\\\"\\\\path.html\",\"successful\":0,\"unsuccessful\":1}\n"
+            + "{\"file\":\"a \\\"quoted\\\"\\\\path.html\",\"target\":\"tab\\tand\\u0001control\","
+            + "\"status\":\"error\"}\n", out.toString() );
+
+        CompactLinkcheckModel model = new JsonLinesReportReader().readCompact( new StringReader( out.toString() ) );
+        assertEquals( 1, model.getFileCount() );
+        assertNull( model.getAbsolutePath( 0 ) );
+        assertEquals( file.getRelativePath(), model.getRelativePath( 0 ) );
+        assertEquals( 1, model.getResultCount() );
+        assertEquals( result.getTarget(), model.getTarget( 0 ) );
+        assertSame( LinkcheckFileResult.ERROR, model.getStatus( 0 ) );
+        assertNull( model.getErrorMessage( 0 ) );
+    }
+
+    private File check( ReportFormat format, boolean largeSite )
+        throws Exception
+    {
+        File report = new File( getBasedir(), "target/linkcheck/linkcheck-format-" + largeSite + "." + format.getName() );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setLargeSite( largeSite );
+        lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+        lc.setReportOutput( report );
+        lc.setReportOutputEncoding( "UTF-8" );
+        lc.setReportFormat( format.getName() );
+        lc.execute();
+
+        return report;
+    }
+}
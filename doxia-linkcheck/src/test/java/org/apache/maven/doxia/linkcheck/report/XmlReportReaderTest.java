@@ -0,0 +1,117 @@
+package org.apache.maven.doxia.linkcheck.report;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.maven.doxia.linkcheck.DefaultLinkCheck;
+import org.apache.maven.doxia.linkcheck.LinkCheck;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFile;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckModel;
+import org.apache.maven.doxia.linkcheck.model.io.xpp3.LinkcheckModelXpp3Writer;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * @version $Id$
+ */
+public class XmlReportReaderTest
+    extends PlexusTestCase
+{
+    /**
+     * @throws Exception
+     */
+    public void testReadAndWrite()
+        throws Exception
+    {
+        File report = new File( getBasedir(), "target/linkcheck/linkcheck-reader.xml" );
+
+        LinkCheck lc = new DefaultLinkCheck();
+        lc.setOnline( false );
+        lc.setBasedir( new File( getBasedir(), "src/test/resources" ) );
+        lc.setReportOutput( report );
+        lc.setReportOutputEncoding( "UTF-8" );
+        lc.execute();
+
+        String expected = FileUtils.fileRead( report, "UTF-8" );
+
+        // the model read is the same
+        LinkcheckModel model = new XmlReportReader().read( report );
+        StringWriter writer = new StringWriter();
+        new LinkcheckModelXpp3Writer().write( writer, model );
+        assertEquals( expected, writer.toString() );
+
+        // the compact model too
+        CompactLinkcheckModel compact = new XmlReportReader().readCompact( report );
+        assertEquals( model.getFiles().size(), compact.getFileCount() );
+        writer = new StringWriter();
+        XmlReportWriter reportWriter = new XmlReportWriter( writer, "UTF-8" );
+        reportWriter.writeFiles( compact );
+        reportWriter.close();
+        assertEquals( expected, writer.toString() );
+
+        // equal strings are shared
+        Map<String, String> statuses = new IdentityHashMap<String, String>();
+        Map<String, String> messages = new IdentityHashMap<String, String>();
+        int results = 0;
+        for ( Iterator<?> it = model.getFiles().iterator(); it.hasNext(); )
+        {
+            for ( Iterator<?> it2 = ( (LinkcheckFile) it.next() ).getResults().iterator(); it2.hasNext(); )
+            {
+                LinkcheckFileResult result = (LinkcheckFileResult) it2.next();
+                statuses.put( result.getStatus(), result.getStatus() );
+                if ( result.getErrorMessage() != null )
+                {
+                    messages.put( result.getErrorMessage(), result.getErrorMessage() );
+                }
+                results++;
+            }
+        }
+        assertEquals( compact.getResultCount(), results );
+        assertTrue( results > 800 );
+        assertTrue( statuses.size() <= 4 );
+        assertTrue( statuses.containsKey( LinkcheckFileResult.VALID ) );
+        assertTrue( messages.size() < 10 );
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testStringPool()
+        throws Exception
+    {
+        StringPool pool = new StringPool();
+        String target = new String( "index.html" );
+
+        assertSame( LinkcheckFileResult.VALID, pool.intern( new String( "valid" ) ) );
+        assertSame( target, pool.intern( target ) );
+        assertSame( target, pool.intern( new String( "index.html" ) ) );
+        assertEquals( pool.getId( target ), pool.getId( "index.html" ) );
+        assertSame( target, pool.get( pool.getId( "index.html" ) ) );
+        assertNull( pool.intern( null ) );
+        assertEquals( -1, pool.getId( null ) );
+        assertNull( pool.get( -1 ) );
+    }
+}
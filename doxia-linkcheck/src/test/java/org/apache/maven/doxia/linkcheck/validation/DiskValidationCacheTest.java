@@ -0,0 +1,107 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * @version $Id$
+ */
+public class DiskValidationCacheTest
+    extends PlexusTestCase
+{
+    private File directory;
+
+    private DiskValidationCache cache;
+
+    /** {@inheritDoc} */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( getBasedir(), "target/disk-validation-cache" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+
+        // only a few entries on the heap, to read most of them from the disk
+        cache = new DiskValidationCache( directory, 10 );
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown()
+        throws Exception
+    {
+        cache.close();
+        assertEquals( 0, directory.list().length );
+
+        super.tearDown();
+    }
+
+    public void testPutAndGet()
+        throws Exception
+    {
+        Map<Object, LinkValidationResult> expected = new HashMap<Object, LinkValidationResult>();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            LinkValidationResult result =
+                new HTTPLinkValidationResult( LinkcheckFileResult.VALID_LEVEL, i % 2 == 0, 200, "OK " + i );
+            expected.put( "http://maven.apache.org/" + i + ".html", result );
+            assertNull( cache.put( "http://maven.apache.org/" + i + ".html", result ) );
+        }
+
+        assertEquals( 5000, cache.size() );
+        assertNull( cache.get( "http://maven.apache.org/5000.html" ) );
+        assertFalse( cache.containsKey( "http://maven.apache.org/5000.html" ) );
+
+        for ( Map.Entry<Object, LinkValidationResult> entry : expected.entrySet() )
+        {
+            LinkValidationResult result = cache.get( entry.getKey() );
+            assertNotNull( entry.getKey().toString(), result );
+            assertEquals( entry.getValue().getErrorMessage(), result.getErrorMessage() );
+            assertEquals( entry.getValue().isPersistent(), result.isPersistent() );
+        }
+
+        LinkValidationResult error = new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, "error" );
+        assertEquals( "200 OK 42", cache.put( "http://maven.apache.org/42.html", error ).getErrorMessage() );
+        assertEquals( 5000, cache.size() );
+        assertEquals( "error", cache.get( "http://maven.apache.org/42.html" ).getErrorMessage() );
+
+        int entries = 0;
+        for ( Iterator<Map.Entry<Object, LinkValidationResult>> it = cache.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<Object, LinkValidationResult> entry = it.next();
+            assertTrue( expected.containsKey( entry.getKey() ) );
+            entries++;
+        }
+        assertEquals( 5000, entries );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertNull( cache.get( "http://maven.apache.org/1.html" ) );
+    }
+}
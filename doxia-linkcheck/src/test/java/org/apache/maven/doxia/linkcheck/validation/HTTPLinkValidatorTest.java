@@ -20,7 +20,14 @@ package org.apache.maven.doxia.linkcheck.validation;
  */
 
 import java.io.File;
+import java.util.Properties;
 
+import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+
+import org.apache.maven.doxia.linkcheck.HttpBean;
+import org.apache.maven.doxia.linkcheck.RetryPolicy;
+import org.apache.maven.doxia.linkcheck.http.StandInHttpServer;
 import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
 
 import junit.framework.TestCase;
@@ -34,37 +41,218 @@ public class HTTPLinkValidatorTest extends TestCase
 {
     private LinkValidator hlv;
 
-    private boolean mavenOnline = true; // TODO: check if online
+    private StandInHttpServer server;
+
+    /** {@inheritDoc} */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        server = new StandInHttpServer();
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown()
+        throws Exception
+    {
+        server.stop();
+
+        super.tearDown();
+    }
 
     public void testValidateLink() throws Exception
     {
-        if ( this.mavenOnline )
-        {
-            /*
-            this.hlv =
-                new OnlineHTTPLinkValidator( System.getProperty( "maven.linkcheck.method" ),
-                                             System.getProperty( "maven.linkcheck.proxy.host" ),
-                                             System.getProperty( "maven.linkcheck.proxy.port" ),
-                                             System.getProperty( "maven.linkcheck.proxy.username" ),
-                                             System.getProperty( "maven.linkcheck.proxy.password" ),
-                                             System.getProperty( "maven.linkcheck.proxy.ntlm.host" ),
-                                             System.getProperty( "maven.linkcheck.proxy.ntlm.domain" ) );
-            */
-            // TODO: use proxy settings above
-
-            this.hlv = new OnlineHTTPLinkValidator();
-
-            assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( "http://www.apache.org" ).getStatus() );
-            assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( "http://www.example.com>);" ).getStatus() );
-        }
-        else
-        {
-            this.hlv = new OfflineHTTPLinkValidator();
+        this.hlv = new OnlineHTTPLinkValidator();
+
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/ok" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/status/404" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/status/429" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/status/503" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( StandInHttpServer.deadHostURL() ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( "http://www.example.com>);" ).getStatus() );
+    }
+
+    public void testValidateOfflineLink() throws Exception
+    {
+        this.hlv = new OfflineHTTPLinkValidator();
+
+        assertEquals( LinkcheckFileResult.WARNING_LEVEL, checkLink( server.url( "/ok" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.WARNING_LEVEL, checkLink( "http://www.example.com>);" ).getStatus() );
+        assertEquals( 0, server.getRequestCount() );
+    }
+
+    public void testRedirects() throws Exception
+    {
+        this.hlv = new OnlineHTTPLinkValidator();
+
+        assertEquals( LinkcheckFileResult.WARNING_LEVEL, checkLink( server.url( "/redirect/3" ) ).getStatus() );
+        assertEquals( 1, server.getRequestCount( "/redirect/0" ) );
+
+        // more than the default maximum of 10 redirects
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/redirect/12" ) ).getStatus() );
+    }
+
+    public void testAnchors() throws Exception
+    {
+        HttpBean bean = new HttpBean();
+        bean.setMethod( "get" );
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+
+        LinkValidationResult result = checkLink( server.url( "/page/1000#a999" ) );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, result.getStatus() );
+        assertTrue( result.isPersistent() );
+
+        result = checkLink( server.url( "/page/1000#a1000" ) );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, result.getStatus() );
+        assertFalse( result.isPersistent() );
+        assertTrue( result.getErrorMessage().endsWith( "Missing anchor 'a1000'" ) );
+    }
+
+    public void testTimeout() throws Exception
+    {
+        HttpBean bean = new HttpBean();
+        bean.setTimeout( 100 );
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/ok?latency=10" ) ).getStatus() );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/ok?latency=1000" ) ).getStatus() );
+    }
+
+    public void testHttpClientParameters() throws Exception
+    {
+        Properties parameters = new Properties();
+        parameters.setProperty( HttpMethodParams.SO_TIMEOUT, "5000" );
+        parameters.setProperty( HttpClientParams.MAX_REDIRECTS, "3" );
+        HttpBean bean = new HttpBean();
+        bean.setHttpClientParameters( parameters );
+        this.hlv = new OnlineHTTPLinkValidator( bean );
 
-            assertEquals( LinkcheckFileResult.WARNING_LEVEL, checkLink( "http://www.apache.org" ).getStatus() );
-            assertEquals( LinkcheckFileResult.WARNING_LEVEL, checkLink( "http://www.example.com>);" ).getStatus() );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/ok" ) ).getStatus() );
 
+        // set on the client, the system properties being shared by the threads of the JVM
+        assertNull( System.getProperty( HttpMethodParams.USER_AGENT ) );
+        assertNull( System.getProperty( HttpMethodParams.SO_TIMEOUT ) );
+    }
+
+    public void testLinkTimeout() throws Exception
+    {
+        HttpBean bean = new HttpBean();
+        bean.setMethod( "get" );
+        bean.setTimeout( 1000 );
+        bean.setLinkTimeout( 300 );
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/slow/2/10#top" ) ).getStatus() );
+
+        // the body is read to find the anchor, each chunk in time but not the whole body
+        long start = System.currentTimeMillis();
+        LinkValidationResult result = checkLink( server.url( "/slow/10/100#top" ) );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, result.getStatus() );
+        assertEquals( LinkValidationResult.TIMED_OUT, result.getErrorMessage() );
+        assertFalse( result.isPersistent() );
+        assertTrue( System.currentTimeMillis() - start < 900 );
+    }
+
+    public void testDeadline() throws Exception
+    {
+        OnlineHTTPLinkValidator validator = new OnlineHTTPLinkValidator();
+        this.hlv = validator;
+
+        validator.setDeadline( System.currentTimeMillis() + 200 );
+        LinkValidationResult result = checkLink( server.url( "/ok?latency=1000" ) );
+        assertEquals( LinkValidationResult.TIMED_OUT, result.getErrorMessage() );
+
+        // already reached
+        assertEquals( LinkValidationResult.TIMED_OUT, checkLink( server.url( "/ok" ) ).getErrorMessage() );
+
+        validator.setDeadline( Long.MAX_VALUE );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/ok" ) ).getStatus() );
+    }
+
+    public void testAutoMethod() throws Exception
+    {
+        HttpBean bean = new HttpBean();
+        bean.setMethod( "auto" );
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/ok" ) ).getStatus() );
+        assertEquals( 1, server.getRequestCount( "/ok" ) );
+
+        // HEAD rejected, then a ranged GET
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/nohead/405/a" ) ).getStatus() );
+        assertEquals( 2, server.getRequestCount( "/nohead/405/a" ) );
+
+        // the host is remembered
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/nohead/405/b" ) ).getStatus() );
+        assertEquals( 1, server.getRequestCount( "/nohead/405/b" ) );
+
+        // an error of the GET request too
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/status/404" ) ).getStatus() );
+
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, checkLink( server.url( "/status/403" ) ).getStatus() );
+        assertEquals( 2, server.getRequestCount( "/status/403" ) );
+
+        // a forbidden link doesn't make the host a GET one
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, checkLink( server.url( "/nohead/403/c" ) ).getStatus() );
+        assertEquals( 2, server.getRequestCount( "/nohead/403/c" ) );
+    }
+
+        public void testRetries() throws Exception
+    {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelay( 10 );
+        HttpBean bean = new HttpBean();
+        bean.setRetryPolicy( policy );
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OnlineHTTPLinkValidator( bean ) );
+
+        LinkValidationItem lvi = new LinkValidationItem( new File( "." ), server.url( "/flaky/2/503/a" ) );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, lvm.validateLink( lvi ).getStatus() );
+        assertEquals( 3, lvi.getAttempt() );
+        assertEquals( 3, server.getRequestCount( "/flaky/2/503/a" ) );
+
+        // not retried anymore
+        lvi = new LinkValidationItem( new File( "." ), server.url( "/flaky/3/502/b" ) );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, lvm.validateLink( lvi ).getStatus() );
+        assertEquals( 3, server.getRequestCount( "/flaky/3/502/b" ) );
+
+        // not a transient failure
+        lvi = new LinkValidationItem( new File( "." ), server.url( "/flaky/1/404/c" ) );
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, lvm.validateLink( lvi ).getStatus() );
+        assertEquals( 1, server.getRequestCount( "/flaky/1/404/c" ) );
+
+        policy.setRetryStatuses( "4xx" );
+        lvi = new LinkValidationItem( new File( "." ), server.url( "/flaky/1/404/d" ) );
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, lvm.validateLink( lvi ).getStatus() );
+
+        // the scheduler validates the link again itself
+        this.hlv = new OnlineHTTPLinkValidator( bean );
+        LinkValidationResult result = checkLink( server.url( "/flaky/1/404/e" ) );
+        assertTrue( result instanceof RetryLinkValidationResult );
+        assertTrue( ( (RetryLinkValidationResult) result ).getDelay() <= 10 );
+    }
+
+    public void testRetryDelays() throws Exception
+    {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelay( 100 );
+        policy.setMaxDelay( 300 );
+        policy.setJitter( 0 );
+        assertEquals( 100, policy.getDelay( 1 ) );
+        assertEquals( 200, policy.getDelay( 2 ) );
+        assertEquals( 300, policy.getDelay( 3 ) );
+
+        policy.setJitter( 0.5 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            long delay = policy.getDelay( 2 );
+            assertTrue( delay >= 100 && delay <= 200 );
         }
+
+        assertTrue( policy.isRetried( new java.net.ConnectException() ) );
+        assertFalse( policy.isRetried( new java.io.IOException() ) );
     }
 
     protected LinkValidationResult checkLink( String link ) throws Exception
@@ -0,0 +1,158 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class HostResolverTest
+    extends TestCase
+{
+    public void testCache()
+        throws Exception
+    {
+        CountingResolver resolver = new CountingResolver( 60000, 60000, 0 );
+
+        assertEquals( "127.0.0.1", resolver.resolve( "localhost" ).getHostAddress() );
+        assertEquals( "127.0.0.1", resolver.resolve( "localhost" ).getHostAddress() );
+        assertEquals( 1, resolver.getLookups( "localhost" ) );
+
+        assertUnknown( resolver, "dead.invalid" );
+        assertTrue( resolver.isUnknown( "dead.invalid" ) );
+        assertUnknown( resolver, "dead.invalid" );
+        assertEquals( 1, resolver.getLookups( "dead.invalid" ) );
+    }
+
+    public void testTtl()
+        throws Exception
+    {
+        CountingResolver resolver = new CountingResolver( 60000, 0, 0 );
+
+        assertUnknown( resolver, "dead.invalid" );
+        assertUnknown( resolver, "dead.invalid" );
+        assertEquals( 2, resolver.getLookups( "dead.invalid" ) );
+
+        resolver = new CountingResolver( 0, 60000, 0 );
+        resolver.resolve( "localhost" );
+        resolver.resolve( "localhost" );
+        assertEquals( 2, resolver.getLookups( "localhost" ) );
+    }
+
+    public void testPreResolve()
+        throws Exception
+    {
+        CountingResolver resolver = new CountingResolver( 60000, 60000, 200 );
+
+        List<String> hosts = new ArrayList<String>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            hosts.add( "host" + i + ".invalid" );
+        }
+        hosts.add( "localhost" );
+        hosts.add( "localhost" );
+
+        long start = System.currentTimeMillis();
+        resolver.preResolve( hosts );
+        resolver.preResolve( hosts );
+
+        // waits for the resolution in progress
+        assertUnknown( resolver, "host0.invalid" );
+        assertEquals( "127.0.0.1", resolver.resolve( "localhost" ).getHostAddress() );
+        for ( int i = 0; i < 8; i++ )
+        {
+            assertUnknown( resolver, "host" + i + ".invalid" );
+            assertEquals( 1, resolver.getLookups( "host" + i + ".invalid" ) );
+        }
+        assertEquals( 1, resolver.getLookups( "localhost" ) );
+
+        // in parallel
+        assertTrue( System.currentTimeMillis() - start < 8 * 200 );
+    }
+
+    private static void assertUnknown( HostResolver resolver, String host )
+        throws Exception
+    {
+        try
+        {
+            resolver.resolve( host );
+            fail( "Unknown host expected: " + host );
+        }
+        catch ( UnknownHostException e )
+        {
+            assertTrue( e.getMessage().indexOf( host ) != -1 );
+        }
+    }
+
+    /**
+     * Counts the lookups, and doesn't resolve the <code>.invalid</code> hosts through the network.
+     */
+    private static class CountingResolver
+        extends HostResolver
+    {
+        private final ConcurrentMap<String, AtomicInteger> lookups = new ConcurrentHashMap<String, AtomicInteger>();
+
+        private final long latency;
+
+        CountingResolver( long ttl, long negativeTtl, long latency )
+        {
+            super( ttl, negativeTtl );
+            this.latency = latency;
+        }
+
+        protected InetAddress lookup( String host )
+            throws UnknownHostException
+        {
+            lookups.putIfAbsent( host, new AtomicInteger() );
+            lookups.get( host ).incrementAndGet();
+
+            try
+            {
+                Thread.sleep( latency );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            if ( host.endsWith( ".invalid" ) )
+            {
+                throw new UnknownHostException( host );
+            }
+            return InetAddress.getByName( "127.0.0.1" );
+        }
+
+        int getLookups( String host )
+        {
+            AtomicInteger count = lookups.get( host );
+            return count == null ? 0 : count.get();
+        }
+    }
+}
@@ -19,6 +19,19 @@ package org.apache.maven.doxia.linkcheck.validation;
  * under the License.
  */
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+import org.codehaus.plexus.util.FileUtils;
+
 import junit.framework.TestCase;
 
 /**
@@ -68,4 +81,226 @@ public class LinkValidatorManagerTest
         pattern = "../../exclude/*";
         assertFalse( LinkValidatorManager.matchPattern( link, pattern ) );
     }
+
+    public void testSaveCacheMerges() throws Exception
+    {
+        final File cacheFile = new File( "target/linkcheck/merged.cache" );
+        cacheFile.delete();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Exception> failures = new ArrayList<Exception>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            final String link = "http://maven.apache.org/" + i;
+            threads.add( new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        LinkValidatorManager lvm = new LinkValidatorManager();
+                        lvm.setSharedCacheFile( true );
+                        lvm.loadCache( cacheFile );
+                        lvm.setCachedResult( link,
+                                             new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, true, "" ) );
+                        lvm.saveCache( cacheFile );
+                    }
+                    catch ( Exception e )
+                    {
+                        synchronized ( failures )
+                        {
+                            failures.add( e );
+                        }
+                    }
+                }
+            } );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        assertEquals( failures.toString(), 0, failures.size() );
+
+        // no result is lost, whatever the order of the saves
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+        lvm.loadCache( cacheFile );
+        for ( int i = 0; i < 8; i++ )
+        {
+            assertNotNull( lvm.getCachedResult( new LinkValidationItem( cacheFile, "http://maven.apache.org/" + i ) ) );
+        }
+    }
+
+    public void testSaveUnsharedCache() throws Exception
+    {
+        File cacheFile = new File( "target/linkcheck/unshared.cache" );
+        cacheFile.delete();
+        File lockFile = new File( "target/linkcheck/unshared.cache.lock" );
+        lockFile.delete();
+
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.setCachedResult( "http://maven.apache.org/", new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL,
+                                                                                   true, "" ) );
+        lvm.saveCache( cacheFile );
+
+        // the file is overwritten, without lock
+        lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+        lvm.loadCache( cacheFile );
+        lvm.setCachedResult( "http://maven.apache.org/other", new LinkValidationResult(
+            LinkcheckFileResult.VALID_LEVEL, true, "" ) );
+        lvm.saveCache( cacheFile );
+        assertFalse( lockFile.exists() );
+
+        lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+        lvm.loadCache( cacheFile );
+        assertNotNull( lvm.getCachedResult( new LinkValidationItem( cacheFile, "http://maven.apache.org/" ) ) );
+        assertNotNull( lvm.getCachedResult( new LinkValidationItem( cacheFile, "http://maven.apache.org/other" ) ) );
+    }
+
+    public void testSaveDiskCache() throws Exception
+    {
+        File cacheFile = new File( "target/linkcheck/disk.cache" );
+        cacheFile.delete();
+
+        File dir = new File( "target/linkcheck/disk-save" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        DiskValidationCache diskCache = new DiskValidationCache( dir, 10 );
+        try
+        {
+            LinkValidatorManager lvm = new LinkValidatorManager();
+            lvm.setCache( diskCache );
+            for ( int i = 0; i < 100; i++ )
+            {
+                lvm.setCachedResult( "http://maven.apache.org/" + i,
+                                     new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, true, "" ) );
+            }
+            lvm.setCachedResult( "local.html",
+                                 new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, false, "" ) );
+            lvm.saveCache( cacheFile );
+        }
+        finally
+        {
+            diskCache.close();
+        }
+
+        dir = new File( "target/linkcheck/disk-load" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        diskCache = new DiskValidationCache( dir, 10 );
+        try
+        {
+            LinkValidatorManager lvm = new LinkValidatorManager();
+            lvm.setCache( diskCache );
+            lvm.loadCache( cacheFile );
+
+            assertEquals( 100, diskCache.size() );
+            assertNotNull( diskCache.get( "http://maven.apache.org/99" ) );
+            assertNull( diskCache.get( "local.html" ) );
+        }
+        finally
+        {
+            diskCache.close();
+        }
+    }
+
+    public void testLoadMapCache() throws Exception
+    {
+        // the format of the previous versions
+        File cacheFile = new File( "target/linkcheck/map.cache" );
+        cacheFile.getParentFile().mkdirs();
+
+        Map<Object, LinkValidationResult> results = new HashMap<Object, LinkValidationResult>();
+        results.put( "http://maven.apache.org/", new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, true,
+                                                                           "" ) );
+        ObjectOutputStream os = new ObjectOutputStream( new FileOutputStream( cacheFile ) );
+        try
+        {
+            os.writeObject( results );
+        }
+        finally
+        {
+            os.close();
+        }
+
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+        lvm.loadCache( cacheFile );
+        assertNotNull( lvm.getCachedResult( new LinkValidationItem( cacheFile, "http://maven.apache.org/" ) ) );
+    }
+
+    public void testSaveMapCompatibleCache() throws Exception
+    {
+        File cacheFile = new File( "target/linkcheck/compatible.cache" );
+        cacheFile.delete();
+
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.setCachedResult( "http://maven.apache.org/", new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL,
+                                                                                   true, "" ) );
+        lvm.saveCache( cacheFile );
+
+        // the previous versions read an empty map
+        ObjectInputStream is = new ObjectInputStream( new FileInputStream( cacheFile ) );
+        try
+        {
+            assertEquals( new HashMap<Object, LinkValidationResult>(), is.readObject() );
+        }
+        finally
+        {
+            is.close();
+        }
+
+        lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+        lvm.loadCache( cacheFile );
+        assertNotNull( lvm.getCachedResult( new LinkValidationItem( cacheFile, "http://maven.apache.org/" ) ) );
+    }
+
+    public void testRemoveLocalResults() throws Exception
+    {
+        File source = new File( "src/test/resources/testA.html" );
+        LinkValidatorManager lvm = new LinkValidatorManager();
+        lvm.addLinkValidator( new FileLinkValidator( "UTF-8" ) );
+        lvm.addLinkValidator( new OfflineHTTPLinkValidator() );
+
+        LinkValidationItem local = new LinkValidationItem( source, "missing.html" );
+        LinkValidationItem external = new LinkValidationItem( source, "http://maven.apache.org/" );
+        lvm.validateLink( local );
+        lvm.setCachedResult( "http://maven.apache.org/",
+                             new LinkValidationResult( LinkcheckFileResult.ERROR_LEVEL, false, "timeout" ) );
+        assertNotNull( lvm.getCachedResult( local ) );
+
+        // the non persistent external results are kept, i.e. the errors and the timeouts
+        lvm.removeLocalResults();
+        assertNull( lvm.getCachedResult( local ) );
+        assertNotNull( lvm.getCachedResult( external ) );
+    }
+
+    public void testSharedCache() throws Exception
+    {
+        File cacheFile = new File( "target/linkcheck/shared.cache" );
+
+        assertSame( SharedValidationCache.getCache( cacheFile ),
+                    SharedValidationCache.getCache( new File( "target/../target/linkcheck/shared.cache" ) ) );
+        assertNotSame( SharedValidationCache.getCache( cacheFile ),
+                       SharedValidationCache.getCache( new File( "target/linkcheck/other.cache" ) ) );
+
+        Map<Object, LinkValidationResult> cache = SharedValidationCache.getCache( cacheFile );
+        SharedValidationCache.clear();
+        assertNotSame( cache, SharedValidationCache.getCache( cacheFile ) );
+
+        // the cache is dropped once its file has been deleted
+        cacheFile.getParentFile().mkdirs();
+        FileUtils.fileWrite( cacheFile.getPath(), "" );
+        cache = SharedValidationCache.getCache( cacheFile );
+        assertSame( cache, SharedValidationCache.getCache( cacheFile ) );
+        cacheFile.delete();
+        assertNotSame( cache, SharedValidationCache.getCache( cacheFile ) );
+    }
 }
@@ -0,0 +1,143 @@
+package org.apache.maven.doxia.linkcheck.validation;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import org.apache.maven.doxia.linkcheck.HttpBean;
+import org.apache.maven.doxia.linkcheck.RetryPolicy;
+import org.apache.maven.doxia.linkcheck.http.StandInHttpServer;
+import org.apache.maven.doxia.linkcheck.model.LinkcheckFileResult;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class ValidationSchedulerTest
+    extends TestCase
+{
+    private LinkValidatorManager lvm;
+
+    private ValidationScheduler scheduler;
+
+    /** {@inheritDoc} */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        lvm = new LinkValidatorManager();
+        lvm.setExcludedLinks( new String[] { "http://excluded.example.com/" } );
+        lvm.addLinkValidator( new FileLinkValidator( "UTF-8" ) );
+        lvm.addLinkValidator( new OnlineHTTPLinkValidator() );
+        lvm.addLinkValidator( new MailtoLinkValidator() );
+
+        scheduler = new ValidationScheduler( lvm, 1, 1 );
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown()
+        throws Exception
+    {
+        scheduler.shutdown();
+
+        super.tearDown();
+    }
+
+    public void testCost()
+        throws Exception
+    {
+        assertEquals( ValidationScheduler.LOCAL_COST, getCost( "nolink.html" ) );
+        assertEquals( 2 * ValidationScheduler.LOCAL_COST, getCost( "nolink.html#top" ) );
+        assertEquals( ValidationScheduler.LOCAL_COST, getCost( "mailto:dev@maven.apache.org" ) );
+        assertEquals( ValidationScheduler.NETWORK_COST, getCost( "http://maven.apache.org/" ) );
+        assertEquals( 2 * ValidationScheduler.NETWORK_COST, getCost( "http://maven.apache.org/#top" ) );
+        assertEquals( ValidationScheduler.CACHED_COST, getCost( "http://excluded.example.com/index.html" ) );
+
+        lvm.setCachedResult( "http://maven.apache.org/",
+                             new LinkValidationResult( LinkcheckFileResult.VALID_LEVEL, true, "" ) );
+        assertEquals( ValidationScheduler.CACHED_COST, getCost( "http://maven.apache.org/" ) );
+    }
+
+    public void testSubmit()
+        throws Exception
+    {
+        File page = new File( "src/test/resources/testA.html" );
+
+        LinkValidationResult result = scheduler.submit( new LinkValidationItem( page, "nolink.html" ) ).get();
+        assertEquals( LinkcheckFileResult.VALID_LEVEL, result.getStatus() );
+
+        result = scheduler.submit( new LinkValidationItem( page, "missing.html" ) ).get();
+        assertEquals( LinkcheckFileResult.ERROR_LEVEL, result.getStatus() );
+
+        // answered in the calling thread
+        assertTrue( scheduler.submit( new LinkValidationItem( page, "http://excluded.example.com/" ) ).isDone() );
+
+        // the completed validations are only held by the cache
+        assertEquals( 0, scheduler.getPendingValidations() );
+        assertTrue( scheduler.submit( new LinkValidationItem( page, "nolink.html" ) ).isDone() );
+    }
+
+    public void testRetriesDontBlock()
+        throws Exception
+    {
+        StandInHttpServer server = new StandInHttpServer();
+        try
+        {
+            RetryPolicy policy = new RetryPolicy();
+            policy.setInitialDelay( 500 );
+            policy.setJitter( 0 );
+            HttpBean bean = new HttpBean();
+            bean.setRetryPolicy( policy );
+            LinkValidatorManager manager = new LinkValidatorManager();
+            manager.addLinkValidator( new OnlineHTTPLinkValidator( bean ) );
+            ValidationScheduler single = new ValidationScheduler( manager, 1, 1 );
+            try
+            {
+                File page = new File( "src/test/resources/testA.html" );
+                Future<LinkValidationResult> flaky =
+                    single.submit( new LinkValidationItem( page, server.url( "/flaky/1/503/a" ) ) );
+                Future<LinkValidationResult> ok = single.submit( new LinkValidationItem( page, server.url( "/ok" ) ) );
+
+                // validated on the only network thread while the flaky link waits
+                assertEquals( LinkcheckFileResult.VALID_LEVEL, ok.get().getStatus() );
+                assertFalse( flaky.isDone() );
+                assertEquals( LinkcheckFileResult.VALID_LEVEL, flaky.get().getStatus() );
+                assertEquals( 2, server.getRequestCount( "/flaky/1/503/a" ) );
+            }
+            finally
+            {
+                single.shutdown();
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private int getCost( String link )
+    {
+        return scheduler.getCost( new LinkValidationItem( new File( "src/test/resources/testA.html" ), link ) );
+    }
+}